@@ -0,0 +1,598 @@
+/*
+ * @(#)BarnesHutGraphLayout.java
+ *
+ * Project:		JHotdraw - a GUI framework for technical drawings
+ *				http://www.jhotdraw.org
+ *				http://jhotdraw.sourceforge.net
+ * Copyright:	 by the original author(s) and all contributors
+ * License:		Lesser GNU Public License (LGPL)
+ *				http://www.opensource.org/licenses/lgpl-license.html
+ */
+
+package org.jhotdraw.util;
+
+import java.util.*;
+import org.jhotdraw.framework.*;
+import org.jhotdraw.standard.*;
+import java.awt.*;
+
+/**
+ * A force directed graph layout for large graphs.
+ * <p>
+ * BarnesHutGraphLayout uses the same forces and tunables as
+ * {@link GraphLayout}, but it computes the repulsion between the nodes with
+ * a Barnes-Hut quadtree: a group of nodes, which is far away from a node,
+ * is approximated by its center of mass. This reduces the cost of an
+ * iteration from O(n^2) to O(n log n). Groups of nodes, which are farther
+ * away than <code>REPULSION_LIMIT</code>, are skipped altogether.
+ * <p>
+ * The coordinates of the nodes are kept in primitive arrays. The repulsion
+ * forces are accumulated in parallel by worker threads, each thread working
+ * on a range of nodes. The quadtree is shared read-only by the threads.
+ * <p>
+ * The layout is deterministic: coincident nodes are pushed apart by a
+ * pseudo random jitter, which only depends on the seed of the layout,
+ * the iteration and the nodes involved. It does not depend on the number
+ * of threads.
+ *
+ * @version <$CURRENT_VERSION$>
+ */
+public class BarnesHutGraphLayout extends FigureChangeAdapter {
+	public double LENGTH_FACTOR=1.0;
+	public double REPULSION_STRENGTH=0.5;
+	public double REPULSION_LIMIT=200.0;
+	int REPULSION_TYPE=0; // 0: (1-r)/r   1: 1-r   2: (1-r)^2
+	public double SPRING_STRENGTH=0.1;
+	public double TORQUE_STRENGTH=0.25;
+	public double FRICTION_FACTOR=0.75;
+	/**
+	 * Accuracy of the Barnes-Hut approximation. A group of nodes is
+	 * approximated by its center of mass, if the ratio between the size
+	 * of the group and its distance is less than THETA.
+	 * A value of 0 computes the exact forces.
+	 */
+	public double THETA=0.5;
+	/**
+	 * The layout has converged, when no node moved by more than this
+	 * distance during the last iteration.
+	 */
+	public double CONVERGENCE_LIMIT=0.5;
+
+	/** Maximal depth of the quadtree. Deeper cells hold lists of nodes. */
+	private static final int MAX_DEPTH = 24;
+	/** Minimal number of nodes per thread. */
+	private static final int MIN_NODES_PER_THREAD = 256;
+
+	/** Maps figures to node indices. */
+	private Hashtable nodeIndices = new Hashtable();
+	/** Maps connection figures to edge indices. */
+	private Hashtable edgeIndices = new Hashtable();
+
+	// Nodes
+	private int nodeCount;
+	private Figure[] nodes = new Figure[16];
+	private double[] x = new double[16];
+	private double[] y = new double[16];
+	private double[] dx = new double[16];
+	private double[] dy = new double[16];
+	/** Repulsion forces computed by the worker threads. */
+	private double[] rx = new double[16];
+	private double[] ry = new double[16];
+
+	// Edges
+	private int edgeCount;
+	private int[] edgeFrom = new int[16];
+	private int[] edgeTo = new int[16];
+	private double[] edgeLength = new double[16];
+
+	// Quadtree cells
+	private int cellCount;
+	private double[] cellX = new double[64];
+	private double[] cellY = new double[64];
+	private double[] cellSize = new double[64];
+	private double[] cellMassX = new double[64];
+	private double[] cellMassY = new double[64];
+	private int[] cellMass = new int[64];
+	/** Index of the first child cell, or -1 if the cell is a leaf. */
+	private int[] cellChild = new int[64];
+	/** Index of the first node in a leaf cell, or -1. */
+	private int[] cellFirstNode = new int[64];
+	/** Links the nodes of a leaf cell. */
+	private int[] nextNode = new int[16];
+
+	private long seed;
+	private int iteration;
+	private int threadCount;
+	private double maxMovement = Double.POSITIVE_INFINITY;
+
+	public BarnesHutGraphLayout() {
+		this(0L);
+	}
+
+	public BarnesHutGraphLayout(long seed) {
+		this.seed = seed;
+		threadCount = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Sets the number of threads used to compute the repulsion forces.
+	 */
+	public void setThreadCount(int newValue) {
+		threadCount = Math.max(1, newValue);
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public void addNode(Figure node) {
+		if (nodeIndices == null || nodeIndices.containsKey(node)) {
+			return;
+		}
+		ensureNodeCapacity(nodeCount + 1);
+		int i = nodeCount++;
+		nodes[i] = node;
+		Point p = node.center();
+		x[i] = p.x;
+		y[i] = p.y;
+		dx[i] = 0;
+		dy[i] = 0;
+		nodeIndices.put(node, new Integer(i));
+		node.addFigureChangeListener(this);
+		maxMovement = Double.POSITIVE_INFINITY;
+	}
+
+	public void addEdge(ConnectionFigure edge, int addlen) {
+		if (edgeIndices == null || edgeIndices.containsKey(edge)) {
+			return;
+		}
+		Integer from = (Integer)nodeIndices.get(edge.getStartConnector().owner());
+		Integer to = (Integer)nodeIndices.get(edge.getEndConnector().owner());
+		if (from == null || to == null) {
+			throw new IllegalArgumentException("edge does not connect two nodes of this layout");
+		}
+		Dimension d1 = edge.getStartConnector().owner().size();
+		Dimension d2 = edge.getEndConnector().owner().size();
+		int len = Math.max(d1.width,d1.height)/2 +
+				Math.max(d2.width,d2.height)/2 + addlen;
+		addEdge(from.intValue(), to.intValue(), len);
+		edgeIndices.put(edge, new Integer(edgeCount - 1));
+	}
+
+	private void addEdge(int from, int to, double len) {
+		if (edgeCount == edgeFrom.length) {
+			int n = edgeCount * 2;
+			edgeFrom = copyOf(edgeFrom, n);
+			edgeTo = copyOf(edgeTo, n);
+			edgeLength = copyOf(edgeLength, n);
+		}
+		edgeFrom[edgeCount] = from;
+		edgeTo[edgeCount] = to;
+		edgeLength[edgeCount] = len;
+		edgeCount++;
+		maxMovement = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns true, if no node moved by more than CONVERGENCE_LIMIT
+	 * during the last iteration.
+	 */
+	public boolean isConverged() {
+		return maxMovement <= CONVERGENCE_LIMIT;
+	}
+
+	/**
+	 * Performs one iteration of the layout, and moves the figures.
+	 */
+	public synchronized void relax() {
+		if (nodeIndices == null) {
+			return;
+		}
+		step();
+		moveFigures();
+	}
+
+	/**
+	 * Performs iterations until the layout has converged, or until
+	 * the specified number of iterations has been reached. The figures
+	 * are only moved once, after the last iteration.
+	 *
+	 * @return the number of iterations performed.
+	 */
+	public synchronized int relax(int maxIterations) {
+		if (nodeIndices == null) {
+			return 0;
+		}
+		int count = 0;
+		while (count < maxIterations && !isConverged()) {
+			step();
+			count++;
+		}
+		moveFigures();
+		return count;
+	}
+
+	private void moveFigures() {
+		for (int i = 0; i < nodeCount; i++) {
+			if (!isFixed(i)) {
+				Point c = nodes[i].center();
+				nodes[i].moveBy((int)Math.round(x[i])-c.x,
+						(int)Math.round(y[i])-c.y);
+			}
+		}
+	}
+
+	private boolean isFixed(int i) {
+		return Boolean.TRUE.equals(nodes[i].getAttribute(FigureAttributeConstant.LOCATION));
+	}
+
+	/**
+	 * Computes the forces and updates the coordinates of the nodes,
+	 * without moving the figures.
+	 */
+	private void step() {
+		iteration++;
+		computeSpringForces();
+		buildQuadTree();
+		computeRepulsionForces();
+
+		double movement = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			dx[i] += rx[i];
+			dy[i] += ry[i];
+			if (!isFixed(i)) {
+				double mx = Math.max(-5, Math.min(5, dx[i]));
+				double my = Math.max(-5, Math.min(5, dy[i]));
+				x[i] += mx;
+				y[i] += my;
+				if (x[i] < 0) {
+					x[i] = 0;
+				}
+				if (y[i] < 0) {
+					y[i] = 0;
+				}
+				movement = Math.max(movement, Math.max(Math.abs(mx), Math.abs(my)));
+			}
+			dx[i] *= FRICTION_FACTOR;
+			dy[i] *= FRICTION_FACTOR;
+		}
+		maxMovement = movement;
+	}
+
+	private void computeSpringForces() {
+		for (int e = 0; e < edgeCount; e++) {
+			int from = edgeFrom[e];
+			int to = edgeTo[e];
+			double targetlen = edgeLength[e] * LENGTH_FACTOR;
+			double vx = x[to] - x[from];
+			double vy = y[to] - y[from];
+			double len = Math.sqrt(vx * vx + vy * vy);
+
+			if (len>0) {
+				double f = SPRING_STRENGTH * (targetlen - len) / len;
+				double fx = f * vx;
+				double fy = f * vy;
+
+				double phi=Math.atan2(vx,vy);
+				double dir=-Math.sin(4*phi);
+				fx += TORQUE_STRENGTH*vy*dir/len;
+				fy += -TORQUE_STRENGTH*vx*dir/len;
+
+				dx[to] += fx;
+				dy[to] += fy;
+				dx[from] += -fx;
+				dy[from] += -fy;
+			}
+		}
+	}
+
+	/**
+	 * Builds the quadtree over the current node coordinates.
+	 */
+	private void buildQuadTree() {
+		cellCount = 0;
+		if (nodeCount == 0) {
+			return;
+		}
+		double minX = x[0], minY = y[0], maxX = x[0], maxY = y[0];
+		for (int i = 1; i < nodeCount; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		double size = Math.max(1, Math.max(maxX - minX, maxY - minY)) * 1.0001;
+		newCell(minX, minY, size);
+		for (int i = 0; i < nodeCount; i++) {
+			insert(i);
+		}
+		computeCentersOfMass();
+	}
+
+	private int newCell(double cx, double cy, double size) {
+		if (cellCount == cellX.length) {
+			int n = cellCount * 2;
+			cellX = copyOf(cellX, n);
+			cellY = copyOf(cellY, n);
+			cellSize = copyOf(cellSize, n);
+			cellMassX = copyOf(cellMassX, n);
+			cellMassY = copyOf(cellMassY, n);
+			cellMass = copyOf(cellMass, n);
+			cellChild = copyOf(cellChild, n);
+			cellFirstNode = copyOf(cellFirstNode, n);
+		}
+		int c = cellCount++;
+		cellX[c] = cx;
+		cellY[c] = cy;
+		cellSize[c] = size;
+		cellMass[c] = 0;
+		cellChild[c] = -1;
+		cellFirstNode[c] = -1;
+		return c;
+	}
+
+	private void insert(int i) {
+		int c = 0;
+		int depth = 0;
+		while (true) {
+			if (cellChild[c] == -1) {
+				if (cellFirstNode[c] == -1 || depth >= MAX_DEPTH) {
+					nextNode[i] = cellFirstNode[c];
+					cellFirstNode[c] = i;
+					return;
+				}
+				// Split the leaf, and move its nodes into the children.
+				double half = cellSize[c] / 2;
+				int first = newCell(cellX[c], cellY[c], half);
+				newCell(cellX[c] + half, cellY[c], half);
+				newCell(cellX[c], cellY[c] + half, half);
+				newCell(cellX[c] + half, cellY[c] + half, half);
+				cellChild[c] = first;
+				int j = cellFirstNode[c];
+				cellFirstNode[c] = -1;
+				while (j != -1) {
+					int next = nextNode[j];
+					int child = first + quadrant(c, j);
+					nextNode[j] = cellFirstNode[child];
+					cellFirstNode[child] = j;
+					j = next;
+				}
+			}
+			c = cellChild[c] + quadrant(c, i);
+			depth++;
+		}
+	}
+
+	private int quadrant(int c, int i) {
+		double half = cellSize[c] / 2;
+		int q = 0;
+		if (x[i] >= cellX[c] + half) {
+			q += 1;
+		}
+		if (y[i] >= cellY[c] + half) {
+			q += 2;
+		}
+		return q;
+	}
+
+	private void computeCentersOfMass() {
+		// Cells are created after their parents, thus we can
+		// accumulate the masses in reverse order of creation.
+		for (int c = cellCount - 1; c >= 0; c--) {
+			double sx = 0, sy = 0;
+			int mass = 0;
+			if (cellChild[c] == -1) {
+				for (int j = cellFirstNode[c]; j != -1; j = nextNode[j]) {
+					sx += x[j];
+					sy += y[j];
+					mass++;
+				}
+			} else {
+				for (int k = cellChild[c], n = k + 4; k < n; k++) {
+					sx += cellMassX[k] * cellMass[k];
+					sy += cellMassY[k] * cellMass[k];
+					mass += cellMass[k];
+				}
+			}
+			cellMass[c] = mass;
+			if (mass > 0) {
+				cellMassX[c] = sx / mass;
+				cellMassY[c] = sy / mass;
+			}
+		}
+	}
+
+	private void computeRepulsionForces() {
+		int threads = Math.min(threadCount, Math.max(1, nodeCount / MIN_NODES_PER_THREAD));
+		if (threads <= 1) {
+			computeRepulsionForces(0, nodeCount);
+			return;
+		}
+		Thread[] workers = new Thread[threads - 1];
+		int chunk = (nodeCount + threads - 1) / threads;
+		for (int t = 0; t < workers.length; t++) {
+			final int from = t * chunk;
+			final int to = Math.min(nodeCount, from + chunk);
+			workers[t] = new Thread("BarnesHutGraphLayout-" + t) {
+				public void run() {
+					computeRepulsionForces(from, to);
+				}
+			};
+			workers[t].start();
+		}
+		computeRepulsionForces(workers.length * chunk, nodeCount);
+		for (int t = 0; t < workers.length; t++) {
+			try {
+				workers[t].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for layout thread");
+			}
+		}
+	}
+
+	/**
+	 * Computes the repulsion forces for the nodes from (inclusive) to
+	 * (exclusive). This method only writes into rx and ry at the indices
+	 * of these nodes.
+	 */
+	private void computeRepulsionForces(int from, int to) {
+		int[] stack = new int[4 * MAX_DEPTH + 4];
+		double limit = REPULSION_LIMIT;
+		for (int i = from; i < to; i++) {
+			double fx = 0, fy = 0;
+			double xi = x[i], yi = y[i];
+			int sp = 0;
+			if (cellCount > 0) {
+				stack[sp++] = 0;
+			}
+			while (sp > 0) {
+				int c = stack[--sp];
+				if (cellMass[c] == 0) {
+					continue;
+				}
+				// Skip cells which are out of reach
+				double size = cellSize[c];
+				double ox = Math.max(0, Math.max(cellX[c] - xi, xi - cellX[c] - size));
+				double oy = Math.max(0, Math.max(cellY[c] - yi, yi - cellY[c] - size));
+				if (ox * ox + oy * oy >= limit * limit) {
+					continue;
+				}
+				if (cellChild[c] == -1) {
+					for (int j = cellFirstNode[c]; j != -1; j = nextNode[j]) {
+						if (j != i) {
+							double vx = xi - x[j];
+							double vy = yi - y[j];
+							double len = Math.sqrt(vx * vx + vy * vy);
+							if (len == 0) {
+								fx += REPULSION_STRENGTH * jitter(i, j, 0);
+								fy += REPULSION_STRENGTH * jitter(i, j, 1);
+							} else if (len < limit) {
+								double f = repulsion(len / limit);
+								fx += f * vx / limit;
+								fy += f * vy / limit;
+							}
+						}
+					}
+				} else {
+					double vx = xi - cellMassX[c];
+					double vy = yi - cellMassY[c];
+					double len = Math.sqrt(vx * vx + vy * vy);
+					boolean isInside = ox == 0 && oy == 0;
+					if (!isInside && len > 0 && size / len < THETA) {
+						if (len < limit) {
+							double f = repulsion(len / limit) * cellMass[c];
+							fx += f * vx / limit;
+							fy += f * vy / limit;
+						}
+					} else {
+						for (int k = cellChild[c], n = k + 4; k < n; k++) {
+							stack[sp++] = k;
+						}
+					}
+				}
+			}
+			rx[i] = fx;
+			ry[i] = fy;
+		}
+	}
+
+	/**
+	 * Computes the repulsion force for a normalized distance.
+	 */
+	private double repulsion(double len) {
+		double f=0;
+		switch (REPULSION_TYPE) {
+			case 0:
+				f = 0.5 * (1 - len) / len;
+				break;
+			case 1:
+				f = 1 - len;
+				break;
+			case 2:
+				f = 2 * (1 - len) * (1 - len);
+				break;
+		}
+		return f * REPULSION_STRENGTH;
+	}
+
+	/**
+	 * Returns a pseudo random number in the range [0,1), which only depends
+	 * on the seed, the iteration, the nodes and the axis.
+	 */
+	private double jitter(int i, int j, int axis) {
+		long h = seed + iteration * 0x9E3779B97F4A7C15L;
+		h ^= ((long)i << 32) ^ ((long)j << 1) ^ axis;
+		// SplitMix64 finalizer
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h = h ^ (h >>> 31);
+		return (h >>> 11) * (1.0 / (1L << 53));
+	}
+
+	/**
+	 * Sent when a figure changed
+	 */
+	synchronized public void figureChanged(FigureChangeEvent e) {
+		if (nodeIndices!=null) {
+			Integer index = (Integer)nodeIndices.get(e.getFigure());
+			if (index != null) {
+				int i = index.intValue();
+				Point p = nodes[i].center();
+				if (Math.abs(p.x - Math.round(x[i]))>1 ||
+					Math.abs(p.y - Math.round(y[i]))>1) {
+					x[i] = p.x;
+					y[i] = p.y;
+					maxMovement = Double.POSITIVE_INFINITY;
+				}
+			}
+		}
+	}
+
+	public void remove() {
+		if (nodeIndices!=null) {
+			for (int i = 0; i < nodeCount; i++) {
+				nodes[i].removeFigureChangeListener(this);
+			}
+			nodeIndices = null;
+			edgeIndices = null;
+			nodes = null;
+		}
+	}
+
+	private void ensureNodeCapacity(int capacity) {
+		if (capacity > nodes.length) {
+			int n = Math.max(capacity, nodes.length * 2);
+			Figure[] newNodes = new Figure[n];
+			System.arraycopy(nodes, 0, newNodes, 0, nodeCount);
+			nodes = newNodes;
+			x = copyOf(x, n);
+			y = copyOf(y, n);
+			dx = copyOf(dx, n);
+			dy = copyOf(dy, n);
+			rx = copyOf(rx, n);
+			ry = copyOf(ry, n);
+			nextNode = copyOf(nextNode, n);
+		}
+	}
+
+	private static double[] copyOf(double[] a, int n) {
+		double[] b = new double[n];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, n));
+		return b;
+	}
+
+	private static int[] copyOf(int[] a, int n) {
+		int[] b = new int[n];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, n));
+		return b;
+	}
+}
@@ -38,6 +38,9 @@ import org.jhotdraw.standard.*;
 import java.awt.*;
 
 /**
+ * A force directed graph layout. The cost of an iteration grows quadratically
+ * with the number of nodes; use {@link BarnesHutGraphLayout} for large graphs.
+ *
  * @version <$CURRENT_VERSION$>
  */
 public class GraphLayout extends FigureChangeAdapter {
@@ -0,0 +1,130 @@
+/*
+ * @(#)Test.java
+ *
+ * Project:		JHotdraw - a GUI framework for technical drawings
+ *				http://www.jhotdraw.org
+ *				http://jhotdraw.sourceforge.net
+ * Copyright:	 by the original author(s) and all contributors
+ * License:		Lesser GNU Public License (LGPL)
+ *				http://www.opensource.org/licenses/lgpl-license.html
+ */
+package org.jhotdraw.test.samples.net;
+
+import java.awt.Point;
+import java.util.Random;
+import org.jhotdraw.figures.LineConnection;
+import org.jhotdraw.framework.Figure;
+import org.jhotdraw.samples.net.NodeFigure;
+import org.jhotdraw.util.BarnesHutGraphLayout;
+import org.jhotdraw.util.GraphLayout;
+
+/**
+ * Measures the time per iteration of GraphLayout and BarnesHutGraphLayout
+ * on random graphs of NodeFigures with 1000, 10000 and 50000 nodes.
+ * <p>
+ * GraphLayout is only measured up to 10000 nodes, because a single
+ * iteration takes minutes on larger graphs.
+ * <p>
+ * Usage: java org.jhotdraw.test.samples.net.GraphLayoutBenchmark [iterations]
+ */
+public class GraphLayoutBenchmark {
+	private static final int[] SIZES = {1000, 10000, 50000};
+
+	public static void main(String[] args) {
+		int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+		int processors = Runtime.getRuntime().availableProcessors();
+		for (int s = 0; s < SIZES.length; s++) {
+			int n = SIZES[s];
+			if (n <= 10000) {
+				Figure[] nodes = createNodes(n);
+				LineConnection[] edges = createEdges(nodes);
+				GraphLayout layout = new GraphLayout();
+				for (int i = 0; i < nodes.length; i++) {
+					layout.addNode(nodes[i]);
+				}
+				for (int i = 0; i < edges.length; i++) {
+					layout.addEdge(edges[i], 20);
+				}
+				int count = Math.max(1, iterations * 1000 / n);
+				long start = System.currentTimeMillis();
+				for (int i = 0; i < count; i++) {
+					layout.relax();
+				}
+				report("GraphLayout", n, 1, count, System.currentTimeMillis() - start);
+				layout.remove();
+			}
+			int[] threads = {1, processors};
+			for (int t = 0; t < threads.length; t++) {
+				if (t > 0 && threads[t] == threads[t - 1]) {
+					continue;
+				}
+				Figure[] nodes = createNodes(n);
+				LineConnection[] edges = createEdges(nodes);
+				BarnesHutGraphLayout layout = new BarnesHutGraphLayout(1L);
+				layout.setThreadCount(threads[t]);
+				for (int i = 0; i < nodes.length; i++) {
+					layout.addNode(nodes[i]);
+				}
+				for (int i = 0; i < edges.length; i++) {
+					layout.addEdge(edges[i], 20);
+				}
+				long start = System.currentTimeMillis();
+				for (int i = 0; i < iterations; i++) {
+					layout.relax();
+				}
+				report("BarnesHutGraphLayout", n, threads[t], iterations, System.currentTimeMillis() - start);
+				layout.remove();
+			}
+		}
+	}
+
+	private static void report(String name, int nodes, int threads, int iterations, long millis) {
+		System.out.println(name + " nodes:" + nodes + " threads:" + threads
+				+ " ms/iteration:" + ((double)millis / iterations));
+	}
+
+	/**
+	 * Creates nodes at random locations, with a density of about one
+	 * node per 50 x 50 pixels.
+	 */
+	private static Figure[] createNodes(int n) {
+		Random random = new Random(n);
+		int extent = (int)Math.sqrt(n) * 50;
+		Figure[] nodes = new Figure[n];
+		for (int i = 0; i < n; i++) {
+			NodeFigure node = new NodeFigure();
+			node.setText("n" + i);
+			node.moveBy(random.nextInt(extent), random.nextInt(extent));
+			nodes[i] = node;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Connects each node with a random node created before it, and adds
+	 * n / 4 random edges.
+	 */
+	private static LineConnection[] createEdges(Figure[] nodes) {
+		Random random = new Random(-nodes.length);
+		int n = nodes.length;
+		LineConnection[] edges = new LineConnection[n - 1 + n / 4];
+		for (int i = 1; i < n; i++) {
+			edges[i - 1] = connect(nodes[random.nextInt(i)], nodes[i]);
+		}
+		for (int i = n - 1; i < edges.length; i++) {
+			edges[i] = connect(nodes[random.nextInt(n)], nodes[random.nextInt(n)]);
+		}
+		return edges;
+	}
+
+	private static LineConnection connect(Figure start, Figure end) {
+		LineConnection c = new LineConnection();
+		Point p1 = start.center();
+		Point p2 = end.center();
+		c.startPoint(p1.x, p1.y);
+		c.endPoint(p2.x, p2.y);
+		c.connectStart(start.connectorAt(p1.x, p1.y));
+		c.connectEnd(end.connectorAt(p2.x, p2.y));
+		return c;
+	}
+}
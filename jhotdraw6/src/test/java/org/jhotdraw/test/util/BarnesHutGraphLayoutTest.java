@@ -0,0 +1,144 @@
+/*
+ * @(#)Test.java
+ *
+ * Project:		JHotdraw - a GUI framework for technical drawings
+ *				http://www.jhotdraw.org
+ *				http://jhotdraw.sourceforge.net
+ * Copyright:	 by the original author(s) and all contributors
+ * License:		Lesser GNU Public License (LGPL)
+ *				http://www.opensource.org/licenses/lgpl-license.html
+ */
+package org.jhotdraw.test.util;
+
+import java.awt.Point;
+import org.jhotdraw.figures.LineConnection;
+import org.jhotdraw.figures.RectangleFigure;
+import org.jhotdraw.framework.Figure;
+import org.jhotdraw.util.BarnesHutGraphLayout;
+import org.jhotdraw.util.GraphLayout;
+import junit.framework.TestCase;
+
+/**
+ * TestCase BarnesHutGraphLayoutTest holds the tests for BarnesHutGraphLayout.
+ * @see org.jhotdraw.util.BarnesHutGraphLayout
+ */
+public class BarnesHutGraphLayoutTest extends TestCase {
+
+	public BarnesHutGraphLayoutTest(String name) {
+		super(name);
+	}
+
+	/**
+	 * Creates a grid of nodes, where each node is connected to its
+	 * right and lower neighbour.
+	 */
+	private Figure[] createGrid(int columns, int rows, int spacing) {
+		Figure[] nodes = new Figure[columns * rows];
+		for (int i = 0; i < nodes.length; i++) {
+			int x = (i % columns) * spacing + 200;
+			int y = (i / columns) * spacing + 200;
+			nodes[i] = new RectangleFigure(new Point(x, y), new Point(x + 10, y + 10));
+		}
+		return nodes;
+	}
+
+	private LineConnection connect(Figure start, Figure end) {
+		LineConnection c = new LineConnection();
+		Point p1 = start.center();
+		Point p2 = end.center();
+		c.startPoint(p1.x, p1.y);
+		c.endPoint(p2.x, p2.y);
+		c.connectStart(start.connectorAt(p1.x, p1.y));
+		c.connectEnd(end.connectorAt(p2.x, p2.y));
+		return c;
+	}
+
+	private void addGrid(BarnesHutGraphLayout layout, Figure[] nodes, int columns) {
+		for (int i = 0; i < nodes.length; i++) {
+			layout.addNode(nodes[i]);
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			if ((i + 1) % columns != 0) {
+				layout.addEdge(connect(nodes[i], nodes[i + 1]), 20);
+			}
+			if (i + columns < nodes.length) {
+				layout.addEdge(connect(nodes[i], nodes[i + columns]), 20);
+			}
+		}
+	}
+
+	/**
+	 * With THETA=0 the forces must be the same as those of GraphLayout.
+	 */
+	public void testExactForcesMatchGraphLayout() throws Exception {
+		Figure[] nodes1 = createGrid(8, 8, 15);
+		Figure[] nodes2 = createGrid(8, 8, 15);
+		GraphLayout expected = new GraphLayout();
+		for (int i = 0; i < nodes1.length; i++) {
+			expected.addNode(nodes1[i]);
+		}
+		for (int i = 0; i < nodes1.length; i++) {
+			if ((i + 1) % 8 != 0) {
+				expected.addEdge(connect(nodes1[i], nodes1[i + 1]), 20);
+			}
+			if (i + 8 < nodes1.length) {
+				expected.addEdge(connect(nodes1[i], nodes1[i + 8]), 20);
+			}
+		}
+		BarnesHutGraphLayout actual = new BarnesHutGraphLayout();
+		actual.THETA = 0;
+		addGrid(actual, nodes2, 8);
+
+		for (int k = 0; k < 10; k++) {
+			expected.relax();
+			actual.relax();
+		}
+		for (int i = 0; i < nodes1.length; i++) {
+			Point p1 = nodes1[i].center();
+			Point p2 = nodes2[i].center();
+			assertTrue("node " + i + " " + p1 + " " + p2,
+					Math.abs(p1.x - p2.x) <= 1 && Math.abs(p1.y - p2.y) <= 1);
+		}
+	}
+
+	/**
+	 * The result must not depend on the number of threads.
+	 */
+	public void testDeterministic() throws Exception {
+		Figure[] nodes1 = createGrid(40, 40, 5);
+		Figure[] nodes2 = createGrid(40, 40, 5);
+		BarnesHutGraphLayout layout1 = new BarnesHutGraphLayout(42L);
+		layout1.setThreadCount(1);
+		addGrid(layout1, nodes1, 40);
+		BarnesHutGraphLayout layout2 = new BarnesHutGraphLayout(42L);
+		layout2.setThreadCount(4);
+		addGrid(layout2, nodes2, 40);
+
+		layout1.relax(20);
+		layout2.relax(20);
+		for (int i = 0; i < nodes1.length; i++) {
+			assertEquals(nodes1[i].center(), nodes2[i].center());
+		}
+	}
+
+	public void testConvergence() throws Exception {
+		Figure[] nodes = createGrid(5, 5, 40);
+		BarnesHutGraphLayout layout = new BarnesHutGraphLayout();
+		addGrid(layout, nodes, 5);
+		assertFalse(layout.isConverged());
+		int iterations = layout.relax(5000);
+		assertTrue("iterations:" + iterations, layout.isConverged());
+		assertTrue(iterations < 5000);
+		assertEquals(0, layout.relax(10));
+	}
+
+	public void testRemove() throws Exception {
+		Figure[] nodes = createGrid(3, 3, 40);
+		BarnesHutGraphLayout layout = new BarnesHutGraphLayout();
+		addGrid(layout, nodes, 3);
+		layout.remove();
+		Point p = nodes[0].center();
+		layout.relax();
+		assertEquals(p, nodes[0].center());
+	}
+}
@@ -51,6 +51,7 @@ public class UtilSuite
 		suite.addTestSuite(org.jhotdraw.test.util.UndoCommandTest.class);
 		suite.addTestSuite(org.jhotdraw.test.util.UndoableCommandTest.class);
 		suite.addTestSuite(org.jhotdraw.test.util.GraphLayoutTest.class);
+		suite.addTestSuite(org.jhotdraw.test.util.BarnesHutGraphLayoutTest.class);
 		suite.addTestSuite(org.jhotdraw.test.util.BoundsTest.class);
 		suite.addTestSuite(org.jhotdraw.test.util.StorageFormatManagerTest.class);
 		suite.addTestSuite(org.jhotdraw.test.util.SerializationStorageFormatTest.class);
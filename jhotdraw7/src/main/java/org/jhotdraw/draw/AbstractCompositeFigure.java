@@ -565,6 +565,19 @@ public abstract class AbstractCompositeFigure
         return list;
     }
 
+    /**
+     * Returns true, if the transform is reversible for all children.
+     */
+    @Override
+    public boolean isTransformReversible(AffineTransform tx) {
+        for (Figure child : getChildren()) {
+            if (!child.isTransformReversible(tx)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void basicAdd(int index, Figure figure) {
         children.add(index, figure);
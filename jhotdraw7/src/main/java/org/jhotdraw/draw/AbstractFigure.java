@@ -559,6 +559,17 @@ public abstract class AbstractFigure
         return isTransformable;
     }
 
+    /**
+     * Returns true, if the specified transform can be undone by applying its
+     * inverse. By default {@code AbstractFigure} only considers translations
+     * to be reversible, because shapes such as rectangles and ellipses lose
+     * information when they are rotated or sheared.
+     */
+    @Override
+    public boolean isTransformReversible(AffineTransform tx) {
+        return (tx.getType() & AffineTransform.TYPE_TRANSLATION) == tx.getType();
+    }
+
     public void setTransformable(boolean newValue) {
         boolean oldValue = isTransformable;
         isTransformable = newValue;
@@ -598,6 +598,17 @@ public class BezierFigure extends AbstractAttributedFigure {
         return path.clone();
     }
 
+    /**
+     * Returns true, if the transform is invertible. The nodes of the
+     * bezier path are transformed point by point, and thus any invertible
+     * transform can be undone by applying its inverse.
+     */
+    @Override
+    public boolean isTransformReversible(AffineTransform tx) {
+        double det = tx.getDeterminant();
+        return det != 0d && !Double.isNaN(det) && !Double.isInfinite(det);
+    }
+
     public Point2D.Double chop(Point2D.Double p) {
         if (isClosed()) {
             double grow = AttributeKeys.getPerpendicularHitGrowth(this);
@@ -242,6 +242,21 @@ public interface Figure extends Cloneable, Serializable {
      */
     public void restoreTransformTo(Object restoreData);
 
+    /**
+     * Returns true, if applying the specified transform to the figure can be
+     * undone by applying its inverse, without loss of information other
+     * than double precision rounding.
+     * <p>
+     * Undoable edits use this method to decide whether they can store
+     * the transform only, or whether they have to fall back to
+     * {@link #getTransformRestoreData}, which may consume a lot of memory.
+     *
+     * @param tx The transformation.
+     * @see org.jhotdraw.draw.event.TransformEdit
+     * @see org.jhotdraw.draw.event.TransformRestoreEdit
+     */
+    public boolean isTransformReversible(AffineTransform tx);
+
     /**
      * Transforms the shape of the Figure. Transformations using double
      * precision arithmethics are inherently lossy operations. Therefore it is 
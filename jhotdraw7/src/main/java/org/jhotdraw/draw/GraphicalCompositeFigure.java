@@ -212,6 +212,13 @@ public class GraphicalCompositeFigure extends AbstractCompositeFigure {
         }
     }
 
+    @Override
+    public boolean isTransformReversible(AffineTransform tx) {
+        return super.isTransformReversible(tx)
+                && (getPresentationFigure() == null
+                || getPresentationFigure().isTransformReversible(tx));
+    }
+
     /**
      * Draw the figure. This method is delegated to the encapsulated presentation figure.
      */
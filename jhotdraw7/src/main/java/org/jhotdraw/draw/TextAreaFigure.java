@@ -65,6 +65,11 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
      * This is a cached value to improve the performance of method isTextOverflow();
      */
     @Nullable private Boolean isTextOverflow;
+    /**
+     * The cached layouts of the text for drawing and for measuring.
+     */
+    @Nullable private transient TextAreaLayout cachedTextLayout;
+    @Nullable private transient TextAreaLayout cachedPreferredTextLayout;
 
     /** Creates a new instance. */
     public TextAreaFigure() {
@@ -80,8 +85,6 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
     @Override
     protected void drawText(Graphics2D g) {
         if (getText() != null || isEditable()) {
-            Font font = getFont();
-            boolean isUnderlined = get(FONT_UNDERLINE);
             Insets2D.Double insets = getInsets();
             Rectangle2D.Double textRect = new Rectangle2D.Double(
                     bounds.x + insets.left,
@@ -90,36 +93,16 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
                     bounds.height - insets.top - insets.bottom);
             float leftMargin = (float) textRect.x;
             float rightMargin = (float) Math.max(leftMargin + 1, textRect.x + textRect.width + 1);
-            float verticalPos = (float) textRect.y;
-            float maxVerticalPos = (float) (textRect.y + textRect.height);
             if (leftMargin < rightMargin) {
-                //float tabWidth = (float) (getTabSize() * g.getFontMetrics(font).charWidth('m'));
-                float tabWidth = (float) (getTabSize() * font.getStringBounds("m", getFontRenderContext()).getWidth());
-                float[] tabStops = new float[(int) (textRect.width / tabWidth)];
-                for (int i = 0; i < tabStops.length; i++) {
-                    tabStops[i] = (float) (textRect.x + (int) (tabWidth * (i + 1)));
-                }
-
                 if (getText() != null) {
                     Shape savedClipArea = g.getClip();
                     g.clip(textRect);
 
-                    String[] paragraphs = getText().split("\n");//Strings.split(getText(), '\n');
-
-                    for (int i = 0; i < paragraphs.length; i++) {
-                        if (paragraphs[i].length() == 0) {
-                            paragraphs[i] = " ";
-                        }
-                        AttributedString as = new AttributedString(paragraphs[i]);
-                        as.addAttribute(TextAttribute.FONT, font);
-                        if (isUnderlined) {
-                            as.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
-                        }
-                        int tabCount = paragraphs[i].split("\t").length - 1;
-                        Rectangle2D.Double paragraphBounds = drawParagraph(g, as.getIterator(), verticalPos, maxVerticalPos, leftMargin, rightMargin, tabStops, tabCount);
-                        verticalPos = (float) (paragraphBounds.y + paragraphBounds.height);
-                        if (verticalPos > maxVerticalPos) {
-                            break;
+                    TextAreaLayout layout = getTextLayout(rightMargin - leftMargin, (float) textRect.width);
+                    layout.place((float) textRect.height, false);
+                    for (int i = 0, n = layout.getLineCount(); i < n; i++) {
+                        if (layout.isPlaced(i)) {
+                            layout.draw(g, i, leftMargin + getAlignmentOffset(layout, i, rightMargin - leftMargin), (float) textRect.y);
                         }
                     }
                     g.setClip(savedClipArea);
@@ -129,151 +112,41 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
     }
 
     /**
-     * Draws or measures a paragraph of text at the specified y location and
-     * the bounds of the paragraph.
+     * Returns the layout of the text. The layout is cached, and is only laid
+     * out again if the text, the font or the wrapping width have changed.
      *
-     * @param g Graphics object. This parameter is null, if we want to
-     *  measure the size of the paragraph.
-     * @param styledText the text of the paragraph.
-     * @param verticalPos the top bound of the paragraph
-     * @param maxVerticalPos the bottom bound of the paragraph
-     * @param leftMargin the left bound of the paragraph
-     * @param rightMargin the right bound of the paragraph
-     * @param tabStops an array with tab stops
-     * @param tabCount the number of entries in tabStops which contain actual
-     *        values
-     * @return Returns the actual bounds of the paragraph.
+     * @param rightMargin the right margin relative to the left margin
+     * @param textWidth the width of the text area, which determines the
+     * number of tab stops
      */
-    private Rectangle2D.Double drawParagraph(@Nullable Graphics2D g, AttributedCharacterIterator styledText,
-            float verticalPos, float maxVerticalPos, float leftMargin, float rightMargin, float[] tabStops, int tabCount) {
-        // This method is based on the code sample given
-        // in the class comment of java.awt.font.LineBreakMeasurer, 
-
-        // assume styledText is an AttributedCharacterIterator, and the number
-        // of tabs in styledText is tabCount
-
-        Rectangle2D.Double paragraphBounds = new Rectangle2D.Double(leftMargin, verticalPos, 0, 0);
-
-        int[] tabLocations = new int[tabCount + 1];
-
-        int i = 0;
-        for (char c = styledText.first(); c != AttributedCharacterIterator.DONE; c = styledText.next()) {
-            if (c == '\t') {
-                tabLocations[i++] = styledText.getIndex();
-            }
-        }
-        tabLocations[tabCount] = styledText.getEndIndex() - 1;
-
-        // Now tabLocations has an entry for every tab's offset in
-        // the text.  For convenience, the last entry is tabLocations
-        // is the offset of the last character in the text.
-
-        LineBreakMeasurer measurer = new LineBreakMeasurer(styledText, getFontRenderContext());
-        int currentTab = 0;
-
-        while (measurer.getPosition() < styledText.getEndIndex() &&
-                verticalPos <= maxVerticalPos) {
-
-            // Lay out and draw each line.  All segments on a line
-            // must be computed before any drawing can occur, since
-            // we must know the largest ascent on the line.
-            // TextLayouts are computed and stored in a List;
-            // their horizontal positions are stored in a parallel
-            // List.
-
-            // lineContainsText is true after first segment is drawn
-            boolean lineContainsText = false;
-            boolean lineComplete = false;
-            float maxAscent = 0, maxDescent = 0;
-            float horizontalPos = leftMargin;
-            LinkedList<TextLayout> layouts = new LinkedList<TextLayout>();
-            LinkedList<Float> penPositions = new LinkedList<Float>();
-
-            int first = layouts.size();
-
-            while (!lineComplete && verticalPos <= maxVerticalPos) {
-                float wrappingWidth = rightMargin - horizontalPos;
-                TextLayout layout = null;
-                layout =
-                        measurer.nextLayout(wrappingWidth,
-                        tabLocations[currentTab] + 1,
-                        lineContainsText);
-
-                // layout can be null if lineContainsText is true
-                if (layout != null) {
-                    layouts.add(layout);
-                    penPositions.add(horizontalPos);
-                    horizontalPos += layout.getAdvance();
-                    maxAscent = Math.max(maxAscent, layout.getAscent());
-                    maxDescent = Math.max(maxDescent,
-                            layout.getDescent() + layout.getLeading());
-                } else {
-                    lineComplete = true;
-                }
-
-                lineContainsText = true;
-
-                if (measurer.getPosition() == tabLocations[currentTab] + 1) {
-                    currentTab++;
-                }
-
-                if (measurer.getPosition() == styledText.getEndIndex()) {
-                    lineComplete = true;
-                } else if (tabStops.length == 0 || horizontalPos >= tabStops[tabStops.length - 1]) {
-                    lineComplete = true;
-                }
-                if (!lineComplete) {
-                    // move to next tab stop
-                    int j;
-                    for (j = 0; horizontalPos >= tabStops[j]; j++) {
-                    }
-                    horizontalPos = tabStops[j];
-                }
-            }
-            // If there is only one layout element on the line, and we are
-            // drawing, then honor alignment
-            if (first == layouts.size() - 1 && g != null) {
-                switch (get(TEXT_ALIGNMENT)) {
-                    case TRAILING:
-                        penPositions.set(first, rightMargin - layouts.get(first).getVisibleAdvance() - 1);
-                        break;
-                    case CENTER:
-                        penPositions.set(first, (rightMargin - 1 - leftMargin - layouts.get(first).getVisibleAdvance()) / 2 + leftMargin);
-                        break;
-                    case BLOCK:
-                        // not supported
-                        break;
-                    case LEADING:
-                    default:
-                        break;
-                }
-            }
-
-
-
-            verticalPos += maxAscent;
-
-            Iterator<TextLayout> layoutEnum = layouts.iterator();
-            Iterator<Float> positionEnum = penPositions.iterator();
+    private TextAreaLayout getTextLayout(float rightMargin, float textWidth) {
+        cachedTextLayout = TextAreaLayout.getLayout(cachedTextLayout,
+                getText(), getFont(), get(FONT_UNDERLINE),
+                rightMargin, textWidth, getTabSize(), getFontRenderContext());
+        return cachedTextLayout;
+    }
 
-            // now iterate through layouts and draw them
-            while (layoutEnum.hasNext()) {
-                TextLayout nextLayout = layoutEnum.next();
-                float nextPosition = positionEnum.next();
-                if (g != null) {
-                    nextLayout.draw(g, nextPosition, verticalPos);
-                }
-                Rectangle2D layoutBounds = nextLayout.getBounds();
-                paragraphBounds.add(new Rectangle2D.Double(layoutBounds.getX() + nextPosition,
-                        layoutBounds.getY() + verticalPos,
-                        layoutBounds.getWidth(),
-                        layoutBounds.getHeight()));
+    /**
+     * Returns the horizontal offset of a line. If there is only one segment
+     * on the line, then the offset honors the text alignment.
+     */
+    private float getAlignmentOffset(TextAreaLayout layout, int line, float rightMargin) {
+        float advance = layout.getSingleSegmentAdvance(line);
+        if (advance >= 0) {
+            switch (get(TEXT_ALIGNMENT)) {
+                case TRAILING:
+                    return rightMargin - advance - 1;
+                case CENTER:
+                    return (rightMargin - 1 - advance) / 2;
+                case BLOCK:
+                    // not supported
+                    break;
+                case LEADING:
+                default:
+                    break;
             }
-
-            verticalPos += maxDescent;
         }
-
-        return paragraphBounds;
+        return 0;
     }
 
     @Override
@@ -430,6 +303,8 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
     public TextAreaFigure clone() {
         TextAreaFigure that = (TextAreaFigure) super.clone();
         that.bounds = (Rectangle2D.Double) this.bounds.clone();
+        that.cachedTextLayout = null;
+        that.cachedPreferredTextLayout = null;
         return that;
     }
 
@@ -498,37 +373,16 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
     public Dimension2DDouble getPreferredTextSize(double maxWidth) {
         Rectangle2D.Double textRect = new Rectangle2D.Double();
         if (getText() != null) {
-            Font font = getFont();
-            boolean isUnderlined = get(FONT_UNDERLINE);
             float leftMargin = 0;
             float rightMargin = (float) maxWidth - 1;
-            float verticalPos = 0;
-            float maxVerticalPos = Float.MAX_VALUE;
             if (leftMargin < rightMargin) {
-                float tabWidth = (float) (getTabSize() * font.getStringBounds("m", getFontRenderContext()).getWidth());
-                float[] tabStops = new float[(int) (textRect.width / tabWidth)];
-                for (int i = 0; i < tabStops.length; i++) {
-                    tabStops[i] = (float) (textRect.x + (int) (tabWidth * (i + 1)));
-                }
-
-                String[] paragraphs = getText().split("\n");//Strings.split(getText(), '\n');
-
-                for (int i = 0; i < paragraphs.length; i++) {
-                    if (paragraphs[i].length() == 0) {
-                        paragraphs[i] = " ";
-                    }
-                    AttributedString as = new AttributedString(paragraphs[i]);
-                    as.addAttribute(TextAttribute.FONT, font);
-                    if (isUnderlined) {
-                        as.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
-                    }
-                    int tabCount = paragraphs[i].split("\t").length - 1;
-                    Rectangle2D.Double paragraphBounds = drawParagraph(null, as.getIterator(), verticalPos, maxVerticalPos, leftMargin, rightMargin, tabStops, tabCount);
-                    verticalPos = (float) (paragraphBounds.y + paragraphBounds.height);
-                    textRect.add(paragraphBounds);
-                }
+                cachedPreferredTextLayout = TextAreaLayout.getLayout(cachedPreferredTextLayout,
+                        getText(), getFont(), get(FONT_UNDERLINE),
+                        rightMargin, 0f, getTabSize(), getFontRenderContext());
+                cachedPreferredTextLayout.place(Float.MAX_VALUE, false);
+                textRect = cachedPreferredTextLayout.getBounds();
             }
         }
         return new Dimension2DDouble(-Math.min(textRect.x, 0) + textRect.width, -Math.min(textRect.y, 0) + textRect.height);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,380 @@
+/*
+ * @(#)TextAreaLayout.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.geom.*;
+import java.text.*;
+import java.util.*;
+
+/**
+ * Holds the laid out lines of the text of a text area figure.
+ * <p>
+ * The text is split into paragraphs at LF characters. The paragraphs are
+ * broken into lines at word boundaries, and tab characters advance to the
+ * next tab stop. The tab stops are distributed at regular intervals as
+ * determined by the tab size.
+ * <p>
+ * Breaking the lines is expensive. Therefore a figure keeps its layout, and
+ * obtains it with {@link #getLayout}, which only lays out the text again if
+ * one of the parameters of the layout has changed. The lines are laid out
+ * relative to the top left corner of the text area, so that moving the
+ * figure does not invalidate the layout.
+ * <p>
+ * The layout is not thread safe. It must only be used by the thread which
+ * draws the figure.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class TextAreaLayout {
+
+    /**
+     * A line of text. A line consists of one layout for each tab separated
+     * segment of the line.
+     */
+    private static class Line {
+
+        /** True if the line is the first line of a paragraph. */
+        boolean isParagraphStart;
+        TextLayout[] layouts;
+        float[] penPositions;
+        float ascent;
+        float descent;
+        /** The bounds of the layouts, relative to the baseline. */
+        double minX, maxX, top, bottom;
+    }
+    private final String text;
+    private final Font font;
+    private final boolean isUnderlined;
+    private final float rightMargin;
+    private final float textWidth;
+    private final int tabSize;
+    private final FontRenderContext frc;
+    private final Line[] lines;
+    /**
+     * The baselines of the lines as computed by the last invocation of
+     * {@link #place}. Lines which are omitted have a NaN baseline.
+     */
+    private float[] baselines;
+    private float placedMaxHeight = Float.NaN;
+    private boolean placedBaselineMustFit;
+    private Rectangle2D.Double placedBounds;
+
+    private TextAreaLayout(String text, Font font, boolean isUnderlined,
+            float rightMargin, float textWidth, int tabSize, FontRenderContext frc) {
+        this.text = text;
+        this.font = font;
+        this.isUnderlined = isUnderlined;
+        this.rightMargin = rightMargin;
+        this.textWidth = textWidth;
+        this.tabSize = tabSize;
+        this.frc = frc;
+
+        float tabWidth = (float) (tabSize * font.getStringBounds("m", frc).getWidth());
+        float[] tabStops = new float[Math.max(0, (int) (textWidth / tabWidth))];
+        for (int i = 0; i < tabStops.length; i++) {
+            tabStops[i] = (float) (int) (tabWidth * (i + 1));
+        }
+
+        ArrayList<Line> lineList = new ArrayList<Line>();
+        String[] paragraphs = text.split("\n");//Strings.split(getText(), '\n');
+        for (int i = 0; i < paragraphs.length; i++) {
+            if (paragraphs[i].length() == 0) {
+                paragraphs[i] = " ";
+            }
+            breakParagraph(paragraphs[i], tabStops, lineList);
+        }
+        lines = lineList.toArray(new Line[lineList.size()]);
+        baselines = new float[lines.length];
+    }
+
+    /**
+     * Returns the layout of the text. Returns the cached layout if it has
+     * been laid out with the same parameters, and a new layout otherwise.
+     *
+     * @param cached The layout which is currently held by the figure, or null.
+     * @param text The text.
+     * @param font The font.
+     * @param isUnderlined Whether the text is underlined.
+     * @param rightMargin The right margin of the lines, relative to the left
+     * margin.
+     * @param textWidth The width of the text area, which determines the number
+     * of tab stops.
+     * @param tabSize The distance between tab stops in multiples of the width
+     * of the character 'm'.
+     * @param frc The font render context.
+     * @return The layout.
+     */
+    public static TextAreaLayout getLayout(@Nullable TextAreaLayout cached,
+            String text, Font font, boolean isUnderlined,
+            float rightMargin, float textWidth, int tabSize, FontRenderContext frc) {
+        if (cached != null
+                && cached.rightMargin == rightMargin
+                && cached.textWidth == textWidth
+                && cached.tabSize == tabSize
+                && cached.isUnderlined == isUnderlined
+                && cached.text.equals(text)
+                && cached.font.equals(font)
+                && cached.frc.equals(frc)) {
+            return cached;
+        }
+        return new TextAreaLayout(text, font, isUnderlined, rightMargin, textWidth, tabSize, frc);
+    }
+
+    /**
+     * Breaks a paragraph into lines.
+     * <p>
+     * This method is based on the code sample given in the class comment of
+     * java.awt.font.LineBreakMeasurer.
+     */
+    private void breakParagraph(String paragraph, float[] tabStops, ArrayList<Line> lineList) {
+        AttributedString as = new AttributedString(paragraph);
+        as.addAttribute(TextAttribute.FONT, font);
+        if (isUnderlined) {
+            as.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
+        }
+        AttributedCharacterIterator styledText = as.getIterator();
+
+        int tabCount = 0;
+        for (int i = paragraph.indexOf('\t'); i != -1; i = paragraph.indexOf('\t', i + 1)) {
+            tabCount++;
+        }
+        int[] tabLocations = new int[tabCount + 1];
+        int i = 0;
+        for (char c = styledText.first(); c != CharacterIterator.DONE; c = styledText.next()) {
+            if (c == '\t') {
+                tabLocations[i++] = styledText.getIndex();
+            }
+        }
+        tabLocations[tabCount] = styledText.getEndIndex() - 1;
+
+        // Now tabLocations has an entry for every tab's offset in
+        // the text.  For convenience, the last entry is tabLocations
+        // is the offset of the last character in the text.
+
+        LineBreakMeasurer measurer = new LineBreakMeasurer(styledText, frc);
+        int currentTab = 0;
+        boolean isParagraphStart = true;
+
+        ArrayList<TextLayout> layouts = new ArrayList<TextLayout>();
+        ArrayList<Float> penPositions = new ArrayList<Float>();
+        while (measurer.getPosition() < styledText.getEndIndex()) {
+
+            // All segments on a line must be computed before the line can
+            // be placed, since we must know the largest ascent on the line.
+
+            // lineContainsText is true after first segment is laid out
+            boolean lineContainsText = false;
+            boolean lineComplete = false;
+            float maxAscent = 0, maxDescent = 0;
+            float horizontalPos = 0;
+            layouts.clear();
+            penPositions.clear();
+
+            while (!lineComplete) {
+                float wrappingWidth = rightMargin - horizontalPos;
+                TextLayout layout =
+                        measurer.nextLayout(wrappingWidth,
+                        tabLocations[currentTab] + 1,
+                        lineContainsText);
+
+                // layout can be null if lineContainsText is true
+                if (layout != null) {
+                    layouts.add(layout);
+                    penPositions.add(horizontalPos);
+                    horizontalPos += layout.getAdvance();
+                    maxAscent = Math.max(maxAscent, layout.getAscent());
+                    maxDescent = Math.max(maxDescent,
+                            layout.getDescent() + layout.getLeading());
+                } else {
+                    lineComplete = true;
+                }
+
+                lineContainsText = true;
+
+                if (measurer.getPosition() == tabLocations[currentTab] + 1) {
+                    currentTab++;
+                }
+
+                if (measurer.getPosition() == styledText.getEndIndex()) {
+                    lineComplete = true;
+                } else if (tabStops.length == 0 || horizontalPos >= tabStops[tabStops.length - 1]) {
+                    lineComplete = true;
+                }
+                if (!lineComplete) {
+                    // move to next tab stop
+                    int j;
+                    for (j = 0; horizontalPos >= tabStops[j]; j++) {
+                    }
+                    horizontalPos = tabStops[j];
+                }
+            }
+
+            Line line = new Line();
+            line.isParagraphStart = isParagraphStart;
+            line.ascent = maxAscent;
+            line.descent = maxDescent;
+            line.layouts = layouts.toArray(new TextLayout[layouts.size()]);
+            line.penPositions = new float[penPositions.size()];
+            for (int k = 0; k < line.layouts.length; k++) {
+                float penPosition = penPositions.get(k);
+                line.penPositions[k] = penPosition;
+                Rectangle2D layoutBounds = line.layouts[k].getBounds();
+                double minX = layoutBounds.getX() + penPosition;
+                double maxX = minX + layoutBounds.getWidth();
+                double top = layoutBounds.getY();
+                double bottom = top + layoutBounds.getHeight();
+                if (k == 0) {
+                    line.minX = minX;
+                    line.maxX = maxX;
+                    line.top = top;
+                    line.bottom = bottom;
+                } else {
+                    line.minX = Math.min(line.minX, minX);
+                    line.maxX = Math.max(line.maxX, maxX);
+                    line.top = Math.min(line.top, top);
+                    line.bottom = Math.max(line.bottom, bottom);
+                }
+            }
+            lineList.add(line);
+            isParagraphStart = false;
+        }
+    }
+
+    /**
+     * Places the lines below each other, starting at y = 0, and omits the
+     * lines which do not fit into the specified height.
+     * <p>
+     * Each paragraph starts below the bottom of the glyphs of the preceding
+     * paragraph. If a line does not fit, the remaining lines of its paragraph
+     * are omitted as well.
+     * <p>
+     * The result is cached until this method is invoked with different
+     * arguments.
+     *
+     * @param maxHeight The height of the text area. Specify Float.MAX_VALUE
+     * to place all lines.
+     * @param baselineMustFit If this is true, a line is omitted if its
+     * baseline is below maxHeight. If this is false, a line is omitted if its
+     * top is below maxHeight.
+     */
+    public void place(float maxHeight, boolean baselineMustFit) {
+        if (maxHeight == placedMaxHeight && baselineMustFit == placedBaselineMustFit) {
+            return;
+        }
+        placedMaxHeight = maxHeight;
+        placedBaselineMustFit = baselineMustFit;
+        placedBounds = new Rectangle2D.Double();
+
+        float verticalPos = 0;
+        int i = 0;
+        while (i < lines.length) {
+            Rectangle2D.Double paragraphBounds = new Rectangle2D.Double(0, verticalPos, 0, 0);
+            boolean isOmitted = false;
+            do {
+                Line line = lines[i];
+                if (!isOmitted) {
+                    isOmitted = baselineMustFit
+                            ? verticalPos + line.ascent > maxHeight
+                            : verticalPos > maxHeight;
+                }
+                if (isOmitted) {
+                    baselines[i] = Float.NaN;
+                } else {
+                    verticalPos += line.ascent;
+                    baselines[i] = verticalPos;
+                    if (line.layouts.length > 0) {
+                        paragraphBounds.add(new Rectangle2D.Double(line.minX,
+                                line.top + verticalPos,
+                                line.maxX - line.minX,
+                                line.bottom - line.top));
+                    }
+                    verticalPos += line.descent;
+                }
+                i++;
+            } while (i < lines.length && !lines[i].isParagraphStart);
+
+            placedBounds.add(paragraphBounds);
+            verticalPos = (float) (paragraphBounds.y + paragraphBounds.height);
+            if (verticalPos > maxHeight) {
+                for (; i < lines.length; i++) {
+                    baselines[i] = Float.NaN;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lines.
+     */
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    /**
+     * Returns true if the line has been placed by {@link #place}, and false if
+     * it has been omitted.
+     */
+    public boolean isPlaced(int line) {
+        return !Float.isNaN(baselines[line]);
+    }
+
+    /**
+     * Returns the visible advance of the line if the line consists of a
+     * single segment, and -1 if the line contains tabs.
+     */
+    public float getSingleSegmentAdvance(int line) {
+        TextLayout[] layouts = lines[line].layouts;
+        return layouts.length == 1 ? layouts[0].getVisibleAdvance() : -1;
+    }
+
+    /**
+     * Draws a placed line.
+     *
+     * @param g The graphics.
+     * @param line The index of the line.
+     * @param x The x-coordinate of the left margin of the line.
+     * @param y The y-coordinate of the top of the text area.
+     */
+    public void draw(Graphics2D g, int line, float x, float y) {
+        Line l = lines[line];
+        float baseline = y + baselines[line];
+        for (int i = 0; i < l.layouts.length; i++) {
+            l.layouts[i].draw(g, x + l.penPositions[i], baseline);
+        }
+    }
+
+    /**
+     * Appends the outline of the glyphs of a placed line to a path.
+     *
+     * @param shape The path.
+     * @param line The index of the line.
+     * @param x The x-coordinate of the left margin of the line.
+     * @param y The y-coordinate of the top of the text area.
+     */
+    public void appendOutline(Path2D.Double shape, int line, float x, float y) {
+        Line l = lines[line];
+        float baseline = y + baselines[line];
+        for (int i = 0; i < l.layouts.length; i++) {
+            AffineTransform tx = new AffineTransform();
+            tx.translate(x + l.penPositions[i], baseline);
+            shape.append(l.layouts[i].getOutline(tx), false);
+        }
+    }
+
+    /**
+     * Returns the union of the origin and the bounds of the placed
+     * paragraphs, relative to the top left corner of the text area.
+     */
+    public Rectangle2D.Double getBounds() {
+        return (Rectangle2D.Double) placedBounds.clone();
+    }
+}
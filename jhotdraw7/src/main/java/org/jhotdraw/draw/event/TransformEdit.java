@@ -24,6 +24,12 @@ import java.util.*;
  * <p>
  * If a lossy transforms is performed, such as rotation, scaling or shearing,
  * then undos should be performed with {@link TransformRestoreEdit} instead.
+ * Use {@link Figure#isTransformReversible} to find out whether a transform
+ * is lossless for a given figure.
+ * <p>
+ * This edit only stores the transform, regardless of the size of the figures.
+ * Handles which transform a figure in many small steps should coalesce the
+ * steps into a single transform, and fire a single edit when the drag ends.
  *
  *
  * @author Werner Randelshofer
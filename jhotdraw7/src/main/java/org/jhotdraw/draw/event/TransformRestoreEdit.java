@@ -20,6 +20,8 @@ import org.jhotdraw.util.*;
  * <p>
  * The transform restore data may consume a lot of memory. Undos of lossless
  * transforms, such as translations of a figure, should use {@link TransformEdit}.
+ * This edit should only be used if {@link Figure#isTransformReversible}
+ * returns false for the transform.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -28,8 +28,21 @@ import static org.jhotdraw.draw.AttributeKeys.*;
 public abstract class AbstractRotateHandle extends AbstractHandle {
 
     @Nullable private Point location;
-    private Object restoreData;
+    /**
+     * Holds the transform restore data of the owner, if a rotation
+     * can not be undone by applying its inverse.
+     */
+    @Nullable private Object restoreData;
+    /**
+     * The rotation which is currently applied to the owner.
+     */
     private AffineTransform transform;
+    /**
+     * True, if the owner can undo a rotation by applying its inverse.
+     * In this case we track the drag with delta transforms and do not need
+     * to take a snapshot of the figure.
+     */
+    private boolean isReversible;
     private Point2D.Double center;
     private double startTheta;
     private double startLength;
@@ -97,6 +110,11 @@ public abstract class AbstractRotateHandle extends AbstractHandle {
         return bounds;
     }
 
+    /**
+     * Returns the transform restore data of the owner at the start of the
+     * drag, or null if the rotation is tracked with delta transforms.
+     */
+    @Nullable
     protected Object getRestoreData() {
         return restoreData;
     }
@@ -112,9 +130,11 @@ public abstract class AbstractRotateHandle extends AbstractHandle {
     @Override
     public void trackStart(Point anchor, int modifiersEx) {
         location = new Point(anchor.x, anchor.y);
-        restoreData = getOwner().getTransformRestoreData();
         transform = new AffineTransform();
         center = getCenter();
+        isReversible = getOwner().isTransformReversible(
+                AffineTransform.getRotateInstance(Math.PI / 4, center.x, center.y));
+        restoreData = (isReversible) ? null : getOwner().getTransformRestoreData();
         Point2D.Double anchorPoint = view.viewToDrawing(anchor);
         startTheta = Geom.angle(center.x, center.y, anchorPoint.x, anchorPoint.y);
         startLength = Geom.length(center.x, center.y, anchorPoint.x, anchorPoint.y);
@@ -128,21 +148,42 @@ public abstract class AbstractRotateHandle extends AbstractHandle {
 
         double currentTheta = view.getConstrainer().constrainAngle(stepTheta - startTheta);
 
-        transform.setToIdentity();
-        transform.translate(center.x, center.y);
-        transform.rotate(currentTheta);
-        transform.translate(-center.x, -center.y);
+        AffineTransform newTransform = new AffineTransform();
+        newTransform.translate(center.x, center.y);
+        newTransform.rotate(currentTheta);
+        newTransform.translate(-center.x, -center.y);
 
         getOwner().willChange();
-        getOwner().restoreTransformTo(restoreData);
-        getOwner().transform(transform);
+        if (isReversible) {
+            // Apply the difference between the new and the current rotation.
+            try {
+                AffineTransform delta = (AffineTransform) newTransform.clone();
+                delta.concatenate(transform.createInverse());
+                getOwner().transform(delta);
+            } catch (NoninvertibleTransformException e) {
+                // A rotation is always invertible
+                throw new InternalError(e.getMessage());
+            }
+        } else {
+            getOwner().restoreTransformTo(restoreData);
+            getOwner().transform(newTransform);
+        }
         getOwner().changed();
+        transform = newTransform;
     }
 
     @Override
     public void trackEnd(Point anchor, Point lead, int modifiersEx) {
-        view.getDrawing().fireUndoableEditHappened(
-                new TransformRestoreEdit(getOwner(), restoreData, getOwner().getTransformRestoreData()));
+        if (isReversible) {
+            if (!transform.isIdentity()) {
+                view.getDrawing().fireUndoableEditHappened(
+                        new TransformEdit(getOwner(), transform));
+            }
+        } else {
+            view.getDrawing().fireUndoableEditHappened(
+                    new TransformRestoreEdit(getOwner(), restoreData, getOwner().getTransformRestoreData()));
+        }
+        restoreData = null;
         fireAreaInvalidated(getDrawingArea());
         location = null;
         invalidate();
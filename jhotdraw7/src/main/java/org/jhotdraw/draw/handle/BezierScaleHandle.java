@@ -9,6 +9,7 @@
 package org.jhotdraw.draw.handle;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
+import org.jhotdraw.draw.event.TransformEdit;
 import org.jhotdraw.draw.event.TransformRestoreEdit;
 import org.jhotdraw.draw.*;
 import java.awt.*;
@@ -27,8 +28,19 @@ import org.jhotdraw.geom.*;
  */
 public class BezierScaleHandle extends AbstractHandle {
     @Nullable private Point location;
-    private Object restoreData;
+    /**
+     * Holds the transform restore data of the owner, if the transform
+     * can not be undone by applying its inverse.
+     */
+    @Nullable private Object restoreData;
+    /**
+     * The transform which is currently applied to the owner.
+     */
     private AffineTransform transform;
+    /**
+     * True, if the owner can undo the transform by applying its inverse.
+     */
+    private boolean isReversible;
     private Point2D.Double center;
     private double startTheta;
     private double startLength;
@@ -101,9 +113,13 @@ public class BezierScaleHandle extends AbstractHandle {
     @Override
     public void trackStart(Point anchor, int modifiersEx) {
         location = new Point(anchor.x, anchor.y);
-        restoreData = getBezierFigure().getTransformRestoreData();
         transform = new AffineTransform();
         center = getBezierFigure().getCenter();
+        AffineTransform sample = new AffineTransform();
+        sample.scale(2, 2);
+        sample.rotate(Math.PI / 4);
+        isReversible = getOwner().isTransformReversible(sample);
+        restoreData = (isReversible) ? null : getBezierFigure().getTransformRestoreData();
         Point2D.Double anchorPoint = view.viewToDrawing(anchor);
         startTheta = Geom.angle(center.x, center.y, anchorPoint.x, anchorPoint.y);
         startLength = Geom.length(center.x, center.y, anchorPoint.x, anchorPoint.y);
@@ -116,15 +132,31 @@ public class BezierScaleHandle extends AbstractHandle {
         double stepTheta = Geom.angle(center.x, center.y, leadPoint.x, leadPoint.y);
         double stepLength = Geom.length(center.x, center.y, leadPoint.x, leadPoint.y);
         double scaleFactor = (modifiersEx & (InputEvent.ALT_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK)) != 0 ? 1d : stepLength / startLength;
-        transform.setToIdentity();
-        transform.translate(center.x, center.y);
-        transform.scale(scaleFactor, scaleFactor);
-        transform.rotate(stepTheta - startTheta);
-        transform.translate(-center.x, -center.y);
-        getOwner().willChange();
-        getOwner().restoreTransformTo(restoreData);
-        getOwner().transform(transform);
-        getOwner().changed();
+        AffineTransform newTransform = new AffineTransform();
+        newTransform.translate(center.x, center.y);
+        newTransform.scale(scaleFactor, scaleFactor);
+        newTransform.rotate(stepTheta - startTheta);
+        newTransform.translate(-center.x, -center.y);
+        if (isReversible) {
+            // Apply the difference between the new and the current transform.
+            // Degenerate steps, which would collapse the figure, are skipped.
+            AffineTransform delta = (AffineTransform) newTransform.clone();
+            try {
+                delta.concatenate(transform.createInverse());
+                delta.createInverse();
+            } catch (NoninvertibleTransformException e) {
+                return;
+            }
+            getOwner().willChange();
+            getOwner().transform(delta);
+            getOwner().changed();
+        } else {
+            getOwner().willChange();
+            getOwner().restoreTransformTo(restoreData);
+            getOwner().transform(newTransform);
+            getOwner().changed();
+        }
+        transform = newTransform;
     }
     /*
      *	public  void scaleRotate(Point anchor, Polygon originalPolygon, Point p) {
@@ -162,8 +194,16 @@ public class BezierScaleHandle extends AbstractHandle {
     
     @Override
     public void trackEnd(Point anchor, Point lead, int modifiersEx) {
-        view.getDrawing().fireUndoableEditHappened(
-                new TransformRestoreEdit(getOwner(), restoreData, getOwner().getTransformRestoreData()));
+        if (isReversible) {
+            if (!transform.isIdentity()) {
+                view.getDrawing().fireUndoableEditHappened(
+                        new TransformEdit(getOwner(), transform));
+            }
+        } else {
+            view.getDrawing().fireUndoableEditHappened(
+                    new TransformRestoreEdit(getOwner(), restoreData, getOwner().getTransformRestoreData()));
+        }
+        restoreData = null;
         location = null;
     }
     
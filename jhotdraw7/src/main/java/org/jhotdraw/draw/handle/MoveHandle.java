@@ -29,6 +29,10 @@ public class MoveHandle extends LocatorHandle {
      * The previously handled x and y coordinates.
      */
     private Point2D.Double oldPoint;
+    /**
+     * The constrained x and y coordinates at the start of the drag.
+     */
+    private Point2D.Double startPoint;
 
     /** Creates a new instance. */
     public MoveHandle(Figure owner, Locator locator) {
@@ -81,6 +85,7 @@ public class MoveHandle extends LocatorHandle {
     @Override
     public void trackStart(Point anchor, int modifiersEx) {
         oldPoint = view.getConstrainer().constrainPoint(view.viewToDrawing(anchor));
+        startPoint = (Point2D.Double) oldPoint.clone();
     }
 
     @Override
@@ -101,10 +106,14 @@ public class MoveHandle extends LocatorHandle {
     @Override
     public void trackEnd(Point anchor, Point lead, int modifiersEx) {
         if (getOwner().isTransformable()) {
+            // Coalesce the steps of the drag into a single edit, using
+            // the translation which has actually been applied to the owner.
             AffineTransform tx = new AffineTransform();
-            tx.translate(lead.x - anchor.x, lead.y - anchor.y);
-            fireUndoableEditHappened(
-                    new TransformEdit(getOwner(), tx));
+            tx.translate(oldPoint.x - startPoint.x, oldPoint.y - startPoint.y);
+            if (!tx.isIdentity()) {
+                fireUndoableEditHappened(
+                        new TransformEdit(getOwner(), tx));
+            }
         }
     }
 
@@ -10,6 +10,8 @@ package org.jhotdraw.draw.handle;
 import org.jhotdraw.draw.locator.RelativeLocator;
 import org.jhotdraw.draw.locator.Locator;
 import org.jhotdraw.draw.*;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.jhotdraw.draw.event.TransformEdit;
 import org.jhotdraw.draw.event.TransformRestoreEdit;
 import java.util.*;
 import java.awt.*;
@@ -140,8 +142,23 @@ public class TransformHandleKit {
 
     private static class TransformHandle extends LocatorHandle {
 
+        /**
+         * A sample of the transforms applied by this handle. It is used to
+         * determine whether the owner can undo them by applying the inverse.
+         */
+        private static final AffineTransform SCALE_AND_TRANSLATE = new AffineTransform(2, 0, 0, 2, 1, 1);
+
         private int dx, dy;
-        private Object geometry;
+        /**
+         * Holds the transform restore data of the owner, if the transform
+         * can not be undone by applying its inverse.
+         */
+        @Nullable private Object geometry;
+        /**
+         * Accumulates the transforms applied to the owner, if the
+         * transform can be undone by applying its inverse.
+         */
+        @Nullable private AffineTransform transform;
         /** Caches the value returned by getOwner().isTransformable(): */
         private boolean isTransformableCache;
 
@@ -199,7 +216,7 @@ public class TransformHandleKit {
             if (!isTransformableCache) {
                 return;
             }
-            geometry = getOwner().getTransformRestoreData();
+            startTransform();
             Point location = getLocation();
             dx = -anchor.x + location.x;
             dy = -anchor.y + location.y;
@@ -221,9 +238,53 @@ public class TransformHandleKit {
             if (!isTransformableCache) {
                 return;
             }
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geometry, getOwner().getTransformRestoreData()));
+            endTransform();
+        }
+
+        /**
+         * Prepares the undo data for a transform of the owner.
+         * <p>
+         * If the owner can undo a scale transform by applying its inverse,
+         * only the applied transform is recorded. Otherwise we have to
+         * fall back to the transform restore data of the owner.
+         */
+        protected void startTransform() {
+            Figure f = getOwner();
+            if (f.isTransformReversible(SCALE_AND_TRANSLATE)) {
+                transform = new AffineTransform();
+                geometry = null;
+            } else {
+                transform = null;
+                geometry = f.getTransformRestoreData();
+            }
+        }
+
+        /**
+         * Fires an undoable edit for the transform which was applied to
+         * the owner since the last invocation of {@code startTransform}.
+         */
+        protected void endTransform() {
+            if (transform != null) {
+                if (!transform.isIdentity()) {
+                    fireUndoableEditHappened(
+                            new TransformEdit(getOwner(), transform));
+                }
+            } else {
+                fireUndoableEditHappened(
+                        new TransformRestoreEdit(getOwner(), geometry, getOwner().getTransformRestoreData()));
+            }
+            transform = null;
+            geometry = null;
+        }
 
+        /**
+         * Applies the transform to the owner and records it for undo.
+         */
+        private void basicTransform(AffineTransform tx) {
+            getOwner().transform(tx);
+            if (transform != null) {
+                transform.preConcatenate(tx);
+            }
         }
 
         protected void trackStepNormalized(Point2D.Double p) {
@@ -244,16 +305,17 @@ public class TransformHandleKit {
             AffineTransform tx = new AffineTransform();
             tx.translate(-oldBounds.x, -oldBounds.y);
             if (!Double.isNaN(sx) && !Double.isNaN(sy)
+                    && !Double.isInfinite(sx) && !Double.isInfinite(sy)
                     && (sx != 1d || sy != 1d)
                     && !(sx < 0.0001) && !(sy < 0.0001)) {
-                f.transform(tx);
+                basicTransform(tx);
                 tx.setToIdentity();
                 tx.scale(sx, sy);
-                f.transform(tx);
+                basicTransform(tx);
                 tx.setToIdentity();
             }
             tx.translate(newBounds.x, newBounds.y);
-            f.transform(tx);
+            basicTransform(tx);
             f.changed();
         }
     }
@@ -278,7 +340,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -313,8 +375,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -344,7 +405,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -371,8 +432,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -401,7 +461,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -428,8 +488,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -458,7 +517,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -493,8 +552,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -523,7 +581,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -558,8 +616,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -588,7 +645,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -615,8 +672,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -645,7 +701,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -680,8 +736,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -710,7 +765,7 @@ public class TransformHandleKit {
                 evt.consume();
                 return;
             }
-            Object geom = getOwner().getTransformRestoreData();
+            startTransform();
             Rectangle2D.Double r = getTransformedBounds();
 
             switch (evt.getKeyCode()) {
@@ -737,8 +792,7 @@ public class TransformHandleKit {
                     break;
             }
 
-            fireUndoableEditHappened(
-                    new TransformRestoreEdit(getOwner(), geom, getOwner().getTransformRestoreData()));
+            endTransform();
         }
 
         @Override
@@ -108,6 +108,20 @@ public class ODGBezierFigure extends BezierFigure {
         }
     }
 
+    /**
+     * Returns false, if the transform would create a {@code TRANSFORM}
+     * attribute. Undoing it would leave an identity transform behind
+     * instead of a null value.
+     */
+    @Override
+    public boolean isTransformReversible(AffineTransform tx) {
+        if (get(TRANSFORM) == null
+                && (tx.getType() & (AffineTransform.TYPE_TRANSLATION)) != tx.getType()) {
+            return false;
+        }
+        return super.isTransformReversible(tx);
+    }
+
     @Override
     public Rectangle2D.Double getDrawingArea() {
         if (cachedDrawingArea == null) {
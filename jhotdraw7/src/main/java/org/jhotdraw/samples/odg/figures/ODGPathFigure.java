@@ -255,6 +255,23 @@ public class ODGPathFigure extends AbstractAttributedCompositeFigure implements
         invalidate();
     }
 
+    /**
+     * Returns false, if the transform would create a {@code TRANSFORM}
+     * attribute. Undoing it would leave an identity transform behind
+     * instead of a null value.
+     */
+    @Override
+    public boolean isTransformReversible(AffineTransform tx) {
+        if (get(TRANSFORM) != null) {
+            double det = tx.getDeterminant();
+            return det != 0d && !Double.isNaN(det) && !Double.isInfinite(det);
+        } else if ((tx.getType() & (AffineTransform.TYPE_TRANSLATION)) == tx.getType()) {
+            return super.isTransformReversible(tx);
+        } else {
+            return false;
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void restoreTransformTo(Object geometry) {
@@ -36,6 +36,13 @@ public class TaskFigure extends GraphicalCompositeFigure {
 
     private HashSet<DependencyFigure> dependencies;
 
+    /**
+     * The scheduler computes the start time of this task.
+     * It is shared with all tasks which are connected with this task
+     * via dependencies.
+     */
+    private TaskScheduler scheduler;
+
     /**
      * This adapter is used, to connect a TextFigure with the name of
      * the TaskFigure model.
@@ -69,9 +76,7 @@ public class TaskFigure extends GraphicalCompositeFigure {
             // We could fire a property change event here, in case
             // some other object would like to observe us.
             //target.firePropertyChange("duration", e.getOldValue(), e.getNewValue());
-            for (TaskFigure succ : target.getSuccessors()) {
-                succ.updateStartTime();
-            }
+            target.getScheduler().setDuration(target, target.getDuration());
         }
     }
 
@@ -120,6 +125,9 @@ public class TaskFigure extends GraphicalCompositeFigure {
         ResourceBundleUtil labels =
                 ResourceBundleUtil.getBundle("org.jhotdraw.samples.pert.Labels");
 
+        scheduler = new TaskScheduler();
+        scheduler.add(this, 0);
+
         setName(labels.getString("pert.task.defaultName"));
         setDuration(0);
 
@@ -157,14 +165,8 @@ public class TaskFigure extends GraphicalCompositeFigure {
     }
 
     public void setDuration(int newValue) {
-        int oldValue = getDuration();
         getDurationFigure().setText(Integer.toString(newValue));
-        if (oldValue != newValue) {
-            for (TaskFigure succ : getSuccessors()) {
-                succ.updateStartTime();
-            }
-
-        }
+        getScheduler().setDuration(this, newValue);
     }
 
     public int getDuration() {
@@ -176,36 +178,63 @@ public class TaskFigure extends GraphicalCompositeFigure {
 
     }
 
+    /**
+     * Updates the displayed start time from the scheduler.
+     * <p>
+     * The scheduler recomputes the start times of dependent tasks
+     * incrementally, there is no need to call this method on them.
+     */
     public void updateStartTime() {
         willChange();
-        int oldValue = getStartTime();
-        int newValue = 0;
-        for (TaskFigure pre : getPredecessors()) {
-            newValue = Math.max(newValue,
-                    pre.getStartTime() + pre.getDuration());
-        }
-
-        getStartTimeFigure().setText(Integer.toString(newValue));
-        if (newValue != oldValue) {
-            for (TaskFigure succ : getSuccessors()) {
-                // The if-statement here guards against
-                // cyclic task dependencies. 
-                if (!this.isDependentOf(succ)) {
-                    succ.updateStartTime();
-                }
-
-            }
-        }
+        getStartTimeFigure().setText(Integer.toString(getStartTime()));
         changed();
     }
 
+    /**
+     * This method is invoked by the scheduler, when the start time of
+     * the task has changed.
+     */
+    void startTimeChanged(int oldValue, int newValue) {
+        updateStartTime();
+    }
+
     public int getStartTime() {
-        try {
-            return Integer.valueOf(getStartTimeFigure().getText());
-        } catch (NumberFormatException e) {
-            return 0;
-        }
+        return getScheduler().getStartTime(this);
+    }
 
+    /**
+     * Returns true if the task is on a critical path of the project.
+     */
+    public boolean isCritical() {
+        return getScheduler().isCritical(this);
+    }
+
+    /**
+     * Removes this task from its scheduler, so that it does not take part
+     * in the schedule of the drawing anymore. The task gets a scheduler of
+     * its own.
+     */
+    @Override
+    public void removeNotify(Drawing drawing) {
+        super.removeNotify(drawing);
+        scheduler.remove(this);
+        scheduler = new TaskScheduler();
+        scheduler.add(this, getDuration());
+    }
+
+    /**
+     * Returns the scheduler which computes the start time of this task.
+     */
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * This method is invoked by the scheduler, when it is merged into
+     * another scheduler.
+     */
+    void setScheduler(TaskScheduler newValue) {
+        scheduler = newValue;
     }
 
     private TextFigure getNameFigure() {
@@ -224,6 +253,8 @@ public class TaskFigure extends GraphicalCompositeFigure {
     public TaskFigure clone() {
         TaskFigure that = (TaskFigure) super.clone();
         that.dependencies = new HashSet<DependencyFigure>();
+        that.scheduler = new TaskScheduler();
+        that.scheduler.add(that, that.getDuration());
         that.getNameFigure().addFigureListener(new NameAdapter(that));
         that.getDurationFigure().addFigureListener(new DurationAdapter(that));
         that.updateStartTime();
@@ -275,14 +306,16 @@ public class TaskFigure extends GraphicalCompositeFigure {
 
     public void addDependency(DependencyFigure f) {
         dependencies.add(f);
-        updateStartTime();
-
+        if (f.getStartFigure() instanceof TaskFigure
+                && f.getEndFigure() instanceof TaskFigure) {
+            getScheduler().addDependency(f,
+                    (TaskFigure) f.getStartFigure(), (TaskFigure) f.getEndFigure());
+        }
     }
 
     public void removeDependency(DependencyFigure f) {
         dependencies.remove(f);
-        updateStartTime();
-
+        getScheduler().removeDependency(f);
     }
 
     /**
@@ -318,22 +351,12 @@ public class TaskFigure extends GraphicalCompositeFigure {
     /**
      * Returns true, if the current task is a direct or
      * indirect dependent of the specified task.
-     * If the dependency is cyclic, then this method returns true
-     * if <code>this</code> is passed as a parameter and for every other
-     * task in the cycle.
+     * This method returns true if <code>this</code> is passed as a parameter.
+     * Dependencies which would introduce a cycle are not taken into account,
+     * because the scheduler does not accept them.
      */
     public boolean isDependentOf(TaskFigure t) {
-        if (this == t) {
-            return true;
-        }
-
-        for (TaskFigure pre : getPredecessors()) {
-            if (pre.isDependentOf(t)) {
-                return true;
-            }
-
-        }
-        return false;
+        return getScheduler().isReachable(t, this);
     }
 
     @Override
@@ -0,0 +1,568 @@
+/*
+ * @(#)TaskScheduler.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.samples.pert.figures;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Computes the start times of the {@link TaskFigure}s of a PERT diagram.
+ * <p>
+ * The scheduler maintains an adjacency index of the dependencies between
+ * the tasks, and a topological order of the tasks. The topological order is
+ * maintained incrementally when a dependency is added, using the algorithm of
+ * Pearce and Kelly: only the tasks between the two ends of the new dependency
+ * are reordered. A dependency which would introduce a cycle is detected while
+ * reordering; it is kept aside and does not take part in the schedule until
+ * the cycle is broken.
+ * <p>
+ * When the duration of a task or the dependencies change, only the affected
+ * subgraph is recomputed. The tasks are visited in topological order, and
+ * the search stops at tasks whose earliest start time does not change.
+ * The tasks are notified of changed start times with
+ * {@link TaskFigure#startTimeChanged}.
+ * <p>
+ * The latest start times, and thus the critical path, are computed lazily
+ * with a single pass over the tasks in reverse topological order, when they
+ * are requested after a change.
+ * <p>
+ * Each task belongs to exactly one scheduler. A new task has a scheduler of
+ * its own; the schedulers of two tasks are merged, when a dependency is
+ * added between them. A task which is removed from the drawing is removed
+ * from its scheduler, and gets a scheduler of its own.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class TaskScheduler implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Holds the scheduling data of a task. */
+    private static class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final TaskFigure task;
+        private int duration;
+        private int earliestStart;
+        private int latestStart;
+        /** The position of the node in the topological order. */
+        private int order;
+        /** Acyclic dependencies to successors. */
+        private final ArrayList<Edge> successors = new ArrayList<Edge>();
+        /** Acyclic dependencies to predecessors. */
+        private final ArrayList<Edge> predecessors = new ArrayList<Edge>();
+        /** Marks the node during searches and while it is queued. */
+        private boolean isVisited;
+        private boolean isQueued;
+
+        private Node(TaskFigure task, int order) {
+            this.task = task;
+            this.order = order;
+        }
+    }
+
+    /** Holds a dependency from one node to another. */
+    private static class Edge implements Serializable {
+        private static final long serialVersionUID = 1L;
+        /** The object which identifies the dependency. */
+        private final Object dependency;
+        private final Node start;
+        private final Node end;
+
+        private Edge(Object dependency, Node start, Node end) {
+            this.dependency = dependency;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /** Compares nodes by their topological order. */
+    private static class OrderComparator implements Comparator<Node>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(Node o1, Node o2) {
+            return (o1.order < o2.order) ? -1 : ((o1.order == o2.order) ? 0 : 1);
+        }
+    }
+    private static final OrderComparator ORDER_COMPARATOR = new OrderComparator();
+    private HashMap<TaskFigure, Node> nodes = new HashMap<TaskFigure, Node>();
+    /** Dependencies which take part in the schedule. */
+    private HashMap<Object, Edge> edges = new HashMap<Object, Edge>();
+    /** Dependencies which would introduce a cycle. */
+    private LinkedHashMap<Object, Edge> cyclicEdges = new LinkedHashMap<Object, Edge>();
+    /** The order value for the next node. Orders may contain gaps. */
+    private int nextOrder;
+    /** Nodes whose earliest start time must be recomputed. */
+    private PriorityQueue<Node> dirtyNodes = new PriorityQueue<Node>(16, ORDER_COMPARATOR);
+    /** Set to false when the latest start times must be recomputed. */
+    private boolean isSlackValid;
+    private int projectEnd;
+
+    /** Creates a new instance. */
+    public TaskScheduler() {
+    }
+
+    /**
+     * Adds a task to the scheduler. Does nothing if the task is already
+     * scheduled by this scheduler.
+     */
+    public void add(TaskFigure task, int duration) {
+        if (!nodes.containsKey(task)) {
+            Node n = new Node(task, nextOrder++);
+            n.duration = duration;
+            nodes.put(task, n);
+            isSlackValid = false;
+        }
+    }
+
+    /**
+     * Removes a task and its dependencies from the scheduler, and recomputes
+     * the start times of the tasks which depended on it. Does nothing if the
+     * task is not scheduled by this scheduler.
+     */
+    public void remove(TaskFigure task) {
+        Node n = nodes.remove(task);
+        if (n == null) {
+            return;
+        }
+        if (n.isQueued) {
+            dirtyNodes.remove(n);
+            n.isQueued = false;
+        }
+        for (Edge e : n.successors) {
+            edges.remove(e.dependency);
+            e.end.predecessors.remove(e);
+            markDirty(e.end);
+        }
+        for (Edge e : n.predecessors) {
+            edges.remove(e.dependency);
+            e.start.successors.remove(e);
+        }
+        n.successors.clear();
+        n.predecessors.clear();
+        isSlackValid = false;
+
+        for (Iterator<Edge> i = cyclicEdges.values().iterator(); i.hasNext();) {
+            Edge e = i.next();
+            if (e.start == n || e.end == n) {
+                i.remove();
+            }
+        }
+
+        // Removing the task may have broken a cycle
+        insertCyclicEdges();
+        validate();
+    }
+
+    /** Returns true if the task is scheduled by this scheduler. */
+    public boolean contains(TaskFigure task) {
+        return nodes.containsKey(task);
+    }
+
+    /** Returns the number of tasks scheduled by this scheduler. */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Sets the duration of a task, and recomputes the start times of the
+     * tasks which depend on it.
+     */
+    public void setDuration(TaskFigure task, int newValue) {
+        Node n = getNode(task);
+        if (n.duration != newValue) {
+            n.duration = newValue;
+            isSlackValid = false;
+            for (Edge e : n.successors) {
+                markDirty(e.end);
+            }
+            validate();
+        }
+    }
+
+    /** Returns the duration of the task. */
+    public int getDuration(TaskFigure task) {
+        return getNode(task).duration;
+    }
+
+    /** Returns the earliest start time of the task. */
+    public int getStartTime(TaskFigure task) {
+        return getNode(task).earliestStart;
+    }
+
+    /**
+     * Adds a dependency between two tasks, and recomputes the start times
+     * of the tasks which depend on it.
+     * <p>
+     * Adding the same dependency twice has no effect. If the tasks are
+     * scheduled by different schedulers, the smaller schedulers are merged
+     * into the largest one, and the dependency is added there.
+     *
+     * @param dependency An object which identifies the dependency.
+     * @param start The predecessor.
+     * @param end The successor.
+     * @return Returns false if the dependency introduces a cycle.
+     * Such a dependency does not take part in the schedule until the
+     * cycle has been broken.
+     */
+    public boolean addDependency(Object dependency, TaskFigure start, TaskFigure end) {
+        TaskScheduler target = this;
+        if (start.getScheduler().size() > target.size()) {
+            target = start.getScheduler();
+        }
+        if (end.getScheduler().size() > target.size()) {
+            target = end.getScheduler();
+        }
+        if (target != this) {
+            return target.addDependency(dependency, start, end);
+        }
+        if (edges.containsKey(dependency)) {
+            return true;
+        }
+        if (cyclicEdges.containsKey(dependency)) {
+            return false;
+        }
+        mergeWith(start.getScheduler());
+        mergeWith(end.getScheduler());
+        Edge e = new Edge(dependency, getNode(start), getNode(end));
+        boolean isAcyclic = insertEdge(e);
+        if (isAcyclic) {
+            edges.put(dependency, e);
+            markDirty(e.end);
+            validate();
+        } else {
+            cyclicEdges.put(dependency, e);
+        }
+        return isAcyclic;
+    }
+
+    /**
+     * Removes a dependency, and recomputes the start times of the tasks
+     * which depend on it. Does nothing if the dependency is not known.
+     */
+    public void removeDependency(Object dependency) {
+        if (cyclicEdges.remove(dependency) != null) {
+            return;
+        }
+        Edge e = edges.remove(dependency);
+        if (e != null) {
+            e.start.successors.remove(e);
+            e.end.predecessors.remove(e);
+            isSlackValid = false;
+            markDirty(e.end);
+
+            // Removing a dependency may have broken a cycle
+            insertCyclicEdges();
+            validate();
+        }
+    }
+
+    /**
+     * Inserts the cyclic dependencies which do not introduce a cycle
+     * anymore.
+     */
+    private void insertCyclicEdges() {
+        for (Iterator<Edge> i = cyclicEdges.values().iterator(); i.hasNext();) {
+            Edge e = i.next();
+            if (insertEdge(e)) {
+                i.remove();
+                edges.put(e.dependency, e);
+                markDirty(e.end);
+            }
+        }
+    }
+
+    /**
+     * Returns true if there are dependencies which introduce a cycle.
+     */
+    public boolean isCyclic() {
+        return !cyclicEdges.isEmpty();
+    }
+
+    /**
+     * Returns true if the task {@code end} is a direct or indirect
+     * successor of the task {@code start}, or if both tasks are the same.
+     * <p>
+     * The search only visits tasks which lie between the two tasks in the
+     * topological order.
+     */
+    public boolean isReachable(TaskFigure start, TaskFigure end) {
+        if (start == end) {
+            return true;
+        }
+        Node s = nodes.get(start);
+        Node e = nodes.get(end);
+        if (s == null || e == null || s.order > e.order) {
+            return false;
+        }
+        ArrayList<Node> visited = new ArrayList<Node>();
+        boolean isReachable = searchForward(s, e.order, visited);
+        clearVisited(visited);
+        return isReachable;
+    }
+
+    /**
+     * Returns true if adding a dependency from {@code start} to {@code end}
+     * would introduce a cycle.
+     */
+    public boolean wouldCreateCycle(TaskFigure start, TaskFigure end) {
+        return isReachable(end, start);
+    }
+
+    /**
+     * Returns the time at which all tasks are finished.
+     */
+    public int getProjectEnd() {
+        validateSlack();
+        return projectEnd;
+    }
+
+    /**
+     * Returns the latest time at which the task can start without delaying
+     * the project.
+     */
+    public int getLatestStartTime(TaskFigure task) {
+        validateSlack();
+        return getNode(task).latestStart;
+    }
+
+    /**
+     * Returns true if the task is on a critical path, this is, if it can not
+     * be delayed without delaying the project.
+     */
+    public boolean isCritical(TaskFigure task) {
+        validateSlack();
+        Node n = getNode(task);
+        return n.latestStart == n.earliestStart;
+    }
+
+    private Node getNode(TaskFigure task) {
+        Node n = nodes.get(task);
+        if (n == null) {
+            throw new IllegalArgumentException("Task is not scheduled by this scheduler " + task);
+        }
+        return n;
+    }
+
+    /**
+     * Moves all tasks and dependencies of the specified scheduler into this
+     * scheduler. The topological order of the other scheduler is appended
+     * to the topological order of this scheduler.
+     */
+    private void mergeWith(TaskScheduler that) {
+        if (that == this) {
+            return;
+        }
+        int offset = nextOrder;
+        int maxOrder = -1;
+        for (Node n : that.nodes.values()) {
+            n.order += offset;
+            maxOrder = Math.max(maxOrder, n.order);
+            nodes.put(n.task, n);
+            n.task.setScheduler(this);
+        }
+        nextOrder = Math.max(nextOrder, maxOrder + 1);
+        edges.putAll(that.edges);
+        cyclicEdges.putAll(that.cyclicEdges);
+        isSlackValid = false;
+        that.nodes.clear();
+        that.edges.clear();
+        that.cyclicEdges.clear();
+    }
+
+    /**
+     * Inserts the edge into the adjacency index, and reorders the affected
+     * nodes, so that the topological order stays valid.
+     *
+     * @return Returns false and leaves the index unchanged, if the edge
+     * would introduce a cycle.
+     */
+    private boolean insertEdge(Edge e) {
+        Node start = e.start;
+        Node end = e.end;
+        if (start == end) {
+            return false;
+        }
+        if (end.order < start.order) {
+            // Find the nodes reachable from end which precede start.
+            ArrayList<Node> forward = new ArrayList<Node>();
+            boolean isCyclic = searchForward(end, start.order, forward);
+            if (isCyclic) {
+                clearVisited(forward);
+                return false;
+            }
+            // Find the nodes reaching start which follow end.
+            ArrayList<Node> backward = new ArrayList<Node>();
+            searchBackward(start, end.order, backward);
+            clearVisited(forward);
+            clearVisited(backward);
+
+            // Move the backward nodes in front of the forward nodes,
+            // reusing the order values of the affected nodes.
+            Collections.sort(forward, ORDER_COMPARATOR);
+            Collections.sort(backward, ORDER_COMPARATOR);
+            int[] pool = new int[forward.size() + backward.size()];
+            int i = 0;
+            for (Node n : backward) {
+                pool[i++] = n.order;
+            }
+            for (Node n : forward) {
+                pool[i++] = n.order;
+            }
+            Arrays.sort(pool);
+            i = 0;
+            for (Node n : backward) {
+                setOrder(n, pool[i++]);
+            }
+            for (Node n : forward) {
+                setOrder(n, pool[i++]);
+            }
+        }
+        start.successors.add(e);
+        end.predecessors.add(e);
+        isSlackValid = false;
+        return true;
+    }
+
+    /**
+     * Visits the successors of the node, which have an order less than or
+     * equal to the upper bound.
+     *
+     * @return Returns true if a node with the upper bound order was reached.
+     */
+    private boolean searchForward(Node node, int upperBound, ArrayList<Node> visited) {
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        node.isVisited = true;
+        visited.add(node);
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            for (Edge e : n.successors) {
+                Node succ = e.end;
+                if (succ.order == upperBound) {
+                    return true;
+                }
+                if (!succ.isVisited && succ.order < upperBound) {
+                    succ.isVisited = true;
+                    visited.add(succ);
+                    stack.push(succ);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits the predecessors of the node, which have an order greater
+     * than the lower bound.
+     */
+    private void searchBackward(Node node, int lowerBound, ArrayList<Node> visited) {
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        node.isVisited = true;
+        visited.add(node);
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            for (Edge e : n.predecessors) {
+                Node pred = e.start;
+                if (!pred.isVisited && pred.order > lowerBound) {
+                    pred.isVisited = true;
+                    visited.add(pred);
+                    stack.push(pred);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the position of the node in the topological order. A queued node
+     * is removed from the queue and inserted again, because the queue is
+     * ordered by the position.
+     */
+    private void setOrder(Node n, int newValue) {
+        if (n.order != newValue) {
+            if (n.isQueued) {
+                dirtyNodes.remove(n);
+                n.order = newValue;
+                dirtyNodes.add(n);
+            } else {
+                n.order = newValue;
+            }
+        }
+    }
+
+    private void clearVisited(ArrayList<Node> visited) {
+        for (Node n : visited) {
+            n.isVisited = false;
+        }
+    }
+
+    private void markDirty(Node n) {
+        if (!n.isQueued) {
+            n.isQueued = true;
+            dirtyNodes.add(n);
+        }
+    }
+
+    /**
+     * Recomputes the earliest start times of the dirty nodes in topological
+     * order. The successors of a node are only visited, if the earliest
+     * start time of the node has changed.
+     */
+    private void validate() {
+        while (!dirtyNodes.isEmpty()) {
+            Node n = dirtyNodes.poll();
+            n.isQueued = false;
+            int newValue = 0;
+            for (Edge e : n.predecessors) {
+                Node pred = e.start;
+                newValue = Math.max(newValue, pred.earliestStart + pred.duration);
+            }
+            if (newValue != n.earliestStart) {
+                int oldValue = n.earliestStart;
+                n.earliestStart = newValue;
+                isSlackValid = false;
+                for (Edge e : n.successors) {
+                    markDirty(e.end);
+                }
+                n.task.startTimeChanged(oldValue, newValue);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the latest start times of all nodes in reverse topological
+     * order.
+     */
+    private void validateSlack() {
+        if (isSlackValid) {
+            return;
+        }
+        ArrayList<Node> sorted = new ArrayList<Node>(nodes.values());
+        Collections.sort(sorted, ORDER_COMPARATOR);
+        projectEnd = 0;
+        for (Node n : sorted) {
+            projectEnd = Math.max(projectEnd, n.earliestStart + n.duration);
+        }
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            Node n = sorted.get(i);
+            int latestFinish = projectEnd;
+            for (Edge e : n.successors) {
+                latestFinish = Math.min(latestFinish, e.end.latestStart);
+            }
+            n.latestStart = latestFinish - n.duration;
+        }
+        isSlackValid = true;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + '@' + hashCode() + " tasks:" + nodes.size()
+                + " dependencies:" + edges.size() + " cyclic:" + cyclicEdges.size();
+    }
+}
@@ -277,6 +277,23 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         invalidate();
     }
 
+    /**
+     * Returns false, if the transform would create a {@code TRANSFORM}
+     * attribute. Undoing it would leave an identity transform behind
+     * instead of a null value.
+     */
+    @Override
+    public boolean isTransformReversible(AffineTransform tx) {
+        if (get(TRANSFORM) != null) {
+            double det = tx.getDeterminant();
+            return det != 0d && !Double.isNaN(det) && !Double.isInfinite(det);
+        } else if ((tx.getType() & (AffineTransform.TYPE_TRANSLATION)) == tx.getType()) {
+            return super.isTransformReversible(tx);
+        } else {
+            return false;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void restoreTransformTo(Object geometry) {
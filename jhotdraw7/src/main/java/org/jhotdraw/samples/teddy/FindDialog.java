@@ -8,6 +8,8 @@ package org.jhotdraw.samples.teddy;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import org.jhotdraw.app.*;
@@ -27,6 +29,12 @@ public class FindDialog extends javax.swing.JDialog {
     private static final long serialVersionUID = 1L;
     private Application app;
     @Nullable private Matcher matcher;
+    /**
+     * Index of all matches of the matcher. The index is highlighted in
+     * matchView.
+     */
+    @Nullable private MatchIndex matchIndex;
+    @Nullable private TeddyView matchView;
     private Preferences prefs;
     private ResourceBundleUtil labels;
     
@@ -76,6 +84,14 @@ public class FindDialog extends javax.swing.JDialog {
         im.setParent(replaceField.getInputMap(JComponent.WHEN_FOCUSED));
         replaceField.setInputMap(JComponent.WHEN_FOCUSED, im);
         pack();
+
+        addComponentListener(new ComponentAdapter() {
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                clearMatches();
+            }
+        });
     }
     
     /** Creates new form FindDialog */
@@ -297,16 +313,15 @@ public class FindDialog extends javax.swing.JDialog {
         TeddyView view = ((TeddyView) app.getActiveView());
         if (view != null) {
             updateMatcher();
-            if (matcher != null) {
-                matcher.setStartIndex(view.getSelectionStart() - 1);
-                int pos = matcher.findPrevious();
-                if (pos == -1 && wrapAroundCheck.isSelected()) {
-                    pos = matcher.findPrevious(view.getDocument().getLength());
+            if (matchIndex != null) {
+                int i = matchIndex.indexOfPrevious(view.getSelectionStart());
+                if (i == -1 && wrapAroundCheck.isSelected()) {
+                    i = matchIndex.indexOfPrevious(view.getDocument().getLength());
                 }
-                if (pos == -1) {
+                if (i == -1) {
                     getToolkit().beep();
                 } else {
-                    view.select(pos, matcher.getFindString().length() + pos);
+                    view.select(matchIndex.getStart(i), matchIndex.getEnd(i));
                 }
             }
         }
@@ -316,15 +331,15 @@ public class FindDialog extends javax.swing.JDialog {
         TeddyView view = ((TeddyView) app.getActiveView());
         if (view != null) {
             updateMatcher();
-            if (matcher != null) {
-                int pos = matcher.findNext(view.getSelectionEnd());
-                if (pos == -1 && wrapAroundCheck.isSelected()) {
-                    pos = matcher.findNext(0);
+            if (matchIndex != null) {
+                int i = matchIndex.indexOfNext(view.getSelectionEnd());
+                if (i == -1 && wrapAroundCheck.isSelected()) {
+                    i = matchIndex.indexOfNext(0);
                 }
-                if (pos == -1) {
+                if (i == -1) {
                     getToolkit().beep();
                 } else {
-                    view.select(pos, matcher.getFindString().length() + pos);
+                    view.select(matchIndex.getStart(i), matchIndex.getEnd(i));
                 }
             }
         }
@@ -334,28 +349,42 @@ public class FindDialog extends javax.swing.JDialog {
         TeddyView view = ((TeddyView) app.getActiveView());
         if (view != null) {
             updateMatcher();
-            if (matcher != null) {
-                int pos = matcher.findNext((wrapAroundCheck.isSelected()) ? 0 : view.getSelectionEnd());
-                if (pos == -1) {
+            if (matchIndex != null) {
+                int first = matchIndex.indexOfNext((wrapAroundCheck.isSelected()) ? 0 : view.getSelectionEnd());
+                if (first == -1) {
                     getToolkit().beep();
                 } else {
+                    // Take a snapshot of the matches, and stop updating
+                    // the index while we replace them.
+                    int n = matchIndex.size() - first;
+                    int[] starts = new int[n];
+                    int[] ends = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        starts[i] = matchIndex.getStart(first + i);
+                        ends[i] = matchIndex.getEnd(first + i);
+                    }
+                    clearMatches();
+                    
                     CompositeEdit edit = new CompositeEdit("Replace All");
                     view.fireEdit(edit);
-                    view.select(pos, matcher.getFindString().length() + pos);
-                    do {
-                        view.replaceRange(
-                                replaceField.getText(),
-                                pos,
-                                pos+matcher.getFindString().length()
-                                );
-                        pos = matcher.findNext(pos + replaceField.getText().length());
-                    } while (pos != -1);
+                    view.select(starts[0], ends[0]);
+                    // Replace from back to front, so that the offsets of
+                    // the remaining matches stay valid.
+                    String replacement = replaceField.getText();
+                    for (int i = n - 1; i >= 0; i--) {
+                        view.replaceRange(replacement, starts[i], ends[i]);
+                    }
                     view.fireEdit(edit);
                 }
             }
         }
     }//GEN-LAST:event_replaceAll
     
+    /**
+     * Updates the matcher and the index of all matches. The index is only
+     * rebuilt, if the search options, the active view or its document
+     * have changed.
+     */
     private void updateMatcher() {
         TeddyView view = ((TeddyView) app.getActiveView());
         if (view != null) {
@@ -365,14 +394,39 @@ public class FindDialog extends javax.swing.JDialog {
                 case 1 : matchType = MatchType.STARTS_WITH; break;
                 case 2 : default : matchType = MatchType.FULL_WORD; break;
             }
-            matcher = new Matcher(view.getDocument(),
-                    findField.getText(),
-                    ! ignoreCaseCheck.isSelected(),
-                    matchType
-                    );
+            String findString = findField.getText();
+            boolean matchCase = ! ignoreCaseCheck.isSelected();
+            if (matcher == null || matchIndex == null || matchView != view
+                    || matcher.getDocument() != view.getDocument()
+                    || view.getHighlightedMatches() != matchIndex
+                    || ! matcher.getFindString().equals(findString)
+                    || matcher.isMatchCase() != matchCase
+                    || matcher.getMatchType() != matchType) {
+                clearMatches();
+                matcher = new Matcher(view.getDocument(),
+                        findString,
+                        matchCase,
+                        matchType
+                        );
+                matchIndex = new MatchIndex(matcher);
+                matchView = view;
+                view.setHighlightedMatches(matchIndex);
+            }
         } else {
-            matcher = null;
+            clearMatches();
+        }
+    }
+    
+    /**
+     * Removes the highlighted matches from the view.
+     */
+    private void clearMatches() {
+        if (matchView != null && matchView.getHighlightedMatches() == matchIndex) {
+            matchView.setHighlightedMatches(null);
         }
+        matcher = null;
+        matchIndex = null;
+        matchView = null;
     }
     
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -7,6 +7,7 @@
  */
 package org.jhotdraw.samples.teddy;
 
+import edu.umd.cs.findbugs.annotations.Nullable;
 import java.awt.event.*;
 import org.jhotdraw.app.*;
 import org.jhotdraw.samples.teddy.text.*;
@@ -107,6 +108,63 @@ public class TeddyView extends AbstractView {
      * The Matcher used to perform find operation.
      */
     private Matcher matcher;
+    /**
+     * The occurrences which are highlighted in the editor.
+     */
+    @Nullable
+    private MatchIndex highlightedMatches;
+    /**
+     * The highlight tag for the highlighted matches.
+     */
+    @Nullable
+    private Object matchHighlightTag;
+    /**
+     * Keeps the highlight in sync with the highlighted matches.
+     */
+    private ChangeListener matchHandler = new ChangeListener() {
+
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            updateMatchHighlight();
+        }
+    };
+
+    /**
+     * Paints the highlighted matches. The painter is registered for the
+     * entire document, and only paints the matches within the
+     * views which are painted, so that the highlighter does not need to
+     * maintain a highlight for each match.
+     */
+    private class MatchHighlightPainter extends LayeredHighlighter.LayerPainter {
+
+        private Color color = new Color(0xffff80);
+
+        @Override
+        public void paint(Graphics g, int p0, int p1, Shape bounds, JTextComponent c) {
+            // Matches are painted in paintLayer
+        }
+
+        @Override
+        public Shape paintLayer(Graphics g, int p0, int p1, Shape viewBounds, JTextComponent c, javax.swing.text.View view) {
+            MatchIndex index = highlightedMatches;
+            if (index != null) {
+                g.setColor(color);
+                for (int i = index.indexOfFirstEndingAfter(p0), n = index.size(); i < n && index.getStart(i) < p1; i++) {
+                    try {
+                        Shape shape = view.modelToView(
+                                Math.max(p0, index.getStart(i)), Position.Bias.Forward,
+                                Math.min(p1, index.getEnd(i)), Position.Bias.Backward,
+                                viewBounds);
+                        Rectangle r = (shape instanceof Rectangle) ? (Rectangle) shape : shape.getBounds();
+                        g.fillRect(r.x, r.y, r.width, r.height);
+                    } catch (BadLocationException e) {
+                        // can't paint this match
+                    }
+                }
+            }
+            return viewBounds;
+        }
+    }
 
     /** Creates a new instance. */
     public TeddyView() {
@@ -226,6 +284,7 @@ public class TeddyView extends AbstractView {
 
                 @Override
                 public void run() {
+                    setHighlightedMatches(null);
                     editor.getDocument().removeUndoableEditListener(undoManager);
                     editor.setDocument(doc);
                     doc.addUndoableEditListener(undoManager);
@@ -318,6 +377,7 @@ public class TeddyView extends AbstractView {
 
                 @Override
                 public void run() {
+                    setHighlightedMatches(null);
                     editor.getDocument().removeUndoableEditListener(undoManager);
                     editor.setDocument(newDocument);
                     newDocument.addUndoableEditListener(undoManager);
@@ -488,6 +548,52 @@ public class TeddyView extends AbstractView {
         }
     }
 
+    /**
+     * Highlights all matches of the specified index. The index is installed
+     * on the document of this view, and is disposed when another index
+     * is set.
+     *
+     * @param newValue The index or null to remove the highlights.
+     */
+    public void setHighlightedMatches(@Nullable MatchIndex newValue) {
+        if (highlightedMatches != null) {
+            highlightedMatches.removeChangeListener(matchHandler);
+            highlightedMatches.dispose();
+        }
+        highlightedMatches = newValue;
+        if (newValue != null) {
+            newValue.install();
+            newValue.addChangeListener(matchHandler);
+        }
+        updateMatchHighlight();
+    }
+
+    @Nullable
+    public MatchIndex getHighlightedMatches() {
+        return highlightedMatches;
+    }
+
+    private void updateMatchHighlight() {
+        Highlighter highlighter = editor.getHighlighter();
+        try {
+            if (highlightedMatches == null) {
+                if (matchHighlightTag != null) {
+                    highlighter.removeHighlight(matchHighlightTag);
+                    matchHighlightTag = null;
+                }
+            } else if (matchHighlightTag == null) {
+                matchHighlightTag = highlighter.addHighlight(0, getDocument().getLength(), new MatchHighlightPainter());
+            } else {
+                highlighter.changeHighlight(matchHighlightTag, 0, getDocument().getLength());
+            }
+        } catch (BadLocationException e) {
+            InternalError error = new InternalError(e.getMessage());
+            error.initCause(e);
+            throw error;
+        }
+        editor.repaint();
+    }
+
     public void fireEdit(UndoableEdit edit) {
         undoManager.addEdit(edit);
     }
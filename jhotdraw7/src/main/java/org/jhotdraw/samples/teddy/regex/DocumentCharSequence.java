@@ -0,0 +1,133 @@
+/*
+ * @(#)DocumentCharSequence.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.samples.teddy.regex;
+
+import javax.swing.text.*;
+
+/**
+ * A {@code CharSequence} view of a {@code Document}.
+ * <p>
+ * The characters are fetched with partial return {@code Segment}s, so that
+ * the text is read directly out of the storage of the document instead of
+ * being copied. The most recently fetched segment is kept, which makes
+ * sequential access in either direction cheap. This allows to run
+ * {@code java.util.regex} and the literal search of {@link Matcher} over
+ * large documents.
+ * <p>
+ * The length of the sequence is fixed at construction time. The document must
+ * not be changed while the sequence is in use.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class DocumentCharSequence implements CharSequence {
+
+    /**
+     * Number of characters requested from the document at once.
+     */
+    private static final int CHUNK_SIZE = 8192;
+    private Document document;
+    /**
+     * Offset of this sequence in the document.
+     */
+    private int offset;
+    private int length;
+    /**
+     * The most recently fetched segment.
+     */
+    private Segment segment;
+    /**
+     * Index of the first character of the segment in this sequence.
+     */
+    private int segmentStart;
+
+    /**
+     * Creates a sequence over the entire document.
+     */
+    public DocumentCharSequence(Document document) {
+        this(document, 0, document.getLength());
+    }
+
+    /**
+     * Creates a sequence over the specified range of the document.
+     */
+    public DocumentCharSequence(Document document, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > document.getLength()) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length);
+        }
+        this.document = document;
+        this.offset = offset;
+        this.length = length;
+        segment = new Segment();
+        segment.setPartialReturn(true);
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        int i = index - segmentStart;
+        if (i < 0 || i >= segment.count) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+            }
+            fetch(index);
+            i = index - segmentStart;
+        }
+        return segment.array[segment.offset + i];
+    }
+
+    /**
+     * Fetches a segment containing the specified index. The segment is
+     * centered around the index, so that backward scans are as cheap
+     * as forward scans.
+     */
+    private void fetch(int index) {
+        try {
+            int start = Math.max(0, index - CHUNK_SIZE / 2);
+            document.getText(offset + start, Math.min(CHUNK_SIZE, length - start), segment);
+            if (index >= start + segment.count) {
+                // The storage of the document has been split at a position
+                // between start and index.
+                start = index;
+                document.getText(offset + start, Math.min(CHUNK_SIZE, length - start), segment);
+            }
+            segmentStart = start;
+        } catch (BadLocationException e) {
+            IndexOutOfBoundsException ex = new IndexOutOfBoundsException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+        }
+        return new DocumentCharSequence(document, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return document.getText(offset, length);
+        } catch (BadLocationException e) {
+            IndexOutOfBoundsException ex = new IndexOutOfBoundsException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * @(#)MatchIndex.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.samples.teddy.regex;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import javax.swing.event.*;
+import javax.swing.text.*;
+
+/**
+ * Holds all non-overlapping occurrences of a search string or of a regular
+ * expression in a document.
+ * <p>
+ * The occurrences are found once when the index is created. When the index
+ * is installed on the document, it listens to {@code DocumentEvent}s and only
+ * rescans the text around a change. The offsets of the occurrences after the
+ * change are shifted.
+ * <p>
+ * Occurrences of a regular expression are searched in the paragraphs
+ * touched by a change. A regular expression which spans paragraph
+ * boundaries may therefore be missed after a change.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class MatchIndex {
+
+    private Document document;
+    @Nullable
+    private Matcher matcher;
+    @Nullable
+    private Pattern pattern;
+    /**
+     * Start offsets of the occurrences in ascending order.
+     */
+    private int[] starts = new int[16];
+    /**
+     * End offsets of the occurrences.
+     */
+    private int[] ends = new int[16];
+    private int size;
+    private EventListenerList listenerList = new EventListenerList();
+    @Nullable
+    private DocumentListener documentHandler;
+
+    /**
+     * Creates an index of all occurrences found by the specified matcher.
+     */
+    public MatchIndex(Matcher matcher) {
+        this.document = matcher.getDocument();
+        this.matcher = matcher;
+        scan(new DocumentCharSequence(document), 0, 0, document.getLength());
+    }
+
+    /**
+     * Creates an index of all occurrences of the specified regular
+     * expression. Empty matches are ignored.
+     */
+    public MatchIndex(Document document, Pattern pattern) {
+        this.document = document;
+        this.pattern = pattern;
+        scan(new DocumentCharSequence(document), 0, 0, document.getLength());
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Starts updating the index on changes of the document.
+     */
+    public void install() {
+        if (documentHandler == null) {
+            documentHandler = new DocumentListener() {
+
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    update(e.getOffset(), e.getLength());
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    update(e.getOffset(), -e.getLength());
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    // Attribute changes do not affect the matches
+                }
+            };
+            document.addDocumentListener(documentHandler);
+        }
+    }
+
+    /**
+     * Stops updating the index.
+     */
+    public void dispose() {
+        if (documentHandler != null) {
+            document.removeDocumentListener(documentHandler);
+            documentHandler = null;
+        }
+    }
+
+    /**
+     * Returns the number of occurrences.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the start offset of the occurrence with the specified index.
+     */
+    public int getStart(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+        return starts[index];
+    }
+
+    /**
+     * Returns the end offset of the occurrence with the specified index.
+     */
+    public int getEnd(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+        return ends[index];
+    }
+
+    /**
+     * Returns the index of the first occurrence which starts at or after the
+     * specified offset, or -1 if there is none.
+     */
+    public int indexOfNext(int offset) {
+        int i = lowerBound(offset);
+        return i < size ? i : -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence which ends at or before the
+     * specified offset, or -1 if there is none.
+     */
+    public int indexOfPrevious(int offset) {
+        int i = lowerBound(offset) - 1;
+        while (i >= 0 && ends[i] > offset) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index of the first occurrence which ends after the
+     * specified offset. This is used to find the occurrences which intersect
+     * with a range of the document.
+     */
+    public int indexOfFirstEndingAfter(int offset) {
+        int i = lowerBound(offset);
+        return (i > 0 && ends[i - 1] > offset) ? i - 1 : i;
+    }
+
+    /**
+     * Returns the index of the first occurrence which starts at or after
+     * the specified offset, or {@code size()}.
+     */
+    private int lowerBound(int offset) {
+        int i = Arrays.binarySearch(starts, 0, size, offset);
+        return i < 0 ? -i - 1 : i;
+    }
+
+    public void addChangeListener(ChangeListener l) {
+        listenerList.add(ChangeListener.class, l);
+    }
+
+    public void removeChangeListener(ChangeListener l) {
+        listenerList.remove(ChangeListener.class, l);
+    }
+
+    protected void fireStateChanged() {
+        ChangeEvent event = null;
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            if (listeners[i] == ChangeListener.class) {
+                if (event == null) {
+                    event = new ChangeEvent(this);
+                }
+                ((ChangeListener) listeners[i + 1]).stateChanged(event);
+            }
+        }
+    }
+
+    /**
+     * Updates the index after text has been inserted or removed.
+     *
+     * @param offset The offset of the change.
+     * @param delta The number of inserted characters, or the negated number
+     * of removed characters.
+     */
+    private void update(int offset, int delta) {
+        // Shift the occurrences after the change, and drop the occurrences
+        // inside of removed text.
+        int removedEnd = offset - Math.min(0, delta);
+        int first = lowerBound(offset);
+        int dropEnd = lowerBound(removedEnd);
+        if (delta < 0 && dropEnd > first) {
+            removeRange(first, dropEnd);
+        }
+        for (int i = first; i < size; i++) {
+            starts[i] += delta;
+            ends[i] += delta;
+        }
+
+        // Determine the window which has to be rescanned. The window
+        // includes the characters which are examined by the match type.
+        int changeEnd = offset + Math.max(0, delta);
+        int winStart, winEnd;
+        int length = document.getLength();
+        if (matcher != null) {
+            int reach = matcher.getFindString().length();
+            winStart = Math.max(0, offset - reach);
+            winEnd = Math.min(length, changeEnd + reach);
+        } else {
+            Element root = document.getDefaultRootElement();
+            winStart = root.getElement(root.getElementIndex(Math.max(0, offset - 1))).getStartOffset();
+            winEnd = Math.min(length, root.getElement(root.getElementIndex(changeEnd)).getEndOffset());
+        }
+
+        // Drop the occurrences which intersect with the window and grow the
+        // window, so that it covers them.
+        int from = indexOfFirstEndingAfter(winStart);
+        int to = lowerBound(winEnd);
+        if (to > from) {
+            winStart = Math.min(winStart, starts[from]);
+            // The end of an occurrence which overlapped with removed text
+            // has not been shifted, so we have to clamp it.
+            winEnd = Math.min(length, Math.max(winEnd, ends[to - 1]));
+            removeRange(from, to);
+        }
+        int scanStart = (from > 0) ? Math.max(winStart, ends[from - 1]) : winStart;
+
+        scan(new DocumentCharSequence(document), from, scanStart, winEnd);
+        fireStateChanged();
+    }
+
+    /**
+     * Scans the text for occurrences starting between {@code scanStart}
+     * and {@code limit}, and inserts them at the specified index.
+     * <p>
+     * If an occurrence overlaps with the occurrences which follow the
+     * insertion index, these occurrences are dropped and the scan continues
+     * up to their end, until the occurrences are in sync again.
+     */
+    private void scan(CharSequence text, int index, int scanStart, int limit) {
+        java.util.regex.Matcher m = (pattern == null) ? null : pattern.matcher(text);
+        if (m != null) {
+            m.useTransparentBounds(true);
+            m.useAnchoringBounds(false);
+        }
+        int pos = scanStart;
+        while (pos < limit) {
+            int start, end;
+            if (m != null) {
+                int regionEnd = limit;
+                if (limit < text.length()) {
+                    Element root = document.getDefaultRootElement();
+                    regionEnd = Math.min(text.length(),
+                            root.getElement(root.getElementIndex(limit)).getEndOffset());
+                }
+                m.region(pos, regionEnd);
+                if (!m.find() || m.start() >= limit) {
+                    break;
+                }
+                start = m.start();
+                end = m.end();
+                if (start == end) {
+                    // Skip empty matches
+                    pos = end + 1;
+                    continue;
+                }
+            } else {
+                start = matcher.find(text, pos, limit);
+                if (start == -1) {
+                    break;
+                }
+                end = start + matcher.getFindString().length();
+            }
+
+            // Drop the following occurrences which overlap with this one
+            int to = index;
+            while (to < size && starts[to] < end) {
+                limit = Math.max(limit, ends[to]);
+                to++;
+            }
+            if (to > index) {
+                removeRange(index, to);
+            }
+            insert(index++, start, end);
+            pos = end;
+        }
+    }
+
+    private void insert(int index, int start, int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        System.arraycopy(starts, index, starts, index + 1, size - index);
+        System.arraycopy(ends, index, ends, index + 1, size - index);
+        starts[index] = start;
+        ends[index] = end;
+        size++;
+    }
+
+    private void removeRange(int from, int to) {
+        System.arraycopy(starts, to, starts, from, size - to);
+        System.arraycopy(ends, to, ends, from, size - to);
+        size -= to - from;
+    }
+}
@@ -10,9 +10,12 @@ package org.jhotdraw.samples.teddy.regex;
 import javax.swing.text.*;
 
 /**
- * Searches for an occurence of a case (in)sensitive text on a document. This is
- * a rather slow implementation that does not use advanced techniques such as
- * Boyer-Moore.
+ * Searches for an occurence of a case (in)sensitive text on a document.
+ * <p>
+ * The search uses the Boyer-Moore-Horspool algorithm over a
+ * {@link DocumentCharSequence}, so that the text of the document is not copied,
+ * and large parts of the document can be skipped without examining each
+ * character. Use {@link MatchIndex} to find all occurrences at once.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -47,6 +50,18 @@ public class Matcher {
      */
     private MatchType matchType;
 
+    /**
+     * Bad character shift table for forward search. The table is indexed by
+     * the lower 8 bits of a character, and holds the smallest shift of all
+     * characters which fall into the same slot.
+     */
+    private int[] forwardShift;
+
+    /**
+     * Bad character shift table for backward search.
+     */
+    private int[] backwardShift;
+
     /**
      * Creates a new instance of Matcher which performs a case sensitive search.
      *
@@ -70,15 +85,41 @@ public class Matcher {
         this.findString = findString;
         startIndex = 0;
 
-        // Convert to chars for efficiency
+        // Convert to chars for efficiency. We convert char by char, because
+        // String.toUpperCase may change the length of the string.
         if (matchCase) {
             matchLowerCase = matchUpperCase = findString.toCharArray();
         } else {
-            matchUpperCase = findString.toUpperCase().toCharArray();
-            matchLowerCase = findString.toLowerCase().toCharArray();
+            int n = findString.length();
+            matchUpperCase = new char[n];
+            matchLowerCase = new char[n];
+            for (int i = 0; i < n; i++) {
+                char ch = findString.charAt(i);
+                matchUpperCase[i] = Character.toUpperCase(ch);
+                matchLowerCase[i] = Character.toLowerCase(ch);
+            }
         }
 
         this.matchType = matchType;
+
+        int m = matchLowerCase.length;
+        forwardShift = new int[256];
+        backwardShift = new int[256];
+        java.util.Arrays.fill(forwardShift, Math.max(1, m));
+        java.util.Arrays.fill(backwardShift, Math.max(1, m));
+        for (int i = 0; i < m - 1; i++) {
+            int shift = m - 1 - i;
+            forwardShift[matchLowerCase[i] & 0xff] = Math.min(forwardShift[matchLowerCase[i] & 0xff], shift);
+            forwardShift[matchUpperCase[i] & 0xff] = Math.min(forwardShift[matchUpperCase[i] & 0xff], shift);
+        }
+        for (int i = m - 1; i > 0; i--) {
+            backwardShift[matchLowerCase[i] & 0xff] = Math.min(backwardShift[matchLowerCase[i] & 0xff], i);
+            backwardShift[matchUpperCase[i] & 0xff] = Math.min(backwardShift[matchUpperCase[i] & 0xff], i);
+        }
+    }
+
+    public Document getDocument() {
+        return document;
     }
 
     public String getFindString() {
@@ -131,65 +172,86 @@ public class Matcher {
                 || document.getLength() - findString.length() < startIndex) {
             return -1;
         }
+        CharSequence text = new DocumentCharSequence(document);
+        int foundIndex = find(text, Math.max(0, startIndex), text.length());
+        if (foundIndex != -1) {
+            startIndex = foundIndex + findString.length();
+        }
+        return foundIndex;
+    }
 
-        try {
-            int nextMatch = 0; // index of next matching character
-
-            // Iterate through all segments of the document starting from offset
-            Segment text = new Segment();
-            text.setPartialReturn(true);
-            int offset = startIndex;
-            int nleft = document.getLength() - startIndex;
-            while (nleft > 0) {
-                document.getText(offset, nleft, text);
-
-                // Iterate through the characters in the current segment
-                char next = text.first();
-                for (text.first(); next != Segment.DONE; next = text.next()) {
-
-                    // Check if the current character matches with the next
-                    // search character.
-                    char current = text.current();
-                    if (current == matchUpperCase[nextMatch]
-                            || current == matchLowerCase[nextMatch]) {
-                        nextMatch++;
-
-                        // Did we match all search characters?
-                        if (nextMatch == matchLowerCase.length) {
-                            int foundIndex = text.getIndex() - text.getBeginIndex() + offset
-                                    - matchLowerCase.length + 1;
-                            switch (matchType) {
-                                case CONTAINS:
-                                    return foundIndex;
-                                    // break; <- never reached
-
-                                case STARTS_WITH:
-                                    if (!isWordChar(foundIndex - 1)) {
-                                        return foundIndex;
-                                    }
-                                    break;
+    /**
+     * Finds the first occurrence of the search string in the specified text,
+     * which starts at an index between {@code from} inclusive and
+     * {@code limit} exclusive.
+     *
+     * @return the index of the occurrence or -1.
+     */
+    int find(CharSequence text, int from, int limit) {
+        int m = matchLowerCase.length;
+        if (m == 0) {
+            return -1;
+        }
+        int last = Math.min(limit - 1, text.length() - m);
+        for (int i = from; i <= last;) {
+            char ch = text.charAt(i + m - 1);
+            if (matchesAt(text, i) && isAcceptable(text, i)) {
+                return i;
+            }
+            i += forwardShift[ch & 0xff];
+        }
+        return -1;
+    }
 
-                                case FULL_WORD:
-                                    if (!isWordChar(foundIndex - 1)
-                                            && !isWordChar(foundIndex + matchLowerCase.length)) {
-                                        return foundIndex;
-                                    }
-                                    break;
-                            }
-                            nextMatch = 0;
-                        }
-                    } else {
-                        nextMatch = 0;
-                    }
-                }
+    /**
+     * Finds the last occurrence of the search string in the specified text,
+     * which starts at an index between {@code from} inclusive and
+     * {@code limit} exclusive.
+     *
+     * @return the index of the occurrence or -1.
+     */
+    int findBackward(CharSequence text, int from, int limit) {
+        int m = matchLowerCase.length;
+        if (m == 0) {
+            return -1;
+        }
+        for (int i = Math.min(limit - 1, text.length() - m); i >= from;) {
+            char ch = text.charAt(i);
+            if (matchesAt(text, i) && isAcceptable(text, i)) {
+                return i;
+            }
+            i -= backwardShift[ch & 0xff];
+        }
+        return -1;
+    }
 
-                // Move forward to the next segment
-                nleft -= text.count;
-                offset += text.count;
+    /**
+     * Compares the search string with the text at the specified index,
+     * starting with the last character.
+     */
+    private boolean matchesAt(CharSequence text, int index) {
+        for (int j = matchLowerCase.length - 1; j >= 0; j--) {
+            char ch = text.charAt(index + j);
+            if (ch != matchLowerCase[j] && ch != matchUpperCase[j]) {
+                return false;
             }
-            return -1;
-        } catch (BadLocationException e) {
-            throw new IndexOutOfBoundsException();
+        }
+        return true;
+    }
+
+    /**
+     * Checks the match type for an occurrence at the specified index.
+     */
+    private boolean isAcceptable(CharSequence text, int index) {
+        switch (matchType) {
+            case STARTS_WITH:
+                return !isWordChar(text, index - 1);
+            case FULL_WORD:
+                return !isWordChar(text, index - 1)
+                        && !isWordChar(text, index + matchLowerCase.length);
+            case CONTAINS:
+            default:
+                return true;
         }
     }
 
@@ -211,10 +273,7 @@ public class Matcher {
      * Attempts to find the previous subsequence of the input sequence that
      * matches the pattern.
      * <p>
-     * This method starts at the beginning of the input sequence or, if a
-     * previous invocation of the method was successful and the matcher has not
-     * since been reset, at the first character not matched by the previous
-     * match.
+     * The occurrence must end at or before the start index.
      *
      * @return the index of the first occurrence of the search string, starting
      * at the specified offset, or -1 if no occurrence was found.
@@ -223,58 +282,14 @@ public class Matcher {
         // Don't match empty strings and don't match if we are at the beginning of the document.
         if (findString.length() == 0
                 || startIndex < findString.length() - 1) {
-            //System.out.println("too close to start");
             return -1;
         }
-
-        try {
-            int nextMatch = matchLowerCase.length - 1; // index of next matching character
-
-            // For simplicity, we request all text of the document in a single
-            // segment.
-            Segment text = new Segment();
-            text.setPartialReturn(false);
-            document.getText(0, startIndex + 1, text);
-
-            // Iterate through the characters in the current segment
-            char previous = text.last();
-            //System.out.println("previus isch "+previous);
-            for (text.last(); previous != Segment.DONE; previous = text.previous()) {
-
-                // Check if the current character matches with the next
-                // search character.
-                char current = text.current();
-                if (current == matchUpperCase[nextMatch]
-                        || current == matchLowerCase[nextMatch]) {
-                    nextMatch--;
-                    //System.out.println("matched "+nextMatch);
-                    // Did we match all search characters?
-                    if (nextMatch == -1) {
-                        int foundIndex = text.getIndex() - text.getBeginIndex();
-                        //System.out.println("found index:"+foundIndex);
-                        if (matchType == MatchType.CONTAINS) {
-                            return foundIndex;
-                        } else if (matchType == MatchType.STARTS_WITH) {
-                            if (!isWordChar(foundIndex - 1)) {
-                                return foundIndex;
-                            }
-                        } else if (matchType == MatchType.FULL_WORD) {
-                            if (!isWordChar(foundIndex - 1)
-                                    && !isWordChar(foundIndex + matchLowerCase.length)) {
-                                return foundIndex;
-                            }
-                        }
-                        nextMatch = matchLowerCase.length - 1;
-                    }
-                } else {
-                    nextMatch = matchLowerCase.length - 1;
-                }
-            }
-
-            return -1;
-        } catch (BadLocationException e) {
-            throw new IndexOutOfBoundsException();
+        CharSequence text = new DocumentCharSequence(document);
+        int foundIndex = findBackward(text, 0, startIndex - findString.length() + 2);
+        if (foundIndex != -1) {
+            startIndex = foundIndex - 1;
         }
+        return foundIndex;
     }
 
     /**
@@ -284,12 +299,8 @@ public class Matcher {
         startIndex = 0;
     }
 
-    private boolean isWordChar(int index) {
-        try {
-            char ch = document.getText(index, 1).charAt(0);
-            return Character.isLetterOrDigit(ch);
-        } catch (BadLocationException e) {
-            return false;
-        }
+    private static boolean isWordChar(CharSequence text, int index) {
+        return index >= 0 && index < text.length()
+                && Character.isLetterOrDigit(text.charAt(index));
     }
 }
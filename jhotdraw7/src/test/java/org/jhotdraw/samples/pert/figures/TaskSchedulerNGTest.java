@@ -0,0 +1,102 @@
+/*
+ * @(#)TaskSchedulerNGTest.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.samples.pert.figures;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * TaskSchedulerNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class TaskSchedulerNGTest {
+
+    private static TaskFigure createTask(int duration) {
+        TaskFigure task = new TaskFigure();
+        task.setDuration(duration);
+        return task;
+    }
+
+    /**
+     * Tests that a removed task does not take part in the schedule anymore.
+     */
+    @Test
+    public void testRemovedTaskIsNotScheduled() {
+        TaskFigure t1 = createTask(5);
+        TaskFigure t2 = createTask(3);
+        TaskFigure t3 = createTask(10);
+        t1.getScheduler().addDependency("t1-t2", t1, t2);
+        t1.getScheduler().addDependency("t1-t3", t1, t3);
+        TaskScheduler scheduler = t1.getScheduler();
+        assertEquals(scheduler.getProjectEnd(), 15);
+        assertTrue(t3.isCritical());
+        assertFalse(t2.isCritical());
+
+        t3.removeNotify(null);
+
+        assertSame(t1.getScheduler(), scheduler);
+        assertFalse(scheduler.contains(t3));
+        assertEquals(scheduler.size(), 2);
+        assertEquals(scheduler.getProjectEnd(), 8);
+        assertTrue(t2.isCritical());
+        assertNotSame(t3.getScheduler(), scheduler);
+        assertEquals(t3.getStartTime(), 0);
+        assertEquals(t3.getScheduler().getProjectEnd(), 10);
+    }
+
+    /**
+     * Tests that removing a task inserts the cyclic dependencies which do
+     * not introduce a cycle anymore.
+     */
+    @Test
+    public void testRemovedTaskBreaksCycle() {
+        TaskFigure t1 = createTask(1);
+        TaskFigure t2 = createTask(2);
+        TaskFigure t3 = createTask(4);
+        assertTrue(t1.getScheduler().addDependency("t1-t2", t1, t2));
+        assertTrue(t1.getScheduler().addDependency("t2-t3", t2, t3));
+        assertFalse(t1.getScheduler().addDependency("t3-t1", t3, t1));
+        assertTrue(t1.getScheduler().isCyclic());
+
+        t2.removeNotify(null);
+
+        assertFalse(t1.getScheduler().isCyclic());
+        assertEquals(t3.getStartTime(), 0);
+        assertEquals(t1.getStartTime(), 4);
+    }
+
+    /**
+     * Tests that the start times are correct after removing a dependency
+     * reorders tasks which are waiting for their start time to be
+     * recomputed.
+     */
+    @Test
+    public void testRemoveDependencyReordersDirtyTasks() {
+        TaskFigure a = createTask(1);
+        TaskFigure b = createTask(2);
+        TaskFigure c = createTask(3);
+        TaskFigure d = createTask(4);
+        TaskScheduler scheduler = a.getScheduler();
+        assertTrue(scheduler.addDependency("a-b", a, b));
+        assertTrue(a.getScheduler().addDependency("b-c", b, c));
+        assertTrue(a.getScheduler().addDependency("a-d", a, d));
+        assertTrue(a.getScheduler().addDependency("d-c", d, c));
+        assertFalse(a.getScheduler().addDependency("c-a", c, a));
+
+        a.getScheduler().removeDependency("a-b");
+        a.getScheduler().removeDependency("a-d");
+
+        assertFalse(a.getScheduler().isCyclic());
+        assertEquals(b.getStartTime(), 0);
+        assertEquals(d.getStartTime(), 0);
+        assertEquals(c.getStartTime(), 4);
+        assertEquals(a.getStartTime(), 7);
+        assertEquals(a.getScheduler().getProjectEnd(), 8);
+    }
+}
@@ -7,9 +7,12 @@ package org.jhotdraw.collection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
@@ -18,7 +21,12 @@ import javafx.collections.ObservableListBase;
 /**
  * A {@code Set} that provides precise control where each element is inserted.
  * <p>
- * The set is backed by a list.
+ * The set is backed by a list, and by a hash map which maps each element to
+ * its position in the list. The positions are renumbered lazily: inserting
+ * or removing an element only marks the positions after it as stale, and
+ * they are renumbered when one of them is looked up. Thus {@code contains}
+ * takes constant time, and {@code indexOf} takes amortized constant time when
+ * elements are mostly added at the end of the set.
  *
  * @author Werner Randelshofer
  */
@@ -28,6 +36,16 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
      * The underlying list.
      */
     private List<E> list = new ArrayList<>();
+    /**
+     * Maps each element to its position in the list.
+     */
+    private final Map<E, Integer> positions = new HashMap<>();
+    /**
+     * The positions of the elements in the list at the indices
+     * {@code [0, validPositions)} are up to date. All other positions may be
+     * stale.
+     */
+    private int validPositions;
 
     /** Creates a new instance which is backed by an array list. */
     public IndexedSet() {
@@ -51,6 +69,8 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
     public IndexedSet(List<E> backingList, Collection<? extends E> col) {
         list = backingList;
         list.clear();
+        positions.clear();
+        validPositions = 0;
         if (col != null) {
             addAll(col);
         }
@@ -68,6 +88,37 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
         return true;
     }
 
+    /**
+     * Replaces all elements of this set by the elements of the specified
+     * collection without invoking {@link #onRemoved} and {@link #onAdded}.
+     * Fires a single change.
+     * <p>
+     * The collection must not contain duplicate elements.
+     *
+     * @param col A collection without duplicates.
+     */
+    protected void setAllSilently(Collection<? extends E> col) {
+        beginChange();
+        try {
+            if (!list.isEmpty()) {
+                nextRemove(0, new ArrayList<>(list));
+                list.clear();
+                positions.clear();
+            }
+            for (E e : col) {
+                positions.put(e, list.size());
+                list.add(e);
+            }
+            validPositions = list.size();
+            if (!list.isEmpty()) {
+                nextAdd(0, list.size());
+            }
+            ++modCount;
+        } finally {
+            endChange();
+        }
+    }
+
     @Override
     public boolean addAll(Collection<? extends E> c) {
         beginChange();
@@ -141,6 +192,7 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
         }
         E element = list.remove(oldIndex);
         list.add(newIndex, element);
+        invalidatePositions(Math.min(oldIndex, newIndex));
         beginChange();
         int from = Math.min(oldIndex, newIndex);
         int to = Math.max(oldIndex, newIndex) + 1;
@@ -156,9 +208,10 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
     }
 
     protected boolean doAdd(int index, E element, boolean checkForDuplicates) {
-        int oldIndex = checkForDuplicates ? list.indexOf(element):-1; // linear search!
+        int oldIndex = checkForDuplicates ? indexOf(element) : -1;
         if (oldIndex == -1) {
             list.add(index, element);
+            addPosition(index, element);
             beginChange();
             nextAdd(index, index + 1);
             onAdded(element);
@@ -177,9 +230,11 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
 
     @Override
     public E set(int index, E element) {
-        int oldIndex = list.indexOf(element);
+        int oldIndex = indexOf(element);
         if (oldIndex == -1) {
             E old = list.set(index, element);
+            positions.remove(old);
+            positions.put(element, index);
             beginChange();
             nextSet(index, old);
             onRemoved(old);
@@ -192,6 +247,7 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
             // the element at the index is removed
             beginChange();
             E old = list.remove(index);
+            removePosition(index, old);
             nextRemove(index, old);
             onRemoved(old);
             // the old element is permuted
@@ -217,6 +273,7 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
     @Override
     public E remove(int index) {
         E old = list.remove(index);
+        removePosition(index, old);
         beginChange();
         nextRemove(index, old);
         ++modCount;
@@ -225,6 +282,37 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
         return old;
     }
 
+    /**
+     * Updates the positions after an element has been inserted into the
+     * list.
+     */
+    private void addPosition(int index, E element) {
+        positions.put(element, index);
+        if (index == validPositions && index == list.size() - 1) {
+            validPositions++;
+        } else {
+            invalidatePositions(index);
+        }
+    }
+
+    /**
+     * Updates the positions after an element has been removed from the list.
+     */
+    private void removePosition(int index, E element) {
+        positions.remove(element);
+        invalidatePositions(index);
+    }
+
+    /**
+     * Marks the positions of the elements at the specified index and after it
+     * as stale.
+     */
+    private void invalidatePositions(int index) {
+        if (index < validPositions) {
+            validPositions = index;
+        }
+    }
+
     @Override
     public List<E> subList(int fromIndex, int toIndex) {
         return new SubObservableList(super.subList(fromIndex, toIndex));
@@ -368,6 +456,7 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
 
         private ListIterator<E> iter;
         private E lastReturned;
+        private int lastReturnedIndex;
         private int nextIndex;
 
         public ObservableListIterator(int index) {
@@ -382,6 +471,7 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
 
         @Override
         public E next() {
+            lastReturnedIndex = iter.nextIndex();
             lastReturned = iter.next();
             nextIndex++;
             return lastReturned;
@@ -394,6 +484,7 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
 
         @Override
         public E previous() {
+            lastReturnedIndex = iter.previousIndex();
             lastReturned = iter.previous();
             nextIndex--;
             return lastReturned;
@@ -412,6 +503,7 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
         @Override
         public void remove() {
             iter.remove();
+            removePosition(lastReturnedIndex, lastReturned);
             beginChange();
             nextRemove(nextIndex - 1, lastReturned);
             onRemoved(lastReturned);
@@ -426,6 +518,8 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
             E oldValue = lastReturned;
             lastReturned = e;
             iter.set(e);
+            positions.remove(oldValue);
+            positions.put(e, lastReturnedIndex);
             beginChange();
             nextSet(nextIndex - 1, oldValue);
             endChange();
@@ -436,7 +530,9 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
             if (contains(e)) {
                 throw new UnsupportedOperationException("Can not permute element in iterator");
             }
+            int index = iter.nextIndex();
             iter.add(e);
+            addPosition(index, e);
             nextIndex++;
             beginChange();
             nextAdd(nextIndex, nextIndex + 1);
@@ -446,8 +542,36 @@ public class IndexedSet<E> extends ObservableListBase<E> implements Set<E>, Dequ
 
     }
 
+    @Override
     public int indexOf(Object o) {
-        return list.indexOf(o);
+        Integer position = positions.get(o);
+        if (position == null) {
+            return -1;
+        }
+        int index = position;
+        if (index < validPositions && Objects.equals(list.get(index), o)) {
+            return index;
+        }
+        // the element is at a stale position, renumber until we find it
+        for (int i = validPositions, n = list.size(); i < n; i++) {
+            E e = list.get(i);
+            positions.put(e, i);
+            validPositions = i + 1;
+            if (Objects.equals(e, o)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("backing list has been modified");
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return positions.containsKey(o);
     }
 
     @Override
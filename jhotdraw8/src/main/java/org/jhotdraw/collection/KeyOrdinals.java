@@ -0,0 +1,42 @@
+/* @(#)KeyOrdinals.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.collection;
+
+/**
+ * Assigns a dense ordinal in the range {@code [0, size())} to each key of a
+ * fixed set of keys.
+ * <p>
+ * Maps can use the ordinals as indices into arrays, instead of allocating an
+ * entry object for each key.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ * @param <K> the key type
+ */
+public interface KeyOrdinals<K> {
+
+    /**
+     * Returns the ordinal of the key.
+     *
+     * @param key a key
+     * @return the ordinal, or -1 if the key has no ordinal
+     */
+    int getOrdinal(Object key);
+
+    /**
+     * Returns the key with the specified ordinal.
+     *
+     * @param ordinal an ordinal in the range {@code [0, size())}
+     * @return the key
+     */
+    K getKey(int ordinal);
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the number of keys
+     */
+    int size();
+}
@@ -5,6 +5,8 @@
 package org.jhotdraw.css;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -67,15 +69,22 @@ public abstract class AbstractStyleManager<E> implements StyleManager<E> {
 
     private Executor executor = Executors.newCachedThreadPool();
 
+    /**
+     * The dependencies of the selectors. This field is computed lazily.
+     */
+    private SelectorDependencies selectorDependencies;
+
     @Override
     public void addStylesheet(StyleOrigin origin, URI documentHome, URI uri) {
         URI resolvedUri = documentHome == null ? uri : documentHome.resolve(uri);
         getMap(origin).put(resolvedUri, new MyEntry(origin, resolvedUri));
+        invalidate();
     }
 
     @Override
     public void addStylesheet(StyleOrigin origin, String str) {
         getMap(origin).put(str, new MyEntry(origin, str));
+        invalidate();
     }
 
     @Override
@@ -87,6 +96,7 @@ public abstract class AbstractStyleManager<E> implements StyleManager<E> {
         } else {
             getMap(origin).clear();
         }
+        invalidate();
     }
 
     private LinkedHashMap<Object, MyEntry> getMap(StyleOrigin origin) {
@@ -123,6 +133,7 @@ public abstract class AbstractStyleManager<E> implements StyleManager<E> {
         LinkedHashMap<Object, MyEntry> oldMap = getMap(origin);
         if (stylesheets == null) {
             oldMap.clear();
+            invalidate();
             return;
         }
         LinkedHashMap<Object, MyEntry> newMap = new LinkedHashMap<>();
@@ -148,6 +159,30 @@ public abstract class AbstractStyleManager<E> implements StyleManager<E> {
             }
         }
         setMap(origin, newMap);
+        invalidate();
+    }
+
+    /**
+     * This method is invoked when a list of stylesheets has been changed.
+     * Subclasses can override this method to discard information which they
+     * have derived from the stylesheets.
+     */
+    protected void invalidate() {
+        selectorDependencies = null;
+    }
+
+    @Override
+    public SelectorDependencies getSelectorDependencies() {
+        if (selectorDependencies == null) {
+            List<Stylesheet> stylesheets = new ArrayList<>();
+            for (Collection<MyEntry> entries : Arrays.asList(getUserAgentStylesheets(), getAuthorStylesheets(), getInlineStylesheets())) {
+                for (MyEntry e : entries) {
+                    stylesheets.add(e.getStylesheet());
+                }
+            }
+            selectorDependencies = new SelectorDependencies(stylesheets);
+        }
+        return selectorDependencies;
     }
 
     protected Collection<MyEntry> getAuthorStylesheets() {
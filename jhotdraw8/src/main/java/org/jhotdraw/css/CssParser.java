@@ -8,7 +8,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 import java.net.URI;
 import java.net.URL;
 import java.text.ParseException;
@@ -143,9 +142,16 @@ public class CssParser {
     private List<ParseException> exceptions;
 
     public Stylesheet parseStylesheet(URL css) throws IOException {
+        // read the stylesheet into memory, so that the tokenizer can scan it
+        // without going through a reader
+        StringBuilder buf = new StringBuilder();
         try (Reader in = new BufferedReader(new InputStreamReader(css.openConnection().getInputStream()))) {
-            return parseStylesheet(in);
+            char[] cbuf = new char[8192];
+            for (int n = in.read(cbuf); n != -1; n = in.read(cbuf)) {
+                buf.append(cbuf, 0, n);
+            }
         }
+        return parseStylesheet(buf);
     }
 
     public Stylesheet parseStylesheet(URI css) throws IOException {
@@ -153,7 +159,13 @@ public class CssParser {
     }
 
     public Stylesheet parseStylesheet(String css) throws IOException {
-        return parseStylesheet(new StringReader(css));
+        return parseStylesheet((CharSequence) css);
+    }
+
+    public Stylesheet parseStylesheet(CharSequence css) throws IOException {
+        exceptions = new ArrayList<>();
+        CssTokenizer tt = new CssTokenizer(css);
+        return parseStylesheet(tt);
     }
 
     public Stylesheet parseStylesheet(Reader css) throws IOException {
@@ -163,12 +175,16 @@ public class CssParser {
     }
 
     public List<Declaration> parseDeclarationList(String css) throws IOException {
-        return CssParser.this.parseDeclarationList(new StringReader(css));
+        exceptions = new ArrayList<>();
+        return parseDeclarationListOrEmpty(new CssTokenizer(css));
     }
 
     public List<Declaration> parseDeclarationList(Reader css) throws IOException {
         exceptions = new ArrayList<>();
-        CssTokenizer tt = new CssTokenizer(css);
+        return parseDeclarationListOrEmpty(new CssTokenizer(css));
+    }
+
+    private List<Declaration> parseDeclarationListOrEmpty(CssTokenizer tt) throws IOException {
         try {
             return parseDeclarationList(tt);
         } catch (ParseException ex) {
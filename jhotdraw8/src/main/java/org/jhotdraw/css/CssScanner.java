@@ -6,7 +6,7 @@ package org.jhotdraw.css;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The {@code CssScanner} preprocesses an input stream of UTF-16 code points for
@@ -29,6 +29,12 @@ import java.util.ArrayList;
  * <p>
  * The scanner also keeps track of the current position and line number and
  * supports lookahead of multiple characters.
+ * <p>
+ * The scanner can read from a {@code Reader} or directly from a
+ * {@code CharSequence}. A {@code Reader} is only read as far as characters
+ * are requested, so that the caller can continue reading after the last
+ * token. A {@code CharSequence} is scanned by index without any
+ * intermediate buffering.
  *
  * <p>
  * References:
@@ -43,9 +49,18 @@ import java.util.ArrayList;
 public class CssScanner {
 
     /**
-     * The underlying reader.
+     * The underlying reader. This is null if the scanner reads from a
+     * character sequence.
      */
     private Reader in;
+    /**
+     * The underlying character sequence, its length and the index of the
+     * next character. The sequence is null if the scanner reads from a
+     * reader.
+     */
+    private final CharSequence seq;
+    private final int seqLength;
+    private int seqIndex;
 
     /**
      * The current position in the input stream.
@@ -69,10 +84,31 @@ public class CssScanner {
     /**
      * Stack of pushed back characters.
      */
-    private final ArrayList<Integer> pushedChars = new ArrayList<>();
+    private int[] pushedChars = new int[8];
+    private int pushedCount;
 
     public CssScanner(Reader reader) {
         this.in = reader;
+        this.seq = null;
+        this.seqLength = 0;
+    }
+
+    public CssScanner(CharSequence seq) {
+        this.seq = seq;
+        this.seqLength = seq.length();
+    }
+
+    /**
+     * Reads the next character from the underlying input.
+     *
+     * @return the next character. Returns -1 if EOF.
+     * @throws IOException from the underlying input stream
+     */
+    private int read() throws IOException {
+        if (seq != null) {
+            return seqIndex < seqLength ? seq.charAt(seqIndex++) : -1;
+        }
+        return in.read();
     }
 
     /**
@@ -83,16 +119,16 @@ public class CssScanner {
      * @throws IOException from the underlying input stream
      */
     public int nextChar() throws IOException {
-        if (!pushedChars.isEmpty()) {
-            currentChar = pushedChars.remove(pushedChars.size()-1);
+        if (pushedCount > 0) {
+            currentChar = pushedChars[--pushedCount];
             return currentChar;
         }
 
-        currentChar = in.read();
+        currentChar = read();
         if (skipLF && currentChar == '\n') {
             skipLF = false;
             position++;
-            currentChar = in.read();
+            currentChar = read();
         }
 
         switch (currentChar) {
@@ -138,7 +174,10 @@ public class CssScanner {
      * @param ch The character to be pushed back
      */
     public void pushBack(int ch) {
-        pushedChars.add(ch);
+        if (pushedCount == pushedChars.length) {
+            pushedChars = Arrays.copyOf(pushedChars, pushedCount * 2);
+        }
+        pushedChars[pushedCount++] = ch;
     }
 
     /**
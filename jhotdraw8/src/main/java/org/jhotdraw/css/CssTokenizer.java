@@ -104,6 +104,13 @@ import java.io.Reader;
  * <li><a href="http://www.w3.org/TR/2014/CR-css-syntax-3-20140220/">CSS Syntax
  * Module Level 3, Chapter 4. Tokenization</a></li>
  * </ul>
+ * <p>
+ * The tokenizer builds all tokens in a single reusable buffer. Identifiers,
+ * function names, at-keywords and whitespace are interned in a small shared
+ * table, so that a stylesheet which repeats the same property names does not
+ * allocate a new string for every occurrence. Use the {@code CharSequence}
+ * constructors to tokenize strings, they avoid the overhead of a
+ * {@code Reader}.
  *
  * @author Werner Randelshofer
  */
@@ -137,8 +144,35 @@ public class CssTokenizer {
     public final static int TT_COLUMN = -24;
     public final static int TT_EOF = -1;
 
+    /**
+     * The longest string which is interned.
+     */
+    private final static int MAX_INTERN_LENGTH = 32;
+    /**
+     * Table of interned strings. The table is direct-mapped by hash code, a
+     * string which collides with another string replaces it. The table is
+     * shared by all tokenizers; concurrent updates are harmless, because
+     * strings are immutable.
+     */
+    private final static String[] INTERNED = new String[1024];
+    /**
+     * Strings for the ASCII characters.
+     */
+    private final static String[] CHARS = new String[128];
+
+    static {
+        for (int i = 0; i < CHARS.length; i++) {
+            CHARS[i] = String.valueOf((char) i);
+        }
+    }
+
     private CssScanner in;
 
+    /**
+     * The buffer for building tokens.
+     */
+    private final StringBuilder buf = new StringBuilder();
+
     private boolean pushBack;
 
     private int currentToken;
@@ -158,6 +192,15 @@ public class CssTokenizer {
         this.skipComments = skipComments;
     }
 
+    public CssTokenizer(CharSequence seq) {
+        this(seq, true);
+    }
+
+    public CssTokenizer(CharSequence seq, boolean skipComments) {
+        in = new CssScanner(seq);
+        this.skipComments = skipComments;
+    }
+
     public int currentToken() {
         return currentToken;
     }
@@ -188,14 +231,14 @@ public class CssTokenizer {
             case ' ':
             case '\n':
             case '\t': {
-                StringBuilder buf = new StringBuilder();
+                buf.setLength(0);
                 while (ch == ' ' || ch == '\n' || ch == '\t') {
                     buf.append((char) ch);
                     ch = in.nextChar();
                 }
                 in.pushBack(ch);
                 currentToken = TT_S;
-                stringValue = buf.toString();
+                stringValue = intern(buf);
                 break;
             }
             case '~': {
@@ -206,7 +249,7 @@ public class CssTokenizer {
                 } else {
                     in.pushBack(next);
                     currentToken = ch;
-                    stringValue = String.valueOf((char) ch);
+                    stringValue = charToString(ch);
                 }
                 break;
             }
@@ -221,7 +264,7 @@ public class CssTokenizer {
                 } else {
                     in.pushBack(next);
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
@@ -233,7 +276,7 @@ public class CssTokenizer {
                 } else {
                     in.pushBack(next);
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
@@ -245,7 +288,7 @@ public class CssTokenizer {
                 } else {
                     in.pushBack(next);
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
@@ -257,37 +300,37 @@ public class CssTokenizer {
                 } else {
                     in.pushBack(next);
                     currentToken = ch;
-                    stringValue = String.valueOf((char) ch);
+                    stringValue = charToString(ch);
                 }
                 break;
             }
             case '@': {
-                StringBuilder buf = new StringBuilder();
+                buf.setLength(0);
                 if (identMacro(ch = in.nextChar(), buf)) {
                     currentToken = TT_AT_KEYWORD;
-                    stringValue = buf.toString();
+                    stringValue = intern(buf);
                 } else {
                     in.pushBack(ch);
                     currentToken = '@';
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
             case '#': {
-                StringBuilder buf = new StringBuilder();
+                buf.setLength(0);
                 if (nameMacro(ch = in.nextChar(), buf)) {
                     currentToken = TT_HASH;
                     stringValue = buf.toString();
                 } else {
                     in.pushBack(ch);
                     currentToken = '#';
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
             case '\'':
             case '"': {
-                StringBuilder buf = new StringBuilder();
+                buf.setLength(0);
                 if (stringMacro(ch, buf)) {
                     currentToken = TT_STRING;
                     stringValue = buf.toString();
@@ -309,7 +352,7 @@ public class CssTokenizer {
             case '7':
             case '8':
             case '9': {
-                StringBuilder buf = new StringBuilder();
+                buf.setLength(0);
                 if (numMacro(ch, buf)) {
                     ch = in.nextChar();
                     if (ch == '%') {
@@ -323,7 +366,7 @@ public class CssTokenizer {
                     stringValue = buf.toString();
                 } else {
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
 
@@ -331,7 +374,7 @@ public class CssTokenizer {
             case '/': {
                 int next = in.nextChar();
                 if (next == '*') {
-                    StringBuilder buf = new StringBuilder();
+                    buf.setLength(0);
                     if (commentAfterSlashStarMacro(buf)) {
                         currentToken = TT_COMMENT;
                     } else {
@@ -341,7 +384,7 @@ public class CssTokenizer {
                 } else {
                     in.pushBack(next);
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
 
@@ -357,11 +400,11 @@ public class CssTokenizer {
                         in.pushBack(next2);
                         in.pushBack(next1);
                         currentToken = ch;
-                        stringValue = String.valueOf((char) currentToken);
+                        stringValue = charToString(currentToken);
                     }
                 } else {
                     in.pushBack(next1);
-                    StringBuilder buf = new StringBuilder();
+                    buf.setLength(0);
                     if (numMacro(ch, buf)) {
                         ch = in.nextChar();
                         if (ch == '%') {
@@ -382,10 +425,10 @@ public class CssTokenizer {
                                 in.pushBack(next1);
                                 currentToken = TT_IDENT;
                             }
-                            stringValue = buf.toString();
+                            stringValue = intern(buf);
                         } else {
                             currentToken = ch;
-                            stringValue = String.valueOf((char) currentToken);
+                            stringValue = charToString(currentToken);
                         }
                     }
                 }
@@ -405,20 +448,18 @@ public class CssTokenizer {
                             in.pushBack(next2);
                             in.pushBack(next1);
                             currentToken = ch;
-                            stringValue = String.valueOf((char) currentToken);
+                            stringValue = charToString(currentToken);
                         }
                     } else {
                         in.pushBack(next2);
                         in.pushBack(next1);
-                        StringBuilder buf = new StringBuilder();
                         currentToken = ch;
-                        stringValue = String.valueOf((char) currentToken);
+                        stringValue = charToString(currentToken);
                     }
                 } else {
                     in.pushBack(next1);
-                    StringBuilder buf = new StringBuilder();
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
@@ -426,11 +467,11 @@ public class CssTokenizer {
             case 'U': {
                 // FIXME implement UNICODE_RANGE token
 
-                StringBuilder buf = new StringBuilder();
+                buf.setLength(0);
                 if (identMacro(ch, buf)) {
                     int next1 = in.nextChar();
                     if (next1 == '(') {
-                        stringValue = buf.toString();
+                        stringValue = intern(buf);
                         if (stringValue.equalsIgnoreCase("url")) {
                             buf.setLength(0);
                             if (uriMacro(buf)) {
@@ -445,30 +486,30 @@ public class CssTokenizer {
                     } else {
                         in.pushBack(next1);
                         currentToken = TT_IDENT;
-                        stringValue = buf.toString();
+                        stringValue = intern(buf);
                     }
                 } else {
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
 
             default: {
-                StringBuilder buf = new StringBuilder();
+                buf.setLength(0);
                 if (identMacro(ch, buf)) {
                     int next1 = in.nextChar();
                     if (next1 == '(') {
-                        stringValue = buf.toString();
+                        stringValue = intern(buf);
                         currentToken = TT_FUNCTION;
                     } else {
                         in.pushBack(next1);
                         currentToken = TT_IDENT;
-                        stringValue = buf.toString();
+                        stringValue = intern(buf);
                     }
                 } else {
                     currentToken = ch;
-                    stringValue = String.valueOf((char) currentToken);
+                    stringValue = charToString(currentToken);
                 }
                 break;
             }
@@ -491,6 +532,41 @@ public class CssTokenizer {
         return lineNumber;
     }
 
+    /**
+     * Returns the contents of the buffer as a string. Returns a previously
+     * created string if the buffer has the same contents.
+     *
+     * @param buf the buffer
+     * @return the string
+     */
+    private static String intern(StringBuilder buf) {
+        int length = buf.length();
+        if (length > MAX_INTERN_LENGTH) {
+            return buf.toString();
+        }
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + buf.charAt(i);
+        }
+        int slot = (h ^ (h >>> 16)) & (INTERNED.length - 1);
+        String str = INTERNED[slot];
+        if (str == null || !str.contentEquals(buf)) {
+            str = buf.toString();
+            INTERNED[slot] = str;
+        }
+        return str;
+    }
+
+    /**
+     * Returns a string with the specified character.
+     *
+     * @param ch a character
+     * @return the string
+     */
+    private static String charToString(int ch) {
+        return 0 <= ch && ch < CHARS.length ? CHARS[ch] : String.valueOf((char) ch);
+    }
+
     /**
      * 'ident' macro.
      *
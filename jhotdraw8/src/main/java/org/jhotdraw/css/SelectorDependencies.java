@@ -0,0 +1,232 @@
+/* @(#)SelectorDependencies.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.css;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jhotdraw.css.ast.AbstractAttributeSelector;
+import org.jhotdraw.css.ast.AdjacentSiblingCombinator;
+import org.jhotdraw.css.ast.AndCombinator;
+import org.jhotdraw.css.ast.ChildCombinator;
+import org.jhotdraw.css.ast.ClassSelector;
+import org.jhotdraw.css.ast.Combinator;
+import org.jhotdraw.css.ast.DescendantCombinator;
+import org.jhotdraw.css.ast.GeneralSiblingCombinator;
+import org.jhotdraw.css.ast.IdSelector;
+import org.jhotdraw.css.ast.PseudoClassSelector;
+import org.jhotdraw.css.ast.Selector;
+import org.jhotdraw.css.ast.SimpleSelector;
+import org.jhotdraw.css.ast.StyleRule;
+import org.jhotdraw.css.ast.Stylesheet;
+
+/**
+ * Tells which elements may match different selectors after an attribute,
+ * a pseudo class or the structure of an element has changed.
+ * <p>
+ * Each simple selector of a selector is tested on an element which is
+ * related to the subject element of the selector: on the subject itself, on
+ * an ancestor, on a previous sibling, or on a combination of these. If an
+ * attribute of an element changes, only the elements which are related to
+ * it in the reverse direction need to be styled again.
+ * <p>
+ * Class selectors depend on the attribute {@code "class"}, id selectors on
+ * the attribute {@code "id"}. Pseudo classes are assumed to depend on the
+ * state of the element only, and not on its position among its siblings.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class SelectorDependencies {
+
+    /**
+     * Describes which elements may be affected by a change of an element.
+     */
+    public enum Relation {
+        /**
+         * The element itself.
+         */
+        SELF,
+        /**
+         * All descendants of the element.
+         */
+        DESCENDANTS,
+        /**
+         * The next sibling of the element.
+         */
+        NEXT_SIBLING,
+        /**
+         * All following siblings of the element.
+         */
+        FOLLOWING_SIBLINGS,
+        /**
+         * All descendants of the following siblings of the element.
+         */
+        FOLLOWING_SIBLING_DESCENDANTS
+    }
+
+    /**
+     * A step from an element to a related element.
+     */
+    private enum Step {
+        PARENT, ANCESTOR, PREVIOUS_SIBLING, ANY_PREVIOUS_SIBLING
+    }
+
+    private final Map<String, Set<Relation>> attributeRelations = new HashMap<>();
+    private final Set<Relation> pseudoClassRelations = EnumSet.noneOf(Relation.class);
+    private final Set<Relation> structureRelations = EnumSet.noneOf(Relation.class);
+
+    /**
+     * Analyzes the selectors of the specified stylesheets.
+     *
+     * @param stylesheets the stylesheets, null entries are ignored
+     */
+    public SelectorDependencies(Collection<Stylesheet> stylesheets) {
+        for (Stylesheet s : stylesheets) {
+            if (s == null) {
+                continue;
+            }
+            for (StyleRule r : s.getRulesets()) {
+                for (Selector selector : r.getSelectorGroup().getSelectors()) {
+                    analyze(selector, Collections.emptyList());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the elements which may be affected when the specified attribute
+     * of an element changes.
+     *
+     * @param attributeName the attribute name
+     * @return the affected elements, an empty set if no selector depends on
+     * the attribute
+     */
+    public Set<Relation> getAttributeDependencies(String attributeName) {
+        Set<Relation> relations = attributeRelations.get(attributeName);
+        return relations == null ? Collections.emptySet() : Collections.unmodifiableSet(relations);
+    }
+
+    /**
+     * Returns the elements which may be affected when a pseudo class of an
+     * element changes.
+     *
+     * @return the affected elements
+     */
+    public Set<Relation> getPseudoClassDependencies() {
+        return Collections.unmodifiableSet(pseudoClassRelations);
+    }
+
+    /**
+     * Returns the elements which may be affected when an element is inserted
+     * or removed, in addition to the element and its descendants.
+     *
+     * @return the affected elements
+     */
+    public Set<Relation> getStructureDependencies() {
+        return Collections.unmodifiableSet(structureRelations);
+    }
+
+    /**
+     * Analyzes a selector which is tested on an element, which is reached
+     * from the subject element by the specified steps.
+     *
+     * @param selector the selector
+     * @param path the steps from the subject element
+     * @return the steps from the subject element to the element returned by
+     * the match method of the selector
+     */
+    private List<Step> analyze(Selector selector, List<Step> path) {
+        if (selector instanceof SimpleSelector) {
+            add((SimpleSelector) selector, path);
+            return path;
+        }
+        if (!(selector instanceof Combinator)) {
+            return path;
+        }
+        Combinator c = (Combinator) selector;
+        if (c instanceof AndCombinator) {
+            add(c.getFirstSelector(), path);
+            analyze(c.getSecondSelector(), path);
+            return path;
+        }
+        List<Step> firstPath = new ArrayList<>(analyze(c.getSecondSelector(), path));
+        if (c instanceof ChildCombinator) {
+            firstPath.add(Step.PARENT);
+        } else if (c instanceof DescendantCombinator) {
+            firstPath.add(Step.ANCESTOR);
+        } else if (c instanceof AdjacentSiblingCombinator) {
+            firstPath.add(Step.PREVIOUS_SIBLING);
+        } else if (c instanceof GeneralSiblingCombinator) {
+            firstPath.add(Step.ANY_PREVIOUS_SIBLING);
+        }
+        add(c.getFirstSelector(), firstPath);
+        return firstPath;
+    }
+
+    private void add(SimpleSelector s, List<Step> path) {
+        Relation relation = toRelation(path);
+        Set<Relation> relations;
+        if (s instanceof ClassSelector) {
+            relations = getAttributeRelations("class");
+        } else if (s instanceof IdSelector) {
+            relations = getAttributeRelations("id");
+        } else if (s instanceof AbstractAttributeSelector) {
+            relations = getAttributeRelations(((AbstractAttributeSelector) s).getAttributeName());
+        } else if (s instanceof PseudoClassSelector) {
+            relations = pseudoClassRelations;
+        } else {
+            relations = null;
+        }
+        if (relations != null) {
+            relations.add(relation);
+        }
+        for (Step step : path) {
+            if (step == Step.PREVIOUS_SIBLING || step == Step.ANY_PREVIOUS_SIBLING) {
+                structureRelations.add(relation);
+                break;
+            }
+        }
+    }
+
+    private Set<Relation> getAttributeRelations(String attributeName) {
+        Set<Relation> relations = attributeRelations.get(attributeName);
+        if (relations == null) {
+            relations = EnumSet.noneOf(Relation.class);
+            attributeRelations.put(attributeName, relations);
+        }
+        return relations;
+    }
+
+    /**
+     * Reverses the steps from the subject element to the tested element.
+     * <p>
+     * If the last step goes to a parent or an ancestor, the tested element
+     * is an ancestor of the subject. If all steps go to previous siblings,
+     * the subject is a following sibling of the tested element. Otherwise
+     * the subject is a descendant of a following sibling.
+     */
+    private static Relation toRelation(List<Step> path) {
+        if (path.isEmpty()) {
+            return Relation.SELF;
+        }
+        Step last = path.get(path.size() - 1);
+        if (last == Step.PARENT || last == Step.ANCESTOR) {
+            return Relation.DESCENDANTS;
+        }
+        for (Step step : path) {
+            if (step == Step.PARENT || step == Step.ANCESTOR) {
+                return Relation.FOLLOWING_SIBLING_DESCENDANTS;
+            }
+        }
+        return path.size() == 1 && last == Step.PREVIOUS_SIBLING
+                ? Relation.NEXT_SIBLING : Relation.FOLLOWING_SIBLINGS;
+    }
+}
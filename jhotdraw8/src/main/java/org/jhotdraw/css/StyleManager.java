@@ -94,4 +94,14 @@ public interface StyleManager<E> {
     public SelectorModel<E> getSelectorModel();
 
     public void applyStylesheetTo(StyleOrigin styleOrigin, Stylesheet s, Figure f, HashMap<String, Set<Figure>> pseudoStyles);
+
+    /**
+     * Returns the dependencies of the selectors of all stylesheets.
+     * <p>
+     * The dependencies tell which elements need to be styled again, when an
+     * attribute, a pseudo class or the structure of an element changes.
+     *
+     * @return the selector dependencies
+     */
+    public SelectorDependencies getSelectorDependencies();
 }
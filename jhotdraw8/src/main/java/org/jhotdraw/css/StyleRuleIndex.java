@@ -0,0 +1,374 @@
+/* @(#)StyleRuleIndex.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.css;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jhotdraw.css.ast.AndCombinator;
+import org.jhotdraw.css.ast.ClassSelector;
+import org.jhotdraw.css.ast.Combinator;
+import org.jhotdraw.css.ast.IdSelector;
+import org.jhotdraw.css.ast.SelectNothingSelector;
+import org.jhotdraw.css.ast.Selector;
+import org.jhotdraw.css.ast.SelectorGroup;
+import org.jhotdraw.css.ast.SimpleSelector;
+import org.jhotdraw.css.ast.StyleRule;
+import org.jhotdraw.css.ast.Stylesheet;
+import org.jhotdraw.css.ast.TypeSelector;
+import org.jhotdraw.css.ast.UniversalSelector;
+
+/**
+ * A compiled form of a list of stylesheets, which quickly finds the style
+ * rules that match an element.
+ * <p>
+ * Each selector of a rule is indexed by the simple selectors which its
+ * subject element must match: by id, else by style class, else by type,
+ * else it is put into the universal list. The selectors are sorted in
+ * cascade order, that is by ascending specificity and then by source order.
+ * <p>
+ * Selectors which only test the type, the style classes and the id of the
+ * element are "local". The local matches of an element are cached by the
+ * signature of the element, so that structurally identical elements share
+ * their resolution. All other selectors are tested for each element.
+ * <p>
+ * The index assumes that the stylesheets do not change. Create a new index
+ * when the stylesheets change.
+ * <p>
+ * The index is thread safe. Matching rules can be looked up for different
+ * elements concurrently, provided that the selector model does not change
+ * while this happens.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ * @param <E> the element type
+ */
+public class StyleRuleIndex<E> {
+
+    /**
+     * A selector of a style rule.
+     */
+    private static class Entry {
+
+        final StyleRule rule;
+        final Selector selector;
+        final int specificity;
+        final int sourceOrder;
+        final boolean local;
+
+        Entry(StyleRule rule, Selector selector, int sourceOrder) {
+            this.rule = rule;
+            this.selector = selector;
+            this.specificity = selector.getSpecificity();
+            this.sourceOrder = sourceOrder;
+            this.local = isLocal(selector);
+        }
+    }
+
+    /**
+     * The type, the indexed style classes and the indexed id of an element.
+     */
+    private static class Signature {
+
+        private final String type;
+        private final String id;
+        private final String[] classes;
+        private final int hashCode;
+
+        Signature(String type, String id, String[] classes) {
+            this.type = type;
+            this.id = id;
+            this.classes = classes;
+            this.hashCode = Objects.hash(type, id) * 31 + Arrays.hashCode(classes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Signature)) {
+                return false;
+            }
+            Signature that = (Signature) obj;
+            return hashCode == that.hashCode
+                    && Objects.equals(type, that.type)
+                    && Objects.equals(id, that.id)
+                    && Arrays.equals(classes, that.classes);
+        }
+    }
+
+    /**
+     * Buckets of entry indices. Each bucket is sorted in ascending order.
+     */
+    private static class Buckets {
+
+        private final Map<String, int[]> byId = new HashMap<>();
+        private final Map<String, int[]> byClass = new HashMap<>();
+        private final Map<String, int[]> byType = new HashMap<>();
+        private int[] universal = new int[0];
+
+        void add(int index, Selector selector) {
+            String id = null, clazz = null, type = null;
+            for (SimpleSelector s : getSubjectSelectors(selector, new ArrayList<>())) {
+                if (s instanceof IdSelector) {
+                    id = ((IdSelector) s).getId();
+                } else if (s instanceof ClassSelector) {
+                    clazz = ((ClassSelector) s).getClazz();
+                } else if (s instanceof TypeSelector) {
+                    type = ((TypeSelector) s).getType();
+                }
+            }
+            if (id != null) {
+                append(byId, id, index);
+            } else if (clazz != null) {
+                append(byClass, clazz, index);
+            } else if (type != null) {
+                append(byType, type, index);
+            } else {
+                universal = append(universal, index);
+            }
+        }
+
+        private static void append(Map<String, int[]> map, String key, int index) {
+            int[] bucket = map.get(key);
+            map.put(key, append(bucket == null ? new int[0] : bucket, index));
+        }
+
+        private static int[] append(int[] bucket, int index) {
+            int[] a = Arrays.copyOf(bucket, bucket.length + 1);
+            a[bucket.length] = index;
+            return a;
+        }
+
+        /**
+         * Adds the indices of all entries which may match an element with
+         * the specified type, style classes and id.
+         */
+        void collectCandidates(String type, Collection<String> classes, String id, BitSet candidates) {
+            for (int i : universal) {
+                candidates.set(i);
+            }
+            collect(byType, type, candidates);
+            collect(byId, id, candidates);
+            for (String clazz : classes) {
+                collect(byClass, clazz, candidates);
+            }
+        }
+
+        private static void collect(Map<String, int[]> map, String key, BitSet candidates) {
+            if (key != null) {
+                int[] bucket = map.get(key);
+                if (bucket != null) {
+                    for (int i : bucket) {
+                        candidates.set(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * All selectors in cascade order.
+     */
+    private final Entry[] entries;
+    private final Buckets localBuckets = new Buckets();
+    private final Buckets nonLocalBuckets = new Buckets();
+    /**
+     * The style classes and ids which are tested by local selectors. Only
+     * these are part of a signature.
+     */
+    private final Set<String> localClasses = new HashSet<>();
+    private final Set<String> localIds = new HashSet<>();
+    /**
+     * Maps signatures to the indices of the matching local entries. The
+     * bit sets are not modified after they have been put into the map.
+     */
+    private final Map<Signature, BitSet> localMatches = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new index for the specified stylesheets.
+     *
+     * @param stylesheets the stylesheets in source order, null entries are
+     * ignored
+     */
+    public StyleRuleIndex(List<Stylesheet> stylesheets) {
+        List<Entry> list = new ArrayList<>();
+        for (Stylesheet s : stylesheets) {
+            if (s == null) {
+                continue;
+            }
+            for (StyleRule r : s.getRulesets()) {
+                SelectorGroup g = r.getSelectorGroup();
+                for (Selector selector : g.getSelectors()) {
+                    list.add(new Entry(r, selector, list.size()));
+                }
+            }
+        }
+        Collections.sort(list, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.specificity != b.specificity
+                        ? Integer.compare(a.specificity, b.specificity)
+                        : Integer.compare(a.sourceOrder, b.sourceOrder);
+            }
+        });
+        entries = list.toArray(new Entry[list.size()]);
+
+        for (int i = 0; i < entries.length; i++) {
+            Entry e = entries[i];
+            if (e.local) {
+                localBuckets.add(i, e.selector);
+                for (SimpleSelector s : getSubjectSelectors(e.selector, new ArrayList<>())) {
+                    if (s instanceof ClassSelector) {
+                        localClasses.add(((ClassSelector) s).getClazz());
+                    } else if (s instanceof IdSelector) {
+                        localIds.add(((IdSelector) s).getId());
+                    }
+                }
+            } else {
+                nonLocalBuckets.add(i, e.selector);
+            }
+        }
+    }
+
+    /**
+     * Returns the style rules which match the specified element in cascade
+     * order. Rules which occur later in the list override rules which occur
+     * earlier. If more than one selector of a rule matches, the rule is
+     * placed at the position of the selector with the highest specificity.
+     *
+     * @param model the selector model
+     * @param element the element
+     * @return the matching rules
+     */
+    public List<StyleRule> getMatchingRules(SelectorModel<E> model, E element) {
+        if (entries.length == 0) {
+            return Collections.emptyList();
+        }
+        String type = model.getType(element);
+        String id = model.getId(element);
+        Set<String> classes = model.getStyleClasses(element);
+        if (classes == null) {
+            classes = Collections.emptySet();
+        }
+
+        BitSet matches = new BitSet(entries.length);
+        matches.or(getLocalMatches(model, element, type, id, classes));
+
+        BitSet candidates = new BitSet(entries.length);
+        nonLocalBuckets.collectCandidates(type, classes, id, candidates);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (entries[i].selector.matches(model, element)) {
+                matches.set(i);
+            }
+        }
+
+        // Keep each rule only at the position of its last matching selector
+        ArrayList<StyleRule> rules = new ArrayList<>(matches.cardinality());
+        IdentityHashMap<StyleRule, Boolean> seen = new IdentityHashMap<>();
+        for (int i = matches.length() - 1; i >= 0; i = matches.previousSetBit(i - 1)) {
+            StyleRule r = entries[i].rule;
+            if (seen.put(r, Boolean.TRUE) == null) {
+                rules.add(r);
+            }
+        }
+        Collections.reverse(rules);
+        return rules;
+    }
+
+    private BitSet getLocalMatches(SelectorModel<E> model, E element, String type, String id, Set<String> classes) {
+        ArrayList<String> signatureClasses = new ArrayList<>();
+        for (String clazz : classes) {
+            if (localClasses.contains(clazz)) {
+                signatureClasses.add(clazz);
+            }
+        }
+        String[] sortedClasses = signatureClasses.toArray(new String[signatureClasses.size()]);
+        Arrays.sort(sortedClasses);
+        Signature signature = new Signature(type, localIds.contains(id) ? id : null, sortedClasses);
+
+        BitSet matches = localMatches.get(signature);
+        if (matches == null) {
+            matches = new BitSet(entries.length);
+            BitSet candidates = new BitSet(entries.length);
+            localBuckets.collectCandidates(type, signatureClasses, signature.id, candidates);
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (entries[i].selector.matches(model, element)) {
+                    matches.set(i);
+                }
+            }
+            BitSet existing = localMatches.putIfAbsent(signature, matches);
+            if (existing != null) {
+                matches = existing;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the number of signatures for which the local matches have been
+     * cached.
+     *
+     * @return the number of cached signatures
+     */
+    public int getSignatureCount() {
+        return localMatches.size();
+    }
+
+    /**
+     * Adds the simple selectors which must match the subject element of the
+     * selector to the specified list.
+     * <p>
+     * The first selector of an and-combinator and the subject selectors of
+     * its second selector apply to the subject element. For all other
+     * combinators, only the subject selectors of the second selector apply to
+     * the subject element.
+     */
+    private static List<SimpleSelector> getSubjectSelectors(Selector selector, List<SimpleSelector> list) {
+        if (selector instanceof SimpleSelector) {
+            list.add((SimpleSelector) selector);
+        } else if (selector instanceof Combinator) {
+            Combinator c = (Combinator) selector;
+            if (c instanceof AndCombinator) {
+                list.add(c.getFirstSelector());
+            }
+            getSubjectSelectors(c.getSecondSelector(), list);
+        }
+        return list;
+    }
+
+    /**
+     * Returns true if the selector only tests the type, the style classes and
+     * the id of the element.
+     */
+    private static boolean isLocal(Selector selector) {
+        if (selector instanceof AndCombinator) {
+            AndCombinator c = (AndCombinator) selector;
+            return isLocal(c.getFirstSelector()) && isLocal(c.getSecondSelector());
+        }
+        return selector instanceof TypeSelector
+                || selector instanceof ClassSelector
+                || selector instanceof IdSelector
+                || selector instanceof UniversalSelector
+                || selector instanceof SelectNothingSelector;
+    }
+}
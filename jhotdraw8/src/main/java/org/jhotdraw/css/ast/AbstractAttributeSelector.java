@@ -12,4 +12,15 @@ package org.jhotdraw.css.ast;
  */
 public abstract class AbstractAttributeSelector extends SimpleSelector {
 
+    /**
+     * Returns the name of the attribute which is tested by this selector.
+     *
+     * @return the attribute name
+     */
+    public abstract String getAttributeName();
+
+    @Override
+    public int getSpecificity() {
+        return 0x100;
+    }
 }
@@ -21,6 +21,15 @@ public class ClassSelector extends SimpleSelector {
         this.clazz = clazz;
     }
 
+    public String getClazz() {
+        return clazz;
+    }
+
+    @Override
+    public int getSpecificity() {
+        return 0x100;
+    }
+
     @Override
     public String toString() {
         return "Class:" + clazz;
@@ -32,6 +32,19 @@ public abstract class Combinator extends Selector {
         return false;
     }
 
+    public SimpleSelector getFirstSelector() {
+        return firstSelector;
+    }
+
+    public Selector getSecondSelector() {
+        return secondSelector;
+    }
+
+    @Override
+    public int getSpecificity() {
+        return firstSelector.getSpecificity() + secondSelector.getSpecificity();
+    }
+
     @Override
     public String toString() {
         return "Combinator{" + "simpleSelector=" + firstSelector + ", selector=" + secondSelector + '}';
@@ -26,6 +26,11 @@ public class DashMatchSelector extends AbstractAttributeSelector {
         this.substring = substring;
     }
 
+    @Override
+    public String getAttributeName() {
+        return attributeName;
+    }
+
     @Override
     protected <T> T match(SelectorModel<T> model, T element) {
         return (model.attributeValueEquals(element, attributeName, substring) //
@@ -19,6 +19,10 @@ public class Declaration extends AST {
 
     private final String property;
     private final List<Term> terms;
+    /**
+     * The terms as string are computed lazily.
+     */
+    private String termsAsString;
 
     public Declaration(String property, Term term) {
         this.property = property;
@@ -38,12 +42,15 @@ public class Declaration extends AST {
     }
 
     public String getTermsAsString() {
-        StringBuilder buf = new StringBuilder();
+        if (termsAsString == null) {
+            StringBuilder buf = new StringBuilder();
 
-        for (Term t : terms) {
-            buf.append(t.toString());
+            for (Term t : terms) {
+                buf.append(t.toString());
+            }
+            termsAsString = buf.toString();
         }
-        return buf.toString();
+        return termsAsString;
     }
 
     @Override
@@ -23,6 +23,11 @@ public class EqualsMatchSelector extends AbstractAttributeSelector {
         this.attributeValue = attributeValue;
     }
 
+    @Override
+    public String getAttributeName() {
+        return attributeName;
+    }
+
     @Override
     protected <T> T match(SelectorModel<T> model, T element) {
         return model.attributeValueEquals(element, attributeName, attributeValue) ? element : null;
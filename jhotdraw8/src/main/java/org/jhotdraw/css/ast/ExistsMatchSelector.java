@@ -21,6 +21,11 @@ public class ExistsMatchSelector extends AbstractAttributeSelector {
         this.attributeName = attributeName;
     }
 
+    @Override
+    public String getAttributeName() {
+        return attributeName;
+    }
+
     @Override
     protected <T> T match(SelectorModel<T> model, T element) {
         return model.hasAttribute(element, attributeName) ? element : null;
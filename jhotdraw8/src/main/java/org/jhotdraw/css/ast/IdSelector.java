@@ -21,6 +21,15 @@ public class IdSelector extends SimpleSelector {
         this.id = id;
     }
 
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSpecificity() {
+        return 0x10000;
+    }
+
     @Override
     public String toString() {
         return "Id:" + id;
@@ -24,6 +24,11 @@ public class IncludeMatchSelector extends AbstractAttributeSelector {
         this.word = word;
     }
 
+    @Override
+    public String getAttributeName() {
+        return attributeName;
+    }
+
     @Override
     protected <T> T match(SelectorModel<T> model, T element) {
         return model.attributeValueContainsWord(element, attributeName, word) ? element : null;
@@ -24,6 +24,11 @@ public class PrefixMatchSelector extends AbstractAttributeSelector {
         this.substring = substring;
     }
 
+    @Override
+    public String getAttributeName() {
+        return attributeName;
+    }
+
     @Override
     protected <T> T match(SelectorModel<T> model, T element) {
         return (model.attributeValueStartsWith(element, attributeName, substring))//
@@ -13,4 +13,8 @@ package org.jhotdraw.css.ast;
  */
 public abstract class PseudoClassSelector extends SimpleSelector {
 
+    @Override
+    public int getSpecificity() {
+        return 0x100;
+    }
 }
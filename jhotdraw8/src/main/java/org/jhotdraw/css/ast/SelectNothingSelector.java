@@ -14,6 +14,11 @@ import org.jhotdraw.css.SelectorModel;
  */
 public class SelectNothingSelector extends SimpleSelector {
 
+    @Override
+    public int getSpecificity() {
+        return 0;
+    }
+
     @Override
     public String toString() {
         return "SelectNothing";
@@ -24,6 +24,19 @@ public abstract class Selector extends AST {
         return false;
     }
 
+    /**
+     * Returns true if the selector matches the element.
+     *
+     * @param <T> the element type
+     * @param model The helper is used to access properties of the element and
+     * parent or sibling elements in the document.
+     * @param element the element
+     * @return true on match
+     */
+    public <T> boolean matches(SelectorModel<T> model, T element) {
+        return match(model, element) != null;
+    }
+
     /**
      * Returns the matching element.
      *
@@ -34,4 +47,16 @@ public abstract class Selector extends AST {
      * @return the matching element or null
      */
     protected abstract <T> T match(SelectorModel<T> model, T element);
+
+    /**
+     * Returns the specificity of this selector.
+     * <p>
+     * The specificity is encoded as {@code a * 0x10000 + b * 0x100 + c}, where
+     * {@code a} is the number of id selectors, {@code b} the number of class,
+     * attribute and pseudo-class selectors, and {@code c} the number of type
+     * selectors.
+     *
+     * @return the specificity
+     */
+    public abstract int getSpecificity();
 }
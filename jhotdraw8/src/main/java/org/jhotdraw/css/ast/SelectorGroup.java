@@ -27,6 +27,10 @@ public class SelectorGroup extends AST {
         this.selectors = Collections.unmodifiableList(selectors);
     }
 
+    public List<Selector> getSelectors() {
+        return selectors;
+    }
+
     @Override
     public String toString() {
         StringBuilder buf = new StringBuilder("( ");
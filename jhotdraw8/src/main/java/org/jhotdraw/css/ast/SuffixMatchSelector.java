@@ -24,6 +24,11 @@ public class SuffixMatchSelector extends AbstractAttributeSelector {
         this.substring = substring;
     }
 
+    @Override
+    public String getAttributeName() {
+        return attributeName;
+    }
+
     @Override
     protected <T> T match(SelectorModel<T> model, T element) {
         return (model.attributeValueEndsWith(element, attributeName, substring))//
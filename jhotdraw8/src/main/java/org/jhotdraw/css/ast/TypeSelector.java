@@ -21,6 +21,15 @@ public class TypeSelector extends SimpleSelector {
         this.type = type;
     }
 
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public int getSpecificity() {
+        return 1;
+    }
+
     @Override
     public String toString() {
         return "Type:" + type;
@@ -134,4 +134,12 @@ public interface Drawing extends Figure {
      * @return the style manager
      */
     StyleManager<Figure> getStyleManager();
+
+    /**
+     * Gets the image cache of the drawing. Figures which reference the same
+     * image share the decoded image through this cache.
+     *
+     * @return the image cache
+     */
+    ImageCache getImageCache();
 }
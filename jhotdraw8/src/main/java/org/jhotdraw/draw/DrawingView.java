@@ -217,7 +217,8 @@ public interface DrawingView extends RenderContext {
      * view.
      *
      * @param f The figure
-     * @return The node associated to the figure
+     * @return The node associated to the figure, or null if the drawing view
+     * does not render the figure because it is outside of the viewport
      */
     public Node getNode(Figure f);
 
@@ -0,0 +1,358 @@
+/* @(#)ImageCache.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Shares decoded images between the figures of a drawing.
+ * <p>
+ * Images are keyed by their absolute URI and by the size at which they have
+ * been decoded. Images for the editor are decoded on worker threads at the
+ * size at which they are displayed, rounded up to the next power of two, so
+ * that zooming in and out does not decode the image again for every zoom
+ * step. Width and height are rounded independently, and the aspect ratio of
+ * the image is not preserved, because image views stretch the image to the
+ * bounds of the figure. Images are never decoded larger than their natural
+ * size.
+ * <p>
+ * Images which can not be loaded are not cached, so that they are loaded
+ * again when they are requested the next time.
+ * <p>
+ * The cache holds strong references to the most recently used images up to
+ * a budget of bytes. Images which exceed the budget are only softly
+ * referenced, so that the garbage collector can reclaim them when memory
+ * becomes scarce.
+ * <p>
+ * The methods of this class can be called on any thread. Image views are
+ * only updated on the JavaFX application thread.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ImageCache {
+
+    /**
+     * The smallest size at which images are decoded for the editor.
+     */
+    private final static int MIN_SIZE = 16;
+
+    /**
+     * The worker threads which decode the images.
+     */
+    private final static ExecutorService DECODERS = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+                Thread t = new Thread(r, "ImageCache decoder");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * The key of an image. Width and height are 0 if the image is decoded at
+     * its natural size.
+     */
+    private static class ImageKey {
+
+        final URI uri;
+        final int width;
+        final int height;
+
+        ImageKey(URI uri, int width, int height) {
+            this.uri = uri;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ImageKey)) {
+                return false;
+            }
+            ImageKey that = (ImageKey) obj;
+            return width == that.width && height == that.height && uri.equals(that.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return (uri.hashCode() * 31 + width) * 31 + height;
+        }
+    }
+
+    private final long maxBytes;
+    private long bytes;
+    /**
+     * The strongly referenced images in access order.
+     */
+    private final LinkedHashMap<ImageKey, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The images which have been evicted from the strongly referenced images.
+     */
+    private final Map<ImageKey, SoftReference<Image>> evicted = new HashMap<>();
+    /**
+     * The natural sizes of the images, or an empty array if the natural size
+     * of an image can not be determined without decoding it.
+     */
+    private final Map<URI, int[]> naturalSizes = new HashMap<>();
+    /**
+     * The key of the most recently loaded image for each URI. Serves as a
+     * placeholder while the image is decoded at a different size.
+     */
+    private final Map<URI, ImageKey> latest = new HashMap<>();
+    /**
+     * The image views which are waiting for an image that is being decoded.
+     */
+    private final Map<ImageKey, Set<ImageView>> pending = new HashMap<>();
+
+    /**
+     * Creates a new image cache with a budget of 64 MiB.
+     */
+    public ImageCache() {
+        this(64L << 20);
+    }
+
+    /**
+     * Creates a new image cache.
+     *
+     * @param maxBytes the number of bytes of decoded images which are
+     * strongly referenced by the cache
+     */
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the image at its natural size. Decodes the image on the
+     * calling thread if it is not in the cache.
+     * <p>
+     * This method is used by render contexts other than the editor, which
+     * need the image immediately and at full resolution.
+     *
+     * @param uri the absolute URI of the image
+     * @return the image
+     */
+    public Image getImage(URI uri) {
+        ImageKey key = new ImageKey(uri, 0, 0);
+        synchronized (this) {
+            Image image = lookup(key);
+            if (image != null) {
+                return image;
+            }
+        }
+        Image image = new Image(uri.toString(), false);
+        if (!image.isError()) {
+            synchronized (this) {
+                naturalSizes.put(uri, new int[]{(int) image.getWidth(), (int) image.getHeight()});
+                put(key, image);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Sets the image of the image view. The image is decoded at the
+     * specified display size.
+     * <p>
+     * If the image is not in the cache, it is decoded on a worker thread,
+     * and the image view shows an already decoded image of the same URI in
+     * the meantime. When decoding is done, the image is set on the image
+     * view, unless a different image has been requested for the image view
+     * in the meantime.
+     * <p>
+     * This method must be called on the JavaFX application thread.
+     *
+     * @param view the image view
+     * @param uri the absolute URI of the image
+     * @param width the display width in pixels
+     * @param height the display height in pixels
+     * @return the image which is shown by the image view, or null if no
+     * image of the URI has been decoded yet
+     */
+    public synchronized Image setImage(ImageView view, URI uri, double width, double height) {
+        ImageKey key = createKey(uri, width, height);
+        view.getProperties().put(ImageCache.class, key);
+        Image image = lookup(key);
+        if (image == null) {
+            Set<ImageView> views = pending.get(key);
+            if (views == null) {
+                views = new LinkedHashSet<>();
+                pending.put(key, views);
+                DECODERS.execute(() -> decode(key));
+            }
+            views.add(view);
+            ImageKey placeholderKey = latest.get(uri);
+            image = placeholderKey == null ? null : lookup(placeholderKey);
+        }
+        view.setImage(image);
+        return image;
+    }
+
+    /**
+     * Returns the key for the display size. The width and the height are
+     * rounded up to the next power of two, and are limited to the natural
+     * size of the image.
+     */
+    private ImageKey createKey(URI uri, double width, double height) {
+        int w = roundUp(width);
+        int h = roundUp(height);
+        int[] natural = naturalSizes.get(uri);
+        if (natural != null && natural.length == 2) {
+            if (w >= natural[0] && h >= natural[1]) {
+                w = h = 0;
+            } else {
+                w = Math.min(w, natural[0]);
+                h = Math.min(h, natural[1]);
+            }
+        }
+        return new ImageKey(uri, w, h);
+    }
+
+    private static int roundUp(double size) {
+        if (!(size < 1 << 30)) {
+            return 1 << 30;
+        }
+        int s = (int) Math.ceil(size);
+        return s <= MIN_SIZE ? MIN_SIZE : Integer.highestOneBit(s - 1) << 1;
+    }
+
+    /**
+     * Decodes an image. This method is invoked on a worker thread. The
+     * image views which are waiting for the image are always notified, even
+     * if decoding fails.
+     */
+    private void decode(ImageKey key) {
+        Image image = null;
+        try {
+            int[] natural;
+            synchronized (this) {
+                natural = naturalSizes.get(key.uri);
+            }
+            if (natural == null) {
+                natural = readNaturalSize(key.uri);
+                synchronized (this) {
+                    naturalSizes.put(key.uri, natural);
+                }
+            }
+            if (key.width == 0 || natural.length == 2 && key.width >= natural[0] && key.height >= natural[1]) {
+                image = new Image(key.uri.toString(), false);
+            } else {
+                image = new Image(key.uri.toString(), key.width, key.height, false, true, false);
+            }
+        } finally {
+            Image decoded = image;
+            Platform.runLater(() -> loaded(key, decoded));
+        }
+    }
+
+    /**
+     * Puts a decoded image into the cache, unless it could not be loaded,
+     * and sets it on the image views which are still waiting for it.
+     *
+     * @param key the key
+     * @param image the image, or null if decoding has failed
+     */
+    private synchronized void loaded(ImageKey key, Image image) {
+        Set<ImageView> views = pending.remove(key);
+        if (image == null) {
+            return;
+        }
+        if (!image.isError()) {
+            put(key, image);
+        }
+        if (views != null) {
+            for (ImageView view : views) {
+                if (key.equals(view.getProperties().get(ImageCache.class))) {
+                    view.setImage(image);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the natural size of the image from its header. Returns an empty
+     * array if the header can not be read.
+     */
+    private static int[] readNaturalSize(URI uri) {
+        try (InputStream in = uri.toURL().openStream();
+                ImageInputStream iin = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iin);
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(iin, true, true);
+                    return new int[]{reader.getWidth(0), reader.getHeight(0)};
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // fall through
+        }
+        return new int[0];
+    }
+
+    private Image lookup(ImageKey key) {
+        Image image = images.get(key);
+        if (image == null) {
+            SoftReference<Image> ref = evicted.remove(key);
+            image = ref == null ? null : ref.get();
+            if (image != null) {
+                put(key, image);
+            }
+        }
+        return image;
+    }
+
+    private void put(ImageKey key, Image image) {
+        Image old = images.put(key, image);
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        bytes += sizeOf(image);
+        latest.put(key.uri, key);
+        trim();
+    }
+
+    /**
+     * Evicts the least recently used images until the cache is within its
+     * budget. The most recently used image is always kept.
+     */
+    private void trim() {
+        if (bytes <= maxBytes) {
+            return;
+        }
+        for (Iterator<SoftReference<Image>> i = evicted.values().iterator(); i.hasNext();) {
+            if (i.next().get() == null) {
+                i.remove();
+            }
+        }
+        for (Iterator<Map.Entry<ImageKey, Image>> i = images.entrySet().iterator(); bytes > maxBytes && images.size() > 1;) {
+            Map.Entry<ImageKey, Image> entry = i.next();
+            i.remove();
+            bytes -= sizeOf(entry.getValue());
+            evicted.put(entry.getKey(), new SoftReference<>(entry.getValue()));
+        }
+    }
+
+    private static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4L;
+    }
+}
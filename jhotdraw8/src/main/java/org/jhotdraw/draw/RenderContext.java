@@ -36,9 +36,13 @@ public interface RenderContext extends PropertyBean {
     /**
      * Gets the JavaFX node which is used to render the specified figure by this
      * {@code RenderContext}.
+     * <p>
+     * A render context which only renders the visible part of a drawing may
+     * return null for a figure which is currently not visible.
      *
      * @param f The figure
-     * @return The JavaFX node associated to the figure
+     * @return The JavaFX node associated to the figure, or null if the figure
+     * is currently not rendered
      */
     Node getNode(Figure f);
 
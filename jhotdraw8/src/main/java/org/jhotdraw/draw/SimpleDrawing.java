@@ -38,6 +38,10 @@ public class SimpleDrawing extends AbstractCompositeFigure
      * The style manager is created lazily. 
      */
     private StyleManager<Figure> styleManager = null;
+    /**
+     * The image cache is created lazily.
+     */
+    private ImageCache imageCache = null;
 
     public SimpleDrawing() {
     }
@@ -69,7 +73,10 @@ public class SimpleDrawing extends AbstractCompositeFigure
         List<Node> nodes = new ArrayList<Node>(getChildren().size());
         nodes.add(page);
         for (Figure child : getChildren()) {
-            nodes.add(v.getNode(child));
+            Node childNode = v.getNode(child);
+            if (childNode != null) {
+                nodes.add(childNode);
+            }
         }
         ObservableList<Node> group = ((Group) n).getChildren();
         if (! group.equals(nodes)) {
@@ -105,6 +112,14 @@ public class SimpleDrawing extends AbstractCompositeFigure
         }
         return styleManager;
     }
+    @Override
+    public ImageCache getImageCache() {
+        if (imageCache == null) {
+            imageCache = new ImageCache();
+        }
+        return imageCache;
+    }
+
     protected StyleManager<Figure> createStyleManager() {
         if (true) return new FigureStyleManager();
         
@@ -9,6 +9,7 @@ import org.jhotdraw.draw.handle.HandleType;
 import org.jhotdraw.draw.model.DrawingModelEvent;
 import org.jhotdraw.draw.model.DrawingModel;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
@@ -16,13 +17,16 @@ import java.util.LinkedList;
 import java.util.List;
 import javafx.application.Platform;
 import javafx.beans.Observable;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.beans.property.ReadOnlySetProperty;
 import javafx.beans.property.ReadOnlySetWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -33,6 +37,7 @@ import javafx.geometry.Point2D;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.transform.Scale;
@@ -46,9 +51,12 @@ import org.jhotdraw.event.Listener;
 import org.jhotdraw.draw.handle.Handle;
 import static java.lang.Math.*;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.scene.CacheHint;
@@ -70,6 +78,7 @@ import org.jhotdraw.app.EditableComponent;
 import org.jhotdraw.beans.SimplePropertyBean;
 import org.jhotdraw.draw.model.SimpleDrawingModel;
 import org.jhotdraw.geom.Geom;
+import org.jhotdraw.geom.RTree;
 
 /**
  * FXML Controller class
@@ -84,6 +93,21 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
 
     }
 
+    /**
+     * The name of the virtualized property.
+     */
+    public final static String VIRTUALIZED_PROPERTY = "virtualized";
+    /**
+     * The margin around the viewport in view coordinates. Figures which
+     * intersect with the margin are rendered, so that they are ready when the
+     * view is scrolled by a small amount.
+     */
+    private final static double VIEWPORT_MARGIN = 200;
+    /**
+     * The maximal number of recycled nodes per figure class.
+     */
+    private final static int MAX_POOLED_NODES_PER_CLASS = 256;
+
     private Group drawingSubScene;
     private Group overlaysSubScene;
 
@@ -97,9 +121,11 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
     private Pane overlaysPane;
 
     /**
-     * The number of nodes that are maximally updated per frame.
+     * The time in nanoseconds that is maximally spent per frame for
+     * validating the model and updating nodes. At most half of it is spent on
+     * the model. The remaining work is done in the following frames.
      */
-    private int maxUpdate = 100;
+    private long frameBudget = 8_000_000L;
 
     /**
      * This is the JavaFX Node which is used to represent this drawing view. in
@@ -169,9 +195,13 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
             Figure f = event.getFigure();
             switch (event.getEventType()) {
                 case FIGURE_ADDED_TO_PARENT:
+                    invalidateSpatialIndex(f, true);
+                    invalidateSpatialIndexOfParent(event.getParent());
                     handleFigureAdded(f);
                     break;
                 case FIGURE_REMOVED_FROM_PARENT:
+                    removeFromSpatialIndex(f);
+                    invalidateSpatialIndexOfParent(event.getParent());
                     handleFigureRemoved(f);
                     break;
                 case FIGURE_ADDED_TO_DRAWING:
@@ -181,9 +211,11 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
                     repaint();
                     break;
                 case NODE_INVALIDATED:
+                    invalidateSpatialIndex(f, false);
                     handleNodeInvalidated(f);
                     break;
                 case LAYOUT_INVALIDATED:
+                    invalidateSpatialIndex(f, false);
                     if (f == getDrawing()) {
                         invalidateConstrainerNode();
                         invalidateWorldViewTransforms();
@@ -199,6 +231,7 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
                     repaint();
                     break;
                 case SUBTREE_NODES_INVALIDATED:
+                    invalidateSpatialIndex(f, true);
                     updateTreeNodes(f);
                     repaint();
                     break;
@@ -206,7 +239,10 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
                     updateTreeStructure(f);
                     break;
                 case CONNECTION_CHANGED:
+                    repaint();
+                    break;
                 case TRANSFORM_CHANGED:
+                    invalidateSpatialIndex(f, true);
                     repaint();
                     break;
                 default:
@@ -317,6 +353,7 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
             }
             updateLayout();
             invalidateHandleNodes();
+            invalidateViewport();
             if (constrainer.get() != null) {
                 constrainer.get().updateNode(SimpleDrawingView.this);
             }
@@ -337,6 +374,20 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         }
     };
 
+    /**
+     * If this property is true, the view only creates JavaFX nodes for the
+     * figures which intersect with the viewport. The nodes of figures which
+     * are scrolled out of the viewport are recycled.
+     */
+    private final BooleanProperty virtualized = new SimpleBooleanProperty(this, VIRTUALIZED_PROPERTY, false) {
+
+        @Override
+        protected void fireValueChangedEvent() {
+            super.fireValueChangedEvent();
+            invalidateViewport();
+        }
+    };
+
     /**
      * XXX use this to center scroll pane on view when zooming.
      */
@@ -384,6 +435,36 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
      * secondary handles.
      */
     private final LinkedList<Handle> secondaryHandles = new LinkedList<>();
+    /**
+     * Recycled JavaFX nodes of figures which have been scrolled out of the
+     * viewport, grouped by the class of the figure.
+     */
+    private final Map<Class<?>, ArrayDeque<Node>> nodePool = new HashMap<>();
+    /**
+     * The viewport plus the margin in world coordinates. This is null if all
+     * figures are rendered.
+     */
+    private Bounds renderedWorldBounds;
+    private boolean viewportValid = true;
+    /**
+     * The figure whose JavaFX node is currently being updated.
+     */
+    private Figure updatingFigure;
+    /**
+     * The spatial index of the figures without children in world
+     * coordinates. These are the leaf figures, and the composite figures
+     * which are empty, so that an empty group or layer can still be hit.
+     * Composite figures with children are not in the index, so that a change
+     * of a figure does not require to update the bounds of its ancestors.
+     */
+    private final RTree<Figure> spatialIndex = new RTree<>();
+    /**
+     * The figures whose bounds in the spatial index are out of date. The
+     * value is {@code Boolean.TRUE} if the bounds of the descendants of the
+     * figure are out of date as well.
+     */
+    private final Map<Figure, Boolean> dirtySpatialIndex = new IdentityHashMap<>();
+    private final ChangeListener<Object> viewportHandler = (o, oldValue, newValue) -> invalidateViewport();
 
     private Runnable repainter = null;
 
@@ -458,6 +539,20 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         });
         node.setFocusTraversable(true);
         focused.bind(node.focusedProperty());
+
+        node.localToSceneTransformProperty().addListener(viewportHandler);
+        node.layoutBoundsProperty().addListener(viewportHandler);
+        node.sceneProperty().addListener((o, oldValue, newValue) -> {
+            if (oldValue != null) {
+                oldValue.widthProperty().removeListener(viewportHandler);
+                oldValue.heightProperty().removeListener(viewportHandler);
+            }
+            if (newValue != null) {
+                newValue.widthProperty().addListener(viewportHandler);
+                newValue.heightProperty().addListener(viewportHandler);
+            }
+            invalidateViewport();
+        });
     }
 
     private void invalidateFigureNode(Figure f) {
@@ -557,20 +652,165 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         figureToNodeMap.clear();
         nodeToFigureMap.clear();
         dirtyFigureNodes.clear();
+        nodePool.clear();
+        spatialIndex.clear();
+        dirtySpatialIndex.clear();
+        invalidateViewport();
     }
 
+    /**
+     * Returns the JavaFX node of the figure.
+     * <p>
+     * If the view is virtualized, returns null for a figure which is not
+     * rendered, and recycles the node that the figure may have had.
+     *
+     * @param f the figure
+     * @return the node or null
+     */
     @Override
     public Node getNode(Figure f) {
         Node n = figureToNodeMap.get(f);
+        if (renderedWorldBounds != null && !isRendered(f)) {
+            if (n != null) {
+                releaseNode(f);
+                invalidateParentNode(f);
+            }
+            return null;
+        }
         if (n == null) {
-            n = f.createNode(this);
+            n = acquireNode(f);
             figureToNodeMap.put(f, n);
             nodeToFigureMap.put(n, f);
             dirtyFigureNodes.put(f,null);
+            invalidateParentNode(f);
         }
         return n;
     }
 
+    /**
+     * Marks the node of the parent of the figure as dirty, unless the parent
+     * is currently being updated.
+     */
+    private void invalidateParentNode(Figure f) {
+        Figure parent = f.getParent();
+        if (renderedWorldBounds != null && parent != null && parent != updatingFigure) {
+            dirtyFigureNodes.put(parent, null);
+        }
+    }
+
+    /**
+     * Takes a recycled node for the figure from the pool, or creates a new
+     * node.
+     */
+    private Node acquireNode(Figure f) {
+        ArrayDeque<Node> pool = nodePool.get(f.getClass());
+        Node n = pool == null ? null : pool.poll();
+        return n == null ? f.createNode(this) : n;
+    }
+
+    /**
+     * Removes the nodes of the figure and of its descendants from the view,
+     * and puts them into the pool. The figures stay dirty if they are dirty.
+     */
+    private void releaseNode(Figure f) {
+        for (Figure child : f.getChildren()) {
+            releaseNode(child);
+        }
+        Node n = figureToNodeMap.remove(f);
+        if (n != null) {
+            nodeToFigureMap.remove(n);
+            ArrayDeque<Node> pool = nodePool.get(f.getClass());
+            if (pool == null) {
+                pool = new ArrayDeque<>();
+                nodePool.put(f.getClass(), pool);
+            }
+            if (pool.size() < MAX_POOLED_NODES_PER_CLASS) {
+                pool.push(n);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the figure is rendered in a virtualized view. The
+     * drawing and its layers are always rendered. Any other figure is
+     * rendered, if its parent is rendered and it intersects with the viewport
+     * plus the margin.
+     */
+    private boolean isRendered(Figure f) {
+        Figure parent = f.getParent();
+        if (parent == null || parent.getParent() == null) {
+            return true;
+        }
+        if (!figureToNodeMap.containsKey(parent)) {
+            return false;
+        }
+        Bounds b = f.getLocalToWorld().transform(f.getBoundsInLocal());
+        return renderedWorldBounds.intersects(b);
+    }
+
+    private void invalidateViewport() {
+        if (virtualized.get() || renderedWorldBounds != null) {
+            viewportValid = false;
+            repaint();
+        }
+    }
+
+    /**
+     * Computes the viewport plus the margin in world coordinates.
+     *
+     * @return the bounds, or null if the view is not showing
+     */
+    private Bounds computeRenderedWorldBounds() {
+        Scene scene = node.getScene();
+        if (scene == null) {
+            return null;
+        }
+        double minX = 0, minY = 0, maxX = scene.getWidth(), maxY = scene.getHeight();
+        ScrollPane scrollPane = getScrollPane();
+        if (scrollPane != null) {
+            Bounds b = scrollPane.localToScene(scrollPane.getLayoutBounds());
+            minX = max(minX, b.getMinX());
+            minY = max(minY, b.getMinY());
+            maxX = min(maxX, b.getMaxX());
+            maxY = min(maxY, b.getMaxY());
+        }
+        return drawingPane.sceneToLocal(new BoundingBox(minX - VIEWPORT_MARGIN, minY - VIEWPORT_MARGIN,
+                max(0, maxX - minX) + 2 * VIEWPORT_MARGIN, max(0, maxY - minY) + 2 * VIEWPORT_MARGIN));
+    }
+
+    /**
+     * Recycles the nodes of the figures which have been scrolled out of the
+     * viewport, and marks the parents of the figures which have been scrolled
+     * into the viewport as dirty.
+     */
+    private void validateViewport() {
+        viewportValid = true;
+        renderedWorldBounds = virtualized.get() ? computeRenderedWorldBounds() : null;
+        Drawing d = getDrawing();
+        if (d == null) {
+            return;
+        }
+        if (renderedWorldBounds != null) {
+            for (Figure f : figureToNodeMap.keySet().toArray(new Figure[figureToNodeMap.size()])) {
+                if (figureToNodeMap.containsKey(f) && !isRendered(f)) {
+                    releaseNode(f);
+                    invalidateParentNode(f);
+                }
+            }
+        }
+        invalidateNodesScrolledIn(d);
+    }
+
+    private void invalidateNodesScrolledIn(Figure parent) {
+        for (Figure child : parent.getChildren()) {
+            if (figureToNodeMap.containsKey(child)) {
+                invalidateNodesScrolledIn(child);
+            } else if (renderedWorldBounds == null || isRendered(child)) {
+                dirtyFigureNodes.put(parent, null);
+            }
+        }
+    }
+
     @Override
     public NonnullProperty<DrawingModel> modelProperty() {
         return drawingModel;
@@ -588,6 +828,7 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         Drawing d = getModel().getRoot();
         drawing.set(d);
         if (d != null) {
+            invalidateSpatialIndex(d, true);
             drawingPane.getChildren().add(getNode(d));
             dirtyFigureNodes.put(d,null);
             updateLayout();
@@ -645,6 +886,11 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
             }
         }
         updateTreeNodes(parent);
+        spatialIndex.clear();
+        dirtySpatialIndex.clear();
+        if (drawing != null) {
+            invalidateSpatialIndex(drawing, true);
+        }
     }
 
     private void handleNewDrawingModel(DrawingModel oldValue, DrawingModel newValue) {
@@ -697,7 +943,17 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
     }
 
     private void updateNodes() {
-        getModel().validate();
+        long deadline = System.nanoTime() + frameBudget;
+        Bounds visibleBounds = computeRenderedWorldBounds();
+        Predicate<Figure> isVisible = f -> visibleBounds == null
+                || visibleBounds.intersects(f.getLocalToWorld().transform(f.getBoundsInLocal()));
+        // The model gets at most half of the frame budget, so that the nodes
+        // of the validated figures can be updated in the same frame. The
+        // nodes get the remainder, including the time the model did not use.
+        boolean modelValid = getModel().validate(frameBudget / 2, isVisible);
+        if (!viewportValid) {
+            validateViewport();
+        }
 
         // create copies of the lists to allow for concurrent modification
         Figure[] copyOfDirtyFigureNodes = dirtyFigureNodes.keySet().toArray(new Figure[dirtyFigureNodes.size()]);
@@ -705,9 +961,51 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         dirtyFigureNodes.clear();
         dirtyHandles.clear();
 
-        for (Figure f : copyOfDirtyFigureNodes) {
-            f.updateNode(this, getNode(f));
+        // Figures which are not rendered stay dirty until they are scrolled
+        // into the viewport. Figures which get a node while we update their
+        // parents are updated in the next round. Visible figures are updated
+        // first. If the frame budget is exceeded, the remaining figures are
+        // updated in the next frame.
+        Map<Figure, Boolean> notRendered = new IdentityHashMap<>();
+        boolean nodesValid = true;
+        int updateCount = 0;
+        rounds:
+        while (copyOfDirtyFigureNodes.length > 0) {
+            if (visibleBounds != null) {
+                prioritize(copyOfDirtyFigureNodes, isVisible);
+            }
+            for (int i = 0; i < copyOfDirtyFigureNodes.length; i++) {
+                if (updateCount > 0 && System.nanoTime() - deadline > 0) {
+                    for (; i < copyOfDirtyFigureNodes.length; i++) {
+                        dirtyFigureNodes.put(copyOfDirtyFigureNodes[i], null);
+                    }
+                    nodesValid = false;
+                    break rounds;
+                }
+                Figure f = copyOfDirtyFigureNodes[i];
+                Node n = getNode(f);
+                if (n == null) {
+                    notRendered.put(f, null);
+                } else {
+                    updatingFigure = f;
+                    f.updateNode(this, n);
+                    updateCount++;
+                }
+            }
+            updatingFigure = null;
+            for (Iterator<Figure> i = notRendered.keySet().iterator(); i.hasNext();) {
+                Figure f = i.next();
+                if (figureToNodeMap.containsKey(f)) {
+                    i.remove();
+                } else {
+                    dirtyFigureNodes.remove(f);
+                }
+            }
+            copyOfDirtyFigureNodes = dirtyFigureNodes.keySet().toArray(new Figure[dirtyFigureNodes.size()]);
+            dirtyFigureNodes.clear();
         }
+        updatingFigure = null;
+        dirtyFigureNodes.putAll(notRendered);
         for (Figure f : copyOfDirtyHandles) {
             List<Handle> hh = handles.get(f);
             if (hh != null) {
@@ -727,6 +1025,26 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
                 c.updateNode(this);
             }
         }
+
+        if (!modelValid || !nodesValid) {
+            // continue in the next frame
+            repaint();
+        }
+    }
+
+    /**
+     * Moves the figures which are accepted by the predicate to the front of
+     * the array.
+     */
+    private static void prioritize(Figure[] fs, Predicate<Figure> first) {
+        int j = 0;
+        for (int i = 0; i < fs.length; i++) {
+            if (first.test(fs[i])) {
+                Figure tmp = fs[j];
+                fs[j++] = fs[i];
+                fs[i] = tmp;
+            }
+        }
     }
 
     /**
@@ -786,6 +1104,16 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         return zoomFactor;
     }
 
+    /**
+     * If this property is true, the view only renders the figures which
+     * intersect with the viewport.
+     *
+     * @return the virtualized property
+     */
+    public BooleanProperty virtualizedProperty() {
+        return virtualized;
+    }
+
     @Override
     public Handle findHandle(double vx, double vy) {
         for (Map.Entry<Node, Handle> e : nodeToHandleMap.entrySet()) {
@@ -807,64 +1135,256 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         return null;
     }
 
-    @Override
-    public Figure findFigure(double vx, double vy) {
-        Drawing dr = getDrawing();
-        Figure f = findFigureRecursive((Parent) getNode(dr), viewToDrawing(vx, vy), 0.0);
-        if (f == null) {
-            f = findFigureRecursive((Parent) getNode(dr), viewToDrawing(vx, vy), TOLERANCE);
+    /**
+     * Marks the bounds of the figure in the spatial index as out of date.
+     *
+     * @param f the figure
+     * @param subtree whether the bounds of the descendants are out of date
+     * as well
+     */
+    private void invalidateSpatialIndex(Figure f, boolean subtree) {
+        if (subtree) {
+            dirtySpatialIndex.put(f, Boolean.TRUE);
+        } else if (f.getChildren().isEmpty()) {
+            dirtySpatialIndex.putIfAbsent(f, Boolean.FALSE);
         }
-        return f;
     }
 
-    private Figure findFigureRecursive(Parent p, Point2D pp, double tolerance) {
-        ObservableList<Node> list = p.getChildrenUnmodifiable();
-        for (int i = list.size() - 1; i >= 0; i--) {// front to back
-            Node n = list.get(i);
-            if (!n.isVisible()) {
+    /**
+     * Marks the entry of the parent in the spatial index as out of date,
+     * after a child has been added to it or removed from it. The parent
+     * enters the index when it loses its last child, and leaves it when it
+     * gets its first child.
+     *
+     * @param parent the parent, may be null
+     */
+    private void invalidateSpatialIndexOfParent(Figure parent) {
+        if (parent != null) {
+            dirtySpatialIndex.putIfAbsent(parent, Boolean.FALSE);
+        }
+    }
+
+    private void removeFromSpatialIndex(Figure f) {
+        for (Figure g : f.preorderIterable()) {
+            spatialIndex.remove(g);
+            dirtySpatialIndex.remove(g);
+        }
+    }
+
+    /**
+     * Updates the bounds of the dirty figures without children in the
+     * spatial index, and removes the dirty figures which have children.
+     */
+    private void validateSpatialIndex() {
+        if (dirtySpatialIndex.isEmpty()) {
+            return;
+        }
+        Drawing d = getDrawing();
+        Figure[] fs = dirtySpatialIndex.keySet().toArray(new Figure[dirtySpatialIndex.size()]);
+        Boolean[] subtrees = dirtySpatialIndex.values().toArray(new Boolean[dirtySpatialIndex.size()]);
+        dirtySpatialIndex.clear();
+        Map<Figure, Boolean> done = new IdentityHashMap<>();
+        for (int i = 0; i < fs.length; i++) {
+            Figure f = fs[i];
+            if (d == null || f.getRoot() != d) {
                 continue;
             }
-            Point2D pl = n.parentToLocal(pp);
-            if (contains(n, pl, tolerance)) {
-                Figure f = nodeToFigureMap.get(n);
-                if (f == null || !f.isSelectable()) {
-                    if (n instanceof Parent) {
-                        f = findFigureRecursive((Parent) n, pl, tolerance);
-                    }
-                }
-                if (f != null && f.isSelectable()) {
-                    return f;
+            if (subtrees[i]) {
+                for (Figure g : f.preorderIterable()) {
+                    updateSpatialIndex(g, done);
                 }
+            } else {
+                updateSpatialIndex(f, done);
             }
         }
-        return null;
     }
 
-    @Override
-    public Figure findFigure(double vx, double vy, Set<Figure> figures) {
-        Drawing dr = getDrawing();
-        Figure f = findFigureRecursiveInSet((Parent) getNode(dr), viewToWorld(vx, vy), figures);
+    private void updateSpatialIndex(Figure f, Map<Figure, Boolean> done) {
+        if (f.getParent() == null || done.put(f, Boolean.TRUE) != null) {
+            return;
+        }
+        if (!f.getChildren().isEmpty()) {
+            spatialIndex.remove(f);
+            return;
+        }
+        Bounds b = computeBoundsInWorld(f);
+        if (Double.isFinite(b.getWidth()) && Double.isFinite(b.getHeight())) {
+            spatialIndex.put(f, b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY());
+        } else {
+            spatialIndex.remove(f);
+        }
+    }
 
-        return f;
+    /**
+     * Computes the bounds of the figure in world coordinates. If the figure
+     * has a node, the bounds include the bounds of the node, which may be
+     * larger due to strokes and effects.
+     *
+     * @param f the figure
+     * @return the bounds
+     */
+    private Bounds computeBoundsInWorld(Figure f) {
+        Bounds b = f.getLocalToWorld().transform(f.getBoundsInLocal());
+        Node n = figureToNodeMap.get(f);
+        Node drawingNode = figureToNodeMap.get(getDrawing());
+        if (n != null && drawingNode != null) {
+            Bounds nb = drawingNode.sceneToLocal(n.localToScene(n.getBoundsInLocal()));
+            double minX = min(b.getMinX(), nb.getMinX());
+            double minY = min(b.getMinY(), nb.getMinY());
+            b = new BoundingBox(minX, minY,
+                    max(b.getMaxX(), nb.getMaxX()) - minX, max(b.getMaxY(), nb.getMaxY()) - minY);
+        }
+        return b;
     }
 
-    private Figure findFigureRecursiveInSet(Parent p, Point2D pp, Set<Figure> figures) {
-        ObservableList<Node> list = p.getChildrenUnmodifiable();
-        for (int i = list.size() - 1; i >= 0; i--) {// front to back
-            Node n = list.get(i);
-            if (!n.isVisible()) {
-                continue;
+    /**
+     * Returns the figures without children whose bounds in the spatial index
+     * intersect with the specified rectangle in world coordinates. The
+     * figures are ordered from front to back.
+     */
+    private List<Figure> findCandidates(double minX, double minY, double maxX, double maxY) {
+        validateSpatialIndex();
+        List<Figure> candidates = new ArrayList<>();
+        spatialIndex.search(minX, minY, maxX, maxY, candidates::add);
+        if (candidates.size() > 1) {
+            Map<Figure, int[]> zOrder = new IdentityHashMap<>();
+            for (Figure f : candidates) {
+                zOrder.put(f, getIndexPath(f));
             }
-            Point2D pl = n.parentToLocal(pp);
-            if (contains(n, pl, TOLERANCE)) {
-                Figure f = nodeToFigureMap.get(n);
-                if (f == null || !f.isSelectable()) {
-                    if (n instanceof Parent) {
-                        f = findFigureRecursiveInSet((Parent) n, pl, figures);
-                    }
+            candidates.sort((a, b) -> compareFrontToBack(zOrder.get(a), zOrder.get(b)));
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the indices of the figure and of its ancestors in their
+     * parents, starting at the child of the drawing.
+     */
+    private static int[] getIndexPath(Figure f) {
+        int depth = 0;
+        for (Figure g = f; g.getParent() != null; g = g.getParent()) {
+            depth++;
+        }
+        int[] path = new int[depth];
+        for (Figure g = f; g.getParent() != null; g = g.getParent()) {
+            path[--depth] = g.getParent().getChildren().indexOf(g);
+        }
+        return path;
+    }
+
+    private static int compareFrontToBack(int[] a, int[] b) {
+        for (int i = 0, n = min(a.length, b.length); i < n; i++) {
+            if (a[i] != b[i]) {
+                return a[i] > b[i] ? -1 : 1;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * Returns the figure and its ancestors, starting at the child of the
+     * drawing.
+     */
+    private static List<Figure> getPath(Figure f) {
+        ArrayList<Figure> path = new ArrayList<>();
+        for (Figure g = f; g.getParent() != null; g = g.getParent()) {
+            path.add(g);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Transforms a point from world coordinates into the local coordinates
+     * of a node.
+     */
+    private Point2D worldToNodeLocal(Node n, Point2D pw) {
+        return n.sceneToLocal(figureToNodeMap.get(getDrawing()).localToScene(pw));
+    }
+
+    private Bounds worldToNodeLocal(Node n, Bounds bw) {
+        return n.sceneToLocal(figureToNodeMap.get(getDrawing()).localToScene(bw));
+    }
+
+    /**
+     * Returns true if the figure is visible. Uses the node of the figure if
+     * it has one.
+     */
+    private boolean isVisible(Figure f) {
+        Node n = figureToNodeMap.get(f);
+        return n == null ? f.isVisible() : n.isVisible();
+    }
+
+    /**
+     * Returns true if the figure contains the specified point within a
+     * tolerance. Uses the shape of the node if the figure has a node,
+     * otherwise the bounds of the figure.
+     *
+     * @param f The figure
+     * @param pw The point in world coordinates
+     * @param tolerance The tolerance
+     * @return true if the figure contains the point
+     */
+    private boolean contains(Figure f, Point2D pw, double tolerance) {
+        Node n = figureToNodeMap.get(f);
+        if (n == null) {
+            return Geom.contains(computeBoundsInWorld(f), pw, tolerance);
+        }
+        return contains(n, worldToNodeLocal(n, pw), tolerance);
+    }
+
+    @Override
+    public Figure findFigure(double vx, double vy) {
+        Point2D pw = viewToWorld(vx, vy);
+        List<Figure> candidates = findCandidates(pw.getX() - TOLERANCE, pw.getY() - TOLERANCE,
+                pw.getX() + TOLERANCE, pw.getY() + TOLERANCE);
+        Figure f = findFigure(pw, 0.0, candidates, null);
+        if (f == null) {
+            f = findFigure(pw, TOLERANCE, candidates, null);
+        }
+        return f;
+    }
+
+    @Override
+    public Figure findFigure(double vx, double vy, Set<Figure> figures) {
+        Point2D pw = viewToWorld(vx, vy);
+        List<Figure> candidates = findCandidates(pw.getX() - TOLERANCE, pw.getY() - TOLERANCE,
+                pw.getX() + TOLERANCE, pw.getY() + TOLERANCE);
+        return findFigure(pw, TOLERANCE, candidates, figures);
+    }
+
+    /**
+     * Returns the front most selectable figure which contains the point.
+     * <p>
+     * The selectable figure of a candidate is its topmost selectable
+     * ancestor, or the candidate itself. The selectable figure and the
+     * figures above it must be visible and must contain the point.
+     *
+     * @param pw the point in world coordinates
+     * @param tolerance the tolerance
+     * @param candidates the figures without children which are near the point,
+     * ordered from front to back
+     * @param figures the figures which may be returned, null if any figure
+     * may be returned
+     * @return the figure or null
+     */
+    private Figure findFigure(Point2D pw, double tolerance, List<Figure> candidates, Set<Figure> figures) {
+        Map<Figure, Boolean> hits = new IdentityHashMap<>();
+        for (Figure candidate : candidates) {
+            for (Figure f : getPath(candidate)) {
+                Boolean hit = hits.get(f);
+                if (hit == null) {
+                    hit = isVisible(f) && contains(f, pw, tolerance);
+                    hits.put(f, hit);
                 }
-                if (f != null && f.isSelectable() && figures.contains(f)) {
-                    return f;
+                if (!hit) {
+                    break;
+                }
+                if (f.isSelectable()) {
+                    if (figures == null || figures.contains(f)) {
+                        return f;
+                    }
+                    break;
                 }
             }
         }
@@ -928,39 +1448,10 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
     @Override
     public List<Figure> findFigures(double vx, double vy, boolean decompose) {
         Transform vt = getViewToWorld();
-        Point2D pp = vt.transform(vx, vy);
-        List<Figure> list = new LinkedList<Figure>();
-        findFiguresRecursive((Parent) figureToNodeMap.get(getDrawing()), pp, list, decompose);
-        return list;
-    }
-
-    private void findFiguresRecursive(Parent p, Point2D pp, List<Figure> found, boolean decompose) {
-        ObservableList<Node> list = p.getChildrenUnmodifiable();
-        for (int i = list.size() - 1; i >= 0; i--) {// front to back
-            Node n = list.get(i);
-            Figure f1 = nodeToFigureMap.get(n);
-            if (f1 != null && f1.isSelectable()) {
-                Point2D pl = n.parentToLocal(pp);
-                if (contains(n, pl, TOLERANCE)) { // only drill down if the parent contains the point
-                    Figure f = nodeToFigureMap.get(n);
-                    if (f != null && f.isSelectable()) {
-                        found.add(f);
-                    }
-                    if (f == null || !f.isSelectable() || decompose && f.isDecomposable()) {
-                        if (n instanceof Parent) {
-                            findFiguresRecursive((Parent) n, pl, found, decompose);
-                        }
-                    }
-                }
-            } else {
-                Point2D pl = n.parentToLocal(pp);
-                if (contains(n, pl, TOLERANCE)) { // only drill down if the parent intersects the point
-                    if (n instanceof Parent) {
-                        findFiguresRecursive((Parent) n, pl, found, decompose);
-                    }
-                }
-            }
-        }
+        Point2D pw = vt.transform(vx, vy);
+        List<Figure> candidates = findCandidates(pw.getX() - TOLERANCE, pw.getY() - TOLERANCE,
+                pw.getX() + TOLERANCE, pw.getY() + TOLERANCE);
+        return collectFigures(candidates, f -> contains(f, pw, TOLERANCE), decompose);
     }
 
     @Override
@@ -969,41 +1460,9 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         Point2D pxy = vt.transform(vx, vy);
         Point2D pwh = vt.deltaTransform(vwidth, vheight);
         BoundingBox r = new BoundingBox(pxy.getX(), pxy.getY(), pwh.getX(), pwh.getY());
-        List<Figure> list = new LinkedList<Figure>();
-        findFiguresInsideRecursive((Parent) figureToNodeMap.get(getDrawing()), r, list, decompose);
-        return list;
-    }
-
-    private void findFiguresInsideRecursive(Parent p, Bounds pp, List<Figure> found, boolean decompose) {
-        ObservableList<Node> list = p.getChildrenUnmodifiable();
-        for (int i = list.size() - 1; i >= 0; i--) {// front to back
-            Node n = list.get(i);
-            if (!n.isVisible()) {
-                continue;
-            }
-            Figure f1 = nodeToFigureMap.get(n);
-            if (f1 != null && f1.isSelectable() && f1.isVisible()) {
-                Bounds pl = n.parentToLocal(pp);
-                if (pl.contains(n.getBoundsInLocal())) { // only drill down if the parent bounds contains the point
-                    Figure f = nodeToFigureMap.get(n);
-                    if (f != null && f.isSelectable()) {
-                        found.add(f);
-                    }
-                    if (f == null || !f.isSelectable() || decompose && f.isDecomposable()) {
-                        if (n instanceof Parent) {
-                            findFiguresInsideRecursive((Parent) n, pl, found, decompose);
-                        }
-                    }
-                }
-            } else {
-                Bounds pl = n.parentToLocal(pp);
-                if (n.intersects(pl)) { // only drill down if the parent intersects the point
-                    if (n instanceof Parent) {
-                        findFiguresInsideRecursive((Parent) n, pl, found, decompose);
-                    }
-                }
-            }
-        }
+        List<Figure> candidates = findCandidates(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+        return collectFigures(candidates, f -> isVisible(f)
+                && (!f.isSelectable() || r.contains(computeBoundsInWorld(f))), decompose);
     }
 
     @Override
@@ -1012,28 +1471,44 @@ public class SimpleDrawingView extends SimplePropertyBean implements DrawingView
         Point2D pxy = vt.transform(vx, vy);
         Point2D pwh = vt.deltaTransform(vwidth, vheight);
         BoundingBox r = new BoundingBox(pxy.getX(), pxy.getY(), pwh.getX(), pwh.getY());
-        List<Figure> list = new LinkedList<Figure>();
-        findFiguresIntersectingRecursive((Parent) figureToNodeMap.get(getDrawing()), r, list, decompose);
-        return list;
-    }
-
-    private void findFiguresIntersectingRecursive(Parent p, Bounds pp, List<Figure> found, boolean decompose) {
-        ObservableList<Node> list = p.getChildrenUnmodifiable();
-        for (int i = list.size() - 1; i >= 0; i--) {// front to back
-            Node n = list.get(i);
-            Bounds pl = n.parentToLocal(pp);
-            if (n.intersects(pl)) { // only drill down if the parent intersects the point
-                Figure f = nodeToFigureMap.get(n);
-                if (f != null && f.isSelectable()) {
-                    found.add(f);
-                }
-                if (f == null || !f.isSelectable() || decompose && f.isDecomposable()) {
-                    if (n instanceof Parent) {
-                        findFiguresIntersectingRecursive((Parent) n, pl, found, decompose);
+        List<Figure> candidates = findCandidates(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+        return collectFigures(candidates, f -> {
+            // Figures without a node are tested by their bounds only
+            Node n = figureToNodeMap.get(f);
+            return n == null || n.intersects(worldToNodeLocal(n, r));
+        }, decompose);
+    }
+
+    /**
+     * Collects the selectable figures above the candidates, from front to
+     * back. A figure is collected if it and the figures above it pass the
+     * test. The descendants of a selectable figure are only collected if
+     * {@code decompose} is true and the figure is decomposable.
+     *
+     * @param candidates the figures without children, ordered from front to back
+     * @param test the test
+     * @param decompose whether selectable figures are decomposed
+     * @return the figures
+     */
+    private List<Figure> collectFigures(List<Figure> candidates, Predicate<Figure> test, boolean decompose) {
+        List<Figure> found = new ArrayList<>();
+        Map<Figure, Boolean> hits = new IdentityHashMap<>();
+        for (Figure candidate : candidates) {
+            for (Figure f : getPath(candidate)) {
+                Boolean hit = hits.get(f);
+                if (hit == null) {
+                    hit = test.test(f);
+                    hits.put(f, hit);
+                    if (hit && f.isSelectable()) {
+                        found.add(f);
                     }
                 }
+                if (!hit || f.isSelectable() && !(decompose && f.isDecomposable())) {
+                    break;
+                }
             }
         }
+        return found;
     }
 
     @Override
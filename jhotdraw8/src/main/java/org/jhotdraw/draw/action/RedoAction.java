@@ -0,0 +1,47 @@
+/* @(#)RedoAction.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.action;
+
+import javafx.event.ActionEvent;
+import org.jhotdraw.app.Application;
+import org.jhotdraw.draw.DrawingEditor;
+import org.jhotdraw.draw.DrawingView;
+import org.jhotdraw.draw.model.DrawingModelUndoManager;
+import org.jhotdraw.util.Resources;
+
+/**
+ * Redoes the most recently undone edit of the drawing model of the active
+ * drawing view.
+ *
+ * @author Werner Randelshofer
+ */
+public class RedoAction extends AbstractSelectedAction {
+
+    public static final String ID = "edit.redo";
+
+    /**
+     * Creates a new instance.
+     * @param app the application
+     * @param editor the drawing editor
+     */
+    public RedoAction(Application app, DrawingEditor editor) {
+        super(app, editor);
+        Resources labels
+                = Resources.getResources("org.jhotdraw.app.Labels");
+        labels.configureAction(this, ID);
+    }
+
+    @Override
+    protected void onActionPerformed(ActionEvent e) {
+        final DrawingView view = getView();
+        if (view == null) {
+            return;
+        }
+        DrawingModelUndoManager undoManager = view.getModel().getUndoManager();
+        if (undoManager.canRedo()) {
+            undoManager.redo();
+        }
+    }
+}
@@ -20,6 +20,11 @@ public class CenterConnector extends AbstractConnector {
         super(target);
     }
 
+    @Override
+    public Connector withTarget(Figure target) {
+        return new CenterConnector(target);
+    }
+
     @Override
     public Point2D getPositionInLocal(Figure connection) {
         // FIXME implement me properly
@@ -25,6 +25,11 @@ public class ChopEllipseConnector extends CenterConnector {
         super(target);
     }
 
+    @Override
+    public Connector withTarget(Figure target) {
+        return new ChopEllipseConnector(target);
+    }
+
     @Override
     public Point2D chopStart(Figure connection, double startX, double startY, double endX, double endY) {
         // FIXME implement me properly
@@ -27,6 +27,14 @@ public interface Connector {
      */
     Figure getTarget();
 
+    /**
+     * Returns a connector of the same kind for the specified target figure.
+     *
+     * @param target the target figure
+     * @return a new connector
+     */
+    Connector withTarget(Figure target);
+
     /**
      * Returns a point on the target figure for the specified connection figure
      * in local coordinates.
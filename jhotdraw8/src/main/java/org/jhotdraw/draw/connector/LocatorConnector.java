@@ -42,6 +42,11 @@ public class LocatorConnector extends AbstractConnector {
         this.locator = locator;
     }
 
+    @Override
+    public Connector withTarget(Figure target) {
+        return new LocatorConnector(target, locator);
+    }
+
     @Override
     public Point2D getPositionInLocal(Figure connection) {
         final Bounds b = target.getBoundsInLocal();
@@ -0,0 +1,194 @@
+/* @(#)ConvertedValueCache.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.css;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jhotdraw.text.Converter;
+
+/**
+ * Caches the values of CSS terms which have been converted by a
+ * {@link Converter}.
+ * <p>
+ * Values are keyed by the converter and the text of the terms, so that the
+ * cache can be shared by all stylesheets and documents which use the same
+ * converters. Terms which can not be converted are cached as well, so that
+ * the conversion is only attempted, and the failure is only logged, once.
+ * <p>
+ * The cache holds a limited number of values. The least recently used values
+ * are evicted. The hit and miss counts can be used to choose the size of the
+ * cache.
+ * <p>
+ * The cache is thread safe. The converted values are shared by all figures
+ * which use them, they must therefore be immutable.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ConvertedValueCache {
+
+    /**
+     * This object is returned by {@link #get} if the terms can not be
+     * converted.
+     */
+    public final static Object NO_VALUE = new Object();
+
+    private final static ConvertedValueCache SHARED_INSTANCE = new ConvertedValueCache(4096);
+
+    private static class CacheKey {
+
+        final Converter<?> converter;
+        final String text;
+
+        CacheKey(Converter<?> converter, String text) {
+            this.converter = converter;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) obj;
+            return converter.equals(that.converter) && text.equals(that.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return converter.hashCode() * 31 + text.hashCode();
+        }
+    }
+
+    private final int maxSize;
+    private final LinkedHashMap<CacheKey, Object> values;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize the maximal number of values
+     */
+    public ConvertedValueCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.values = new LinkedHashMap<CacheKey, Object>(16, 0.75f, true) {
+            private final static long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Object> eldest) {
+                if (size() > ConvertedValueCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache which is shared by all figure style managers.
+     *
+     * @return the shared cache
+     */
+    public static ConvertedValueCache getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Returns the converted value of the terms. Converts the terms if they
+     * are not in the cache.
+     *
+     * @param converter the converter
+     * @param text the text of the terms
+     * @return the converted value, which may be null, or {@link #NO_VALUE}
+     * if the terms can not be converted
+     */
+    public Object get(Converter<?> converter, String text) {
+        CacheKey key = new CacheKey(converter, text);
+        synchronized (this) {
+            Object value = values.get(key);
+            if (value != null || values.containsKey(key)) {
+                hitCount++;
+                return value;
+            }
+            missCount++;
+        }
+        Object value;
+        try {
+            value = converter.fromString(text);
+        } catch (ParseException | IOException ex) {
+            System.err.println("Warning ConvertedValueCache can not convert CSS terms with " + converter + ": \"" + text + "\" " + ex.getMessage());
+            value = NO_VALUE;
+        }
+        synchronized (this) {
+            values.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes all values from the cache and resets the counters.
+     */
+    public synchronized void clear() {
+        values.clear();
+        hitCount = missCount = evictionCount = 0;
+    }
+
+    /**
+     * Returns the maximal number of values.
+     *
+     * @return the maximal size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of values in the cache.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the number of lookups which found a value in the cache.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which had to convert the terms.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of values which have been evicted from the cache.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ConvertedValueCache{size=" + values.size() + ", maxSize=" + maxSize
+                + ", hits=" + hitCount + ", misses=" + missCount
+                + ", evictions=" + evictionCount + '}';
+    }
+}
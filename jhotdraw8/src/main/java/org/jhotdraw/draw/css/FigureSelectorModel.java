@@ -6,14 +6,11 @@ package org.jhotdraw.draw.css;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import javafx.beans.property.MapProperty;
 import javafx.beans.property.SimpleMapProperty;
 import javafx.collections.FXCollections;
-import org.jhotdraw.collection.CompositeMapAccessor;
-import org.jhotdraw.collection.MapAccessor;
 import org.jhotdraw.css.SelectorModel;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.text.Converter;
@@ -27,12 +24,6 @@ import org.jhotdraw.styleable.StyleableMapAccessor;
  */
 public class FigureSelectorModel implements SelectorModel<Figure> {
 
-    private HashSet<Class<?>> mappedFigureClasses = new HashSet<>();
-    /** Maps an attribute name to a key. */
-    private HashMap<String, StyleableMapAccessor<?>> nameToKeyMap = new HashMap<>();
-    /** Maps a key to an attribute name. */
-    private HashMap<StyleableMapAccessor<?>, String> keyToNameMap = new HashMap<>();
-
     private final MapProperty<String, Set<Figure>> additionalPseudoClassStates = new SimpleMapProperty<>(FXCollections.observableHashMap());
 
     public MapProperty<String, Set<Figure>> additionalPseudoClassStatesProperty() {
@@ -71,26 +62,12 @@ public class FigureSelectorModel implements SelectorModel<Figure> {
     }
 
     private StyleableMapAccessor<?> findKey(Figure element, String attributeName) {
-        if (!mappedFigureClasses.contains(element.getClass())) {
-
-            for (MapAccessor<?> k : element.getSupportedKeys()) {
-                if (k instanceof StyleableMapAccessor) {
-                    StyleableMapAccessor<?> sk = (StyleableMapAccessor<?>) k;
-                    nameToKeyMap.put(sk.getCssName(), sk);
-                }
-            }
-        }
-        return nameToKeyMap.get(attributeName);
+        return element.getKeyRegistry().getKeyByCssName(attributeName);
     }
 
     @Override
     public boolean hasAttribute(Figure element, String attributeName) {
-        for (MapAccessor<?> key : element.getSupportedKeys()) {
-            if (key.getName().equals(attributeName) && (key instanceof StyleableMapAccessor)) {
-                return true;
-            }
-        }
-        return false;
+        return element.getKeyRegistry().getKeyByName(attributeName) instanceof StyleableMapAccessor;
     }
 
     @Override
@@ -209,36 +186,11 @@ public class FigureSelectorModel implements SelectorModel<Figure> {
 
     @Override
     public Set<String> getAttributeNames(Figure element) {
-        // FIXME use keyToName map
-        Set<String> attr = new HashSet<>();
-        for (MapAccessor<?> key : element.getSupportedKeys()) {
-            if (key instanceof StyleableMapAccessor) {
-                StyleableMapAccessor<?> sk = (StyleableMapAccessor<?>) key;
-                attr.add(sk.getCssName());
-            }
-        }
-        return attr;
+        return element.getKeyRegistry().getCssNames();
     }
     @Override
     public Set<String> getNonDecomposedAttributeNames(Figure element) {
-        // FIXME use keyToName map
-        Set<String> attr = new HashSet<>();
-        Set<StyleableMapAccessor<?>> attrk = new HashSet<>();
-        for (MapAccessor<?> key : element.getSupportedKeys()) {
-            if (key instanceof StyleableMapAccessor) {
-                StyleableMapAccessor<?> sk = (StyleableMapAccessor<?>) key;
-                attrk.add(sk);
-            }
-        }
-        for (MapAccessor<?> key : element.getSupportedKeys()) {
-            if (key instanceof CompositeMapAccessor) {
-                attrk.removeAll( ((CompositeMapAccessor) key).getSubAccessors());
-            }
-        }
-        for (StyleableMapAccessor<?> key : attrk) {
-            attr.add(key.getCssName());
-        }
-        return attr;
+        return element.getKeyRegistry().getNonDecomposedCssNames();
     }
 
     @Override
@@ -5,25 +5,33 @@
 package org.jhotdraw.draw.css;
 
 import java.io.IOException;
-import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import javafx.css.StyleOrigin;
-import org.jhotdraw.collection.MapAccessor;
 import org.jhotdraw.css.AbstractStyleManager;
 import org.jhotdraw.css.CssParser;
 import org.jhotdraw.css.SelectorModel;
+import org.jhotdraw.css.StyleRuleIndex;
 import org.jhotdraw.css.ast.Declaration;
 import org.jhotdraw.css.ast.StyleRule;
 import org.jhotdraw.css.ast.Stylesheet;
 import org.jhotdraw.draw.figure.Figure;
-import org.jhotdraw.text.Converter;
 import org.jhotdraw.styleable.StyleableMapAccessor;
 
 /**
  * FigureStyleManager.
+ * <p>
+ * The stylesheets of each origin are compiled into a {@link StyleRuleIndex},
+ * which is discarded when the stylesheets change.
+ * <p>
+ * The stylesheets can be applied to different figures concurrently, provided
+ * that the stylesheets are not changed while this happens.
  *
  * @author Werner Randelshofer
  */
@@ -31,13 +39,91 @@ public class FigureStyleManager extends AbstractStyleManager<Figure> {
 
     private final FigureSelectorModel selectorModel = new FigureSelectorModel();
 
-    private final CssParser parser = new CssParser();
+    /**
+     * The converted values of the declarations.
+     */
+    private ConvertedValueCache convertedValues = ConvertedValueCache.getSharedInstance();
+
+    /**
+     * The maximal number of parsed inline styles which are cached.
+     */
+    private final static int MAX_INLINE_DECLARATIONS = 1024;
+    /**
+     * Maps inline style strings to their parsed declarations. Figures with
+     * the same inline style share the declarations, so that the style is
+     * only parsed once. The least recently used styles are evicted.
+     */
+    private final Map<String, List<Declaration>> inlineDeclarations = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<Declaration>>(16, 0.75f, true) {
+        private final static long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Declaration>> eldest) {
+            return size() > MAX_INLINE_DECLARATIONS;
+        }
+    });
 
-    private final WeakHashMap<Declaration, Object> convertedValues = new WeakHashMap<>();
+    /**
+     * The compiled user agent, author and inline stylesheets. The indices are
+     * created lazily.
+     */
+    private StyleRuleIndex<Figure> userAgentIndex;
+    private StyleRuleIndex<Figure> authorIndex;
+    private StyleRuleIndex<Figure> inlineIndex;
 
     public FigureStyleManager() {
     }
 
+    @Override
+    protected synchronized void invalidate() {
+        super.invalidate();
+        userAgentIndex = null;
+        authorIndex = null;
+        inlineIndex = null;
+    }
+
+    private synchronized StyleRuleIndex<Figure> getIndex(StyleOrigin origin) {
+        switch (origin) {
+            case USER_AGENT:
+                if (userAgentIndex == null) {
+                    userAgentIndex = createIndex(getUserAgentStylesheets());
+                }
+                return userAgentIndex;
+            case AUTHOR:
+                if (authorIndex == null) {
+                    authorIndex = createIndex(getAuthorStylesheets());
+                }
+                return authorIndex;
+            case INLINE:
+                if (inlineIndex == null) {
+                    inlineIndex = createIndex(getInlineStylesheets());
+                }
+                return inlineIndex;
+            default:
+                throw new IllegalArgumentException("illegal origin:" + origin);
+        }
+    }
+
+    private StyleRuleIndex<Figure> createIndex(Collection<MyEntry> entries) {
+        List<Stylesheet> stylesheets = new ArrayList<>();
+        for (MyEntry e : entries) {
+            stylesheets.add(e.getStylesheet());
+        }
+        return new StyleRuleIndex<>(stylesheets);
+    }
+
+    /**
+     * Returns a table which maps CSS property names to the keys supported by
+     * the figure. The table is computed once per figure class by the key
+     * registry of the class.
+     *
+     * @param elem the figure
+     * @return the table
+     */
+    private Map<String, StyleableMapAccessor<?>> getMetaMap(Figure elem) {
+        return elem.getKeyRegistry().getCssNameToKeyMap();
+    }
+
     /**
      * Applies the stylesheets to the specified element.
      *
@@ -55,106 +141,63 @@ public class FigureStyleManager extends AbstractStyleManager<Figure> {
      * @param elem The element
      */
     public void applyStylesTo(StyleOrigin origin, Figure elem) {
-        Set<MapAccessor<?>> metaList = elem.getSupportedKeys();
-        HashMap<String, MapAccessor<?>> metaMap = new HashMap<>();
-        for (MapAccessor<?> k : metaList) {
-            if (k instanceof StyleableMapAccessor) {
-                StyleableMapAccessor<?> sk = (StyleableMapAccessor<?>) k;
-                metaMap.put(sk.getCssName(), k);
-            }
-        }
+        Map<String, StyleableMapAccessor<?>> metaMap = getMetaMap(elem);
 
         // user agent stylesheets can not override element attributes
         if (origin == null || origin == StyleOrigin.USER_AGENT) {
-            
             elem.removeAll(StyleOrigin.USER_AGENT);
-            for (MyEntry e : getUserAgentStylesheets()) {
-                Stylesheet s = e.getStylesheet();
-                if (s != null) {
-                    applyStylesTo(StyleOrigin.USER_AGENT, s, metaMap, elem);
-                }
-            }
+            applyRulesTo(StyleOrigin.USER_AGENT, getIndex(StyleOrigin.USER_AGENT), metaMap, elem);
         }
 
         // author stylesheet override user agent stylesheets and element attributes
         if (origin == null || origin == StyleOrigin.AUTHOR) {
             elem.removeAll(StyleOrigin.AUTHOR);
-            for (MyEntry e : getAuthorStylesheets()) {
-                Stylesheet s = e.getStylesheet();
-                if (s != null) {
-                    applyStylesTo(StyleOrigin.AUTHOR, s, metaMap, elem);
-                }
-            }
+            applyRulesTo(StyleOrigin.AUTHOR, getIndex(StyleOrigin.AUTHOR), metaMap, elem);
         }
 
         // inline stylesheets override user agent stylesheets, element attributes and author stylesheets
         if (origin == null || origin == StyleOrigin.INLINE) {
             elem.removeAll(StyleOrigin.INLINE);
-            for (MyEntry e : getInlineStylesheets()) {
-                Stylesheet s = e.getStylesheet();
-                if (s != null) {
-                    applyStylesTo(StyleOrigin.INLINE, s, metaMap, elem);
-                }
-            }
+            applyRulesTo(StyleOrigin.INLINE, getIndex(StyleOrigin.INLINE), metaMap, elem);
 
             // inline styles can override all other values
             applyInlineStylesTo(metaMap, elem);
         }
+    }
 
-        //
-        metaMap.clear();
+    private void applyRulesTo(StyleOrigin origin, StyleRuleIndex<Figure> index, Map<String, StyleableMapAccessor<?>> metaMap, Figure elem) {
+        for (StyleRule r : index.getMatchingRules(selectorModel, elem)) {
+            applyDeclarationsTo(origin, r.getDeclarations(), metaMap, elem);
+        }
     }
 
-    private void applyStylesTo(StyleOrigin origin, Stylesheet s, HashMap<String, MapAccessor<?>> metaMap, Figure elem) {
+    private void applyStylesTo(StyleOrigin origin, Stylesheet s, Map<String, StyleableMapAccessor<?>> metaMap, Figure elem) {
         for (StyleRule r : s.getRulesets()) {
             if (r.getSelectorGroup().matches(selectorModel, elem)) {
-                for (Declaration d : r.getDeclarations()) {
-                    @SuppressWarnings("unchecked")
-                    StyleableMapAccessor<Object> k = (StyleableMapAccessor<Object>) metaMap.get(d.getProperty());
-                    if (k != null) {
-                        if (!convertedValues.containsKey(d)) {
-                            @SuppressWarnings("unchecked")
-                            Converter<Object> converter = k.getConverter();
-                            try {
-                                convertedValues.put(d, converter.fromString(d.getTermsAsString()));
-                            } catch (ParseException | IOException ex) {
-                                System.err.println("Warning FigureStyleManager can not convert CSS term to string. " + d.getProperty() + ":" + d.getTermsAsString());
-                                ex.printStackTrace();
-                            }
-                        }
-                        if (convertedValues.containsKey(d)) {
-                            Object convertedValue = convertedValues.get(d);
-                            elem.setStyled(origin, k, convertedValue);
-                        }
-                    }
+                applyDeclarationsTo(origin, r.getDeclarations(), metaMap, elem);
+            }
+        }
+    }
+
+    private void applyDeclarationsTo(StyleOrigin origin, List<Declaration> declarations, Map<String, StyleableMapAccessor<?>> metaMap, Figure elem) {
+        for (Declaration d : declarations) {
+            @SuppressWarnings("unchecked")
+            StyleableMapAccessor<Object> k = (StyleableMapAccessor<Object>) metaMap.get(d.getProperty());
+            if (k != null) {
+                Object convertedValue = convertedValues.get(k.getConverter(), d.getTermsAsString());
+                if (convertedValue != ConvertedValueCache.NO_VALUE) {
+                    elem.setStyled(origin, k, convertedValue);
                 }
             }
         }
     }
 
-    private void applyInlineStylesTo(HashMap<String, MapAccessor<?>> metaMap, Figure elem) {
+    private void applyInlineStylesTo(Map<String, StyleableMapAccessor<?>> metaMap, Figure elem) {
         // inline styles can override all other values
         String style = elem.getStyle();
         if (style != null) {
             try {
-                for (Declaration d : parser.parseDeclarationList(style)) {
-                    @SuppressWarnings("unchecked")
-                    StyleableMapAccessor<Object> k = (StyleableMapAccessor<Object>) metaMap.get(d.getProperty());
-                    if (k != null) {
-                        if (!convertedValues.containsKey(d)) {
-                            @SuppressWarnings("unchecked")
-                            Converter<Object> converter = k.getConverter();
-                            try {
-                                convertedValues.put(d, converter.fromString(d.getTermsAsString()));
-                            } catch (ParseException | IOException ex) {
-                                System.err.println("Warning FigureStyleManager can not convert CSS term to string. " + d.getProperty() + ":" + d.getTermsAsString());
-                                //ex.printStackTrace();
-                            }
-                        }
-                        Object convertedValue = convertedValues.get(d);
-                        elem.setStyled(StyleOrigin.INLINE, k, convertedValue);
-                    }
-                }
+                applyDeclarationsTo(StyleOrigin.INLINE, getInlineDeclarations(style), metaMap, elem);
             } catch (IOException ex) {
                 System.err.println("DOMStyleManager: Invalid style attribute on element. style=" + style);
                 ex.printStackTrace();
@@ -162,6 +205,43 @@ public class FigureStyleManager extends AbstractStyleManager<Figure> {
         }
     }
 
+    /**
+     * Returns the parsed declarations of an inline style.
+     *
+     * @param style the inline style
+     * @return an unmodifiable list of declarations
+     * @throws IOException if the style can not be read
+     */
+    private List<Declaration> getInlineDeclarations(String style) throws IOException {
+        List<Declaration> declarations = inlineDeclarations.get(style);
+        if (declarations == null) {
+            // the parser is not thread safe
+            CssParser parser = new CssParser();
+            declarations = Collections.unmodifiableList(parser.parseDeclarationList(style));
+            inlineDeclarations.put(style, declarations);
+        }
+        return declarations;
+    }
+
+    /**
+     * Returns the cache for converted values. By default, all figure style
+     * managers share the same cache.
+     *
+     * @return the cache
+     */
+    public ConvertedValueCache getConvertedValueCache() {
+        return convertedValues;
+    }
+
+    /**
+     * Sets the cache for converted values.
+     *
+     * @param newValue the cache
+     */
+    public void setConvertedValueCache(ConvertedValueCache newValue) {
+        convertedValues = newValue;
+    }
+
     @Override
     public SelectorModel<Figure> getSelectorModel() {
         return selectorModel;
@@ -171,19 +251,11 @@ public class FigureStyleManager extends AbstractStyleManager<Figure> {
     public void applyStylesheetTo(StyleOrigin styleOrigin, Stylesheet s, Figure elem, HashMap<String, Set<Figure>> pseudoStyles) {
         // FIXME this is very inefficient for a single element
         selectorModel.additionalPseudoClassStatesProperty().putAll(pseudoStyles);
-        Set<MapAccessor<?>> metaList = elem.getSupportedKeys();
-        HashMap<String, MapAccessor<?>> metaMap = new HashMap<>();
-        for (MapAccessor<?> k : metaList) {
-            if (k instanceof StyleableMapAccessor) {
-                StyleableMapAccessor<?> sk = (StyleableMapAccessor<?>) k;
-                metaMap.put(sk.getCssName(), k);
-            }
-        }
+        Map<String, StyleableMapAccessor<?>> metaMap = getMetaMap(elem);
 
         applyStylesTo(styleOrigin, s, metaMap, elem);
 
         // FIXME this is very inefficient for a single element
-        metaMap.clear();
         selectorModel.additionalPseudoClassStatesProperty().clear();
     }
 
@@ -5,6 +5,8 @@
  */
 package org.jhotdraw.draw.figure;
 
+import java.util.Collection;
+import javafx.beans.Observable;
 import javafx.beans.property.ReadOnlyListProperty;
 import javafx.beans.property.ReadOnlyListWrapper;
 import javafx.collections.ObservableList;
@@ -28,10 +30,14 @@ public abstract class AbstractCompositeFigure extends AbstractFigure {
 
     private class ChildList extends IndexedSet<Figure> {
 
+        ChildList() {
+            addListener((Observable o) -> SnapshotCache.invalidate(AbstractCompositeFigure.this));
+        }
+
         @Override
         public int indexOf(Object o) {
             if ((o instanceof Figure) && ((Figure) o).getParent() == AbstractCompositeFigure.this) {
-                return super.indexOf(o);// linear search!
+                return super.indexOf(o);
             }
             return -1;
         }
@@ -55,13 +61,24 @@ public abstract class AbstractCompositeFigure extends AbstractFigure {
             e.parentProperty().set(null);
         }
 
+        /**
+         * Replaces the children without removing them from their previous
+         * parents.
+         */
+        void setAllWithoutReparenting(Collection<Figure> newChildren) {
+            for (Figure child : newChildren) {
+                child.parentProperty().set(AbstractCompositeFigure.this);
+            }
+            setAllSilently(newChildren);
+        }
+
         @Override
         protected boolean doAdd(int index, Figure element, boolean checkForDuplicates) {
             Figure oldParent = element.getParent();
             if (oldParent != AbstractCompositeFigure.this) {
                 return super.doAdd(index, element, false);
             } else {
-                return super.doAdd(index, element, true);// linear search!
+                return super.doAdd(index, element, true);
             }
         }
     }
@@ -114,6 +131,20 @@ public abstract class AbstractCompositeFigure extends AbstractFigure {
         return children.get();
     }
 
+    /**
+     * Replaces the children of this figure without removing them from their
+     * previous parents. The previous parents are left in an inconsistent
+     * state.
+     * <p>
+     * This method is used by {@link SnapshotCache} to move the copies of
+     * unchanged figures from a released snapshot into a new snapshot.
+     *
+     * @param newChildren the new children
+     */
+    void setChildrenWithoutReparenting(Collection<Figure> newChildren) {
+        ((ChildList) children.get()).setAllWithoutReparenting(newChildren);
+    }
+
     @Override
     public final boolean isAllowsChildren() {
         return true;
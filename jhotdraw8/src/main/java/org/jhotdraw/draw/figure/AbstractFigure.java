@@ -9,17 +9,21 @@ import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
 import javafx.css.CssMetaData;
+import javafx.css.StyleOrigin;
 import javafx.css.Styleable;
 import org.jhotdraw.collection.Key;
+import org.jhotdraw.collection.KeyOrdinals;
 import org.jhotdraw.collection.MapAccessor;
 import org.jhotdraw.css.StyleManager;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.styleable.SimpleStyleablePropertyBean;
+import org.jhotdraw.styleable.StyleableMap;
 import org.jhotdraw.styleable.StyleableMapAccessor;
 
 /**
@@ -41,6 +45,8 @@ public abstract class AbstractFigure extends SimpleStyleablePropertyBean impleme
 
     };
     private ObservableSet<Figure> connectedFigures;
+    private final TransformCache transformCache = new TransformCache();
+    private final SnapshotCache snapshotCache = new SnapshotCache();
 
     @Override
     public final ObservableSet<Figure> getDependentFigures() {
@@ -50,6 +56,59 @@ public abstract class AbstractFigure extends SimpleStyleablePropertyBean impleme
         return connectedFigures;
     }
 
+    /**
+     * Returns the transform cache of this figure. Subclasses which implement
+     * {@link TransformCacheableFigure} use this cache.
+     *
+     * @return the transform cache
+     */
+    public TransformCache getTransformCache() {
+        return transformCache;
+    }
+
+    /**
+     * Returns the snapshot cache of this figure.
+     *
+     * @return the snapshot cache
+     */
+    SnapshotCache getSnapshotCache() {
+        return snapshotCache;
+    }
+
+    /**
+     * Replaces the property values of all style origins by the values of the
+     * specified figure.
+     *
+     * @param that the figure from which the values are copied
+     * @param copier copies a value, returns null if the value can not be
+     * copied
+     */
+    void copyPropertiesFrom(AbstractFigure that, Function<Object, Object> copier) {
+        StyleableMap<Key<?>, Object> from = that.getStyleableMap();
+        StyleableMap<Key<?>, Object> to = getStyleableMap();
+        for (StyleOrigin origin : StyleOrigin.values()) {
+            to.removeAll(origin);
+            for (Map.Entry<Key<?>, Object> e : from.getMap(origin).entrySet()) {
+                Object value = e.getValue();
+                Object copy = copier.apply(value);
+                if (value == null || copy != null) {
+                    to.put(origin, e.getKey(), copy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the key registry of the class of the figure, so that the
+     * properties are stored in arrays which are indexed by the key ordinals.
+     *
+     * @return the key registry
+     */
+    @Override
+    protected KeyOrdinals<?> createKeyOrdinals() {
+        return FigureKeyRegistry.of(getClass());
+    }
+
     @Override
     public ObjectProperty<Figure> parentProperty() {
         return parent;
@@ -87,14 +146,21 @@ public abstract class AbstractFigure extends SimpleStyleablePropertyBean impleme
 
     @Override
     public void updateCss() {
+        updateCssShallow();
+        if (getDrawing() != null) {
+            for (Figure child : getChildren()) {
+                child.updateCss();// should not recurse, because style manager knows better if it is worthwile?
+            }
+        }
+    }
+
+    @Override
+    public void updateCssShallow() {
         getStyleableMap().clearNonUserValues();
         Drawing d = getDrawing();
         if (d != null) {
             StyleManager<Figure> styleManager = d.getStyleManager();
             styleManager.applyStylesTo(this);
-            for (Figure child : getChildren()) {
-                child.updateCss();// should not recurse, because style manager knows better if it is worthwile?
-            }
         }
         invalidateTransforms();
     }
@@ -183,6 +249,15 @@ public abstract class AbstractFigure extends SimpleStyleablePropertyBean impleme
         invalidateTransforms();
     }
 
+    /**
+     * Assigns a new version number to this figure in the snapshot cache.
+     *
+     * @param key the invalidated key
+     */
+    @Override
+    protected void invalidated(Key<?> key) {
+        SnapshotCache.invalidate(this);
+    }
 
     /*@Override
     protected void invalidated(Key<?> key) {
@@ -5,7 +5,6 @@
 package org.jhotdraw.draw.figure;
 
 import org.jhotdraw.draw.handle.HandleType;
-import java.lang.reflect.Field;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -21,7 +20,6 @@ import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.BoundsInLocalOutlineHandle;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import javafx.css.Styleable;
 import javafx.geometry.BoundingBox;
 import org.jhotdraw.collection.IterableTree;
@@ -203,6 +201,20 @@ public interface Figure extends StyleablePropertyBean, IterableTree<Figure> {
         updateLayout();
     }
 
+    /**
+     * This method is invoked on a figure by
+     * {@link org.jhotdraw.draw.model.DrawingModel} when it determines that
+     * only the figure itself needs to apply its stylesheet again, but none of
+     * its descendants.
+     * <p>
+     * The default implementation of this method calls
+     * {@link #updateCssShallow} and then {@code #updateLayout}.
+     */
+    default void stylesheetNotifyShallow() {
+        updateCssShallow();
+        updateLayout();
+    }
+
     /**
      * The parent figure.
      * <p>
@@ -550,6 +562,16 @@ public interface Figure extends StyleablePropertyBean, IterableTree<Figure> {
      */
     void updateCss();
 
+    /**
+     * Applies the drawing stylesheet on this figure, but not on its
+     * descendant figures.
+     * <p>
+     * This method is used by {@link org.jhotdraw.draw.model.DrawingModel}
+     * when it determines that a change does not affect the styles of the
+     * descendant figures.
+     */
+    void updateCssShallow();
+
     /**
      * Invoked by {@code DrawingModel} when the figure is added to a drawing.
      *
@@ -728,11 +750,22 @@ public interface Figure extends StyleablePropertyBean, IterableTree<Figure> {
      * Returns all supported keys of the figure.
      * <p>
      * The default implementation returns all declared and inherited keys.
+     * The keys are looked up in the {@link FigureKeyRegistry} of the class of
+     * the figure, and are thus only discovered once per class.
      *
-     * @return the keys
+     * @return an unmodifiable set of keys
      */
     default Set<MapAccessor<?>> getSupportedKeys() {
-        return Figure.getDeclaredAndInheritedKeys(this.getClass());
+        return getKeyRegistry().getKeys();
+    }
+
+    /**
+     * Returns the key registry of the class of the figure.
+     *
+     * @return the key registry
+     */
+    default FigureKeyRegistry getKeyRegistry() {
+        return FigureKeyRegistry.of(this.getClass());
     }
 
     /**
@@ -740,37 +773,10 @@ public interface Figure extends StyleablePropertyBean, IterableTree<Figure> {
      * classes.
      *
      * @param clazz A figure class.
-     * @return the keys
+     * @return a new modifiable set of keys
      */
     public static Set<MapAccessor<?>> getDeclaredAndInheritedKeys(Class<?> clazz) {
-        try {
-            HashSet<MapAccessor<?>> keys = new HashSet<>();
-            LinkedList<Class<?>> todo = new LinkedList<>();
-            HashSet<Class<?>> done = new HashSet<>();
-            todo.add(clazz);
-            while (!todo.isEmpty()) {
-                Class<?> c = todo.removeFirst();
-                for (Field f : c.getDeclaredFields()) {
-                    if (MapAccessor.class.isAssignableFrom(f.getType())) {
-                        MapAccessor<?> k = (MapAccessor<?>) f.get(null);
-                        keys.add(k);
-                    }
-                }
-                if (c.getSuperclass() != null) {
-                    todo.add(c.getSuperclass());
-                }
-                for (Class<?> i : c.getInterfaces()) {
-                    if (done.add(i)) {
-                        todo.add(i);
-                    }
-                }
-
-            }
-            return keys;
-        } catch (IllegalArgumentException | IllegalAccessException ex) {
-            throw new InternalError("class can not read its own keys");
-
-        }
+        return new HashSet<>(FigureKeyRegistry.of(clazz).getKeys());
     }
 
     /**
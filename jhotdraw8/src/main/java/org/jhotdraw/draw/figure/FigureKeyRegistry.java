@@ -0,0 +1,232 @@
+/* @(#)FigureKeyRegistry.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import org.jhotdraw.collection.CompositeMapAccessor;
+import org.jhotdraw.collection.KeyOrdinals;
+import org.jhotdraw.collection.MapAccessor;
+import org.jhotdraw.styleable.StyleableMapAccessor;
+
+/**
+ * Holds the keys which are declared in a figure class and inherited from its
+ * super classes and interfaces.
+ * <p>
+ * The keys are discovered with reflection once per class, and then shared by
+ * all figures of the class. In addition to the set of keys, the registry
+ * provides tables which map CSS property names and key names to keys, and it
+ * assigns a dense ordinal in the range {@code [0, size())} to each key.
+ * <p>
+ * A registry is immutable.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class FigureKeyRegistry implements KeyOrdinals<MapAccessor<?>> {
+
+    private static final ClassValue<FigureKeyRegistry> REGISTRIES = new ClassValue<FigureKeyRegistry>() {
+        @Override
+        protected FigureKeyRegistry computeValue(Class<?> type) {
+            return new FigureKeyRegistry(type);
+        }
+    };
+
+    /**
+     * The keys in the order of their ordinals.
+     */
+    private final MapAccessor<?>[] keys;
+    private final Set<MapAccessor<?>> keySet;
+    private final Map<MapAccessor<?>, Integer> ordinals = new IdentityHashMap<>();
+    /**
+     * Maps a CSS property name to a styleable key.
+     */
+    private final Map<String, StyleableMapAccessor<?>> cssNameToKey = new HashMap<>();
+    private final Map<String, StyleableMapAccessor<?>> unmodifiableCssNameToKey = Collections.unmodifiableMap(cssNameToKey);
+    /**
+     * Maps a key name to a key. The key name is used as attribute name in
+     * XML files.
+     */
+    private final Map<String, MapAccessor<?>> nameToKey = new HashMap<>();
+    /**
+     * The CSS property names of the styleable keys which are not part of
+     * a composite key.
+     */
+    private final Set<String> nonDecomposedCssNames;
+
+    private FigureKeyRegistry(Class<?> clazz) {
+        Set<MapAccessor<?>> discovered = discoverKeys(clazz);
+        keys = discovered.toArray(new MapAccessor<?>[discovered.size()]);
+        keySet = Collections.unmodifiableSet(discovered);
+
+        Set<StyleableMapAccessor<?>> nonDecomposed = new LinkedHashSet<>();
+        for (int i = 0; i < keys.length; i++) {
+            MapAccessor<?> k = keys[i];
+            ordinals.put(k, i);
+            nameToKey.put(k.getName(), k);
+            if (k instanceof StyleableMapAccessor) {
+                StyleableMapAccessor<?> sk = (StyleableMapAccessor<?>) k;
+                cssNameToKey.put(sk.getCssName(), sk);
+                nonDecomposed.add(sk);
+            }
+        }
+        for (MapAccessor<?> k : keys) {
+            if (k instanceof CompositeMapAccessor) {
+                nonDecomposed.removeAll(((CompositeMapAccessor<?>) k).getSubAccessors());
+            }
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (StyleableMapAccessor<?> sk : nonDecomposed) {
+            names.add(sk.getCssName());
+        }
+        nonDecomposedCssNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Returns the registry for the specified class. The registry is created
+     * on the first invocation of this method for the class.
+     *
+     * @param clazz a figure class
+     * @return the registry
+     */
+    public static FigureKeyRegistry of(Class<?> clazz) {
+        return REGISTRIES.get(clazz);
+    }
+
+    /**
+     * Returns all keys declared in the class and inherited from its super
+     * classes and interfaces.
+     *
+     * @return an unmodifiable set of keys
+     */
+    public Set<MapAccessor<?>> getKeys() {
+        return keySet;
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the number of keys
+     */
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the ordinal of the key.
+     *
+     * @param key a key
+     * @return the ordinal, or -1 if the key is not declared in the class
+     */
+    @Override
+    public int getOrdinal(Object key) {
+        Integer ordinal = ordinals.get(key);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the key with the specified ordinal.
+     *
+     * @param ordinal an ordinal in the range {@code [0, size())}
+     * @return the key
+     */
+    @Override
+    public MapAccessor<?> getKey(int ordinal) {
+        return keys[ordinal];
+    }
+
+    /**
+     * Returns the styleable key with the specified CSS property name.
+     *
+     * @param cssName the CSS property name
+     * @return the key, or null if the class has no such key
+     */
+    public StyleableMapAccessor<?> getKeyByCssName(String cssName) {
+        return cssNameToKey.get(cssName);
+    }
+
+    /**
+     * Returns the key with the specified name.
+     *
+     * @param name the name of the key
+     * @return the key, or null if the class has no such key
+     */
+    public MapAccessor<?> getKeyByName(String name) {
+        return nameToKey.get(name);
+    }
+
+    /**
+     * Returns a table which maps CSS property names to styleable keys.
+     *
+     * @return an unmodifiable map
+     */
+    public Map<String, StyleableMapAccessor<?>> getCssNameToKeyMap() {
+        return unmodifiableCssNameToKey;
+    }
+
+    /**
+     * Returns the CSS property names of all styleable keys.
+     *
+     * @return an unmodifiable set of names
+     */
+    public Set<String> getCssNames() {
+        return unmodifiableCssNameToKey.keySet();
+    }
+
+    /**
+     * Returns the CSS property names of the styleable keys which are not
+     * sub-accessors of a composite key.
+     *
+     * @return an unmodifiable set of names
+     */
+    public Set<String> getNonDecomposedCssNames() {
+        return nonDecomposedCssNames;
+    }
+
+    /**
+     * Returns all keys declared in the class and inherited from its super
+     * classes and interfaces.
+     */
+    private static Set<MapAccessor<?>> discoverKeys(Class<?> clazz) {
+        try {
+            LinkedHashSet<MapAccessor<?>> keys = new LinkedHashSet<>();
+            LinkedList<Class<?>> todo = new LinkedList<>();
+            HashSet<Class<?>> done = new HashSet<>();
+            todo.add(clazz);
+            while (!todo.isEmpty()) {
+                Class<?> c = todo.removeFirst();
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())
+                            && MapAccessor.class.isAssignableFrom(f.getType())) {
+                        MapAccessor<?> k = (MapAccessor<?>) f.get(null);
+                        if (k != null) {
+                            keys.add(k);
+                        }
+                    }
+                }
+                if (c.getSuperclass() != null) {
+                    todo.add(c.getSuperclass());
+                }
+                for (Class<?> i : c.getInterfaces()) {
+                    if (done.add(i)) {
+                        todo.add(i);
+                    }
+                }
+            }
+            return keys;
+        } catch (IllegalArgumentException | IllegalAccessException ex) {
+            throw new InternalError("class can not read its own keys");
+        }
+    }
+}
@@ -45,7 +45,10 @@ public class GroupFigure extends AbstractCompositeFigure implements Transformabl
         
         List<Node> nodes = new ArrayList<Node>(getChildren().size());
         for (Figure child : getChildren()) {
-            nodes.add(ctx.getNode(child));
+            Node childNode = ctx.getNode(child);
+            if (childNode != null) {
+                nodes.add(childNode);
+            }
         }
         ObservableList<Node> group = ((Group) n).getChildren();
         if (!group.equals(nodes)) {
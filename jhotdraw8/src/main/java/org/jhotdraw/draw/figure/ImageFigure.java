@@ -14,7 +14,10 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.transform.Transform;
 import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.DrawingView;
+import org.jhotdraw.draw.ImageCache;
 import org.jhotdraw.draw.RenderContext;
+import org.jhotdraw.draw.RenderingIntent;
 import org.jhotdraw.draw.connector.ChopRectangleConnector;
 import org.jhotdraw.draw.connector.Connector;
 import org.jhotdraw.draw.key.DoubleStyleableFigureKey;
@@ -4136,8 +4139,11 @@ public class ImageFigure extends AbstractLeafFigure implements TransformableFigu
     public final static DoubleStyleableFigureKey WIDTH = RectangleFigure.WIDTH;
     public final static DoubleStyleableFigureKey HEIGHT = RectangleFigure.HEIGHT;
     public final static Rectangle2DStyleableMapAccessor BOUNDS = RectangleFigure.BOUNDS;
+    /**
+     * The image cache of figures which are not part of a drawing.
+     */
+    private final static ImageCache SHARED_IMAGE_CACHE = new ImageCache();
     private Image cachedImage;
-    private URI cachedImageUri;
 
     public ImageFigure() {
         this(0, 0, 1, 1);
@@ -4180,12 +4186,11 @@ public class ImageFigure extends AbstractLeafFigure implements TransformableFigu
     @Override
     public void updateNode(RenderContext ctx, Node node) {
         ImageView imageView = (ImageView) node;
-        validateImage();
-        imageView.setImage(cachedImage);
+        Rectangle2D r = get(BOUNDS);
+        validateImage(ctx, imageView, r);
         applyTransformableFigureProperties(imageView);
         applyCompositableFigureProperties(node);
         applyStyleableFigureProperties(ctx, node);
-        Rectangle2D r = get(BOUNDS);
         imageView.setX(r.getMinX());
         imageView.setY(r.getMinY());
         imageView.setFitWidth(r.getWidth());
@@ -4220,19 +4225,31 @@ public class ImageFigure extends AbstractLeafFigure implements TransformableFigu
         // empty since we are not layoutable
     }
 
-    private void validateImage() {
+    /**
+     * Sets the image on the image view. The editor gets an image which is
+     * decoded at the displayed size, all other render contexts get the image
+     * at its natural size.
+     */
+    private void validateImage(RenderContext ctx, ImageView imageView, Rectangle2D r) {
         URI uri = get(IMAGE_URI);
         if (uri == null) {
-            cachedImageUri = null;
             cachedImage = null;
+            imageView.setImage(null);
             return;
         }
         Drawing drawing = getDrawing();
         URI documentHome = drawing == null ? null : drawing.get(Drawing.DOCUMENT_HOME);
         URI absoluteUri = (documentHome == null) ? uri : documentHome.resolve(uri);
-        if (cachedImageUri == null || !cachedImageUri.equals(absoluteUri)) {
-            cachedImageUri = absoluteUri;
-            cachedImage = new Image(cachedImageUri.toString(), true);
+        ImageCache cache = drawing == null ? SHARED_IMAGE_CACHE : drawing.getImageCache();
+        if (ctx.get(RenderContext.RENDERING_INTENT) != RenderingIntent.EDITOR) {
+            cachedImage = cache.getImage(absoluteUri);
+            imageView.setImage(cachedImage);
+            return;
         }
+        Transform t = getLocalToWorld();
+        double scale = (ctx instanceof DrawingView) ? ((DrawingView) ctx).getZoomFactor() : 1.0;
+        double width = r.getWidth() * scale * Math.hypot(t.getMxx(), t.getMyx());
+        double height = r.getHeight() * scale * Math.hypot(t.getMxy(), t.getMyy());
+        cachedImage = cache.setImage(imageView, absoluteUri, width, height);
     }
 }
@@ -0,0 +1,311 @@
+/* @(#)SnapshotCache.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jhotdraw.draw.connector.Connector;
+
+/**
+ * Takes snapshots of a figure tree, so that the tree can be serialized on a
+ * worker thread while it is being edited.
+ * <p>
+ * A snapshot is a tree of copies of the figures. Each {@link AbstractFigure}
+ * has a cache which holds the copy of the figure in the last snapshot, and
+ * marks which tell whether the figure has been changed since then. A change
+ * of a property or of the children of a figure marks the figure as changed,
+ * and marks its ancestors as having changed descendants. Marking stops at the
+ * first ancestor which is already marked, so that repeated changes, for
+ * example by the styling workers, only write to the figure itself. The marks
+ * are cleared when a snapshot is taken.
+ * <p>
+ * Taking a snapshot only descends into the subtrees which contain changed
+ * figures. It copies the changed figures, their ancestors, and the
+ * figures which depend on a copied figure. All other figures are represented
+ * by their copies from the previous snapshot. Thus the cost of a snapshot is
+ * proportional to the number of changed figures and not to the size of the
+ * drawing.
+ * <p>
+ * Since copies are shared with the next snapshot, the next snapshot may put
+ * them into new parents, without removing them from the discarded copies of
+ * their old parents. Therefore copies are only shared if the previous
+ * snapshot has been released with {@link #release}. A snapshot must not be
+ * used after it has been released.
+ * <p>
+ * Copies are created with the no-argument constructor of the figure class.
+ * They hold the property values of all style origins. Figures and connectors
+ * in property values are replaced by their copies; references to figures
+ * outside of the snapshot are not copied.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public final class SnapshotCache {
+
+    /**
+     * The global epoch counter. Copies can only be shared by snapshots of the
+     * same epoch.
+     */
+    private final static AtomicLong EPOCHS = new AtomicLong();
+
+    /**
+     * Set to true, if the properties or the children of the figure have been
+     * changed since the last snapshot.
+     */
+    private boolean changed = true;
+    /**
+     * Set to true, if the figure or one of its descendants has been changed
+     * since the last snapshot.
+     */
+    private boolean subtreeChanged = true;
+
+    /**
+     * The copy of the figure in the last snapshot.
+     */
+    private Figure copy;
+    private long copyEpoch;
+
+    /**
+     * The epoch and the root of the last snapshot, if the figure is the root
+     * of a snapshot.
+     */
+    private long epoch;
+    private Figure snapshot;
+    /**
+     * Set to true, if the figure is the root of a snapshot, and the snapshot
+     * has been released.
+     */
+    private volatile boolean released;
+
+    SnapshotCache() {
+    }
+
+    /**
+     * Marks the figure as changed, and its ancestors as having changed
+     * descendants.
+     *
+     * @param figure the figure which has been changed
+     */
+    static void invalidate(Figure figure) {
+        SnapshotCache c = of(figure);
+        if (c != null) {
+            c.changed = true;
+        }
+        for (Figure f = figure; f != null; f = f.getParent()) {
+            c = of(f);
+            if (c != null) {
+                if (c.subtreeChanged) {
+                    break;
+                }
+                c.subtreeChanged = true;
+            }
+        }
+    }
+
+    private static SnapshotCache of(Figure f) {
+        return (f instanceof AbstractFigure) ? ((AbstractFigure) f).getSnapshotCache() : null;
+    }
+
+    /**
+     * Takes a snapshot of the specified figure and its descendants.
+     * <p>
+     * This method must be called on the thread which edits the figures. The
+     * returned snapshot can be read on any thread.
+     *
+     * @param <T> the type of the root figure
+     * @param root the root figure
+     * @return a copy of the root figure, which holds copies of the descendants
+     */
+    public static <T extends Figure> T take(T root) {
+        SnapshotCache rc = of(root);
+        long epoch;
+        if (rc == null || rc.snapshot == null || !of(rc.snapshot).released) {
+            epoch = EPOCHS.incrementAndGet();
+        } else {
+            epoch = rc.epoch;
+        }
+
+        // Find the figures which must be copied. Only descend into
+        // subtrees which have been changed or which have no shareable copy.
+        List<Figure> renew = new ArrayList<>();
+        Map<Figure, Figure> copies = new IdentityHashMap<>();
+        ArrayDeque<Figure> stack = new ArrayDeque<>();
+        if (mustVisit(rc, epoch)) {
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            Figure f = stack.pop();
+            SnapshotCache c = of(f);
+            if (c == null || c.changed || c.copyEpoch != epoch) {
+                markRenew(f, root, copies, renew);
+            }
+            if (c != null) {
+                c.changed = false;
+                c.subtreeChanged = false;
+            }
+            for (Figure child : f.getChildren()) {
+                if (mustVisit(of(child), epoch)) {
+                    stack.push(child);
+                }
+            }
+        }
+
+        // Create the copies, and then fill them in. The children of a copy
+        // are copies from this snapshot or shared copies from the released
+        // snapshot, whose parents have been discarded. Therefore the copies
+        // are not removed from their previous parents.
+        for (Figure f : renew) {
+            copies.put(f, newInstance(f));
+        }
+        for (Figure f : renew) {
+            Figure fc = copies.get(f);
+            copyProperties(f, fc, root, copies, epoch);
+            if (f.isAllowsChildren()) {
+                List<Figure> children = new ArrayList<>(f.getChildren().size());
+                for (Figure child : f.getChildren()) {
+                    children.add(copyOf(child, root, copies, epoch));
+                }
+                if (fc instanceof AbstractCompositeFigure) {
+                    ((AbstractCompositeFigure) fc).setChildrenWithoutReparenting(children);
+                } else {
+                    fc.getChildren().setAll(children);
+                }
+            }
+        }
+        for (Figure f : renew) {
+            SnapshotCache c = of(f);
+            if (c != null) {
+                if (c.copy != null && c.copyEpoch == epoch) {
+                    // Disconnect the discarded copy, so that the shared
+                    // copies do not collect stale dependent figures.
+                    c.copy.removeAllConnectionTargets();
+                }
+                c.copy = copies.get(f);
+                c.copyEpoch = epoch;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T result = (T) copyOf(root, root, copies, epoch);
+        if (rc != null) {
+            rc.epoch = epoch;
+            rc.snapshot = result;
+            of(result).released = false;
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the figure or its descendants may have to be copied.
+     */
+    private static boolean mustVisit(SnapshotCache c, long epoch) {
+        return c == null || c.subtreeChanged || c.copyEpoch != epoch;
+    }
+
+    /**
+     * Releases a snapshot, so that its copies can be shared with the next
+     * snapshot. The snapshot must not be used afterwards.
+     * <p>
+     * This method can be called on any thread.
+     *
+     * @param snapshot a snapshot which has been returned by {@link #take}
+     */
+    public static void release(Figure snapshot) {
+        SnapshotCache c = of(snapshot);
+        if (c != null) {
+            c.released = true;
+        }
+    }
+
+    /**
+     * Marks the figure for copying, along with its ancestors and its
+     * dependent figures.
+     */
+    private static void markRenew(Figure figure, Figure root, Map<Figure, Figure> copies, List<Figure> renew) {
+        ArrayDeque<Figure> stack = new ArrayDeque<>();
+        stack.push(figure);
+        while (!stack.isEmpty()) {
+            Figure f = stack.pop();
+            if (copies.containsKey(f)) {
+                continue;
+            }
+            copies.put(f, null);
+            renew.add(f);
+            if (f != root && f.getParent() != null) {
+                stack.push(f.getParent());
+            }
+            for (Figure d : f.getDependentFigures()) {
+                if (isInSnapshot(d, root)) {
+                    stack.push(d);
+                }
+            }
+        }
+    }
+
+    private static boolean isInSnapshot(Figure f, Figure root) {
+        for (; f != null; f = f.getParent()) {
+            if (f == root) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the copy of the specified figure in the snapshot, or null if
+     * the figure is not part of the snapshot.
+     */
+    private static Figure copyOf(Figure f, Figure root, Map<Figure, Figure> copies, long epoch) {
+        Figure fc = copies.get(f);
+        if (fc == null && isInSnapshot(f, root)) {
+            SnapshotCache c = of(f);
+            if (c != null && c.copyEpoch == epoch) {
+                fc = c.copy;
+            }
+        }
+        return fc;
+    }
+
+    private static Figure newInstance(Figure f) {
+        try {
+            return f.getClass().newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new InternalError("Couldn't instantiate " + f.getClass(), e);
+        }
+    }
+
+    private static void copyProperties(Figure f, Figure fc, Figure root, Map<Figure, Figure> copies, long epoch) {
+        if ((f instanceof AbstractFigure) && (fc instanceof AbstractFigure)) {
+            ((AbstractFigure) fc).copyPropertiesFrom((AbstractFigure) f, v -> copyValue(v, root, copies, epoch));
+        } else {
+            fc.getProperties().clear();
+            f.getProperties().forEach((k, v) -> {
+                Object vc = copyValue(v, root, copies, epoch);
+                if (v == null || vc != null) {
+                    fc.getProperties().put(k, vc);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces figures and connectors by copies. Returns null if the value
+     * references a figure outside of the snapshot.
+     */
+    private static Object copyValue(Object v, Figure root, Map<Figure, Figure> copies, long epoch) {
+        if (v instanceof Figure) {
+            return copyOf((Figure) v, root, copies, epoch);
+        } else if (v instanceof Connector) {
+            Connector cn = (Connector) v;
+            Figure target = copyOf(cn.getTarget(), root, copies, epoch);
+            return target == null ? null : cn.withTarget(target);
+        }
+        return v;
+    }
+}
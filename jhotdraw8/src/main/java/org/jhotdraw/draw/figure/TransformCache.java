@@ -0,0 +1,143 @@
+/* @(#)TransformCache.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javafx.scene.transform.Transform;
+
+/**
+ * Holds the cached transformation matrices of a
+ * {@link TransformCacheableFigure} in plain fields.
+ * <p>
+ * Invalidating the cache of a figure takes constant time: it clears the local
+ * transforms of the figure and assigns a new version number to the figure.
+ * The world transforms are not cleared eagerly. Instead, they are stored with
+ * the stamp of the figure at the time they were computed. The stamp of a
+ * figure is the highest version number on the path from the figure to the
+ * root. Since version numbers are taken from a global counter, invalidating
+ * a figure increases the stamps of all its descendants, and their world
+ * transforms are recomputed lazily when they are accessed.
+ * <p>
+ * A figure which is moved to another parent gets a new version number, when
+ * the move is detected by the cache.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public final class TransformCache {
+
+    /**
+     * The global version counter.
+     */
+    private final static AtomicLong VERSIONS = new AtomicLong();
+
+    /**
+     * The version of the local transforms of the figure.
+     */
+    private long version = VERSIONS.incrementAndGet();
+    /**
+     * The parent of the figure when the version was last checked.
+     */
+    private Figure parent;
+    /**
+     * The stamp of the figure when the world transforms were computed.
+     */
+    private long worldStamp = -1;
+
+    Transform localToParent;
+    Transform parentToLocal;
+    private Transform parentToWorld;
+    private Transform localToWorld;
+    private Transform worldToLocal;
+    private Transform worldToParent;
+
+    /**
+     * Invalidates the local transforms of the figure, and the world
+     * transforms of the figure and of all its descendants.
+     */
+    public void invalidate() {
+        localToParent = null;
+        parentToLocal = null;
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Returns the version of the figure. Assigns a new version if the figure
+     * has been moved to another parent.
+     */
+    private long getVersion(Figure figure) {
+        Figure p = figure.getParent();
+        if (p != parent) {
+            parent = p;
+            invalidate();
+        }
+        return version;
+    }
+
+    /**
+     * Returns the stamp of the figure, or -1 if an ancestor does not cache
+     * its transforms, and thus can not tell when they have changed.
+     */
+    private static long getStamp(Figure figure) {
+        long stamp = 0;
+        for (Figure f = figure; f != null; f = f.getParent()) {
+            if (!(f instanceof TransformCacheableFigure)) {
+                return -1;
+            }
+            stamp = Math.max(stamp, ((TransformCacheableFigure) f).getTransformCache().getVersion(f));
+        }
+        return stamp;
+    }
+
+    /**
+     * Clears the world transforms if they are stale.
+     */
+    private void validateWorld(Figure figure) {
+        long stamp = getStamp(figure);
+        if (stamp == -1 || stamp != worldStamp) {
+            parentToWorld = null;
+            localToWorld = null;
+            worldToLocal = null;
+            worldToParent = null;
+            worldStamp = stamp;
+        }
+    }
+
+    Transform getParentToWorld(Figure figure) {
+        validateWorld(figure);
+        return parentToWorld;
+    }
+
+    void setParentToWorld(Transform t) {
+        parentToWorld = t;
+    }
+
+    Transform getLocalToWorld(Figure figure) {
+        validateWorld(figure);
+        return localToWorld;
+    }
+
+    void setLocalToWorld(Transform t) {
+        localToWorld = t;
+    }
+
+    Transform getWorldToLocal(Figure figure) {
+        validateWorld(figure);
+        return worldToLocal;
+    }
+
+    void setWorldToLocal(Transform t) {
+        worldToLocal = t;
+    }
+
+    Transform getWorldToParent(Figure figure) {
+        validateWorld(figure);
+        return worldToParent;
+    }
+
+    void setWorldToParent(Transform t) {
+        worldToParent = t;
+    }
+}
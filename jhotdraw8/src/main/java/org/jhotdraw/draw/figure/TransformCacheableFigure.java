@@ -10,8 +10,11 @@ import javafx.scene.transform.Transform;
 /**
  * TransformCachingFigure.
  * <p>
- * This implementation is somewhat inefficient because we store the cached
- * values in a map.
+ * The cached values are stored in the plain fields of a
+ * {@link TransformCache}, and not in the property map of the figure. Thus
+ * caching a transform does not notify property listeners. Invalidating the
+ * transforms of a figure takes constant time, the world transforms of its
+ * descendants are revalidated lazily.
  *
  * @design.pattern Figure Mixin, Traits.
  * 
@@ -19,54 +22,67 @@ import javafx.scene.transform.Transform;
  * @version $Id$
  */
 public interface TransformCacheableFigure extends Figure {
+
+    /**
+     * Returns the transform cache of this figure.
+     *
+     * @return the transform cache
+     */
+    TransformCache getTransformCache();
+
     @Override
     default Transform getParentToWorld() {
-        Transform t = get(FigureImplementationDetails.PARENT_TO_WORLD);
+        TransformCache cache = getTransformCache();
+        Transform t = cache.getParentToWorld(this);
         if (t == null) {
             t = getParent() == null ? FigureImplementationDetails.IDENTITY_TRANSFORM : getParent().getLocalToWorld();
-            set(FigureImplementationDetails.PARENT_TO_WORLD, t);
+            cache.setParentToWorld(t);
         }
         return t;
     }
 
     @Override
     default Transform getLocalToWorld() {
-        Transform t = get(FigureImplementationDetails.LOCAL_TO_WORLD);
+        TransformCache cache = getTransformCache();
+        Transform t = cache.getLocalToWorld(this);
         if (t == null) {
             t = getLocalToParent();
             t = getParent() == null ? t : getParent().getLocalToWorld().createConcatenation(t);
-            set(FigureImplementationDetails.LOCAL_TO_WORLD, t);
+            cache.setLocalToWorld(t);
         }
         return t;
     }
 
     @Override
     default Transform getWorldToLocal() {
-        Transform t = get(FigureImplementationDetails.WORLD_TO_LOCAL);
+        TransformCache cache = getTransformCache();
+        Transform t = cache.getWorldToLocal(this);
         if (t == null) {
             t = getParentToLocal();
             t = getParent() == null ? t : t.createConcatenation(getParent().getWorldToLocal());
-            set(FigureImplementationDetails.WORLD_TO_LOCAL, t);
+            cache.setWorldToLocal(t);
         }
         return t;
     }
 
     @Override
     default Transform getWorldToParent() {
-        Transform t = get(FigureImplementationDetails.WORLD_TO_PARENT);
+        TransformCache cache = getTransformCache();
+        Transform t = cache.getWorldToParent(this);
         if (t == null) {
             t = getParent() == null ? FigureImplementationDetails.IDENTITY_TRANSFORM : getParent().getWorldToLocal();
-            set(FigureImplementationDetails.WORLD_TO_PARENT, t);
+            cache.setWorldToParent(t);
         }
         return t;
     }
 
+    /**
+     * Invalidates the transforms of this figure. The world transforms of the
+     * descendants are invalidated implicitly.
+     */
     @Override
     default void invalidateTransforms() {
-        set(FigureImplementationDetails.PARENT_TO_WORLD, null);
-        set(FigureImplementationDetails.LOCAL_TO_WORLD, null);
-        set(FigureImplementationDetails.WORLD_TO_LOCAL, null);
-        set(FigureImplementationDetails.WORLD_TO_PARENT, null);
+        getTransformCache().invalidate();
     }
 
 }
@@ -160,7 +160,8 @@ public interface TransformableFigure extends TransformCacheableFigure {
 
     @Override
     default Transform getLocalToParent() {
-        Transform t = get(FigureImplementationDetails.LOCAL_TO_PARENT);
+        TransformCache cache = getTransformCache();
+        Transform t = cache.localToParent;
         if (t == null) {
 
             Point2D center = getCenterInLocal();
@@ -171,14 +172,15 @@ public interface TransformableFigure extends TransformCacheableFigure {
             tx.append(getTransform());
             t = tx;
 
-            set(FigureImplementationDetails.LOCAL_TO_PARENT, t);
+            cache.localToParent = t;
         }
         return t;
     }
 
     @Override
     default Transform getParentToLocal() {
-        Transform t = get(FigureImplementationDetails.PARENT_TO_LOCAL);
+        TransformCache cache = getTransformCache();
+        Transform t = cache.parentToLocal;
         if (t == null) {
             Point2D center = getCenterInLocal();
 
@@ -188,7 +190,7 @@ public interface TransformableFigure extends TransformCacheableFigure {
 
             t = getInverseTransform().createConcatenation(scale).createConcatenation(rotate).createConcatenation(translate);
 
-            set(FigureImplementationDetails.PARENT_TO_LOCAL, t);
+            cache.parentToLocal = t;
         }
         return t;
     }
@@ -224,11 +226,4 @@ public interface TransformableFigure extends TransformCacheableFigure {
         }
         return t;
     }
-    @Override
-    default void invalidateTransforms() {
-        TransformCacheableFigure.super.invalidateTransforms();
-        set(FigureImplementationDetails.PARENT_TO_LOCAL, null);
-        set(FigureImplementationDetails.LOCAL_TO_PARENT, null);
-    }
-
 }
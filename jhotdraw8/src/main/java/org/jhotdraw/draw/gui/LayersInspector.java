@@ -171,8 +171,13 @@ public class LayersInspector extends AbstractDrawingInspector {
                 ArrayList<Integer> indices = new ArrayList<>(listView.getSelectionModel().getSelectedIndices());
                 Drawing drawing = drawingView.getDrawing();
                 DrawingModel model = drawingView.getModel();
-                for (int i = indices.size() - 1; i >= 0; i--) {
-                    model.removeFromParent(layers.get(indices.get(i)));
+                model.begin();
+                try {
+                    for (int i = indices.size() - 1; i >= 0; i--) {
+                        model.removeFromParent(layers.get(indices.get(i)));
+                    }
+                } finally {
+                    model.commit();
                 }
             });
             removeButton.disableProperty().bind(Bindings.equal(listView.getSelectionModel().selectedIndexProperty(), -1));
@@ -375,12 +380,17 @@ public class LayersInspector extends AbstractDrawingInspector {
             private void moveSelectedFiguresFromToLayer(Layer from, Layer to) {
                 DrawingModel model = drawingView.getModel();
                 LinkedHashSet<Figure> selection = new LinkedHashSet<>(drawingView.getSelectedFigures());
-                for (Figure f : selection) {
-                    if (f.getLayer() == from) {
-                        // add child moves a figure, so we do not need to
-                        // remove it explicitly
-                        model.addChildTo(f, to);
+                model.begin();
+                try {
+                    for (Figure f : selection) {
+                        if (f.getLayer() == from) {
+                            // add child moves a figure, so we do not need to
+                            // remove it explicitly
+                            model.addChildTo(f, to);
+                        }
                     }
+                } finally {
+                    model.commit();
                 }
 
                 // Update the selection. The selection still contains the
@@ -5,6 +5,8 @@
 package org.jhotdraw.draw.handle;
 
 import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.model.DrawingModel;
+import org.jhotdraw.draw.model.DrawingModelUndoManager;
 
 /**
  * AbstractHandle.
@@ -19,6 +21,10 @@ public abstract class AbstractHandle implements Handle {
     // ---
 
     protected final Figure owner;
+    /**
+     * The undo manager in which this handle has begun an edit, or null.
+     */
+    private DrawingModelUndoManager openEdit;
 
     // ---
     // Constructors
@@ -39,6 +45,36 @@ public abstract class AbstractHandle implements Handle {
         return owner;
     }
 
+    @Override
+    public void onTrackingCancelled() {
+        endEdit();
+    }
+
+    /**
+     * Begins an edit in the undo manager of the model, unless this handle has
+     * already begun an edit which has not been ended yet.
+     *
+     * @param model the drawing model
+     */
+    protected void beginEdit(DrawingModel model) {
+        if (openEdit == null) {
+            openEdit = model.getUndoManager();
+            openEdit.beginEdit();
+        }
+    }
+
+    /**
+     * Ends the edit which this handle has begun. Does nothing if this handle has
+     * not begun an edit.
+     */
+    protected void endEdit() {
+        if (openEdit != null) {
+            DrawingModelUndoManager undoManager = openEdit;
+            openEdit = null;
+            undoManager.endEdit();
+        }
+    }
+
     /**
      * Returns true if both handles have the same class.
      */
@@ -151,6 +151,14 @@ public interface Handle {
 
     default void onKeyTyped(KeyEvent event, DrawingView dv) {
     }
+
+    /**
+     * Is invoked when the tracker stops forwarding events to this handle
+     * before the mouse has been released. The handle must end the edit which
+     * it has begun on mouse pressed. This implementation is empty.
+     */
+    default void onTrackingCancelled() {
+    }
     
     /** Returns true if that handle is compatible with this handle.
      * @param that the other handle
@@ -108,6 +108,7 @@ public class MoveHandle extends LocatorHandle {
             }
         }
         groupReshapeableFigures = view.getFiguresWithCompatibleHandle(groupReshapeableFigures, this);
+        beginEdit(view.getModel());
     }
 
     @Override
@@ -155,7 +156,7 @@ public class MoveHandle extends LocatorHandle {
 
     @Override
     public void onMouseReleased(MouseEvent event, DrawingView dv) {
-        // FIXME fire undoable edit
+        endEdit();
     }
 
     @Override
@@ -221,6 +221,7 @@ public class ResizeHandleKit {
             oldPoint = view.getConstrainer().constrainPoint(getOwner(), view.viewToWorld(new Point2D(event.getX(), event.getY())));
             startBounds = getOwner().getBoundsInLocal();
             preferredAspectRatio = getOwner().getPreferredAspectRatio();
+            beginEdit(view.getModel());
         }
 
         @Override
@@ -244,7 +245,7 @@ public class ResizeHandleKit {
 
         @Override
         public void onMouseReleased(MouseEvent event, DrawingView dv) {
-            // FIXME fire undoable edit
+            endEdit();
         }
 
         @Override
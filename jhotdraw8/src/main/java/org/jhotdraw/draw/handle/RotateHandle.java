@@ -114,7 +114,7 @@ public class RotateHandle extends AbstractHandle {
             }
         }
         groupReshapeableFigures = view.getFiguresWithCompatibleHandle(groupReshapeableFigures, this);
-
+        beginEdit(view.getModel());
     }
 
     @Override
@@ -160,7 +160,7 @@ public class RotateHandle extends AbstractHandle {
 
     @Override
     public void onMouseReleased(MouseEvent event, DrawingView dv) {
-        // FIXME fire undoable edit
+        endEdit();
     }
 
     @Override
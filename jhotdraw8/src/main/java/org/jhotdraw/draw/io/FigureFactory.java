@@ -152,6 +152,10 @@ public interface FigureFactory extends IdFactory {
 
     /**
      * Maps an XML attribute value to a value.
+     * <p>
+     * This method may be invoked concurrently for different attributes, after
+     * the ids of all figures have been registered. Implementations must not
+     * change the state of the factory.
      *
      * @param <T> the type of the value
      * @param key the key
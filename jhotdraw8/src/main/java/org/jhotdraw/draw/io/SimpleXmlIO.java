@@ -11,21 +11,25 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jhotdraw.draw.Drawing;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.jhotdraw.collection.MapAccessor;
 import org.jhotdraw.draw.figure.Figure;
 import org.w3c.dom.Attr;
@@ -36,7 +40,6 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.ProcessingInstruction;
-import org.xml.sax.SAXException;
 
 /**
  * SimpleXmlIO.
@@ -50,7 +53,16 @@ import org.xml.sax.SAXException;
  * This i/o-format only works for drawings which can be described entirely by
  * the properties of its figures.
  * <p>
- *
+ * Streams are read and written with StAX, without building a DOM of the
+ * entire document. Only the content of figure elements which is converted
+ * into node lists is held in memory as DOM nodes.
+ * <p>
+ * Reading is performed in two phases. First the figures are created from the
+ * elements, and the attribute strings are collected. Then the attribute
+ * strings are converted into values, on the decoder pool if one has been set.
+ * Converting the values only reads the ids of the figures and the converters
+ * of the figure factory. Attributes which reference other figures may thus
+ * reference figures which occur later in the document.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -63,6 +75,49 @@ public class SimpleXmlIO implements InputFormat, OutputFormat {
     private HashMap<Figure, Element> figureToElementMap = new HashMap<>();
     private URI documentHome;
     private URI documentHomeDir;
+    /**
+     * The document which is used for creating the DOM nodes of node lists
+     * while streaming.
+     */
+    private Document scratchDocument;
+    /**
+     * The pattern for the href of a stylesheet processing instruction.
+     */
+    private final static Pattern HREF_PATTERN = Pattern.compile("(?:^|.* )href=\"([^\"]*)\".*");
+
+    /**
+     * The minimal number of attributes for which the attribute values are
+     * converted on the decoder pool.
+     */
+    private final static int PARALLEL_DECODING_THRESHOLD = 1024;
+    /**
+     * The pool on which the attribute values are converted, null if they are
+     * converted on the reading thread.
+     */
+    private ForkJoinPool decoderPool;
+
+    /**
+     * An attribute of a figure, which is converted after the entire document
+     * has been read.
+     */
+    private static class AttributeValue {
+
+        final Figure figure;
+        final String elementName;
+        final String name;
+        final MapAccessor<Object> key;
+        final String string;
+        Object value;
+        IOException error;
+
+        AttributeValue(Figure figure, String elementName, String name, MapAccessor<Object> key, String string) {
+            this.figure = figure;
+            this.elementName = elementName;
+            this.name = name;
+            this.key = key;
+            this.string = string;
+        }
+    }
 
     public SimpleXmlIO(FigureFactory factory) {
         this(factory, null, null, null);
@@ -83,6 +138,29 @@ public class SimpleXmlIO implements InputFormat, OutputFormat {
         return documentHome;
     }
 
+    /**
+     * Sets the pool on which the attribute values are converted when a
+     * drawing is read. The converters of the figure factory must be thread
+     * safe if a pool is set.
+     *
+     * @param pool the pool, or null to convert the attribute values on the
+     * reading thread
+     */
+    public void setDecoderPool(ForkJoinPool pool) {
+        decoderPool = pool;
+    }
+
+    /**
+     * Gets the pool on which the attribute values are converted when a
+     * drawing is read.
+     *
+     * @return the pool, or null if the attribute values are converted on the
+     * reading thread
+     */
+    public ForkJoinPool getDecoderPool() {
+        return decoderPool;
+    }
+
     @Override
     public Drawing read(File file, Drawing drawing) throws IOException {
         setDocumentHome(file.toURI());
@@ -92,14 +170,15 @@ public class SimpleXmlIO implements InputFormat, OutputFormat {
     @Override
     public Drawing read(InputStream in, Drawing drawing) throws IOException {
         try {
-            DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-            if (namespaceURI != null) {
-                builderFactory.setNamespaceAware(true);
+            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
             }
-            DocumentBuilder builder = builderFactory.newDocumentBuilder();
-            Document doc = builder.parse(in);
-            return read(doc, drawing);
-        } catch (SAXException | ParserConfigurationException ex) {
+        } catch (XMLStreamException ex) {
             throw new IOException(ex);
         }
     }
@@ -107,29 +186,528 @@ public class SimpleXmlIO implements InputFormat, OutputFormat {
     @Override
     public void write(File file, Drawing drawing) throws IOException {
         setDocumentHome(file.toURI());
-        Document doc = toDocument(drawing);
-        try {
-            Transformer t = TransformerFactory.newInstance().newTransformer();
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(file);
-            t.transform(source, result);
-        } catch (TransformerException ex) {
-            throw new IOException(ex);
-        }
+        OutputFormat.super.write(file, drawing);
     }
 
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        Document doc = toDocument(drawing);
         try {
-            Transformer t = TransformerFactory.newInstance().newTransformer();
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(out);
-            t.transform(source, result);
-        } catch (TransformerException ex) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            try {
+                write(writer, drawing);
+            } finally {
+                writer.close();
+            }
+        } catch (XMLStreamException ex) {
             throw new IOException(ex);
         }
+    }
+
+    private void write(XMLStreamWriter w, Drawing internal) throws IOException, XMLStreamException {
+        Drawing external = factory.toExternalDrawing(internal);
+        factory.reset();
+
+        w.writeStartDocument("UTF-8", "1.0");
+        writeProcessingInstructions(w, external);
+        String commentText = factory.createFileComment();
+        if (commentText != null) {
+            w.writeComment(commentText);
+        }
+
+        String elementName = factory.figureToName(external);
+        if (namespaceURI == null) {
+            w.writeStartElement(elementName);
+        } else if (namespaceQualifier == null) {
+            w.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, elementName, namespaceURI);
+            w.writeDefaultNamespace(namespaceURI);
+        } else {
+            w.writeStartElement(namespaceQualifier, elementName, namespaceURI);
+            w.writeNamespace(namespaceQualifier, namespaceURI);
+        }
+        writeElementAttributes(w, external);
+        for (Figure child : external.getChildren()) {
+            String childName = factory.figureToName(child);
+            if (childName != null) {
+                // => the factory decided that we should not skip the figure
+                w.writeCharacters("\n");
+                writeElementRecursively(w, child, childName);
+            }
+        }
+        w.writeCharacters("\n");
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.flush();
+        scratchDocument = null;
+    }
+
+    private void writeElementRecursively(XMLStreamWriter w, Figure figure, String elementName) throws IOException, XMLStreamException {
+        try {
+            List<Node> nodeList = getNodeList(figure);
+            boolean isEmpty = nodeList.isEmpty() && figure.getChildren().isEmpty();
+            if (namespaceURI == null || namespaceQualifier == null) {
+                if (isEmpty) {
+                    w.writeEmptyElement(elementName);
+                } else {
+                    w.writeStartElement(elementName);
+                }
+            } else if (isEmpty) {
+                w.writeEmptyElement(namespaceQualifier, elementName, namespaceURI);
+            } else {
+                w.writeStartElement(namespaceQualifier, elementName, namespaceURI);
+            }
+            writeElementAttributes(w, figure);
+            for (Node node : nodeList) {
+                writeNode(w, node);
+            }
+
+            for (Figure child : figure.getChildren()) {
+                String childName = factory.figureToName(child);
+                if (childName != null) {
+                    w.writeCharacters("\n");
+                    writeElementRecursively(w, child, childName);
+                }
+            }
+            if (!figure.getChildren().isEmpty()) {
+                w.writeCharacters("\n");
+            }
+            if (!isEmpty) {
+                w.writeEndElement();
+            }
+        } catch (IOException e) {
+            throw new IOException("Error writing figure " + figure, e);
+        }
+    }
+
+    private void writeAttribute(XMLStreamWriter w, String unqualifiedName, String value) throws XMLStreamException {
+        if (namespaceURI == null || namespaceQualifier == null) {
+            w.writeAttribute(unqualifiedName, value);
+        } else {
+            w.writeAttribute(namespaceQualifier, namespaceURI, unqualifiedName, value);
+        }
+    }
+
+    private void writeElementAttributes(XMLStreamWriter w, Figure figure) throws IOException, XMLStreamException {
+        writeAttribute(w, factory.getObjectIdAttribute(), factory.createId(figure));
+        for (MapAccessor<?> k : factory.figureAttributeKeys(figure)) {
+            if (k.isTransient()) {
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            MapAccessor<Object> key = (MapAccessor<Object>) k;
+            Object value = figure.get(key);
+
+            if (value instanceof URI) {
+                value = internalToExternal(figure.getDrawing(), (URI) value);
+            }
+
+            if (!factory.isDefaultValue(figure, key, value)) {
+                if (Figure.class.isAssignableFrom(key.getValueType())) {
+                    writeAttribute(w, factory.keyToName(figure, key), factory.createId(value));
+                } else {
+                    writeAttribute(w, factory.keyToName(figure, key), factory.valueToString(key, value));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the node lists of all node list keys of the figure, which do
+     * not have a default value.
+     */
+    private List<Node> getNodeList(Figure figure) throws IOException {
+        Set<MapAccessor<?>> keys = factory.figureNodeListKeys(figure);
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Node> nodeList = new ArrayList<>();
+        for (MapAccessor<?> k : keys) {
+            @SuppressWarnings("unchecked")
+            MapAccessor<Object> key = (MapAccessor<Object>) k;
+            Object value = figure.get(key);
+            if (!factory.isDefaultValue(figure, key, value)) {
+                nodeList.addAll(factory.valueToNodeList(key, value, getScratchDocument()));
+            }
+        }
+        return nodeList;
+    }
+
+    /**
+     * Writes a DOM node and its descendants.
+     */
+    private void writeNode(XMLStreamWriter w, Node node) throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.TEXT_NODE:
+                w.writeCharacters(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                w.writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                w.writeComment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                w.writeProcessingInstruction(((ProcessingInstruction) node).getTarget(), ((ProcessingInstruction) node).getData());
+                break;
+            case Node.ELEMENT_NODE: {
+                Element elem = (Element) node;
+                String ns = elem.getNamespaceURI();
+                String localName = elem.getLocalName() == null ? elem.getNodeName() : elem.getLocalName();
+                if (ns == null) {
+                    w.writeStartElement(localName);
+                } else {
+                    String prefix = elem.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : elem.getPrefix();
+                    w.writeStartElement(prefix, localName, ns);
+                    if (!ns.equals(w.getNamespaceContext().getNamespaceURI(prefix))) {
+                        w.writeNamespace(prefix, ns);
+                    }
+                }
+                NamedNodeMap attrs = elem.getAttributes();
+                for (int i = 0, n = attrs.getLength(); i < n; i++) {
+                    Attr attr = (Attr) attrs.item(i);
+                    String attrNs = attr.getNamespaceURI();
+                    if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attrNs)) {
+                        continue;
+                    }
+                    if (attrNs == null) {
+                        w.writeAttribute(attr.getLocalName() == null ? attr.getName() : attr.getLocalName(), attr.getValue());
+                    } else {
+                        w.writeAttribute(attr.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : attr.getPrefix(), attrNs, attr.getLocalName(), attr.getValue());
+                    }
+                }
+                for (Node child = elem.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    writeNode(w, child);
+                }
+                w.writeEndElement();
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void writeProcessingInstructions(XMLStreamWriter w, Drawing external) throws XMLStreamException {
+        if (factory.getStylesheetsKey() != null && external.get(factory.getStylesheetsKey()) != null) {
+            for (Object stylesheet : external.get(factory.getStylesheetsKey())) {
+                if (stylesheet instanceof URI) {
+                    stylesheet = internalToExternal(external, (URI) stylesheet);
 
+                    String stylesheetString = stylesheet.toString();
+                    String type = "text/" + stylesheetString.substring(stylesheetString.lastIndexOf('.') + 1);
+                    if ("text/".equals(type)) {
+                        type = "text/css";
+                    }
+                    w.writeProcessingInstruction("xml-stylesheet", //
+                            "type=\"" + type + "\" href=\"" + stylesheet + "\"");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a drawing from a stream of XML events.
+     * <p>
+     * The figures are created while their elements are read. The attributes
+     * are collected, and converted after the entire document has been read.
+     */
+    private Drawing read(XMLStreamReader reader) throws IOException, XMLStreamException {
+        factory.reset();
+        scratchDocument = null;
+        List<AttributeValue> attributes = new ArrayList<>();
+        List<String> stylesheetHrefs = new ArrayList<>();
+        Drawing external = null;
+        boolean hasRootElement = false;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if ("xml-stylesheet".equals(reader.getPITarget()) && reader.getPIData() != null) {
+                        Matcher m = HREF_PATTERN.matcher(reader.getPIData());
+                        if (m.matches()) {
+                            stylesheetHrefs.add(m.group(1));
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    if (!hasRootElement) {
+                        hasRootElement = true;
+                        Figure f = isInNamespace(reader) ? factory.nameToFigure(reader.getLocalName()) : null;
+                        if (f instanceof Drawing) {
+                            external = (Drawing) f;
+                            readElementRecursively(reader, f, attributes);
+                            break;
+                        }
+                    }
+                    skipElement(reader);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (external == null) {
+            if (namespaceURI == null) {
+                throw new IOException("The document does not contain a drawing.");
+            } else {
+                throw new IOException("The document does not contain a drawing in namespace \"" + namespaceURI + "\".");
+            }
+        }
+        external.set(Drawing.DOCUMENT_HOME, getDocumentHome());
+        if (factory.getStylesheetsKey() != null) {
+            ArrayList<URI> stylesheets = new ArrayList<URI>();
+            for (String href : stylesheetHrefs) {
+                stylesheets.add(externalToInternal(external, URI.create(href)));
+            }
+            external.set(factory.getStylesheetsKey(), stylesheets);
+        }
+
+        scratchDocument = null;
+        decodeAttributes(attributes);
+
+        return factory.fromExternalDrawing(external);
+    }
+
+    /**
+     * Returns true if the current element of the reader is in the namespace
+     * of this i/o-format.
+     */
+    private boolean isInNamespace(XMLStreamReader reader) {
+        return namespaceURI == null || namespaceURI.equals(reader.getNamespaceURI());
+    }
+
+    /**
+     * Reads the attributes and the content of the current element of the
+     * reader into the specified figure. Returns when the reader is at the end
+     * element.
+     */
+    private void readElementRecursively(XMLStreamReader reader, Figure figure, List<AttributeValue> attributes) throws IOException, XMLStreamException {
+        String tagName = reader.getLocalName();
+        String id = getAttribute(reader, factory.getObjectIdAttribute());
+        if (id != null && !id.isEmpty()) {
+            if (factory.getObject(id) != null) {
+                throw new IOException("Duplicate id " + id + " in element " + tagName);
+            }
+            factory.putId(figure, id);
+        }
+        readElementAttributes(reader, figure, attributes);
+
+        List<Node> nodeList = factory.figureNodeListKeys(figure).isEmpty() ? null : new ArrayList<>();
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    Figure child = isInNamespace(reader) ? factory.nameToFigure(reader.getLocalName()) : null;
+                    if (child != null) {
+                        String childTagName = reader.getLocalName();
+                        readElementRecursively(reader, child, attributes);
+                        if (!child.isSuitableParent(figure)) {
+                            throw new IOException(childTagName + " is not a suitable child for " + tagName + ".");
+                        }
+                        figure.add(child);
+                    } else if (nodeList != null && (namespaceURI == null || !isInNamespace(reader))) {
+                        nodeList.add(readNode(reader, getScratchDocument()));
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                }
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                    if (nodeList != null) {
+                        nodeList.add(getScratchDocument().createTextNode(reader.getText()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (nodeList != null) {
+            readElementNodeList(figure, nodeList);
+        }
+    }
+
+    /**
+     * Skips the current element of the reader and its content. Returns when
+     * the reader is at the end element.
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        for (int depth = 1; depth > 0;) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads the current element of the reader and its content into a DOM
+     * element. Returns when the reader is at the end element.
+     */
+    private Element readNode(XMLStreamReader reader, Document doc) throws XMLStreamException {
+        Element elem = doc.createElementNS(emptyToNull(reader.getNamespaceURI()), toQualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0, n = reader.getNamespaceCount(); i < n; i++) {
+            String prefix = emptyToNull(reader.getNamespacePrefix(i));
+            elem.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    prefix == null ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+                    reader.getNamespaceURI(i));
+        }
+        for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+            elem.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+                    toQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i));
+        }
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    elem.appendChild(readNode(reader, doc));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    elem.appendChild(doc.createTextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.CDATA:
+                    elem.appendChild(doc.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    elem.appendChild(doc.createComment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    elem.appendChild(doc.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return elem;
+    }
+
+    private static String emptyToNull(String str) {
+        return str == null || str.isEmpty() ? null : str;
+    }
+
+    private static String toQualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private String getAttribute(XMLStreamReader reader, String unqualifiedName) {
+        for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+            String ns = emptyToNull(reader.getAttributeNamespace(i));
+            if ((ns == null || ns.equals(namespaceURI))
+                    && unqualifiedName.equals(reader.getAttributeLocalName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the attribute keys of the figure to their default values, and adds
+     * the attributes of the current element of the reader to the list of
+     * attributes which must be converted.
+     */
+    private void readElementAttributes(XMLStreamReader reader, Figure figure, List<AttributeValue> attributes) throws IOException {
+        for (MapAccessor<?> ma : factory.figureAttributeKeys(figure)) {
+            @SuppressWarnings("unchecked")
+            MapAccessor<Object> mao = (MapAccessor<Object>) ma;
+            Object defaultValue = factory.getDefaultValue(figure, ma);
+            figure.set(mao, defaultValue);
+        }
+
+        for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+            String ns = emptyToNull(reader.getAttributeNamespace(i));
+            if (ns != null && !ns.equals(namespaceURI)) {
+                continue;
+            }
+            String name = reader.getAttributeLocalName(i);
+            if (factory.getObjectIdAttribute().equals(name)) {
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            MapAccessor<Object> key = (MapAccessor<Object>) factory.nameToKey(figure, name);
+            if (key != null && factory.figureAttributeKeys(figure).contains(key)) {
+                attributes.add(new AttributeValue(figure, reader.getLocalName(), name, key, reader.getAttributeValue(i)));
+            }
+        }
+    }
+
+    /**
+     * Converts the attribute values, and sets them on the figures in document
+     * order. If the conversion of an attribute fails, the error of the first
+     * failed attribute in document order is thrown.
+     */
+    private void decodeAttributes(List<AttributeValue> attributes) throws IOException {
+        if (decoderPool != null && attributes.size() >= PARALLEL_DECODING_THRESHOLD) {
+            decoderPool.submit(() -> attributes.parallelStream().forEach(this::decodeAttribute)).join();
+        } else {
+            for (AttributeValue a : attributes) {
+                decodeAttribute(a);
+            }
+        }
+        for (AttributeValue a : attributes) {
+            if (a.error != null) {
+                throw a.error;
+            }
+            a.figure.set(a.key, a.value);
+        }
+    }
+
+    /**
+     * Converts the attribute value. This method may be invoked concurrently
+     * for different attributes.
+     * <p>
+     * A conversion error is recorded as an IOException which names the
+     * attribute and its element.
+     */
+    private void decodeAttribute(AttributeValue a) {
+        try {
+            if (Figure.class.isAssignableFrom(a.key.getValueType())) {
+                a.value = getFigure(a.string);
+            } else {
+                Object value = factory.stringToValue(a.key, a.string);
+                if (value instanceof URI) {
+                    value = externalToInternal(a.figure.getDrawing(), (URI) value);
+                }
+                a.value = value;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            a.error = new IOException("Illegal value \"" + a.string + "\" for attribute " + a.name + " in element " + a.elementName + ".", e);
+        }
+    }
+
+    /**
+     * Sets the node list keys of the figure from the node list.
+     */
+    private void readElementNodeList(Figure figure, List<Node> nodeList) throws IOException {
+        for (MapAccessor<?> ky : factory.figureNodeListKeys(figure)) {
+            @SuppressWarnings("unchecked")
+            MapAccessor<Object> key = (MapAccessor<Object>) ky;
+            String name = factory.keyToElementName(figure, key);
+            if ("".equals(name)) {
+                figure.set(key, factory.nodeListToValue(key, nodeList));
+            } else {
+                throw new UnsupportedOperationException("Reading of sub-elements is not yet supported");
+            }
+        }
+    }
+
+    /**
+     * Returns a document which is used for creating the DOM nodes of node
+     * lists.
+     */
+    private Document getScratchDocument() throws IOException {
+        if (scratchDocument == null) {
+            try {
+                DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+                builderFactory.setNamespaceAware(true);
+                scratchDocument = builderFactory.newDocumentBuilder().newDocument();
+            } catch (ParserConfigurationException ex) {
+                throw new IOException(ex);
+            }
+        }
+        return scratchDocument;
     }
 
     public Drawing read(Document in, Drawing drawing) throws IOException {
@@ -469,7 +1047,6 @@ public class SimpleXmlIO implements InputFormat, OutputFormat {
     // XXX maybe this should not be in SimpleXmlIO?
     private void readProcessingInstructions(Document doc, Drawing external) {
         if (factory.getStylesheetsKey() != null) {
-            Pattern hrefPattern = Pattern.compile("(?:^|.* )href=\"([^\"]*)\".*");
             ArrayList<URI> stylesheets = new ArrayList<URI>();
             NodeList list = doc.getChildNodes();
             for (int i = 0, n = list.getLength(); i < n; i++) {
@@ -477,7 +1054,7 @@ public class SimpleXmlIO implements InputFormat, OutputFormat {
                 if (node.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE) {
                     ProcessingInstruction pi = (ProcessingInstruction) node;
                     if ("xml-stylesheet".equals(pi.getNodeName()) && pi.getData() != null) {
-                        Matcher m = hrefPattern.matcher(pi.getData());
+                        Matcher m = HREF_PATTERN.matcher(pi.getData());
                         if (m.matches()) {
                             String href = m.group(1);
 
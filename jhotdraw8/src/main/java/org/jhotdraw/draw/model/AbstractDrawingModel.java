@@ -4,19 +4,27 @@
  */
 package org.jhotdraw.draw.model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import javafx.beans.InvalidationListener;
 import org.jhotdraw.beans.ListenerSupport;
+import org.jhotdraw.collection.MapAccessor;
+import org.jhotdraw.css.SelectorDependencies;
+import org.jhotdraw.css.SelectorDependencies.Relation;
+import org.jhotdraw.css.StyleManager;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.StyleableFigure;
 import org.jhotdraw.event.Listener;
 
 /**
@@ -29,13 +37,15 @@ public abstract class AbstractDrawingModel implements DrawingModel {
 
     private final ListenerSupport<Listener<DrawingModelEvent>> listeners = new ListenerSupport<>();
     private final ListenerSupport<InvalidationListener> invalidationListeners = new ListenerSupport<>();
+    private final DrawingModelUndoManager undoManager = new DrawingModelUndoManager(this);
     /**
      * This is the set of figures which are out of sync with their stylesheet.
      * <p>
-     * We do not wrap the Map into a Set to avoid an additional
-     * level of indirection.
+     * The value is {@code Boolean.TRUE} if the stylesheet must be applied to
+     * the entire subtree of the figure, and {@code Boolean.FALSE} if it only
+     * needs to be applied to the figure itself.
      */
-    private final Map<Figure, Object> dirtyStyles = new IdentityHashMap<>();
+    private final Map<Figure, Boolean> dirtyStyles = new IdentityHashMap<>();
     /**
      * This is the set of figures which are out of sync with their layout. 
      * <p>The
@@ -49,13 +59,35 @@ public abstract class AbstractDrawingModel implements DrawingModel {
     private final Map<Figure,Object> dirtyLayouts = new LinkedHashMap<>();
     
     private boolean isValidating = false;
+    /**
+     * The nesting depth of the open transactions.
+     */
+    private int transactionDepth;
+    /**
+     * The events which have been fired while a transaction is open.
+     */
+    private final List<DrawingModelEvent> pendingEvents = new ArrayList<>();
     protected Drawing root;
+    /**
+     * The number of figures to which the stylesheet has been applied.
+     */
+    private long styleUpdateCount;
+    /**
+     * The number of descendant figures to which the stylesheet has not been
+     * applied, because the selector dependencies ruled them out.
+     */
+    private long avoidedStyleUpdateCount;
 
     @Override
     public Drawing getRoot() {
         return root;
     }
 
+    @Override
+    public DrawingModelUndoManager getUndoManager() {
+        return undoManager;
+    }
+
     @Override
     public void addDrawingModelListener(Listener<DrawingModelEvent> listener) {
         listeners.add(listener);
@@ -78,11 +110,130 @@ public abstract class AbstractDrawingModel implements DrawingModel {
 
     @Override
     public void fire(DrawingModelEvent event) {
-        listeners.fire(l -> l.handle(event));
-        invalidationListeners.fire(l -> l.invalidated(this));
+        if (transactionDepth > 0) {
+            pendingEvents.add(event);
+        } else {
+            listeners.fire(l -> l.handle(event));
+            invalidationListeners.fire(l -> l.invalidated(this));
+        }
         handle(event);
     }
 
+    @Override
+    public void begin() {
+        transactionDepth++;
+        undoManager.beginEdit();
+    }
+
+    @Override
+    public void commit() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("no transaction is open");
+        }
+        undoManager.endEdit();
+        if (--transactionDepth > 0 || pendingEvents.isEmpty()) {
+            return;
+        }
+        List<DrawingModelEvent> batch = compactEvents(pendingEvents);
+        pendingEvents.clear();
+        for (DrawingModelEvent event : batch) {
+            listeners.fire(l -> l.handle(event));
+        }
+        invalidationListeners.fire(l -> l.invalidated(this));
+    }
+
+    /**
+     * Removes redundant events from the specified list of events.
+     * <p>
+     * Of multiple node, transform or layout invalidations of the same figure,
+     * only the last one is kept. A node invalidation is dropped, if a later
+     * event invalidates the nodes of a subtree which contains the figure. All
+     * other events are kept in their original order.
+     * <p>
+     * Whether a subtree contains a figure is decided with the parents at
+     * the end of the batch. A figure whose parent changed during the batch
+     * may have been in a different subtree when an event was fired. Such an
+     * event is therefore only dropped if the figure is the root of the
+     * subtree, or if no figure on the path from the figure to the root of
+     * the subtree changed its parent during the batch.
+     *
+     * @param events the events in the order in which they were fired
+     * @return the compacted events
+     */
+    private List<DrawingModelEvent> compactEvents(List<DrawingModelEvent> events) {
+        Map<DrawingModelEvent.EventType, Set<Figure>> seen = new EnumMap<>(DrawingModelEvent.EventType.class);
+        Set<Figure> subtrees = seenFigures(seen, DrawingModelEvent.EventType.SUBTREE_NODES_INVALIDATED);
+        Set<Figure> reparented = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DrawingModelEvent event : events) {
+            switch (event.getEventType()) {
+                case FIGURE_ADDED_TO_PARENT:
+                case FIGURE_REMOVED_FROM_PARENT:
+                    reparented.add(event.getFigure());
+                    break;
+                default:
+                    break;
+            }
+        }
+        ArrayList<DrawingModelEvent> compacted = new ArrayList<>(events.size());
+        for (int i = events.size() - 1; i >= 0; i--) {
+            DrawingModelEvent event = events.get(i);
+            Figure figure = event.getFigure();
+            switch (event.getEventType()) {
+                case NODE_INVALIDATED:
+                    if (isInSubtree(figure, subtrees, reparented)) {
+                        continue;
+                    }
+                    // fall through
+                case TRANSFORM_CHANGED:
+                case LAYOUT_INVALIDATED:
+                    if (!seenFigures(seen, event.getEventType()).add(figure)) {
+                        continue;
+                    }
+                    break;
+                case SUBTREE_NODES_INVALIDATED:
+                    if (isInSubtree(figure, subtrees, reparented)) {
+                        continue;
+                    }
+                    subtrees.add(figure);
+                    break;
+                default:
+                    break;
+            }
+            compacted.add(event);
+        }
+        Collections.reverse(compacted);
+        return compacted;
+    }
+
+    private static Set<Figure> seenFigures(Map<DrawingModelEvent.EventType, Set<Figure>> seen, DrawingModelEvent.EventType type) {
+        Set<Figure> figures = seen.get(type);
+        if (figures == null) {
+            figures = Collections.newSetFromMap(new IdentityHashMap<>());
+            seen.put(type, figures);
+        }
+        return figures;
+    }
+
+    /**
+     * Returns true if the figure or one of its ancestors is in the specified
+     * set of subtree roots, and the path to that ancestor does not contain a
+     * figure which has been reparented.
+     */
+    private static boolean isInSubtree(Figure figure, Set<Figure> subtreeRoots, Set<Figure> reparented) {
+        if (subtreeRoots.isEmpty()) {
+            return false;
+        }
+        for (Figure f = figure; f != null; f = f.getParent()) {
+            if (subtreeRoots.contains(f)) {
+                return true;
+            }
+            if (reparented.contains(f)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
     protected void handle(DrawingModelEvent event) {
         if (isValidating) {
             return;
@@ -90,6 +241,7 @@ public abstract class AbstractDrawingModel implements DrawingModel {
         switch (event.getEventType()) {
             case FIGURE_ADDED_TO_PARENT:
                 invalidateStyle(event.getFigure());
+                invalidateSiblingStyles(event.getParent(), event.getIndex() + 1);
                 break;
             case FIGURE_ADDED_TO_DRAWING:
                 invokeAddNotify(event.getFigure(), event.getDrawing());
@@ -109,9 +261,12 @@ public abstract class AbstractDrawingModel implements DrawingModel {
             case FIGURE_REMOVED_FROM_PARENT:
                 dirtyLayouts.remove(event.getFigure());
                 dirtyStyles.remove(event.getFigure());
+                invalidateSiblingStyles(event.getParent(), event.getIndex());
                 break;
-            case NODE_INVALIDATED:
             case ROOT_CHANGED:
+                undoManager.discardAllEdits();
+                break;
+            case NODE_INVALIDATED:
             case SUBTREE_NODES_INVALIDATED:
                 // not my business
                 break;
@@ -119,7 +274,7 @@ public abstract class AbstractDrawingModel implements DrawingModel {
                 invalidateLayout(event.getFigure());
                 break;
             case STYLE_INVALIDATED:
-                invalidateStyle(event.getFigure());
+                invalidateStyle(event.getFigure(), event.getKey());
                 break;
             case SUBTREE_STRUCTURE_CHANGED:
                 invalidateLayout(event.getFigure());
@@ -134,53 +289,276 @@ public abstract class AbstractDrawingModel implements DrawingModel {
         dirtyLayouts.put(figure,null);
     }
 
+    /**
+     * Marks the stylesheet of the figure and of all its descendants as
+     * invalid.
+     *
+     * @param figure the figure
+     */
     protected void invalidateStyle(Figure figure) {
-        dirtyStyles.put(figure,null);
+        dirtyStyles.put(figure, Boolean.TRUE);
+    }
+
+    /**
+     * Marks the stylesheet of the figure as invalid, but not of its
+     * descendants.
+     *
+     * @param figure the figure
+     */
+    protected void invalidateStyleShallow(Figure figure) {
+        dirtyStyles.putIfAbsent(figure, Boolean.FALSE);
+    }
+
+    /**
+     * Marks the stylesheets of the figures as invalid, which may match
+     * different selectors after the specified property of the figure has
+     * changed.
+     * <p>
+     * Changes of the style class, the id and the pseudo class states only
+     * affect the figures which are reached by the selectors which test these
+     * properties. Changes of the inline style only affect the figure itself.
+     * All other changes affect the figure and all its descendants.
+     *
+     * @param figure the figure
+     * @param key the property which has changed, null if unknown
+     */
+    protected void invalidateStyle(Figure figure, MapAccessor<?> key) {
+        if (key == StyleableFigure.STYLE) {
+            invalidateStyleShallow(figure);
+            return;
+        }
+        SelectorDependencies dependencies = getSelectorDependencies();
+        Set<Relation> relations;
+        if (dependencies == null) {
+            relations = null;
+        } else if (key == StyleableFigure.STYLE_CLASS) {
+            relations = dependencies.getAttributeDependencies("class");
+        } else if (key == StyleableFigure.STYLE_ID) {
+            relations = dependencies.getAttributeDependencies("id");
+        } else if (key == StyleableFigure.PSEUDO_CLASS_STATES) {
+            relations = dependencies.getPseudoClassDependencies();
+        } else {
+            relations = null;
+        }
+        if (relations == null) {
+            invalidateStyle(figure);
+            return;
+        }
+
+        // The figure may have to drop rules that matched the old value of
+        // the property, even if no selector depends on the property.
+        invalidateStyleShallow(figure);
+        if (relations.contains(Relation.DESCENDANTS)) {
+            for (Figure child : figure.getChildren()) {
+                invalidateStyle(child);
+            }
+        }
+        Figure parent = figure.getParent();
+        if (parent != null) {
+            invalidateSiblingStyles(parent, parent.getChildren().indexOf(figure) + 1, relations);
+        }
+    }
+
+    /**
+     * Marks the stylesheets of the siblings as invalid, which may match
+     * different selectors after a figure has been inserted or removed.
+     *
+     * @param parent the parent of the inserted or removed figure
+     * @param index the index of the first sibling which follows the inserted
+     * or removed figure
+     */
+    private void invalidateSiblingStyles(Figure parent, int index) {
+        SelectorDependencies dependencies = getSelectorDependencies();
+        if (parent != null && dependencies != null) {
+            invalidateSiblingStyles(parent, index, dependencies.getStructureDependencies());
+        }
+    }
+
+    private void invalidateSiblingStyles(Figure parent, int index, Set<Relation> relations) {
+        boolean followingSiblings = relations.contains(Relation.FOLLOWING_SIBLINGS);
+        boolean followingSiblingDescendants = relations.contains(Relation.FOLLOWING_SIBLING_DESCENDANTS);
+        if (!followingSiblings && !followingSiblingDescendants && !relations.contains(Relation.NEXT_SIBLING)) {
+            return;
+        }
+        List<Figure> siblings = parent.getChildren();
+        int end = (followingSiblings || followingSiblingDescendants) ? siblings.size() : Math.min(index + 1, siblings.size());
+        for (int i = index; i < end; i++) {
+            Figure sibling = siblings.get(i);
+            if (followingSiblingDescendants) {
+                invalidateStyle(sibling);
+            } else {
+                invalidateStyleShallow(sibling);
+            }
+        }
+    }
+
+    /**
+     * Returns the selector dependencies of the style manager of the drawing.
+     *
+     * @return the selector dependencies, null if there is no style manager
+     */
+    private SelectorDependencies getSelectorDependencies() {
+        if (root == null) {
+            return null;
+        }
+        StyleManager<Figure> styleManager = root.getStyleManager();
+        return styleManager == null ? null : styleManager.getSelectorDependencies();
+    }
+
+    /**
+     * Returns the number of figures to which the stylesheet has been applied
+     * since this model was created.
+     *
+     * @return the number of style updates
+     */
+    public long getStyleUpdateCount() {
+        return styleUpdateCount;
+    }
+
+    /**
+     * Returns the number of descendant figures to which the stylesheet did not
+     * have to be applied, because the selector dependencies ruled them out.
+     *
+     * @return the number of avoided style updates
+     */
+    public long getAvoidedStyleUpdateCount() {
+        return avoidedStyleUpdateCount;
     }
 
     @Override
     public void validate() {
+        if (dirtyStyles.isEmpty() && dirtyLayouts.isEmpty()) {
+            return;
+        }
+        begin();
+        try {
+            validateStylesAndLayouts(false, 0L, null);
+        } finally {
+            commit();
+        }
+    }
+
+    @Override
+    public boolean validate(long maxNanos, Predicate<Figure> priority) {
+        if (dirtyStyles.isEmpty() && dirtyLayouts.isEmpty()) {
+            return true;
+        }
+        begin();
+        try {
+            return validateStylesAndLayouts(true, System.nanoTime() + maxNanos, priority);
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Applies the stylesheets and performs the layouts of the dirty
+     * figures. All styles are validated before the layouts.
+     *
+     * @param budgeted whether the deadline applies
+     * @param deadline the deadline as given by {@code System.nanoTime()}
+     * @param priority styles of these figures are validated first, may be
+     * null
+     * @return true if all styles and layouts are valid
+     */
+    private boolean validateStylesAndLayouts(boolean budgeted, long deadline, Predicate<Figure> priority) {
         if (!dirtyStyles.isEmpty()) {
-            isValidating = true;
             Figure[] fs = dirtyStyles.keySet().toArray(new Figure[dirtyStyles.size()]);
+            Boolean[] subtrees = dirtyStyles.values().toArray(new Boolean[dirtyStyles.size()]);
             dirtyStyles.clear();
-            for (Figure f : fs) {
-                invokeStylesheetNotify(f);
+            if (budgeted && priority != null) {
+                prioritize(fs, subtrees, priority);
+            }
+            int i = 0;
+            isValidating = true;
+            try {
+                for (; i < fs.length; i++) {
+                    if (budgeted && i > 0 && System.nanoTime() - deadline > 0) {
+                        break;
+                    }
+                    if (subtrees[i]) {
+                        invokeStylesheetNotify(fs[i]);
+                    } else {
+                        invokeStylesheetNotifyShallow(fs[i]);
+                    }
+                }
+            } finally {
+                isValidating = false;
+                // Figures which have not been styled stay dirty
+                for (; i < fs.length; i++) {
+                    dirtyStyles.put(fs[i], subtrees[i]);
+                }
+            }
+            if (!dirtyStyles.isEmpty()) {
+                return false;
             }
-            isValidating = false;
         }
         if (!dirtyLayouts.isEmpty()) {
-            isValidating = true;
             Figure[] fs = dirtyLayouts.keySet().toArray(new Figure[dirtyLayouts.size()]);
             dirtyLayouts.clear();
-            for (Figure f : fs) {
-                invokeLayoutNotify(f);
+            // The layouts must be performed in their original sequence
+            int i = 0;
+            isValidating = true;
+            try {
+                for (; i < fs.length; i++) {
+                    if (budgeted && i > 0 && System.nanoTime() - deadline > 0) {
+                        break;
+                    }
+                    invokeLayoutNotify(fs[i]);
+                }
+            } finally {
+                isValidating = false;
+                for (; i < fs.length; i++) {
+                    dirtyLayouts.put(fs[i], null);
+                }
+            }
+        }
+        return dirtyLayouts.isEmpty();
+    }
+
+    /**
+     * Moves the figures which are accepted by the priority predicate to the
+     * front of the array. The relative order of the figures is preserved.
+     */
+    private static void prioritize(Figure[] fs, Boolean[] subtrees, Predicate<Figure> priority) {
+        Figure[] sortedFs = new Figure[fs.length];
+        Boolean[] sortedSubtrees = new Boolean[fs.length];
+        boolean[] first = new boolean[fs.length];
+        int j = 0;
+        for (int i = 0; i < fs.length; i++) {
+            if (first[i] = priority.test(fs[i])) {
+                sortedFs[j] = fs[i];
+                sortedSubtrees[j++] = subtrees[i];
+            }
+        }
+        for (int i = 0; i < fs.length; i++) {
+            if (!first[i]) {
+                sortedFs[j] = fs[i];
+                sortedSubtrees[j++] = subtrees[i];
             }
-            isValidating = false;
         }
+        System.arraycopy(sortedFs, 0, fs, 0, fs.length);
+        System.arraycopy(sortedSubtrees, 0, subtrees, 0, subtrees.length);
     }
 
     /**
      * Fires {@code LayoutInvalidated} for all figure which are transitively
-     * connected to the figures in the {@code todo} list, and which are not in
-     * the {@code done} list. Handles connection cycles.
+     * connected to the figures in the {@code todo} queue. Handles connection
+     * cycles.
      *
-     * @param todo the todo list
-     * @param done the done list
+     * @param todo the todo queue, is emptied by this method
      */
-    private void fireLayoutInvalidatedForFiguresConnectedWithTodo(Collection<Figure> todo, HashSet<Figure> done) {
-        HashSet<Figure> todoNext = new HashSet<>();
-        for (Figure figure : todo) {
+    private void fireLayoutInvalidatedForFiguresConnectedWithTodo(ArrayDeque<Figure> todo) {
+        HashSet<Figure> done = new HashSet<>();
+        while (!todo.isEmpty()) {
+            Figure figure = todo.removeFirst();
             for (Figure c : figure.getDependentFigures()) {
                 if (done.add(c)) {
                     fire(DrawingModelEvent.layoutInvalidated(this, c));
-                    todoNext.add(c);
+                    todo.add(c);
                 }
             }
         }
-        if (!todoNext.isEmpty()) {
-            fireLayoutInvalidatedForFiguresConnectedWithTodo(todoNext, done);
-        }
     }
 
     /**
@@ -190,9 +568,9 @@ public abstract class AbstractDrawingModel implements DrawingModel {
      * @param figure the figure
      */
     protected void fireLayoutInvalidatedConnectedFigures(Figure figure) {
-        LinkedList<Figure> todo = new LinkedList<>();
+        ArrayDeque<Figure> todo = new ArrayDeque<>();
         todo.add(figure);
-        fireLayoutInvalidatedForFiguresConnectedWithTodo(todo, new HashSet<Figure>());
+        fireLayoutInvalidatedForFiguresConnectedWithTodo(todo);
     }
 
     /**
@@ -203,11 +581,11 @@ public abstract class AbstractDrawingModel implements DrawingModel {
      * @param subtreeRoot the figure
      */
     protected void fireLayoutInvalidatedForFiguresConnectedWithSubtree(Figure subtreeRoot) {
-        LinkedList<Figure> todo = new LinkedList<>();
+        ArrayDeque<Figure> todo = new ArrayDeque<>();
         for (Figure f : subtreeRoot.preorderIterable()) {
             todo.add(f);
         }
-        fireLayoutInvalidatedForFiguresConnectedWithTodo(todo, new HashSet<Figure>());
+        fireLayoutInvalidatedForFiguresConnectedWithTodo(todo);
     }
 
     /**
@@ -261,7 +639,48 @@ public abstract class AbstractDrawingModel implements DrawingModel {
 
     public void invokeStylesheetNotify(Figure figure) {
         figure.stylesheetNotify();
+        stylesheetNotified(figure);
+    }
+
+    /**
+     * Updates the counters and fires the events after the stylesheet has
+     * been applied to the figure and its descendants.
+     *
+     * @param figure the figure
+     */
+    private void stylesheetNotified(Figure figure) {
+        for (Iterator<Figure> i = figure.preorderIterable().iterator(); i.hasNext(); i.next()) {
+            styleUpdateCount++;
+        }
         fire(DrawingModelEvent.subtreeNodesInvalidated(this, figure));
         fireLayoutInvalidatedForFiguresConnectedWithSubtree(figure);
     }
+
+    public void invokeStylesheetNotifyShallow(Figure figure) {
+        figure.stylesheetNotifyShallow();
+        stylesheetNotifiedShallow(figure);
+    }
+
+    /**
+     * Updates the counters and fires the events after the stylesheet has
+     * been applied to the figure but not to its descendants.
+     *
+     * @param figure the figure
+     */
+    private void stylesheetNotifiedShallow(Figure figure) {
+        styleUpdateCount++;
+        if (figure.getChildren().isEmpty()) {
+            fire(DrawingModelEvent.nodeInvalidated(this, figure));
+        } else {
+            // The world transforms of the descendants have been invalidated
+            // implicitly by the transform cache of the figure.
+            for (Figure f : figure.preorderIterable()) {
+                if (f != figure) {
+                    avoidedStyleUpdateCount++;
+                }
+            }
+            fire(DrawingModelEvent.subtreeNodesInvalidated(this, figure));
+        }
+        fireLayoutInvalidatedConnectedFigures(figure);
+    }
 }
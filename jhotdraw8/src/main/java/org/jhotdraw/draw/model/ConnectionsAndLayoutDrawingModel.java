@@ -40,6 +40,7 @@ public class ConnectionsAndLayoutDrawingModel extends AbstractDrawingModel {
             int index = parent.getChildren().indexOf(child);
             if (index != -1) {
                 parent.getChildren().remove(index);
+                getUndoManager().recordChild(child, parent, index, null, -1);
                 fire(DrawingModelEvent.figureRemovedFromParent(this, parent, child, index));
                 fire(DrawingModelEvent.nodeInvalidated(this, parent));
             }
@@ -62,7 +63,16 @@ public class ConnectionsAndLayoutDrawingModel extends AbstractDrawingModel {
 
         }
         fireLayoutInvalidatedConnectedFigures(figure);
-        figure.disconnectDependantsAndProviders();
+        DrawingModelUndoManager undoManager = getUndoManager();
+        undoManager.startRecording(figure, false);
+        for (Figure f : figure.getDependentFigures()) {
+            undoManager.record(f);
+        }
+        try {
+            figure.disconnectDependantsAndProviders();
+        } finally {
+            undoManager.stopRecording();
+        }
         fire(DrawingModelEvent.nodeInvalidated(this, figure));
         fire(DrawingModelEvent.layoutInvalidated(this, figure));
     }
@@ -70,10 +80,14 @@ public class ConnectionsAndLayoutDrawingModel extends AbstractDrawingModel {
     @Override
     public void insertChildAt(Figure child, Figure parent, int index) {
         Drawing oldDrawing = child.getDrawing();
-        if (child.getParent() != null) {
-            child.getParent().remove(child);
+        Figure oldParent = child.getParent();
+        int oldIndex = -1;
+        if (oldParent != null) {
+            oldIndex = oldParent.getChildren().indexOf(child);
+            oldParent.remove(child);
         }
         parent.getChildren().add(index, child);
+        getUndoManager().recordChild(child, oldParent, oldIndex, parent, index);
         fire(DrawingModelEvent.figureAddedToParent(this, parent, child, index));
         fire(DrawingModelEvent.nodeInvalidated(this, parent));
         Drawing newDrawing = child.getDrawing();
@@ -91,7 +105,7 @@ public class ConnectionsAndLayoutDrawingModel extends AbstractDrawingModel {
     public <T> T set(Figure figure, MapAccessor<T> key, T newValue) {
         Set<Figure> connectionChange = null;
 
-        T oldValue = figure.set(key, newValue);
+        T oldValue = getUndoManager().set(figure, key, newValue);
         if (!Objects.equals(oldValue, newValue)) {
             final DirtyMask dm;
             if (key instanceof FigureMapAccessor) {
@@ -105,29 +119,35 @@ public class ConnectionsAndLayoutDrawingModel extends AbstractDrawingModel {
                 connectionChange = figure.getProvidingFigures();
             }
             
-            if (dm.containsOneOf(DirtyBits.NODE)) {
-                fire(DrawingModelEvent.nodeInvalidated(this, figure));
-            }
-            if (dm.containsOneOf(DirtyBits.LAYOUT)) {
-                fire(DrawingModelEvent.layoutInvalidated(this, figure));
-            }
-            if (dm.containsOneOf(DirtyBits.CONNECTION_LAYOUT)) {
-                fireLayoutInvalidatedConnectedFigures(figure);
-            }
-            if (dm.containsOneOf(DirtyBits.TRANSFORM)) {
-                fire(DrawingModelEvent.transformChanged(this, figure));
-            }
-            if (dm.containsOneOf(DirtyBits.STYLE)) {
-                fire(DrawingModelEvent.styleInvalidated(this, figure));
-            }
-            if (dm.containsOneOf(DirtyBits.CONNECTION)) {
-                fire(DrawingModelEvent.connectionChanged(this, figure));
-                Set<Figure> connectionsAfter = figure.getProvidingFigures();
-                connectionChange.addAll(connectionsAfter);
-                for (Figure f : connectionChange) {
-                    fire(DrawingModelEvent.connectionChanged(this, f));
-                    fire(DrawingModelEvent.nodeInvalidated(this, f));
+            // Fire the events as one batch
+            begin();
+            try {
+                if (dm.containsOneOf(DirtyBits.NODE)) {
+                    fire(DrawingModelEvent.nodeInvalidated(this, figure));
                 }
+                if (dm.containsOneOf(DirtyBits.LAYOUT)) {
+                    fire(DrawingModelEvent.layoutInvalidated(this, figure));
+                }
+                if (dm.containsOneOf(DirtyBits.CONNECTION_LAYOUT)) {
+                    fireLayoutInvalidatedConnectedFigures(figure);
+                }
+                if (dm.containsOneOf(DirtyBits.TRANSFORM)) {
+                    fire(DrawingModelEvent.transformChanged(this, figure));
+                }
+                if (dm.containsOneOf(DirtyBits.STYLE)) {
+                    fire(DrawingModelEvent.styleInvalidated(this, figure, key));
+                }
+                if (dm.containsOneOf(DirtyBits.CONNECTION)) {
+                    fire(DrawingModelEvent.connectionChanged(this, figure));
+                    Set<Figure> connectionsAfter = figure.getProvidingFigures();
+                    connectionChange.addAll(connectionsAfter);
+                    for (Figure f : connectionChange) {
+                        fire(DrawingModelEvent.connectionChanged(this, f));
+                        fire(DrawingModelEvent.nodeInvalidated(this, f));
+                    }
+                }
+            } finally {
+                commit();
             }
         }
 
@@ -136,7 +156,12 @@ public class ConnectionsAndLayoutDrawingModel extends AbstractDrawingModel {
 
     @Override
     public void reshape(Figure figure, Transform transform) {
-        figure.reshape(transform);
+        getUndoManager().startRecording(figure, true);
+        try {
+            figure.reshape(transform);
+        } finally {
+            getUndoManager().stopRecording();
+        }
         fire(DrawingModelEvent.transformChanged(this, figure));
         fire(DrawingModelEvent.subtreeNodesInvalidated(this, figure));
         fire(DrawingModelEvent.layoutInvalidated(this, figure));
@@ -145,7 +170,12 @@ public class ConnectionsAndLayoutDrawingModel extends AbstractDrawingModel {
 
     @Override
     public void reshape(Figure figure, double x, double y, double width, double height) {
-        figure.reshape(x, y, width, height);
+        getUndoManager().startRecording(figure, true);
+        try {
+            figure.reshape(x, y, width, height);
+        } finally {
+            getUndoManager().stopRecording();
+        }
         fire(DrawingModelEvent.transformChanged(this, figure));
         fire(DrawingModelEvent.subtreeNodesInvalidated(this, figure));
         fire(DrawingModelEvent.layoutInvalidated(this, figure));
@@ -38,6 +38,7 @@ public class ConnectionsNoLayoutDrawingModel extends AbstractDrawingModel {
             int index = parent.getChildren().indexOf(child);
             if (index != -1) {
                 parent.getChildren().remove(index);
+                getUndoManager().recordChild(child, parent, index, null, -1);
                 fire(DrawingModelEvent.figureRemovedFromParent(this, parent, child, index));
                 fire(DrawingModelEvent.nodeInvalidated(this, parent));
             }
@@ -56,10 +57,14 @@ public class ConnectionsNoLayoutDrawingModel extends AbstractDrawingModel {
     @Override
     public void insertChildAt(Figure child, Figure parent, int index) {
         Drawing oldDrawing = child.getDrawing();
-        if (child.getParent() != null) {
-            child.getParent().remove(child);
+        Figure oldParent = child.getParent();
+        int oldIndex = -1;
+        if (oldParent != null) {
+            oldIndex = oldParent.getChildren().indexOf(child);
+            oldParent.remove(child);
         }
         parent.getChildren().add(index, child);
+        getUndoManager().recordChild(child, oldParent, oldIndex, parent, index);
         fire(DrawingModelEvent.figureAddedToParent(this, parent, child, index));
         fire(DrawingModelEvent.nodeInvalidated(this, parent));
         Drawing newDrawing = child.getDrawing();
@@ -79,13 +84,22 @@ public class ConnectionsNoLayoutDrawingModel extends AbstractDrawingModel {
             fire(DrawingModelEvent.nodeInvalidated(this, connectedFigure));
 
         }
-        figure.disconnectDependantsAndProviders();
+        DrawingModelUndoManager undoManager = getUndoManager();
+        undoManager.startRecording(figure, false);
+        for (Figure f : figure.getDependentFigures()) {
+            undoManager.record(f);
+        }
+        try {
+            figure.disconnectDependantsAndProviders();
+        } finally {
+            undoManager.stopRecording();
+        }
         fire(DrawingModelEvent.nodeInvalidated(this, figure));
     }
 
     @Override
     public <T> T set(Figure figure, MapAccessor<T> key, T newValue) {
-        T oldValue = figure.set(key, newValue);
+        T oldValue = getUndoManager().set(figure, key, newValue);
         if (!Objects.equals(oldValue, newValue)) {
             final DirtyMask dm;
             if (key instanceof FigureMapAccessor) {
@@ -113,7 +127,12 @@ public class ConnectionsNoLayoutDrawingModel extends AbstractDrawingModel {
 
     @Override
     public void reshape(Figure figure, Transform transform) {
-        figure.reshape(transform);
+        getUndoManager().startRecording(figure, true);
+        try {
+            figure.reshape(transform);
+        } finally {
+            getUndoManager().stopRecording();
+        }
         fire(DrawingModelEvent.subtreeNodesInvalidated(this, figure));
         for (Figure f : figure.preorderIterable()) {
             for (Figure c : f.getDependentFigures()) {
@@ -124,7 +143,12 @@ public class ConnectionsNoLayoutDrawingModel extends AbstractDrawingModel {
 
     @Override
     public void reshape(Figure figure, double x, double y, double width, double height) {
-        figure.reshape(x, y, width, height);
+        getUndoManager().startRecording(figure, true);
+        try {
+            figure.reshape(x, y, width, height);
+        } finally {
+            getUndoManager().stopRecording();
+        }
         fire(DrawingModelEvent.subtreeNodesInvalidated(this, figure));
         for (Figure f : figure.preorderIterable()) {
             for (Figure c : f.getDependentFigures()) {
@@ -6,6 +6,7 @@
 package org.jhotdraw.draw.model;
 
 import java.util.List;
+import java.util.function.Predicate;
 import javafx.beans.Observable;
 import javafx.scene.transform.Transform;
 import org.jhotdraw.collection.MapAccessor;
@@ -68,6 +69,14 @@ public interface DrawingModel extends Observable {
      * @param l the listener */
     void removeDrawingModelListener(Listener<DrawingModelEvent> l);
 
+    /**
+     * Returns the undo manager, which records the changes that are made
+     * through this model.
+     *
+     * @return the undo manager
+     */
+    DrawingModelUndoManager getUndoManager();
+
     /** Gets the root of the tree.
      *
      * @return the drawing
@@ -211,6 +220,47 @@ public interface DrawingModel extends Observable {
      * the model.
      */
     void validate();
+
+    /**
+     * Validates the model within a time budget.
+     * <p>
+     * If the time budget is exceeded, the model stops validating and keeps
+     * the remaining work for the next invocation of this method. The figures
+     * which are accepted by the priority predicate are validated first.
+     * <p>
+     * The default implementation validates the entire model.
+     *
+     * @param maxNanos the time budget in nanoseconds
+     * @param priority figures which should be validated first, for example
+     * because they are visible
+     * @return true if the model is valid, false if work remains
+     */
+    default boolean validate(long maxNanos, Predicate<Figure> priority) {
+        validate();
+        return true;
+    }
+
+    /**
+     * Begins a transaction.
+     * <p>
+     * While a transaction is open, the model updates its own state as
+     * usual, but it queues the events for its listeners. When the outermost
+     * transaction is committed, redundant events are dropped from the queue,
+     * and the listeners receive the remaining events as one batch.
+     * <p>
+     * Transactions can be nested. Each invocation of this method must be
+     * followed by an invocation of {@link #commit}. The changes which are
+     * made in a transaction are undone in one step.
+     */
+    void begin();
+
+    /**
+     * Commits a transaction. If this is the outermost transaction, fires
+     * the queued events.
+     *
+     * @throws IllegalStateException if no transaction is open
+     */
+    void commit();
     
     // ---
     // convenience methods
@@ -5,7 +5,7 @@
  */
 package org.jhotdraw.draw.model;
 
-import org.jhotdraw.collection.Key;
+import org.jhotdraw.collection.MapAccessor;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.event.Event;
@@ -81,7 +81,7 @@ public class DrawingModelEvent extends Event<DrawingModel> {
         TRANSFORM_CHANGED,
     }
     private final Figure figure;
-    private final Key<?> key;
+    private final MapAccessor<?> key;
     private final Object oldValue;
     private final Object newValue;
 
@@ -90,7 +90,7 @@ public class DrawingModelEvent extends Event<DrawingModel> {
     private final int index;
     private final DrawingModelEvent.EventType eventType;
 
-    private DrawingModelEvent(DrawingModel source, EventType eventType, Figure figure, Figure parent, Drawing drawing, int index, Key<?> key, Object oldValue, Object newValue) {
+    private DrawingModelEvent(DrawingModel source, EventType eventType, Figure figure, Figure parent, Drawing drawing, int index, MapAccessor<?> key, Object oldValue, Object newValue) {
         super(source);
         this.figure = figure;
         this.key = key;
@@ -143,6 +143,10 @@ public class DrawingModelEvent extends Event<DrawingModel> {
     public static <T> DrawingModelEvent styleInvalidated(DrawingModel source, Figure figure) {
         return new DrawingModelEvent(source, EventType.STYLE_INVALIDATED, figure, null, null, -1, null, null, null);
     }
+
+    public static <T> DrawingModelEvent styleInvalidated(DrawingModel source, Figure figure, MapAccessor<T> key) {
+        return new DrawingModelEvent(source, EventType.STYLE_INVALIDATED, figure, null, null, -1, key, null, null);
+    }
     public static <T> DrawingModelEvent rootChanged(DrawingModel source, Drawing figure) {
         return new DrawingModelEvent(source, EventType.ROOT_CHANGED, figure, null, null, -1, null, null, null);
     }
@@ -162,9 +166,9 @@ public class DrawingModelEvent extends Event<DrawingModel> {
      * @param <T> the value type
      * @return the key
      */
-    public <T> Key<T> getKey() {
+    public <T> MapAccessor<T> getKey() {
         @SuppressWarnings("unchecked")
-        Key<T> tmp = (Key<T>) key;
+        MapAccessor<T> tmp = (MapAccessor<T>) key;
         return tmp;
     }
 
@@ -0,0 +1,529 @@
+/* @(#)DrawingModelUndoManager.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javafx.collections.MapChangeListener;
+import org.jhotdraw.collection.Key;
+import org.jhotdraw.collection.MapAccessor;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.key.DirtyBits;
+import org.jhotdraw.draw.key.DirtyMask;
+import org.jhotdraw.draw.key.FigureMapAccessor;
+
+/**
+ * Records the changes which are made through an {@link AbstractDrawingModel},
+ * so that they can be undone and redone.
+ * <p>
+ * The changes are recorded as deltas: the old and the new value of each
+ * changed user property, and the old and the new position of each added,
+ * moved or removed figure. The deltas of an edit are stored in flat arrays.
+ * <p>
+ * A change of a key with {@code set} is recorded from the old value which the
+ * figure returns. Changes which are made by reshaping or disconnecting a
+ * figure are recorded with a listener on the properties of the figure. The
+ * listener stays registered until the outermost edit ends.
+ * <p>
+ * All changes which are made between {@link #beginEdit} and {@link #endEdit}
+ * form one edit. Multiple changes of the same property of the same figure are
+ * coalesced into one delta, so that a drag sequence only stores the values
+ * from before and after the drag. Changes which are made outside of an edit
+ * form an edit of their own.
+ * <p>
+ * The memory used by the edits is bounded by a byte budget. When the budget
+ * is exceeded, the oldest edits are discarded. The size of an edit is
+ * estimated from the size of its arrays; the property values are not
+ * counted, because they are usually shared with the figures.
+ * <p>
+ * Undo and redo replay the deltas of an edit in one transaction of the
+ * model, so that the listeners of the model receive one batch of events.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class DrawingModelUndoManager {
+
+    /**
+     * Marks a property which had no value or which has been removed.
+     */
+    private final static Object ABSENT = new Object();
+    /**
+     * A property delta: figure, key, old value, new value.
+     */
+    private final static byte PROPERTY = 0;
+    /**
+     * A structure delta: child, old parent, new parent; and old index, new
+     * index.
+     */
+    private final static byte CHILD = 1;
+    /**
+     * The estimated size of an edit object and of its arrays, without the
+     * elements.
+     */
+    private final static int EDIT_OVERHEAD_BYTES = 80;
+    /**
+     * The estimated size of a reference.
+     */
+    private final static int REFERENCE_BYTES = 8;
+
+    /**
+     * Holds the deltas of an edit.
+     */
+    private static class Edit {
+
+        byte[] ops = new byte[8];
+        Object[] refs = new Object[32];
+        int[] indices = new int[0];
+        int opCount;
+        int refCount;
+        int indexCount;
+
+        void addProperty(Figure figure, Object key, Object oldValue, Object newValue) {
+            ensureCapacity(4, 0);
+            ops[opCount++] = PROPERTY;
+            refs[refCount++] = figure;
+            refs[refCount++] = key;
+            refs[refCount++] = oldValue;
+            refs[refCount++] = newValue;
+        }
+
+        void addChild(Figure child, Figure oldParent, int oldIndex, Figure newParent, int newIndex) {
+            ensureCapacity(3, 2);
+            ops[opCount++] = CHILD;
+            refs[refCount++] = child;
+            refs[refCount++] = oldParent;
+            refs[refCount++] = newParent;
+            indices[indexCount++] = oldIndex;
+            indices[indexCount++] = newIndex;
+        }
+
+        private void ensureCapacity(int newRefs, int newIndices) {
+            if (opCount == ops.length) {
+                ops = Arrays.copyOf(ops, ops.length * 2);
+            }
+            if (refCount + newRefs > refs.length) {
+                refs = Arrays.copyOf(refs, Math.max(refs.length * 2, refCount + newRefs));
+            }
+            if (indexCount + newIndices > indices.length) {
+                indices = Arrays.copyOf(indices, Math.max(indices.length * 2, indexCount + newIndices));
+            }
+        }
+
+        /**
+         * Removes the property deltas which do not change the value, and
+         * trims the arrays.
+         */
+        void compact() {
+            int op = 0, ref = 0;
+            for (int i = 0, r = 0; i < opCount; i++) {
+                if (ops[i] == PROPERTY) {
+                    if (!Objects.equals(refs[r + 2], refs[r + 3])) {
+                        ops[op++] = PROPERTY;
+                        System.arraycopy(refs, r, refs, ref, 4);
+                        ref += 4;
+                    }
+                    r += 4;
+                } else {
+                    ops[op++] = CHILD;
+                    System.arraycopy(refs, r, refs, ref, 3);
+                    ref += 3;
+                    r += 3;
+                }
+            }
+            opCount = op;
+            refCount = ref;
+            ops = Arrays.copyOf(ops, opCount);
+            refs = Arrays.copyOf(refs, refCount);
+            indices = Arrays.copyOf(indices, indexCount);
+        }
+
+        boolean isEmpty() {
+            return opCount == 0;
+        }
+
+        long getEstimatedBytes() {
+            return EDIT_OVERHEAD_BYTES + ops.length + (long) refs.length * REFERENCE_BYTES + indices.length * 4L;
+        }
+    }
+
+    private final AbstractDrawingModel model;
+    private final ArrayDeque<Edit> undoEdits = new ArrayDeque<>();
+    private final ArrayDeque<Edit> redoEdits = new ArrayDeque<>();
+    private long bytes;
+    private long maxBytes = 16L << 20;
+
+    /**
+     * The edit which is being recorded.
+     */
+    private Edit edit;
+    /**
+     * The nesting depth of {@link #beginEdit}.
+     */
+    private int editDepth;
+    /**
+     * Maps the figures and keys of the property deltas of the current edit
+     * to the positions of the deltas in the edit.
+     */
+    private final Map<Figure, Map<Object, Integer>> propertyDeltas = new IdentityHashMap<>();
+    /**
+     * The figures on which recording listeners are registered, and their
+     * listeners. The listeners stay registered until the outermost edit
+     * ends, so that repeated changes of the same figures during a drag do
+     * not register them again.
+     */
+    private final Map<Figure, MapChangeListener<Key<?>, Object>> recordedFigures = new IdentityHashMap<>();
+    /**
+     * The nesting depth of {@link #startRecording}. The recording listeners
+     * only record changes while this is greater than zero.
+     */
+    private int recordingDepth;
+    /**
+     * Whether an edit is being replayed.
+     */
+    private boolean replaying;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param model the model whose changes are recorded
+     */
+    public DrawingModelUndoManager(AbstractDrawingModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Returns the byte budget.
+     *
+     * @return the maximal number of bytes used by the edits
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the byte budget, and discards the oldest edits if they exceed the
+     * budget. The most recent edit is always kept.
+     *
+     * @param maxBytes the maximal number of bytes used by the edits
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the edits.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Begins an edit. All changes until the matching invocation of
+     * {@link #endEdit} can be undone in one step.
+     * <p>
+     * Edits can be nested. Each invocation of this method must be followed
+     * by an invocation of {@link #endEdit}.
+     */
+    public void beginEdit() {
+        if (editDepth++ == 0) {
+            edit = new Edit();
+        }
+    }
+
+    /**
+     * Ends an edit. If this is the outermost edit, the edit is added to the
+     * undo stack, unless it does not contain any changes.
+     *
+     * @throws IllegalStateException if no edit is open
+     */
+    public void endEdit() {
+        if (editDepth == 0) {
+            throw new IllegalStateException("no edit is open");
+        }
+        if (--editDepth > 0) {
+            return;
+        }
+        Edit e = edit;
+        edit = null;
+        propertyDeltas.clear();
+        for (Map.Entry<Figure, MapChangeListener<Key<?>, Object>> entry : recordedFigures.entrySet()) {
+            entry.getKey().getProperties().removeListener(entry.getValue());
+        }
+        recordedFigures.clear();
+        e.compact();
+        if (e.isEmpty()) {
+            return;
+        }
+        for (Edit r : redoEdits) {
+            bytes -= r.getEstimatedBytes();
+        }
+        redoEdits.clear();
+        undoEdits.addLast(e);
+        bytes += e.getEstimatedBytes();
+        trim();
+    }
+
+    /**
+     * Discards the oldest edits until the edits fit into the byte budget.
+     */
+    private void trim() {
+        while (bytes > maxBytes && !redoEdits.isEmpty()) {
+            bytes -= redoEdits.removeLast().getEstimatedBytes();
+        }
+        while (bytes > maxBytes && undoEdits.size() > 1) {
+            bytes -= undoEdits.removeFirst().getEstimatedBytes();
+        }
+    }
+
+    /**
+     * Discards all edits.
+     */
+    public void discardAllEdits() {
+        undoEdits.clear();
+        redoEdits.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Returns true if there is an edit that can be undone.
+     *
+     * @return true if undo is possible
+     */
+    public boolean canUndo() {
+        return editDepth == 0 && !undoEdits.isEmpty();
+    }
+
+    /**
+     * Returns true if there is an edit that can be redone.
+     *
+     * @return true if redo is possible
+     */
+    public boolean canRedo() {
+        return editDepth == 0 && !redoEdits.isEmpty();
+    }
+
+    /**
+     * Undoes the most recent edit.
+     *
+     * @throws IllegalStateException if there is no edit that can be undone
+     */
+    public void undo() {
+        if (!canUndo()) {
+            throw new IllegalStateException("can not undo");
+        }
+        Edit e = undoEdits.removeLast();
+        replay(e, true);
+        redoEdits.addLast(e);
+    }
+
+    /**
+     * Redoes the most recently undone edit.
+     *
+     * @throws IllegalStateException if there is no edit that can be redone
+     */
+    public void redo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("can not redo");
+        }
+        Edit e = redoEdits.removeLast();
+        replay(e, false);
+        undoEdits.addLast(e);
+    }
+
+    /**
+     * Applies the old values of the deltas in reverse order, or the new
+     * values in the original order.
+     */
+    private void replay(Edit e, boolean undo) {
+        replaying = true;
+        model.begin();
+        try {
+            if (undo) {
+                for (int i = e.opCount - 1, r = e.refCount, x = e.indexCount; i >= 0; i--) {
+                    if (e.ops[i] == PROPERTY) {
+                        r -= 4;
+                        replayProperty((Figure) e.refs[r], (Key<?>) e.refs[r + 1], e.refs[r + 2]);
+                    } else {
+                        r -= 3;
+                        x -= 2;
+                        replayChild((Figure) e.refs[r], (Figure) e.refs[r + 1], e.indices[x]);
+                    }
+                }
+            } else {
+                for (int i = 0, r = 0, x = 0; i < e.opCount; i++) {
+                    if (e.ops[i] == PROPERTY) {
+                        replayProperty((Figure) e.refs[r], (Key<?>) e.refs[r + 1], e.refs[r + 3]);
+                        r += 4;
+                    } else {
+                        replayChild((Figure) e.refs[r], (Figure) e.refs[r + 2], e.indices[x + 1]);
+                        r += 3;
+                        x += 2;
+                    }
+                }
+            }
+        } finally {
+            model.commit();
+            replaying = false;
+        }
+    }
+
+    private void replayProperty(Figure figure, Key<?> key, Object value) {
+        if (value == ABSENT) {
+            figure.getProperties().remove(key);
+        } else {
+            figure.getProperties().put(key, value);
+        }
+        DirtyMask dm = (key instanceof FigureMapAccessor)
+                ? ((FigureMapAccessor<?>) key).getDirtyMask() : DirtyMask.EMPTY;
+        model.fire(DrawingModelEvent.nodeInvalidated(model, figure));
+        if (dm.containsOneOf(DirtyBits.LAYOUT)) {
+            model.fire(DrawingModelEvent.layoutInvalidated(model, figure));
+        }
+        if (dm.containsOneOf(DirtyBits.CONNECTION_LAYOUT)) {
+            model.fireLayoutInvalidatedConnectedFigures(figure);
+        }
+        if (dm.containsOneOf(DirtyBits.TRANSFORM)) {
+            model.fire(DrawingModelEvent.transformChanged(model, figure));
+        }
+        if (dm.containsOneOf(DirtyBits.STYLE)) {
+            model.fire(DrawingModelEvent.styleInvalidated(model, figure, key));
+        }
+        if (dm.containsOneOf(DirtyBits.CONNECTION)) {
+            model.fire(DrawingModelEvent.connectionChanged(model, figure));
+        }
+    }
+
+    private void replayChild(Figure child, Figure parent, int index) {
+        if (parent == null) {
+            model.removeFromParent(child);
+        } else {
+            model.insertChildAt(child, parent, index);
+        }
+    }
+
+    /**
+     * Sets a property of a figure, and records the change.
+     * <p>
+     * The change of a key is recorded from the old value which is returned
+     * by the figure. A map accessor which is not a key may change several
+     * keys, its changes are recorded with a listener.
+     *
+     * @param <T> the value type
+     * @param figure the figure
+     * @param key the key
+     * @param newValue the new value
+     * @return the old value
+     */
+    <T> T set(Figure figure, MapAccessor<T> key, T newValue) {
+        if (!(key instanceof Key)) {
+            startRecording(figure, false);
+            try {
+                return figure.set(key, newValue);
+            } finally {
+                stopRecording();
+            }
+        }
+        if (replaying) {
+            return figure.set(key, newValue);
+        }
+        boolean hadValue = figure.getProperties().containsKey(key);
+        T oldValue = figure.set(key, newValue);
+        beginEdit();
+        recordProperty(figure, key, hadValue ? oldValue : ABSENT, newValue);
+        endEdit();
+        return oldValue;
+    }
+
+    /**
+     * Starts recording the changes of the user properties of the specified
+     * figure, and optionally of its descendants. Must be followed by an
+     * invocation of {@link #stopRecording}.
+     *
+     * @param figure the figure
+     * @param subtree whether the descendants are recorded as well
+     */
+    void startRecording(Figure figure, boolean subtree) {
+        beginEdit();
+        recordingDepth++;
+        if (subtree) {
+            for (Figure f : figure.preorderIterable()) {
+                record(f);
+            }
+        } else {
+            record(figure);
+        }
+    }
+
+    /**
+     * Records the changes of the user properties of an additional figure
+     * until {@link #stopRecording} is invoked.
+     *
+     * @param figure the figure
+     */
+    void record(Figure figure) {
+        if (replaying || recordedFigures.containsKey(figure)) {
+            return;
+        }
+        MapChangeListener<Key<?>, Object> l = change -> {
+            if (recordingDepth > 0) {
+                recordProperty(figure, change.getKey(),
+                        change.wasRemoved() ? change.getValueRemoved() : ABSENT,
+                        change.wasAdded() ? change.getValueAdded() : ABSENT);
+            }
+        };
+        figure.getProperties().addListener(l);
+        recordedFigures.put(figure, l);
+    }
+
+    /**
+     * Stops recording the changes of properties. The listeners are removed
+     * when the outermost edit ends.
+     */
+    void stopRecording() {
+        recordingDepth--;
+        endEdit();
+    }
+
+    private void recordProperty(Figure figure, Object key, Object oldValue, Object newValue) {
+        Map<Object, Integer> deltas = propertyDeltas.get(figure);
+        if (deltas == null) {
+            deltas = new HashMap<>();
+            propertyDeltas.put(figure, deltas);
+        }
+        Integer position = deltas.get(key);
+        if (position == null) {
+            deltas.put(key, edit.refCount);
+            edit.addProperty(figure, key, oldValue, newValue);
+        } else {
+            edit.refs[position + 3] = newValue;
+        }
+    }
+
+    /**
+     * Records that a child has been added, moved or removed.
+     *
+     * @param child the child
+     * @param oldParent the old parent, null if the child had no parent
+     * @param oldIndex the old index, -1 if the child had no parent
+     * @param newParent the new parent, null if the child has been removed
+     * @param newIndex the new index, -1 if the child has been removed
+     */
+    void recordChild(Figure child, Figure oldParent, int oldIndex, Figure newParent, int newIndex) {
+        if (replaying) {
+            return;
+        }
+        beginEdit();
+        edit.addChild(child, oldParent, oldIndex, newParent, newIndex);
+        endEdit();
+    }
+}
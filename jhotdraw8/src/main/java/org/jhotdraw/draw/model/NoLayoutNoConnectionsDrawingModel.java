@@ -37,6 +37,7 @@ public class NoLayoutNoConnectionsDrawingModel extends AbstractDrawingModel {
             int index = parent.getChildren().indexOf(child);
             if (index != -1) {
                 parent.getChildren().remove(index);
+                getUndoManager().recordChild(child, parent, index, null, -1);
                 fire(DrawingModelEvent.figureRemovedFromParent(this, parent, child, index));
                 fire(DrawingModelEvent.nodeInvalidated(this, parent));
             }
@@ -55,10 +56,14 @@ public class NoLayoutNoConnectionsDrawingModel extends AbstractDrawingModel {
     @Override
     public void insertChildAt(Figure child, Figure parent, int index) {
         Drawing oldDrawing = child.getDrawing();
-        if (child.getParent() != null) {
-            child.getParent().remove(child);
+        Figure oldParent = child.getParent();
+        int oldIndex = -1;
+        if (oldParent != null) {
+            oldIndex = oldParent.getChildren().indexOf(child);
+            oldParent.remove(child);
         }
         parent.getChildren().add(index, child);
+        getUndoManager().recordChild(child, oldParent, oldIndex, parent, index);
         fire(DrawingModelEvent.figureAddedToParent(this, parent, child, index));
         fire(DrawingModelEvent.nodeInvalidated(this, parent));
         Drawing newDrawing = child.getDrawing();
@@ -74,7 +79,7 @@ public class NoLayoutNoConnectionsDrawingModel extends AbstractDrawingModel {
 
     @Override
     public <T> T set(Figure figure, MapAccessor<T> key, T newValue) {
-        T oldValue = figure.set(key, newValue);
+        T oldValue = getUndoManager().set(figure, key, newValue);
         if (!Objects.equals(oldValue, newValue)) {
             final DirtyMask dm;
             if (key instanceof FigureMapAccessor) {
@@ -93,13 +98,23 @@ public class NoLayoutNoConnectionsDrawingModel extends AbstractDrawingModel {
 
     @Override
     public void reshape(Figure f, Transform transform) {
-        f.reshape(transform);
+        getUndoManager().startRecording(f, true);
+        try {
+            f.reshape(transform);
+        } finally {
+            getUndoManager().stopRecording();
+        }
         fire(DrawingModelEvent.subtreeNodesInvalidated(this, f));
     }
 
     @Override
     public void reshape(Figure f, double x, double y, double width, double height) {
-        f.reshape(x, y, width, height);
+        getUndoManager().startRecording(f, true);
+        try {
+            f.reshape(x, y, width, height);
+        } finally {
+            getUndoManager().stopRecording();
+        }
         fire(DrawingModelEvent.subtreeNodesInvalidated(this, f));
     }
 
@@ -112,7 +127,16 @@ public class NoLayoutNoConnectionsDrawingModel extends AbstractDrawingModel {
     @Override
     public void disconnect(Figure figure) {
         // no event fired! 
-        figure.disconnectDependantsAndProviders();
+        DrawingModelUndoManager undoManager = getUndoManager();
+        undoManager.startRecording(figure, false);
+        for (Figure f : figure.getDependentFigures()) {
+            undoManager.record(f);
+        }
+        try {
+            figure.disconnectDependantsAndProviders();
+        } finally {
+            undoManager.stopRecording();
+        }
     }
 
     @Override
@@ -7,6 +7,8 @@ package org.jhotdraw.draw.tool;
 import javafx.scene.Node;
 import javafx.scene.layout.BorderPane;
 import org.jhotdraw.app.AbstractDisableable;
+import org.jhotdraw.draw.model.DrawingModel;
+import org.jhotdraw.draw.model.DrawingModelUndoManager;
 
 /**
  * AbstractAction.
@@ -17,6 +19,10 @@ public abstract class AbstractTracker extends AbstractDisableable implements Tra
     // Fields
     // ---
     protected final BorderPane node = new BorderPane();
+    /**
+     * The undo manager in which this tracker has begun an edit, or null.
+     */
+    private DrawingModelUndoManager openEdit;
 
     // ---
     // Constructors
@@ -39,4 +45,34 @@ public abstract class AbstractTracker extends AbstractDisableable implements Tra
     public Node getNode() {
         return node;
     }
+
+    @Override
+    public void cancelTracking() {
+        endEdit();
+    }
+
+    /**
+     * Begins an edit in the undo manager of the model, unless this tracker has
+     * already begun an edit which has not been ended yet.
+     *
+     * @param model the drawing model
+     */
+    protected void beginEdit(DrawingModel model) {
+        if (openEdit == null) {
+            openEdit = model.getUndoManager();
+            openEdit.beginEdit();
+        }
+    }
+
+    /**
+     * Ends the edit which this tracker has begun. Does nothing if this tracker has
+     * not begun an edit.
+     */
+    protected void endEdit() {
+        if (openEdit != null) {
+            DrawingModelUndoManager undoManager = openEdit;
+            openEdit = null;
+            undoManager.endEdit();
+        }
+    }
 }
@@ -329,6 +329,9 @@ public class SelectionTool extends AbstractTool {
 
     private void setTracker(Tracker t) {
         if (tracker != null) {
+            // ends the edit of a tracker which has not received the mouse
+            // released event
+            tracker.cancelTracking();
             drawPane.setCenter(null);
         }
         tracker = t;
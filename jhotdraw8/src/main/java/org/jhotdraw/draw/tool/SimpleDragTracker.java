@@ -69,11 +69,12 @@ public class SimpleDragTracker extends AbstractTracker implements DragTracker {
     @Override
     public void trackMousePressed(MouseEvent event, DrawingView view) {
         oldPoint = anchor = view.getConstrainer().constrainPoint(anchorFigure, view.viewToWorld(new Point2D(event.getX(), event.getY())));
+        beginEdit(view.getModel());
     }
 
     @Override
     public void trackMouseReleased(MouseEvent event, DrawingView dv) {
-// FIXME fire undoable edit
+        endEdit();
         //  fireToolDone();
     }
 
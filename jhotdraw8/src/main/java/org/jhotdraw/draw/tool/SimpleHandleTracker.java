@@ -43,6 +43,9 @@ public class SimpleHandleTracker extends AbstractTracker implements HandleTracke
 
     @Override
     public void setHandles(Handle handle, Collection<Figure> compatibleFigures) {
+        if (this.handle != null && this.handle != handle) {
+            this.handle.onTrackingCancelled();
+        }
         this.handle = handle;
         this.compatibleFigures = compatibleFigures;
     }
@@ -62,6 +65,13 @@ public class SimpleHandleTracker extends AbstractTracker implements HandleTracke
     public void trackMouseDragged(MouseEvent event, DrawingView dv) {
         handle.onMouseDragged(event, dv);
     }
+    @Override
+    public void cancelTracking() {
+        if (handle != null) {
+            handle.onTrackingCancelled();
+        }
+    }
+
     @Override
     public void trackKeyPressed(KeyEvent event, DrawingView view) {
     }
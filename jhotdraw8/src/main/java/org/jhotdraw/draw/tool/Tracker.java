@@ -63,4 +63,12 @@ public interface Tracker {
     void trackKeyReleased(KeyEvent event, DrawingView view);
 
     void trackKeyTyped(KeyEvent event, DrawingView view);
+
+    /**
+     * Is invoked when the parent Tool stops forwarding events to this tracker
+     * before the mouse has been released. The tracker must end the edit which
+     * it has begun on mouse pressed. This implementation is empty.
+     */
+    default void cancelTracking() {
+    }
 }
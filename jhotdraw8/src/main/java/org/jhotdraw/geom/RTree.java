@@ -0,0 +1,388 @@
+/* @(#)RTree.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A spatial index which maps items to axis-aligned bounding rectangles.
+ * <p>
+ * The index is an R-tree with quadratic split. It answers the question which
+ * items intersect with a given rectangle without having to look at all
+ * items.
+ * <p>
+ * Items are compared by identity. Each item can be stored at most once, and
+ * storing an item again replaces its bounds.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ * @param <T> the item type
+ */
+public class RTree<T> {
+
+    private final static int MAX_ENTRIES = 16;
+    private final static int MIN_ENTRIES = 6;
+
+    /**
+     * The bounding rectangle of a node or of an entry.
+     */
+    private static class Rect {
+
+        double minX, minY, maxX, maxY;
+        Node parent;
+
+        double area() {
+            return (maxX - minX) * (maxY - minY);
+        }
+
+        double combinedArea(Rect that) {
+            return (Math.max(maxX, that.maxX) - Math.min(minX, that.minX))
+                    * (Math.max(maxY, that.maxY) - Math.min(minY, that.minY));
+        }
+
+        boolean intersects(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && this.maxX >= minX
+                    && this.minY <= maxY && this.maxY >= minY;
+        }
+    }
+
+    private static class Entry<T> extends Rect {
+
+        final T item;
+
+        Entry(T item, double minX, double minY, double maxX, double maxY) {
+            this.item = item;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+    }
+
+    private static class Node extends Rect {
+
+        /**
+         * The height of the node. Leaf nodes have height 0 and contain
+         * entries, all other nodes contain nodes.
+         */
+        final int height;
+        final ArrayList<Rect> children = new ArrayList<>(MAX_ENTRIES + 1);
+
+        Node(int height) {
+            this.height = height;
+        }
+
+        void add(Rect r) {
+            children.add(r);
+            r.parent = this;
+            if (children.size() == 1) {
+                minX = r.minX;
+                minY = r.minY;
+                maxX = r.maxX;
+                maxY = r.maxY;
+            } else {
+                minX = Math.min(minX, r.minX);
+                minY = Math.min(minY, r.minY);
+                maxX = Math.max(maxX, r.maxX);
+                maxY = Math.max(maxY, r.maxY);
+            }
+        }
+
+        void recomputeBounds() {
+            if (children.isEmpty()) {
+                minX = minY = maxX = maxY = 0;
+                return;
+            }
+            Rect first = children.get(0);
+            minX = first.minX;
+            minY = first.minY;
+            maxX = first.maxX;
+            maxY = first.maxY;
+            for (int i = 1, n = children.size(); i < n; i++) {
+                Rect r = children.get(i);
+                minX = Math.min(minX, r.minX);
+                minY = Math.min(minY, r.minY);
+                maxX = Math.max(maxX, r.maxX);
+                maxY = Math.max(maxY, r.maxY);
+            }
+        }
+    }
+
+    private Node root = new Node(0);
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+
+    /**
+     * Returns the number of items.
+     *
+     * @return the number of items
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns true if the index is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns true if the index contains the item.
+     *
+     * @param item an item
+     * @return true if the item is in the index
+     */
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * Removes all items.
+     */
+    public void clear() {
+        entries.clear();
+        root = new Node(0);
+    }
+
+    /**
+     * Stores the item with the specified bounds. Replaces the bounds if the
+     * item is already in the index.
+     *
+     * @param item an item
+     * @param minX the minimal x-coordinate of the bounds
+     * @param minY the minimal y-coordinate of the bounds
+     * @param maxX the maximal x-coordinate of the bounds
+     * @param maxY the maximal y-coordinate of the bounds
+     */
+    public void put(T item, double minX, double minY, double maxX, double maxY) {
+        remove(item);
+        Entry<T> e = new Entry<>(item, minX, minY, maxX, maxY);
+        entries.put(item, e);
+        insert(e);
+    }
+
+    /**
+     * Removes the item.
+     *
+     * @param item an item
+     * @return true if the item was in the index
+     */
+    public boolean remove(T item) {
+        Entry<T> e = entries.remove(item);
+        if (e == null) {
+            return false;
+        }
+        Node leaf = e.parent;
+        leaf.children.remove(e);
+        condenseTree(leaf);
+        return true;
+    }
+
+    /**
+     * Invokes the consumer for each item whose bounds intersect with the
+     * specified rectangle. The items are visited in no particular order.
+     *
+     * @param minX the minimal x-coordinate of the rectangle
+     * @param minY the minimal y-coordinate of the rectangle
+     * @param maxX the maximal x-coordinate of the rectangle
+     * @param maxY the maximal y-coordinate of the rectangle
+     * @param consumer the consumer
+     */
+    @SuppressWarnings("unchecked")
+    public void search(double minX, double minY, double maxX, double maxY, Consumer<? super T> consumer) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (int i = 0, n = node.children.size(); i < n; i++) {
+                Rect r = node.children.get(i);
+                if (r.intersects(minX, minY, maxX, maxY)) {
+                    if (node.height == 0) {
+                        consumer.accept(((Entry<T>) r).item);
+                    } else {
+                        stack.push((Node) r);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the items whose bounds intersect with the specified rectangle.
+     *
+     * @param minX the minimal x-coordinate of the rectangle
+     * @param minY the minimal y-coordinate of the rectangle
+     * @param maxX the maximal x-coordinate of the rectangle
+     * @param maxY the maximal y-coordinate of the rectangle
+     * @return a new list with the items
+     */
+    public List<T> search(double minX, double minY, double maxX, double maxY) {
+        List<T> result = new ArrayList<>();
+        search(minX, minY, maxX, maxY, result::add);
+        return result;
+    }
+
+    private void insert(Entry<T> e) {
+        Node n = root;
+        while (n.height > 0) {
+            n = chooseChild(n, e);
+        }
+        n.add(e);
+        Node split = n.children.size() > MAX_ENTRIES ? splitNode(n) : null;
+        adjustTree(n, split);
+    }
+
+    /**
+     * Returns the child which needs the least enlargement to include the
+     * rectangle. Resolves ties by choosing the child with the smallest area.
+     */
+    private Node chooseChild(Node n, Rect r) {
+        Node best = null;
+        double bestEnlargement = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for (Rect c : n.children) {
+            double area = c.area();
+            double enlargement = c.combinedArea(r) - area;
+            if (enlargement < bestEnlargement
+                    || enlargement == bestEnlargement && area < bestArea) {
+                best = (Node) c;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Propagates the bounds of the node and a split off sibling up to the
+     * root.
+     */
+    private void adjustTree(Node n, Node split) {
+        while (true) {
+            Node p = n.parent;
+            if (p == null) {
+                if (split != null) {
+                    Node newRoot = new Node(n.height + 1);
+                    newRoot.add(n);
+                    newRoot.add(split);
+                    root = newRoot;
+                }
+                return;
+            }
+            if (split != null) {
+                p.add(split);
+                split = p.children.size() > MAX_ENTRIES ? splitNode(p) : null;
+            }
+            p.recomputeBounds();
+            n = p;
+        }
+    }
+
+    /**
+     * Moves about half of the children of the node into a new sibling node.
+     */
+    private Node splitNode(Node n) {
+        ArrayList<Rect> remaining = new ArrayList<>(n.children);
+        n.children.clear();
+        Node sibling = new Node(n.height);
+
+        // Pick the two children which would waste the most area if they
+        // were put into the same node.
+        int seed1 = 0, seed2 = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for (int i = 0, size = remaining.size(); i < size; i++) {
+            Rect a = remaining.get(i);
+            for (int j = i + 1; j < size; j++) {
+                Rect b = remaining.get(j);
+                double waste = a.combinedArea(b) - a.area() - b.area();
+                if (waste > worst) {
+                    worst = waste;
+                    seed1 = i;
+                    seed2 = j;
+                }
+            }
+        }
+        Rect b = remaining.remove(seed2);
+        Rect a = remaining.remove(seed1);
+        n.add(a);
+        sibling.add(b);
+
+        while (!remaining.isEmpty()) {
+            if (n.children.size() + remaining.size() == MIN_ENTRIES) {
+                for (Rect r : remaining) {
+                    n.add(r);
+                }
+                break;
+            }
+            if (sibling.children.size() + remaining.size() == MIN_ENTRIES) {
+                for (Rect r : remaining) {
+                    sibling.add(r);
+                }
+                break;
+            }
+            Rect r = remaining.remove(remaining.size() - 1);
+            double e1 = n.combinedArea(r) - n.area();
+            double e2 = sibling.combinedArea(r) - sibling.area();
+            Node target;
+            if (e1 != e2) {
+                target = e1 < e2 ? n : sibling;
+            } else if (n.area() != sibling.area()) {
+                target = n.area() < sibling.area() ? n : sibling;
+            } else {
+                target = n.children.size() <= sibling.children.size() ? n : sibling;
+            }
+            target.add(r);
+        }
+        return sibling;
+    }
+
+    /**
+     * Removes underfull nodes on the path from the node to the root, and
+     * reinserts their entries.
+     */
+    @SuppressWarnings("unchecked")
+    private void condenseTree(Node n) {
+        ArrayList<Node> orphans = new ArrayList<>();
+        while (n != root) {
+            Node p = n.parent;
+            if (n.children.size() < MIN_ENTRIES) {
+                p.children.remove(n);
+                orphans.add(n);
+            } else {
+                n.recomputeBounds();
+            }
+            n = p;
+        }
+        root.recomputeBounds();
+        if (root.children.isEmpty()) {
+            root = new Node(0);
+        }
+
+        ArrayDeque<Node> stack = new ArrayDeque<>(orphans);
+        while (!stack.isEmpty()) {
+            Node orphan = stack.pop();
+            for (Rect r : orphan.children) {
+                if (orphan.height == 0) {
+                    insert((Entry<T>) r);
+                } else {
+                    stack.push((Node) r);
+                }
+            }
+        }
+
+        while (root.height > 0 && root.children.size() == 1) {
+            root = (Node) root.children.get(0);
+            root.parent = null;
+        }
+    }
+}
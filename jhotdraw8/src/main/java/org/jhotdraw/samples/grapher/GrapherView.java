@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 import java.util.prefs.Preferences;
 import javafx.beans.InvalidationListener;
@@ -46,7 +47,9 @@ import org.jhotdraw.draw.SimpleLayer;
 import org.jhotdraw.draw.figure.StrokeableFigure;
 import org.jhotdraw.draw.figure.StyleableFigure;
 import org.jhotdraw.draw.action.BringToFrontAction;
+import org.jhotdraw.draw.action.RedoAction;
 import org.jhotdraw.draw.action.SendToBackAction;
+import org.jhotdraw.draw.action.UndoAction;
 import org.jhotdraw.draw.constrain.GridConstrainer;
 import org.jhotdraw.draw.figure.ImageFigure;
 import org.jhotdraw.draw.gui.DrawingInspector;
@@ -66,6 +69,7 @@ import org.jhotdraw.draw.io.SimpleIdFactory;
 import org.jhotdraw.draw.io.SimpleXmlIO;
 import org.jhotdraw.draw.figure.EllipseFigure;
 import org.jhotdraw.draw.figure.LineFigure;
+import org.jhotdraw.draw.figure.SnapshotCache;
 import org.jhotdraw.draw.tool.CreationTool;
 import org.jhotdraw.draw.tool.ConnectionTool;
 import org.jhotdraw.draw.tool.ImageCreationTool;
@@ -157,6 +161,8 @@ public class GrapherView extends AbstractView implements EditorView {
         ztbar.setDrawingView(drawingView);
         toolsToolBar.getItems().add(ztbar);
 
+        getActionMap().put(UndoAction.ID, new UndoAction(getApplication(), editor));
+        getActionMap().put(RedoAction.ID, new RedoAction(getApplication(), editor));
         getActionMap().put(SendToBackAction.ID, new SendToBackAction(getApplication(), editor));
         getActionMap().put(BringToFrontAction.ID, new BringToFrontAction(getApplication(), editor));
         getActionMap().put("view.toggleProperties", new ToggleViewPropertyAction(getApplication(), this,
@@ -249,6 +255,7 @@ public class GrapherView extends AbstractView implements EditorView {
                     IdFactory idFactory = new SimpleIdFactory();
                     FigureFactory factory = new DefaultFigureFactory(idFactory);
                     SimpleXmlIO io = new SimpleXmlIO(factory, idFactory, GRAPHER_NAMESPACE_URI, null);
+                    io.setDecoderPool(ForkJoinPool.commonPool());
                     SimpleDrawing drawing = (SimpleDrawing) io.read(uri, null);
                     drawing.updateCss();
                     return drawing;
@@ -270,18 +277,25 @@ public class GrapherView extends AbstractView implements EditorView {
 
     @Override
     public void write(URI uri, EventHandler<TaskCompletionEvent<?>> callback) {
+        // The drawing is written from a snapshot, so that the user can keep
+        // on editing while the background task is running.
+        Drawing snapshot = SnapshotCache.take(drawingView.getDrawing());
         BackgroundTask<Void> t = new BackgroundTask<Void>() {
 
             @Override
             protected void construct() throws Exception {
-                if (uri.getPath().endsWith(".svg")) {
-                    SvgExportOutputFormat io = new SvgExportOutputFormat();
-                    io.write(uri, drawingView.getDrawing());
-                } else {
-                    IdFactory idFactory = new SimpleIdFactory();
-                    FigureFactory factory = new DefaultFigureFactory(idFactory);
-                    SimpleXmlIO io = new SimpleXmlIO(factory, idFactory, GRAPHER_NAMESPACE_URI, null);
-                    io.write(uri, drawingView.getDrawing());
+                try {
+                    if (uri.getPath().endsWith(".svg")) {
+                        SvgExportOutputFormat io = new SvgExportOutputFormat();
+                        io.write(uri, snapshot);
+                    } else {
+                        IdFactory idFactory = new SimpleIdFactory();
+                        FigureFactory factory = new DefaultFigureFactory(idFactory);
+                        SimpleXmlIO io = new SimpleXmlIO(factory, idFactory, GRAPHER_NAMESPACE_URI, null);
+                        io.write(uri, snapshot);
+                    }
+                } finally {
+                    SnapshotCache.release(snapshot);
                 }
             }
         };
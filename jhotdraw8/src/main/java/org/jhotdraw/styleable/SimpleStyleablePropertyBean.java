@@ -9,6 +9,7 @@ import javafx.collections.ObservableMap;
 import javafx.css.StyleOrigin;
 import javafx.css.StyleableProperty;
 import org.jhotdraw.collection.Key;
+import org.jhotdraw.collection.KeyOrdinals;
 import org.jhotdraw.collection.MapAccessor;
 
 /**
@@ -23,7 +24,7 @@ public abstract class SimpleStyleablePropertyBean implements StyleablePropertyBe
      */
     // protected StyleablePropertyMap styleableProperties = new StyleablePropertyMap();
     protected final StyleableMap<Key<?>, Object> properties =//
-            new StyleableMap<Key<?>, Object>() {
+            new StyleableMap<Key<?>, Object>(createKeyOrdinals()) {
 
                 @Override
                 protected void callObservers(StyleOrigin origin, MapChangeListener.Change<Key<?>, Object> change) {
@@ -33,6 +34,19 @@ public abstract class SimpleStyleablePropertyBean implements StyleablePropertyBe
 
             };
 
+    /**
+     * Returns the key ordinals which are used by the map, that holds the
+     * properties.
+     * <p>
+     * This method is invoked from the constructor, and must thus not depend
+     * on the state of subclasses. This implementation returns null.
+     *
+     * @return the key ordinals, or null
+     */
+    protected KeyOrdinals<?> createKeyOrdinals() {
+        return null;
+    }
+
     /**
      * Returns the user properties.
      */
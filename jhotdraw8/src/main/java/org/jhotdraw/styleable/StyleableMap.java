@@ -4,106 +4,264 @@
  */
 package org.jhotdraw.styleable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import javafx.beans.InvalidationListener;
 import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableMap;
 import javafx.css.StyleOrigin;
 import org.jhotdraw.beans.ListenerSupport;
+import org.jhotdraw.collection.KeyOrdinals;
 
 /**
  * {@code StyleableMap} is a map which stores separate values for each
  * {@code StyleOrigin}.
+ * <p>
+ * If the map is created with {@link KeyOrdinals}, the values of the keys
+ * which have an ordinal are stored in one packed array per style origin,
+ * and a bit mask per key tells which origins have a value. No objects are
+ * allocated per entry. Keys without an ordinal are stored in an
+ * {@code IdentityHashMap}.
  *
  * @author Werner Randelshofer
  */
 public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
+    private final static StyleOrigin[] ORIGINS = StyleOrigin.values();
+
+    /**
+     * Holds the values of a key which has no ordinal.
+     */
     private static class StyledValue {
 
-        /**
-         * Magic value object to indicate that we have not stored a value.
-         */
-        private final static Object NO_VALUE = new Object();
-        private final static StyleOrigin[] ORIGINS = StyleOrigin.values();
-        public StyleOrigin origin;
         /**
          * Contains a slot for each of the four possible origins. The ordinal
          * number of StyleOrigin is used as an index.
          */
-        private final Object[] values = {NO_VALUE, NO_VALUE, NO_VALUE, NO_VALUE};
+        private final Object[] values = new Object[ORIGINS.length];
+        /**
+         * Bit mask of the origins which have a value.
+         */
+        private int mask;
+    }
+    private ObservableEntrySet entrySet;
+    private ObservableKeySet keySet;
+    private ObservableValues values;
 
-        public <T> T removeValue(StyleOrigin origin) {
-            if (hasValue(origin)) {
-                int i = origin.ordinal();
-                @SuppressWarnings("unchecked")
-                T oldValue = (T) values[i];
-                values[i] = NO_VALUE;
-                if (this.origin == origin) {
-                    this.origin = null;
-                    for (int j = origin.ordinal() - 1; j >= 0; j--) {
-                        if (values[j] != NO_VALUE) {
-                            this.origin = ORIGINS[j];
-                            break;
-                        }
-                    }
-                }
-                return oldValue;
-            } else {
-                return null;
-            }
+    private ListenerSupport<MapChangeListener<? super K, ? super V>> changeListenerSupport;
+    private ListenerSupport<InvalidationListener> invalidationListenerSupport;
+    private final KeyOrdinals<?> ordinals;
+    /**
+     * Holds a lazily created values array for each origin. The arrays are
+     * indexed with the ordinals of the keys.
+     */
+    private final Object[][] denseValues = new Object[ORIGINS.length][];
+    /**
+     * Bit mask of the origins which have a value. Indexed with the ordinals
+     * of the keys. Created lazily.
+     */
+    private byte[] denseMasks;
+    /**
+     * Holds the values of the keys which have no ordinal. Created lazily.
+     */
+    private Map<K, StyledValue> sparseValues;
+    private Map<K, V> styledMap;
+
+    public StyleableMap() {
+        this(null);
+    }
+
+    /**
+     * Creates a new map, which stores the values of the keys with the
+     * specified ordinals in arrays.
+     *
+     * @param ordinals the key ordinals, null if all values are to be stored
+     * in an {@code IdentityHashMap}
+     */
+    public StyleableMap(KeyOrdinals<?> ordinals) {
+        this.ordinals = ordinals;
+    }
+
+    // ---
+    // storage
+    // ---
+    private int getOrdinal(Object key) {
+        return ordinals == null ? -1 : ordinals.getOrdinal(key);
+    }
+
+    /**
+     * Returns the bit mask of the origins, which have a value for the key.
+     */
+    private int getMask(Object key) {
+        int i = getOrdinal(key);
+        if (i >= 0) {
+            return denseMasks == null ? 0 : denseMasks[i];
         }
+        StyledValue sv = sparseValues == null ? null : sparseValues.get(key);
+        return sv == null ? 0 : sv.mask;
+    }
 
-        public <T> T setValue(StyleOrigin origin, T newValue) {
-            int i = origin.ordinal();
-            @SuppressWarnings("unchecked")
-            T oldValue = (T) values[i];
-            values[i] = newValue;
-            if (this.origin == null || origin.ordinal() > this.origin.ordinal()) {
-                this.origin = origin;
-            }
-            return oldValue;
+    private boolean hasValue(StyleOrigin o, Object key) {
+        return (getMask(key) & (1 << o.ordinal())) != 0;
+    }
+
+    /**
+     * Returns the value of the key for the origin, or null if there is no
+     * value.
+     */
+    private V getValue(StyleOrigin o, Object key) {
+        int i = getOrdinal(key);
+        Object value;
+        if (i >= 0) {
+            Object[] a = denseValues[o.ordinal()];
+            value = a == null ? null : a[i];
+        } else {
+            StyledValue sv = sparseValues == null ? null : sparseValues.get(key);
+            value = sv == null ? null : sv.values[o.ordinal()];
         }
+        @SuppressWarnings("unchecked")
+        V ret = (V) value;
+        return ret;
+    }
 
-        public boolean hasValue(StyleOrigin origin) {
-            return values[origin.ordinal()] != NO_VALUE;
+    /**
+     * Sets the value of the key for the origin and returns the old value, or
+     * null if there was no value.
+     */
+    private V setValue(StyleOrigin o, K key, V value) {
+        int oi = o.ordinal();
+        int i = getOrdinal(key);
+        Object oldValue;
+        if (i >= 0) {
+            Object[] a = denseValues[oi];
+            if (a == null) {
+                a = denseValues[oi] = new Object[ordinals.size()];
+            }
+            if (denseMasks == null) {
+                denseMasks = new byte[ordinals.size()];
+            }
+            oldValue = a[i];
+            a[i] = value;
+            denseMasks[i] |= 1 << oi;
+        } else {
+            if (sparseValues == null) {
+                sparseValues = new IdentityHashMap<>();
+            }
+            StyledValue sv = sparseValues.get(key);
+            if (sv == null) {
+                sv = new StyledValue();
+                sparseValues.put(key, sv);
+            }
+            oldValue = sv.values[oi];
+            sv.values[oi] = value;
+            sv.mask |= 1 << oi;
         }
+        @SuppressWarnings("unchecked")
+        V ret = (V) oldValue;
+        return ret;
+    }
 
-        public boolean isEmpty() {
-            return origin == null;
+    /**
+     * Removes the value of the key for the origin and returns the old value,
+     * or null if there was no value.
+     */
+    private V removeValue(StyleOrigin o, Object key) {
+        int oi = o.ordinal();
+        int i = getOrdinal(key);
+        Object oldValue = null;
+        if (i >= 0) {
+            if (denseMasks != null && (denseMasks[i] & (1 << oi)) != 0) {
+                Object[] a = denseValues[oi];
+                oldValue = a[i];
+                a[i] = null;
+                denseMasks[i] &= ~(1 << oi);
+            }
+        } else {
+            // We do not remove empty values because the values will be
+            // probably set right again after the map was cleared.
+            StyledValue sv = sparseValues == null ? null : sparseValues.get(key);
+            if (sv != null && (sv.mask & (1 << oi)) != 0) {
+                oldValue = sv.values[oi];
+                sv.values[oi] = null;
+                sv.mask &= ~(1 << oi);
+            }
         }
+        @SuppressWarnings("unchecked")
+        V ret = (V) oldValue;
+        return ret;
+    }
 
-        private <T> T getValue(StyleOrigin styleOrigin) {
-            @SuppressWarnings("unchecked")
-            T ret = (T) values[styleOrigin.ordinal()];
-            return ret == NO_VALUE ? null : ret;
+    /**
+     * Iterates over the keys which have a value for the specified origin.
+     * The keys with an ordinal are returned first.
+     */
+    private class KeyIterator implements Iterator<K> {
+
+        private final StyleOrigin origin;
+        private final int bit;
+        private int nextOrdinal;
+        private final Iterator<Map.Entry<K, StyledValue>> sparseIt;
+        private boolean hasNext;
+        private K nextKey;
+        private K lastKey;
+
+        public KeyIterator(StyleOrigin origin) {
+            this.origin = origin;
+            this.bit = 1 << origin.ordinal();
+            this.sparseIt = sparseValues == null ? null : sparseValues.entrySet().iterator();
+            advance();
         }
 
-        private <T> T getValue(StyleOrigin styleOrigin, T defaultValue) {
-            @SuppressWarnings("unchecked")
-            T ret = (T) values[styleOrigin == null ? 0 : styleOrigin.ordinal()];
-            return ret == NO_VALUE ? defaultValue : ret;
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            if (denseMasks != null) {
+                while (nextOrdinal < denseMasks.length) {
+                    int i = nextOrdinal++;
+                    if ((denseMasks[i] & bit) != 0) {
+                        nextKey = (K) ordinals.getKey(i);
+                        hasNext = true;
+                        return;
+                    }
+                }
+            }
+            if (sparseIt != null) {
+                while (sparseIt.hasNext()) {
+                    Map.Entry<K, StyledValue> entry = sparseIt.next();
+                    if ((entry.getValue().mask & bit) != 0) {
+                        nextKey = entry.getKey();
+                        hasNext = true;
+                        return;
+                    }
+                }
+            }
+            hasNext = false;
         }
 
-        private StyleOrigin getOrigin() {
-            return origin;
+        @Override
+        public boolean hasNext() {
+            return hasNext;
         }
-    }
-    private ObservableEntrySet entrySet;
-    private ObservableKeySet keySet;
-    private ObservableValues values;
 
-    private ListenerSupport<MapChangeListener<? super K, ? super V>> changeListenerSupport;
-    private ListenerSupport<InvalidationListener> invalidationListenerSupport;
-    private final Map<K, StyledValue> backingMap;
-    private Map<K, V> styledMap;
+        @Override
+        public K next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            lastKey = nextKey;
+            advance();
+            return lastKey;
+        }
 
-    public StyleableMap() {
-        this.backingMap = new IdentityHashMap<>();
+        @Override
+        public void remove() {
+            StyleableMap.this.remove(origin, lastKey);
+        }
     }
 
     private class SimpleChange extends MapChangeListener.Change<K, V> {
@@ -220,21 +378,14 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
     public int size(StyleOrigin o) {
         int count = 0;
-        for (Map.Entry<K, StyledValue> e : backingMap.entrySet()) {
-            if (e.getValue().hasValue(o)) {
-                count++;
-            }
+        for (Iterator<K> i = new KeyIterator(o); i.hasNext(); i.next()) {
+            count++;
         }
         return count;
     }
 
     public boolean isEmpty(StyleOrigin o) {
-        for (Map.Entry<K, StyledValue> e : backingMap.entrySet()) {
-            if (e.getValue().hasValue(o)) {
-                return false;
-            }
-        }
-        return true;
+        return !new KeyIterator(o).hasNext();
     }
 
     @Override
@@ -243,12 +394,11 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
     }
 
     public boolean containsKey(StyleOrigin o, Object key) {
-        StyledValue sv = backingMap.get(key);
-        return sv == null ? false : sv.hasValue(o);
+        return hasValue(o, key);
     }
 
     public <T> boolean containsStyledKey(K key) {
-        return backingMap.containsKey(key);
+        return getMask(key) != 0;
     }
 
     @Override
@@ -257,13 +407,11 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
     }
 
     public boolean containsValue(StyleOrigin o, Object value) {
-        for (Map.Entry<K, StyledValue> e : backingMap.entrySet()) {
-            if (e.getValue().hasValue(o)) {
-                Object v = e.getValue().getValue(o);
-                if (v == value
-                        || (value != null && value.equals(v))) {
-                    return true;
-                }
+        for (Iterator<K> i = new KeyIterator(o); i.hasNext();) {
+            Object v = getValue(o, i.next());
+            if (v == value
+                    || (value != null && value.equals(v))) {
+                return true;
             }
         }
         return false;
@@ -277,10 +425,7 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
     }
 
     public V get(StyleOrigin o, K key) {
-        StyledValue sv = backingMap.get(key);
-        @SuppressWarnings("unchecked")
-        V ret = sv == null ? null : (V) sv.getValue(o);
-        return ret;
+        return getValue(o, key);
     }
 
     /**
@@ -438,22 +583,13 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
     }
 
     protected V getStyled(K key) {
-        StyledValue sv = backingMap.get(key);
-        @SuppressWarnings("unchecked")
-        V ret = sv == null ? null : (V) sv.getValue(sv.getOrigin());
-        return ret;
+        StyleOrigin origin = getStyleOrigin(key);
+        return origin == null ? null : getValue(origin, key);
     }
 
-    /*public V getStyled(K key, V defaultValue) {
-        StyledValue sv = backingMap.get(key);
-        @SuppressWarnings("unchecked")
-        V ret = (sv == null) ? defaultValue : sv.getValue(sv.getOrigin(), defaultValue);
-        return ret;
-    }*/
-
     public StyleOrigin getStyleOrigin(Object key) {
-        StyledValue sv = backingMap.get(key);
-        return sv == null ? null : sv.getOrigin();
+        int mask = getMask(key);
+        return mask == 0 ? null : ORIGINS[31 - Integer.numberOfLeadingZeros(mask)];
     }
 
     @Override
@@ -462,15 +598,9 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
     }
 
     public V put(StyleOrigin o, K key, V value) {
-        StyledValue sv = backingMap.get(key);
-        if (sv == null) {
-            sv = new StyledValue();
-            backingMap.put(key, sv);
-        }
-
-        boolean hadValue = sv.hasValue(o);
-        V ret = sv.setValue(o, value);
-        if (ret == null && value != null || ret != null && !ret.equals(value)) {
+        boolean hadValue = hasValue(o, key);
+        V ret = setValue(o, key, value);
+        if (!hadValue || ret == null && value != null || ret != null && !ret.equals(value)) {
             callObservers(o, new SimpleChange(key, ret, value, true, hadValue));
         }
         return ret;
@@ -483,24 +613,11 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
     }
 
     public V remove(StyleOrigin o, K key) {
-        StyledValue sv = backingMap.get(key);
-        V ret = null;
-        boolean hadValue;
-        if (sv != null && sv.hasValue(o)) {
-            hadValue = true;
-            ret = sv.removeValue(o);
-            // We do not remove empty values because the values will be
-            // probably set right again after the map was cleared.
-            /*if (sv.isEmpty()) {
-             backingMap.remove(key);
-             }*/
-        } else {
-            hadValue = false;
-            ret = null;
-        }
-        if (hadValue) {
-            callObservers(o, new SimpleChange(key, ret, null, false, true));
+        if (!hasValue(o, key)) {
+            return null;
         }
+        V ret = removeValue(o, key);
+        callObservers(o, new SimpleChange(key, ret, null, false, true));
         return ret;
     }
 
@@ -527,34 +644,54 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
     }
 
     public void clear(StyleOrigin o) {
-        for (Iterator<Entry<K, StyledValue>> i = backingMap.entrySet().iterator(); i.hasNext();) {
-            Entry<K, StyledValue> e = i.next();
-            K key = e.getKey();
-            StyledValue sv = e.getValue();
-            @SuppressWarnings("unchecked")
-            V val = (V) sv.removeValue(o);
-            // We do not remove empty values because the values will be
-            // probably set right again after the map was cleared.
-            /*if (sv.isEmpty()) {
-             i.remove();
-             }*/
-            callObservers(o, new SimpleChange(key, val, null, false, true));
+        removeRetain(o, null, false, false);
+    }
+
+    /**
+     * Removes the values of the specified origin.
+     *
+     * @param o the origin
+     * @param c the collection of keys or values, null to remove all values
+     * @param byValue whether c contains values instead of keys
+     * @param remove whether the elements in c are to be removed or retained
+     * @return true if a value was removed
+     */
+    private boolean removeRetain(StyleOrigin o, Collection<?> c, boolean byValue, boolean remove) {
+        // Collect the keys first, because the observers may change the map.
+        ArrayList<K> keys = new ArrayList<>();
+        for (Iterator<K> i = new KeyIterator(o); i.hasNext();) {
+            K key = i.next();
+            if (c == null || remove == c.contains(byValue ? getValue(o, key) : key)) {
+                keys.add(key);
+            }
         }
+        for (K key : keys) {
+            remove(o, key);
+        }
+        return !keys.isEmpty();
     }
 
     public void clearNonUserValues() {
-        for (Iterator<Entry<K, StyledValue>> i = backingMap.entrySet().iterator(); i.hasNext();) {
-            Entry<K, StyledValue> e = i.next();
-            K key = e.getKey();
-            StyledValue sv = e.getValue();
-            sv.removeValue(StyleOrigin.INLINE);
-            sv.removeValue(StyleOrigin.AUTHOR);
-            sv.removeValue(StyleOrigin.USER_AGENT);
-            // We do not remove empty values because the values will be
-            // probably set right again after the map was cleared.
-            /*if (sv.isEmpty()) {
-             i.remove();
-             }*/
+        int userBit = 1 << StyleOrigin.USER.ordinal();
+        for (StyleOrigin o : ORIGINS) {
+            if (o != StyleOrigin.USER && denseValues[o.ordinal()] != null) {
+                Arrays.fill(denseValues[o.ordinal()], null);
+            }
+        }
+        if (denseMasks != null) {
+            for (int i = 0; i < denseMasks.length; i++) {
+                denseMasks[i] &= userBit;
+            }
+        }
+        if (sparseValues != null) {
+            for (StyledValue sv : sparseValues.values()) {
+                for (StyleOrigin o : ORIGINS) {
+                    if (o != StyleOrigin.USER) {
+                        sv.values[o.ordinal()] = null;
+                    }
+                }
+                sv.mask &= userBit;
+            }
         }
     }
 
@@ -588,17 +725,49 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
     @Override
     public String toString() {
-        return backingMap.toString();
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for (Iterator<K> i = new KeyIterator(StyleOrigin.USER); i.hasNext();) {
+            K key = i.next();
+            sb.append(key).append('=').append(getValue(StyleOrigin.USER, key));
+            if (i.hasNext()) {
+                sb.append(',').append(' ');
+            }
+        }
+        return sb.append('}').toString();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return backingMap.equals(obj);
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Map)) {
+            return false;
+        }
+        Map<?, ?> that = (Map<?, ?>) obj;
+        if (that.size() != size()) {
+            return false;
+        }
+        for (Iterator<K> i = new KeyIterator(StyleOrigin.USER); i.hasNext();) {
+            K key = i.next();
+            V value = getValue(StyleOrigin.USER, key);
+            if (value == null ? !(that.get(key) == null && that.containsKey(key)) : !value.equals(that.get(key))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return backingMap.hashCode();
+        int h = 0;
+        for (Iterator<K> i = new KeyIterator(StyleOrigin.USER); i.hasNext();) {
+            K key = i.next();
+            V value = getValue(StyleOrigin.USER, key);
+            h += (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+        return h;
     }
 
     private class ObservableKeySet implements Set<K> {
@@ -626,47 +795,7 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
         @Override
         public Iterator<K> iterator() {
-            return new Iterator<K>() {
-
-                private Iterator<Entry<K, StyledValue>> entryIt = backingMap.entrySet().iterator();
-                private boolean hasNext;
-                private K nextKey;
-                private K lastKey;
-
-                {
-                    advance();
-                }
-
-                private void advance() {
-                    while (entryIt.hasNext()) {
-                        Entry<K, StyledValue> entry = entryIt.next();
-                        if (entry.getValue().hasValue(ksetOrigin)) {
-                            nextKey = entry.getKey();
-                            hasNext = true;
-                            return;
-                        }
-                    }
-                    hasNext = false;
-                }
-
-                @Override
-                public boolean hasNext() {
-                    return hasNext;
-                }
-
-                @Override
-                public K next() {
-                    lastKey = nextKey;
-                    advance();
-                    return lastKey;
-                }
-
-                @Override
-                public void remove() {
-                    StyleableMap.this.remove(ksetOrigin, lastKey);
-                }
-
-            };
+            return new KeyIterator(ksetOrigin);
         }
 
         @Override
@@ -723,34 +852,12 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
         @Override
         public boolean retainAll(Collection<?> c) {
-            return removeRetain(c, false);
-        }
-
-        private boolean removeRetain(Collection<?> c, boolean remove) {
-            boolean removed = false;
-            for (Iterator<Entry<K, StyledValue>> i = backingMap.entrySet().iterator(); i.hasNext();) {
-                Entry<K, StyledValue> e = i.next();
-                if (remove == c.contains(e.getKey())) {
-                    K key = e.getKey();
-                    StyledValue sv = e.getValue();
-                    if (sv.hasValue(ksetOrigin)) {
-                        removed = true;
-                        V value = sv.removeValue(ksetOrigin);
-                        // We do not remove empty values because the values will be
-                        // probably set right again after the map was cleared.
-                        /*if (sv.isEmpty()) {
-                            i.remove();
-                        }*/
-                        callObservers(ksetOrigin, new SimpleChange(key, value, null, false, true));
-                    }
-                }
-            }
-            return removed;
+            return removeRetain(ksetOrigin, c, false, false);
         }
 
         @Override
         public boolean removeAll(Collection<?> c) {
-            return removeRetain(c, true);
+            return removeRetain(ksetOrigin, c, false, true);
         }
 
         @Override
@@ -779,12 +886,23 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
         @Override
         public boolean equals(Object obj) {
-            return backingMap.keySet().equals(obj);
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Set)) {
+                return false;
+            }
+            Set<?> that = (Set<?>) obj;
+            return that.size() == size() && containsAll(that);
         }
 
         @Override
         public int hashCode() {
-            return backingMap.keySet().hashCode();
+            int h = 0;
+            for (K key : this) {
+                h += key == null ? 0 : key.hashCode();
+            }
+            return h;
         }
 
     }
@@ -816,46 +934,21 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
         public Iterator<V> iterator() {
             return new Iterator<V>() {
 
-                private Iterator<Entry<K, StyledValue>> entryIt = backingMap.entrySet().iterator();
-                private boolean hasNext;
-                private K nextKey;
-                private K lastKey;
-                private V nextValue;
-                private V lastValue;
-
-                {
-                    advance();
-                }
-
-                private void advance() {
-                    while (entryIt.hasNext()) {
-                        Entry<K, StyledValue> entry = entryIt.next();
-                        if (entry.getValue().hasValue(ksetOrigin)) {
-                            nextKey = entry.getKey();
-                            nextValue = entry.getValue().getValue(ksetOrigin);
-                            hasNext = true;
-                            return;
-                        }
-                    }
-                    hasNext = false;
-                }
+                private final KeyIterator keyIt = new KeyIterator(ksetOrigin);
 
                 @Override
                 public boolean hasNext() {
-                    return hasNext;
+                    return keyIt.hasNext();
                 }
 
                 @Override
                 public V next() {
-                    lastKey = nextKey;
-                    lastValue = nextValue;
-                    advance();
-                    return lastValue;
+                    return getValue(ksetOrigin, keyIt.next());
                 }
 
                 @Override
                 public void remove() {
-                    StyleableMap.this.remove(ksetOrigin, lastKey);
+                    keyIt.remove();
                 }
 
             };
@@ -896,7 +989,8 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
         @Override
         public boolean remove(Object o) {
             for (Iterator<V> i = iterator(); i.hasNext();) {
-                if (i.next().equals(o)) {
+                V v = i.next();
+                if (v == o || v != null && v.equals(o)) {
                     i.remove();
                     return true;
                 }
@@ -921,32 +1015,12 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
         @Override
         public boolean removeAll(Collection<?> c) {
-            return removeRetain(c, true);
-        }
-
-        private boolean removeRetain(Collection<?> c, boolean remove) {
-            boolean removed = false;
-            for (Iterator<Entry<K, StyledValue>> i = backingMap.entrySet().iterator(); i.hasNext();) {
-                Entry<K, StyledValue> e = i.next();
-                if (remove == c.contains(e.getValue())) {
-                    K key = e.getKey();
-                    StyledValue sv = e.getValue();
-                    if (sv.hasValue(ksetOrigin)) {
-                        removed = true;
-                        V value = sv.removeValue(ksetOrigin);
-                        if (sv.isEmpty()) {
-                            i.remove();
-                        }
-                        callObservers(ksetOrigin, new SimpleChange(key, value, null, false, true));
-                    }
-                }
-            }
-            return removed;
+            return removeRetain(ksetOrigin, c, true, true);
         }
 
         @Override
         public boolean retainAll(Collection<?> c) {
-            return removeRetain(c, false);
+            return removeRetain(ksetOrigin, c, true, false);
         }
 
         @Override
@@ -973,43 +1047,31 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
             }
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            return backingMap.values().equals(obj);
-        }
-
-        @Override
-        public int hashCode() {
-            return backingMap.values().hashCode();
-        }
-
     }
 
     private class ObservableEntry implements Entry<K, V> {
 
         private final StyleOrigin oeOrigin;
-        private final Entry<K, StyledValue> backingEntry;
+        private final K key;
 
-        public ObservableEntry(StyleOrigin o, Entry<K, StyledValue> backingEntry) {
+        public ObservableEntry(StyleOrigin o, K key) {
             this.oeOrigin = o;
-            this.backingEntry = backingEntry;
+            this.key = key;
         }
 
         @Override
         public K getKey() {
-            return backingEntry.getKey();
+            return key;
         }
 
         @Override
         public V getValue() {
-            return backingEntry.getValue().getValue(oeOrigin);
+            return StyleableMap.this.getValue(oeOrigin, key);
         }
 
         @Override
         public V setValue(V value) {
-            V oldValue = backingEntry.getValue().setValue(oeOrigin, value);
-            callObservers(oeOrigin, new SimpleChange(getKey(), oldValue, value, true, true));
-            return oldValue;
+            return put(oeOrigin, key, value);
         }
 
         @Override
@@ -1071,42 +1133,21 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
         public Iterator<Entry<K, V>> iterator() {
             return new Iterator<Entry<K, V>>() {
 
-                private Iterator<Entry<K, StyledValue>> entryIt = backingMap.entrySet().iterator();
-                private boolean hasNext;
-                private Entry<K, StyledValue> nextEntry;
-                private Entry<K, StyledValue> lastEntry;
-
-                {
-                    advance();
-                }
-
-                private void advance() {
-                    while (entryIt.hasNext()) {
-                        Entry<K, StyledValue> entry = entryIt.next();
-                        if (entry.getValue().hasValue(oesOrigin)) {
-                            nextEntry = entry;
-                            hasNext = true;
-                            return;
-                        }
-                    }
-                    hasNext = false;
-                }
+                private final KeyIterator keyIt = new KeyIterator(oesOrigin);
 
                 @Override
                 public boolean hasNext() {
-                    return hasNext;
+                    return keyIt.hasNext();
                 }
 
                 @Override
                 public Entry<K, V> next() {
-                    lastEntry = nextEntry;
-                    advance();
-                    return new ObservableEntry(oesOrigin, lastEntry);
+                    return new ObservableEntry(oesOrigin, keyIt.next());
                 }
 
                 @Override
                 public void remove() {
-                    StyleableMap.this.remove(oesOrigin, lastEntry.getKey());
+                    keyIt.remove();
                 }
 
             };
@@ -1167,17 +1208,20 @@ public class StyleableMap<K, V> implements ObservableMap<K, V> {
 
         @Override
         public String toString() {
-            return backingMap.entrySet().toString();
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            return backingMap.entrySet().equals(obj);
-        }
+            Iterator<Entry<K, V>> it = iterator();
+            if (!it.hasNext()) {
+                return "[]";
+            }
 
-        @Override
-        public int hashCode() {
-            return backingMap.entrySet().hashCode();
+            StringBuilder sb = new StringBuilder();
+            sb.append('[');
+            for (;;) {
+                sb.append(it.next());
+                if (!it.hasNext()) {
+                    return sb.append(']').toString();
+                }
+                sb.append(',').append(' ');
+            }
         }
 
     }
@@ -5,9 +5,14 @@
 package org.jhotdraw.svg;
 
 import java.awt.geom.AffineTransform;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
@@ -64,14 +69,12 @@ import javafx.scene.transform.Scale;
 import javafx.scene.transform.Transform;
 import javafx.scene.transform.Translate;
 import javax.imageio.ImageIO;
-import javax.xml.parsers.DocumentBuilder;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.RenderContext;
 import org.jhotdraw.draw.RenderingIntent;
@@ -87,17 +90,21 @@ import static org.jhotdraw.draw.figure.StrokeableFigure.STROKE_WIDTH;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.geom.Geom;
 import org.jhotdraw.geom.Shapes;
+import org.jhotdraw.text.DoubleFormatter;
 import org.jhotdraw.text.SvgTransformListConverter;
 import org.jhotdraw.text.XmlFontConverter;
 import org.jhotdraw.text.XmlNumberConverter;
 import org.jhotdraw.text.XmlPaintConverter;
 import org.jhotdraw.text.XmlSizeListConverter;
-import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
 
 /**
  * SvgExportOutputFormat.
+ * <p>
+ * The drawing is rendered into JavaFX nodes, and the nodes are written as
+ * SVG elements to an {@code XMLStreamWriter} one after the other. When the
+ * drawing is written to a stream, no document tree is built.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -105,7 +112,6 @@ import org.w3c.dom.Element;
 public class SvgExportOutputFormat implements OutputFormat {
 
     private final static String XLINK_NS = "http://www.w3.org/1999/xlink";
-    private final static String XMLNS_NS = "http://www.w3.org/2000/xmlns/";
     private final static String XLINK_Q = "xlink";
     private final SvgTransformListConverter tx = new SvgTransformListConverter();
     private final XmlPaintConverter paint = new XmlPaintConverter();
@@ -113,161 +119,196 @@ public class SvgExportOutputFormat implements OutputFormat {
     private final XmlSizeListConverter nbList = new XmlSizeListConverter();
     private final String SVG_NS = "http://www.w3.org/2000/svg";
     private final String namespaceQualifier = null;
+    private final DoubleFormatter number = new DoubleFormatter();
 
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        Document doc = toDocument(drawing);
-        try {
-            Transformer t = TransformerFactory.newInstance().newTransformer();
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(out);
-            t.transform(source, result);
-        } catch (TransformerException ex) {
-            throw new IOException(ex);
-        }
+        write(out, render(drawing), drawing);
     }
 
     public Document toDocument(Drawing external) throws IOException {
+        return toDocument(render(external), external);
+    }
+
+    public void write(OutputStream out, javafx.scene.Node drawing) throws IOException {
+        write(out, drawing, null);
+    }
+
+    public Document toDocument(javafx.scene.Node drawingNode) throws IOException {
+        return toDocument(drawingNode, null);
+    }
+
+    private javafx.scene.Node render(Drawing external) {
         SimpleDrawingRenderer r = new SimpleDrawingRenderer();
         r.set(RenderContext.RENDERING_INTENT, RenderingIntent.EXPORT);
-        javafx.scene.Node drawingNode = r.render(external);
-        Document doc = toDocument(drawingNode);
-        writeDrawingElementAttributes(doc.getDocumentElement(), external);
-        return doc;
+        return r.render(external);
     }
 
-    public void write(OutputStream out, javafx.scene.Node drawing) throws IOException {
-        Document doc = toDocument(drawing);
+    private void write(OutputStream out, javafx.scene.Node drawingNode, Drawing external) throws IOException {
+        Writer raw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
         try {
-            Transformer t = TransformerFactory.newInstance().newTransformer();
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(out);
-            t.transform(source, result);
-        } catch (TransformerException ex) {
+            XMLStreamWriter w = XMLOutputFactory.newInstance().createXMLStreamWriter(raw);
+            try {
+                write(w, drawingNode, external);
+            } finally {
+                w.close();
+            }
+        } catch (XMLStreamException ex) {
             throw new IOException(ex);
         }
+        raw.flush();
     }
 
-    public Document toDocument(javafx.scene.Node drawingNode) throws IOException {
+    private Document toDocument(javafx.scene.Node drawingNode, Drawing external) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, drawingNode, external);
         try {
             DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-            Document doc;
             builderFactory.setNamespaceAware(true);
-            DocumentBuilder builder = builderFactory.newDocumentBuilder();
-            DOMImplementation domImpl = builder.getDOMImplementation();
-            doc = domImpl.createDocument(SVG_NS, namespaceQualifier == null ? "svg" : namespaceQualifier + ":" + "svg", null);
-
-            Element docElement = doc.getDocumentElement();
-            docElement.setAttributeNS(XMLNS_NS, "xmlns:" + XLINK_Q, XLINK_NS);
-
-            writeProcessingInstructions(doc, drawingNode);
-            String commentText = createFileComment();
-            if (commentText != null) {
-                docElement.getParentNode().insertBefore(doc.createComment(commentText), docElement);
-            }
+            return builderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+        } catch (ParserConfigurationException | SAXException ex) {
+            throw new IOException(ex);
+        }
+    }
 
-            writeDocumentElementAttributes(docElement, drawingNode);
-            writeNodeRecursively(doc, docElement, drawingNode);
-            docElement.appendChild(doc.createTextNode("\n"));
+    /**
+     * Writes the document.
+     *
+     * @param w the writer
+     * @param drawingNode the rendered drawing
+     * @param external the drawing, or null
+     */
+    private void write(XMLStreamWriter w, javafx.scene.Node drawingNode, Drawing external) throws IOException, XMLStreamException {
+        w.writeStartDocument("UTF-8", "1.0");
+        writeProcessingInstructions(w, drawingNode);
+        String commentText = createFileComment();
+        if (commentText != null) {
+            w.writeComment(commentText);
+        }
 
-            return doc;
-        } catch (ParserConfigurationException ex) {
-            throw new IOException(ex);
+        if (namespaceQualifier == null) {
+            w.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, "svg", SVG_NS);
+            w.writeDefaultNamespace(SVG_NS);
+        } else {
+            w.writeStartElement(namespaceQualifier, "svg", SVG_NS);
+            w.writeNamespace(namespaceQualifier, SVG_NS);
+        }
+        w.writeNamespace(XLINK_Q, XLINK_NS);
+        writeDocumentElementAttributes(w, drawingNode);
+        if (external != null) {
+            writeDrawingElementAttributes(w, external);
         }
+        writeNodeRecursively(w, drawingNode);
+        w.writeCharacters("\n");
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.flush();
     }
 
     private String createFileComment() {
         return null;
     }
 
-    private void writeDocumentElementAttributes(Element docElement, javafx.scene.Node drawingNode) throws IOException {
-        docElement.setAttribute("version", "1.2");
-        docElement.setAttribute("baseProfile", "tiny");
+    private void writeDocumentElementAttributes(XMLStreamWriter w, javafx.scene.Node drawingNode) throws XMLStreamException {
+        w.writeAttribute("version", "1.2");
+        w.writeAttribute("baseProfile", "tiny");
 
     }
 
-    private void writeDrawingElementAttributes(Element docElement, Drawing drawing) throws IOException {
-        docElement.setAttribute("width", nb.toString(drawing.get(Drawing.WIDTH)));
-        docElement.setAttribute("height", nb.toString(drawing.get(Drawing.HEIGHT)));
+    private void writeDrawingElementAttributes(XMLStreamWriter w, Drawing drawing) throws XMLStreamException {
+        w.writeAttribute("width", nb.toString(drawing.get(Drawing.WIDTH)));
+        w.writeAttribute("height", nb.toString(drawing.get(Drawing.HEIGHT)));
     }
 
-    private void writeProcessingInstructions(Document doc, javafx.scene.Node external) {
+    private void writeProcessingInstructions(XMLStreamWriter w, javafx.scene.Node external) {
 // empty
     }
 
-    private void writeNodeRecursively(Document doc, Element parent, javafx.scene.Node node) throws IOException {
-        parent.appendChild(doc.createTextNode("\n"));
+    /**
+     * Writes the element of the node, followed by the elements of its
+     * descendants.
+     * <p>
+     * All attributes of an element must be written before its content.
+     * Therefore the writers of the individual node types only start the
+     * element and write the attributes which are specific to the type. The
+     * content is written by this method.
+     */
+    private void writeNodeRecursively(XMLStreamWriter w, javafx.scene.Node node) throws IOException, XMLStreamException {
+        w.writeCharacters("\n");
 
-        Element elem = null;
         if (node instanceof Shape) {
-            elem = writeShape(doc, parent, (Shape) node);
-            writeFillAttributes(elem, (Shape) node);
-            writeStrokeAttributes(elem, (Shape) node);
+            writeShape(w, (Shape) node);
+            writeFillAttributes(w, (Shape) node);
+            writeStrokeAttributes(w, (Shape) node);
         } else if (node instanceof Group) {
-            elem = writeGroup(doc, parent, (Group) node);
+            writeGroup(w, (Group) node);
         } else if (node instanceof Region) {
-            elem = writeRegion(doc, parent, (Region) node);
+            writeRegion(w, (Region) node);
         } else if (node instanceof ImageView) {
-            elem = writeImageView(doc, parent, (ImageView) node);
+            writeImageView(w, (ImageView) node);
         } else {
             throw new UnsupportedOperationException("not yet implemented for " + node);
         }
 
-        if (elem != null) {
-            writeStyleAttributes(elem, node);
-            writeTransformAttributes(elem, node);
-            writeCompositingAttributes(elem, node);
-        } else {
-            elem = parent;
-        }
+        writeStyleAttributes(w, node);
+        writeTransformAttributes(w, node);
+        writeCompositingAttributes(w, node);
 
-        if (node instanceof Parent) {
+        if (node instanceof Text) {
+            w.writeCharacters(((Text) node).getText());
+            w.writeEndElement();
+        } else if (node instanceof Parent) {
+            if (node instanceof Region) {
+                writeRegionContent(w, (Region) node);
+            }
             Parent pp = (Parent) node;
             for (javafx.scene.Node child : pp.getChildrenUnmodifiable()) {
-                writeNodeRecursively(doc, elem, child);
+                writeNodeRecursively(w, child);
             }
             if (!pp.getChildrenUnmodifiable().isEmpty()) {
-                elem.appendChild(doc.createTextNode("\n"));
+                w.writeCharacters("\n");
             }
+            w.writeEndElement();
         }
-
     }
 
-    private Element writeShape(Document doc, Element parent, Shape node) throws IOException {
-        Element elem = null;
+    /**
+     * Starts the element of the shape and writes its geometry attributes.
+     * Text elements are started with a start tag, all other shapes with an
+     * empty element tag.
+     */
+    private void writeShape(XMLStreamWriter w, Shape node) throws IOException, XMLStreamException {
         if (node instanceof Arc) {
-            elem = writeArc(doc, parent, (Arc) node);
+            writeArc(w, (Arc) node);
         } else if (node instanceof Circle) {
-            elem = writeCircle(doc, parent, (Circle) node);
+            writeCircle(w, (Circle) node);
         } else if (node instanceof CubicCurve) {
-            elem = writeCubicCurve(doc, parent, (CubicCurve) node);
+            writeCubicCurve(w, (CubicCurve) node);
         } else if (node instanceof Ellipse) {
-            elem = writeEllipse(doc, parent, (Ellipse) node);
+            writeEllipse(w, (Ellipse) node);
         } else if (node instanceof Line) {
-            elem = writeLine(doc, parent, (Line) node);
+            writeLine(w, (Line) node);
         } else if (node instanceof Path) {
-            elem = writePath(doc, parent, (Path) node);
+            writePath(w, (Path) node);
         } else if (node instanceof Polygon) {
-            elem = writePolygon(doc, parent, (Polygon) node);
+            writePolygon(w, (Polygon) node);
         } else if (node instanceof Polyline) {
-            elem = writePolyline(doc, parent, (Polyline) node);
+            writePolyline(w, (Polyline) node);
         } else if (node instanceof QuadCurve) {
-            elem = writeQuadCurve(doc, parent, (QuadCurve) node);
+            writeQuadCurve(w, (QuadCurve) node);
         } else if (node instanceof Rectangle) {
-            elem = writeRectangle(doc, parent, (Rectangle) node);
+            writeRectangle(w, (Rectangle) node);
         } else if (node instanceof SVGPath) {
-            elem = writeSVGPath(doc, parent, (SVGPath) node);
+            writeSVGPath(w, (SVGPath) node);
         } else if (node instanceof Text) {
-            elem = writeText(doc, parent, (Text) node);
+            writeText(w, (Text) node);
         } else {
             throw new IOException("unknown shape type " + node);
         }
-        return elem;
     }
 
-    private Element writeArc(Document doc, Element parent, Arc node) {
-        Element elem = doc.createElement("arc");
-        parent.appendChild(elem);
+    private void writeArc(XMLStreamWriter w, Arc node) throws XMLStreamException {
+        w.writeEmptyElement("arc");
         StringBuilder buf = new StringBuilder();
         double centerX = node.getCenterX();
         double centerY = node.getCenterY();
@@ -320,88 +361,70 @@ public class SvgExportOutputFormat implements OutputFormat {
                 || ArcType.ROUND == node.getType()) {
             buf.append('Z');
         }
-        return elem;
     }
 
-    private Element writeCircle(Document doc, Element parent, Circle node) {
-        Element elem = doc.createElement("circle");
+    private void writeCircle(XMLStreamWriter w, Circle node) throws XMLStreamException {
+        w.writeEmptyElement("circle");
         if (node.getCenterX() != 0.0) {
-            elem.setAttribute("cx", nb.toString(node.getCenterX()));
+            w.writeAttribute("cx", nb.toString(node.getCenterX()));
         }
         if (node.getCenterY() != 0.0) {
-            elem.setAttribute("cy", nb.toString(node.getCenterY()));
+            w.writeAttribute("cy", nb.toString(node.getCenterY()));
         }
         if (node.getRadius() != 0.0) {
-            elem.setAttribute("r", nb.toString(node.getRadius()));
+            w.writeAttribute("r", nb.toString(node.getRadius()));
         }
-        parent.appendChild(elem);
-        return elem;
     }
 
-    private Element writeCubicCurve(Document doc, Element parent, CubicCurve node) {
-        Element elem = doc.createElement("path");
-        parent.appendChild(elem);
+    private void writeCubicCurve(XMLStreamWriter w, CubicCurve node) throws IOException, XMLStreamException {
+        w.writeEmptyElement("path");
         final StringBuilder buf = new StringBuilder();
-        buf.append('M')
-                .append(nb.toString(node.getStartX()))
-                .append(',')
-                .append(nb.toString(node.getStartY()))
-                .append(' ')
-                .append('C')
-                .append(nb.toString(node.getControlX1()))
-                .append(',')
-                .append(nb.toString(node.getControlY1()))
-                .append(',')
-                .append(nb.toString(node.getControlX2()))
-                .append(',')
-                .append(nb.toString(node.getControlY2()))
-                .append(',')
-                .append(nb.toString(node.getEndX()))
-                .append(',')
-                .append(nb.toString(node.getEndY()));
-        elem.setAttribute("d", buf.substring(0));
-        return elem;
-    }
-
-    private Element writeEllipse(Document doc, Element parent, Ellipse node) {
-        Element elem = doc.createElement("ellipse");
+        buf.append('M');
+        appendPoint(buf, node.getStartX(), node.getStartY());
+        buf.append(' ')
+                .append('C');
+        appendPoint(buf, node.getControlX1(), node.getControlY1());
+        buf.append(',');
+        appendPoint(buf, node.getControlX2(), node.getControlY2());
+        buf.append(',');
+        appendPoint(buf, node.getEndX(), node.getEndY());
+        w.writeAttribute("d", buf.toString());
+    }
+
+    private void writeEllipse(XMLStreamWriter w, Ellipse node) throws XMLStreamException {
+        w.writeEmptyElement("ellipse");
         if (node.getCenterX() != 0.0) {
-            elem.setAttribute("cx", nb.toString(node.getCenterX()));
+            w.writeAttribute("cx", nb.toString(node.getCenterX()));
         }
         if (node.getCenterY() != 0.0) {
-            elem.setAttribute("cy", nb.toString(node.getCenterY()));
+            w.writeAttribute("cy", nb.toString(node.getCenterY()));
         }
         if (node.getRadiusX() != 0.0) {
-            elem.setAttribute("rx", nb.toString(node.getRadiusX()));
+            w.writeAttribute("rx", nb.toString(node.getRadiusX()));
         }
         if (node.getRadiusY() != 0.0) {
-            elem.setAttribute("ry", nb.toString(node.getRadiusY()));
+            w.writeAttribute("ry", nb.toString(node.getRadiusY()));
         }
-        parent.appendChild(elem);
-        return elem;
     }
 
-    private Element writeLine(Document doc, Element parent, Line node) {
-        Element elem = doc.createElement("line");
+    private void writeLine(XMLStreamWriter w, Line node) throws XMLStreamException {
+        w.writeEmptyElement("line");
         if (node.getStartX() != 0.0) {
-            elem.setAttribute("x1", nb.toString(node.getStartX()));
+            w.writeAttribute("x1", nb.toString(node.getStartX()));
         }
         if (node.getStartY() != 0.0) {
-            elem.setAttribute("y1", nb.toString(node.getStartY()));
+            w.writeAttribute("y1", nb.toString(node.getStartY()));
         }
         if (node.getEndX() != 0.0) {
-            elem.setAttribute("x2", nb.toString(node.getEndX()));
+            w.writeAttribute("x2", nb.toString(node.getEndX()));
         }
         if (node.getEndY() != 0.0) {
-            elem.setAttribute("y2", nb.toString(node.getEndY()));
+            w.writeAttribute("y2", nb.toString(node.getEndY()));
         }
-        parent.appendChild(elem);
-        return elem;
     }
 
-    private Element writePath(Document doc, Element parent, Path node) {
-        Element elem = doc.createElement("path");
-        parent.appendChild(elem);
+    private void writePath(XMLStreamWriter w, Path node) throws IOException, XMLStreamException {
+        w.writeEmptyElement("path");
         StringBuilder buf = new StringBuilder();
         for (PathElement pe : node.getElements()) {
             if (buf.length() != 0) {
@@ -409,179 +432,144 @@ public class SvgExportOutputFormat implements OutputFormat {
             }
             if (pe instanceof MoveTo) {
                 MoveTo e = (MoveTo) pe;
-                buf.append('M')
-                        .append(nb.toString(e.getX()))
-                        .append(',')
-                        .append(nb.toString(e.getY()));
+                buf.append('M');
+                appendPoint(buf, e.getX(), e.getY());
             } else if (pe instanceof LineTo) {
                 LineTo e = (LineTo) pe;
-                buf.append('L')
-                        .append(nb.toString(e.getX()))
-                        .append(',')
-                        .append(nb.toString(e.getY()));
+                buf.append('L');
+                appendPoint(buf, e.getX(), e.getY());
             } else if (pe instanceof CubicCurveTo) {
                 CubicCurveTo e = (CubicCurveTo) pe;
-                buf.append('C')
-                        .append(nb.toString(e.getControlX1()))
-                        .append(',')
-                        .append(nb.toString(e.getControlY1()))
-                        .append(',')
-                        .append(nb.toString(e.getControlX2()))
-                        .append(',')
-                        .append(nb.toString(e.getControlY2()))
-                        .append(',')
-                        .append(nb.toString(e.getX()))
-                        .append(',')
-                        .append(nb.toString(e.getY()));
+                buf.append('C');
+                appendPoint(buf, e.getControlX1(), e.getControlY1());
+                buf.append(',');
+                appendPoint(buf, e.getControlX2(), e.getControlY2());
+                buf.append(',');
+                appendPoint(buf, e.getX(), e.getY());
             } else if (pe instanceof QuadCurveTo) {
                 QuadCurveTo e = (QuadCurveTo) pe;
-                buf.append('Q')
-                        .append(nb.toString(e.getControlX()))
-                        .append(',')
-                        .append(nb.toString(e.getControlY()))
-                        .append(',')
-                        .append(nb.toString(e.getX()))
-                        .append(',')
-                        .append(nb.toString(e.getY()));
+                buf.append('Q');
+                appendPoint(buf, e.getControlX(), e.getControlY());
+                buf.append(',');
+                appendPoint(buf, e.getX(), e.getY());
             } else if (pe instanceof ArcTo) {
                 ArcTo e = (ArcTo) pe;
-                buf.append('A')
-                        .append(nb.toString(e.getRadiusX()))
-                        .append(',')
-                        .append(nb.toString(e.getRadiusY()))
-                        .append(',')
-                        .append(nb.toString(e.getXAxisRotation()))
-                        .append(',')
+                buf.append('A');
+                appendPoint(buf, e.getRadiusX(), e.getRadiusY());
+                buf.append(',');
+                number.format(buf, e.getXAxisRotation());
+                buf.append(',')
                         .append(e.isLargeArcFlag() ? '1' : '0')
                         .append(',')
                         .append(e.isSweepFlag() ? '1' : '0')
-                        .append(',')
-                        .append(nb.toString(e.getX()))
-                        .append(',')
-                        .append(nb.toString(e.getY()));
+                        .append(',');
+                appendPoint(buf, e.getX(), e.getY());
             } else if (pe instanceof HLineTo) {
                 HLineTo e = (HLineTo) pe;
-                buf.append('H').append(nb.toString(e.getX()));
+                buf.append('H');
+                number.format(buf, e.getX());
             } else if (pe instanceof VLineTo) {
                 VLineTo e = (VLineTo) pe;
-                buf.append('V').append(nb.toString(e.getY()));
+                buf.append('V');
+                number.format(buf, e.getY());
             } else if (pe instanceof ClosePath) {
                 buf.append('Z');
             }
         }
-        elem.setAttribute("d", buf.toString());
-        return elem;
+        w.writeAttribute("d", buf.toString());
     }
 
-    private Element writePolygon(Document doc, Element parent, Polygon node) {
-        Element elem = doc.createElement("polygon");
-        StringBuilder buf = new StringBuilder();
-        List<Double> ps = node.getPoints();
-        for (int i = 0, n = ps.size(); i < n; i += 2) {
-            if (i != 0) {
-                buf.append(' ');
-            }
-            buf.append(nb.toString(ps.get(i)))
-                    .append(',')
-                    .append(nb.toString(ps.get(i + 1)));
-        }
-        elem.setAttribute("points", buf.toString());
-        parent.appendChild(elem);
-        return elem;
+    private void writePolygon(XMLStreamWriter w, Polygon node) throws IOException, XMLStreamException {
+        w.writeEmptyElement("polygon");
+        w.writeAttribute("points", toPointsString(node.getPoints()));
+    }
+
+    private void writePolyline(XMLStreamWriter w, Polyline node) throws IOException, XMLStreamException {
+        w.writeEmptyElement("polyline");
+        w.writeAttribute("points", toPointsString(node.getPoints()));
     }
 
-    private Element writePolyline(Document doc, Element parent, Polyline node) {
-        Element elem = doc.createElement("polyline");
+    private String toPointsString(List<Double> ps) throws IOException {
         StringBuilder buf = new StringBuilder();
-        List<Double> ps = node.getPoints();
         for (int i = 0, n = ps.size(); i < n; i += 2) {
             if (i != 0) {
                 buf.append(' ');
             }
-            buf.append(nb.toString(ps.get(i)))
-                    .append(',')
-                    .append(nb.toString(ps.get(i + 1)));
+            appendPoint(buf, ps.get(i), ps.get(i + 1));
         }
-        elem.setAttribute("points", buf.toString());
-        parent.appendChild(elem);
-        return elem;
+        return buf.toString();
     }
 
-    private Element writeQuadCurve(Document doc, Element parent, QuadCurve node) {
-        Element elem = doc.createElement("path");
-        parent.appendChild(elem);
-        final StringBuilder buf = new StringBuilder();
-        buf.append('M')
-                .append(nb.toString(node.getStartX()))
-                .append(',')
-                .append(nb.toString(node.getStartY()))
-                .append(' ')
-                .append('Q')
-                .append(nb.toString(node.getControlX()))
-                .append(',')
-                .append(nb.toString(node.getControlY()))
-                .append(',')
-                .append(nb.toString(node.getEndX()))
-                .append(',')
-                .append(nb.toString(node.getEndY()));
-        elem.setAttribute("d", buf.substring(0));
-        return elem;
+    /**
+     * Appends the coordinates of a point separated by a comma.
+     */
+    private void appendPoint(StringBuilder buf, double x, double y) throws IOException {
+        number.format(buf, x);
+        buf.append(',');
+        number.format(buf, y);
     }
 
-    private Element writeRectangle(Document doc, Element parent, Rectangle node) {
-        Element elem = doc.createElement("rect");
+    private void writeQuadCurve(XMLStreamWriter w, QuadCurve node) throws IOException, XMLStreamException {
+        w.writeEmptyElement("path");
+        final StringBuilder buf = new StringBuilder();
+        buf.append('M');
+        appendPoint(buf, node.getStartX(), node.getStartY());
+        buf.append(' ')
+                .append('Q');
+        appendPoint(buf, node.getControlX(), node.getControlY());
+        buf.append(',');
+        appendPoint(buf, node.getEndX(), node.getEndY());
+        w.writeAttribute("d", buf.toString());
+    }
+
+    private void writeRectangle(XMLStreamWriter w, Rectangle node) throws XMLStreamException {
+        w.writeEmptyElement("rect");
         if (node.getX() != 0.0) {
-            elem.setAttribute("x", nb.toString(node.getX()));
+            w.writeAttribute("x", nb.toString(node.getX()));
         }
         if (node.getY() != 0.0) {
-            elem.setAttribute("y", nb.toString(node.getY()));
+            w.writeAttribute("y", nb.toString(node.getY()));
         }
         if (node.getWidth() != 0.0) {
-            elem.setAttribute("width", nb.toString(node.getWidth()));
+            w.writeAttribute("width", nb.toString(node.getWidth()));
         }
         if (node.getHeight() != 0.0) {
-            elem.setAttribute("height", nb.toString(node.getHeight()));
+            w.writeAttribute("height", nb.toString(node.getHeight()));
         }
         if (node.getArcWidth() != 0.0) {
-            elem.setAttribute("rx", nb.toString(node.getArcWidth()));
+            w.writeAttribute("rx", nb.toString(node.getArcWidth()));
         }
         if (node.getArcHeight() != 0.0) {
-            elem.setAttribute("ry", nb.toString(node.getArcHeight()));
+            w.writeAttribute("ry", nb.toString(node.getArcHeight()));
         }
-        parent.appendChild(elem);
-        return elem;
     }
 
-    private Element writeSVGPath(Document doc, Element parent, SVGPath node) {
-        Element elem = doc.createElement("path");
-        elem.setAttribute("d", node.getContent());
-        parent.appendChild(elem);
-        return elem;
+    private void writeSVGPath(XMLStreamWriter w, SVGPath node) throws XMLStreamException {
+        w.writeEmptyElement("path");
+        w.writeAttribute("d", node.getContent());
     }
 
-    private Element writeText(Document doc, Element parent, Text node) {
-        Element elem = doc.createElement("text");
-        parent.appendChild(elem);
-        elem.appendChild(doc.createTextNode(node.getText()));
-
-        elem.setAttribute("x", nb.toString(node.getX()));
-        elem.setAttribute("y", nb.toString(node.getY()));
+    private void writeText(XMLStreamWriter w, Text node) throws XMLStreamException {
+        w.writeStartElement("text");
 
-        writeTextAttributes(elem, node);
+        w.writeAttribute("x", nb.toString(node.getX()));
+        w.writeAttribute("y", nb.toString(node.getY()));
 
-        return elem;
+        writeTextAttributes(w, node);
     }
 
-    private Element writeGroup(Document doc, Element parent, Group node) {
-        Element elem = doc.createElement("g");
-        parent.appendChild(elem);
-        return elem;
+    private void writeGroup(XMLStreamWriter w, Group node) throws XMLStreamException {
+        w.writeStartElement("g");
     }
 
-    private Element writeRegion(Document doc, Element parent, Region region) throws IOException {
-        Element elem = doc.createElement("g");
-        parent.appendChild(elem);
+    private void writeRegion(XMLStreamWriter w, Region region) throws XMLStreamException {
+        w.writeStartElement("g");
+    }
 
+    /**
+     * Writes the background and the border of the region as shapes.
+     */
+    private void writeRegionContent(XMLStreamWriter w, Region region) throws IOException, XMLStreamException {
         double x = region.getLayoutX();
         double y = region.getLayoutY();
         double width = region.getWidth();
@@ -619,10 +607,9 @@ public class SvgExportOutputFormat implements OutputFormat {
                         bgs = new Rectangle(x + insets.getLeft(), y + insets.getTop(), width - insets.getLeft() - insets.getRight(), height - insets.getTop() - insets.getBottom());
                     }
                     bgs.setFill(fill);
-                    Element bgsElement = writeShape(doc, elem, bgs);
-                    writeFillAttributes(bgsElement, bgs);
-                    bgsElement.setAttribute("stroke", "none");
-                    elem.appendChild(bgsElement);
+                    writeShape(w, bgs);
+                    writeFillAttributes(w, bgs);
+                    w.writeAttribute("stroke", "none");
                 }
                 for (BackgroundImage bgi : region.getBackground().getImages()) {
                     throw new UnsupportedOperationException("background image not yet implemented");
@@ -652,10 +639,9 @@ public class SvgExportOutputFormat implements OutputFormat {
                             bgs = new Rectangle(x + insets.getLeft(), y + insets.getTop(), width - insets.getLeft() - insets.getRight(), height - insets.getTop() - insets.getBottom());
                         }
 
-                        Element bgsElement = writeShape(doc, elem, bgs);
-                        writeStrokeAttributes(bgsElement, bs);
-                        bgsElement.setAttribute("fill", "none");
-                        elem.appendChild(bgsElement);
+                        writeShape(w, bgs);
+                        writeStrokeAttributes(w, bs);
+                        w.writeAttribute("fill", "none");
                     }
                 }
                 if (s != null) {
@@ -665,66 +651,72 @@ public class SvgExportOutputFormat implements OutputFormat {
                 }
             }
         }
-        return elem;
     }
 
-    private Element writeImageView(Document doc, Element parent, ImageView node) throws IOException {
-        Element elem = doc.createElement("image");
-        parent.appendChild(elem);
+    /**
+     * Writes the image as a PNG file in a data URI.
+     * <p>
+     * The PNG encoder writes through a base64 encoder into the text of the
+     * attribute value, so that the encoded image is held in memory only
+     * once. The value must be complete before it can be written, because
+     * an XMLStreamWriter can not write an attribute value in chunks.
+     *
+     * @param w the writer
+     * @param node the image view
+     */
+    private void writeImageView(XMLStreamWriter w, ImageView node) throws IOException, XMLStreamException {
+        w.writeEmptyElement("image");
 
-        elem.setAttribute("x", nb.toString(node.getX()));
-        elem.setAttribute("y", nb.toString(node.getY()));
-        elem.setAttribute("width", nb.toString(node.getFitWidth()));
-        elem.setAttribute("height", nb.toString(node.getFitHeight()));
-        elem.setAttribute("preserveAspectRatio", node.isPreserveRatio() ? "xMidYMid" : "none");
+        w.writeAttribute("x", nb.toString(node.getX()));
+        w.writeAttribute("y", nb.toString(node.getY()));
+        w.writeAttribute("width", nb.toString(node.getFitWidth()));
+        w.writeAttribute("height", nb.toString(node.getFitHeight()));
+        w.writeAttribute("preserveAspectRatio", node.isPreserveRatio() ? "xMidYMid" : "none");
 
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        ImageIO.write(SwingFXUtils.fromFXImage(node.getImage(), null), "PNG", bout);
-        bout.close();
-        byte[] imageData = bout.toByteArray();
-
-        elem.setAttributeNS(XLINK_NS, XLINK_Q + ":href", "data:image;base64,"
-                + Base64.getEncoder().encodeToString(imageData));
-        return elem;
+        StringBuilder href = new StringBuilder("data:image;base64,");
+        try (OutputStream b64 = Base64.getEncoder().wrap(new AsciiOutputStream(href))) {
+            ImageIO.write(SwingFXUtils.fromFXImage(node.getImage(), null), "PNG", b64);
+        }
+        w.writeAttribute(XLINK_Q, XLINK_NS, "href", href.toString());
     }
 
-    private void writeFillAttributes(Element elem, Shape node) {
-        elem.setAttribute("fill", paint.toString(node.getFill()));
+    private void writeFillAttributes(XMLStreamWriter w, Shape node) throws XMLStreamException {
+        w.writeAttribute("fill", paint.toString(node.getFill()));
     }
 
-    private void writeStrokeAttributes(Element elem, Shape shape) {
+    private void writeStrokeAttributes(XMLStreamWriter w, Shape shape) throws XMLStreamException {
         if (shape.getStroke() != null) {
-            elem.setAttribute("stroke", paint.toString(shape.getStroke()));
+            w.writeAttribute("stroke", paint.toString(shape.getStroke()));
         }
         if (shape.getStrokeWidth() != 1) {
-            elem.setAttribute("stroke-width", nb.toString(shape.getStrokeWidth()));
+            w.writeAttribute("stroke-width", nb.toString(shape.getStrokeWidth()));
         }
         if (shape.getStrokeLineCap() != StrokeLineCap.BUTT) {
-            elem.setAttribute("stroke-linecap", shape.getStrokeLineCap().toString().toLowerCase());
+            w.writeAttribute("stroke-linecap", shape.getStrokeLineCap().toString().toLowerCase());
         }
         if (shape.getStrokeLineJoin() != StrokeLineJoin.MITER) {
-            elem.setAttribute("stroke-linecap", shape.getStrokeLineJoin().toString().toLowerCase());
+            w.writeAttribute("stroke-linecap", shape.getStrokeLineJoin().toString().toLowerCase());
         }
         if (shape.getStrokeMiterLimit() != 4) {
-            elem.setAttribute("stroke-miterlimit", nb.toString(shape.getStrokeMiterLimit()));
+            w.writeAttribute("stroke-miterlimit", nb.toString(shape.getStrokeMiterLimit()));
         }
         if (!shape.getStrokeDashArray().isEmpty()) {
-            elem.setAttribute("stroke-dasharray", nbList.toString(shape.getStrokeDashArray()));
+            w.writeAttribute("stroke-dasharray", nbList.toString(shape.getStrokeDashArray()));
         }
         if (shape.getStrokeDashOffset() != 0) {
-            elem.setAttribute("stroke-dashoffset", nb.toString(shape.getStrokeDashOffset()));
+            w.writeAttribute("stroke-dashoffset", nb.toString(shape.getStrokeDashOffset()));
         }
         if (shape.getStrokeType() != StrokeType.CENTERED) {
             // XXX this is currentl only a proposal for SVG 2 
             switch (shape.getStrokeType()) {
                 case INSIDE:
-                    elem.setAttribute("stroke-position", "inside");
+                    w.writeAttribute("stroke-position", "inside");
                     break;
                 case CENTERED:
-                    elem.setAttribute("stroke-position", "middle");
+                    w.writeAttribute("stroke-position", "middle");
                     break;
                 case OUTSIDE:
-                    elem.setAttribute("stroke-position", "outside");
+                    w.writeAttribute("stroke-position", "outside");
                     break;
                 default:
                     throw new InternalError("Unsupported stroke type " + shape.getStrokeType());
@@ -732,41 +724,41 @@ public class SvgExportOutputFormat implements OutputFormat {
         }
     }
 
-    private void writeStrokeAttributes(Element elem, BorderStroke shape) {
+    private void writeStrokeAttributes(XMLStreamWriter w, BorderStroke shape) throws XMLStreamException {
         if (shape.getTopStroke() != null) {
-            elem.setAttribute("stroke", paint.toString(shape.getTopStroke()));
+            w.writeAttribute("stroke", paint.toString(shape.getTopStroke()));
         }
         if (shape.getWidths().getTop() != 1) {
-            elem.setAttribute("stroke-width", nb.toString(shape.getWidths().getTop()));
+            w.writeAttribute("stroke-width", nb.toString(shape.getWidths().getTop()));
         }
         BorderStrokeStyle style = shape.getTopStyle();
         // FIXME support top/right/bottom/left style!!
         if (style.getLineCap() != StrokeLineCap.BUTT) {
-            elem.setAttribute("stroke-linecap", style.getLineCap().toString().toLowerCase());
+            w.writeAttribute("stroke-linecap", style.getLineCap().toString().toLowerCase());
         }
         if (style.getLineJoin() != StrokeLineJoin.MITER) {
-            elem.setAttribute("stroke-linecap", style.getLineJoin().toString().toLowerCase());
+            w.writeAttribute("stroke-linecap", style.getLineJoin().toString().toLowerCase());
         }
         if (style.getMiterLimit() != 4) {
-            elem.setAttribute("stroke-miterlimit", nb.toString(style.getMiterLimit()));
+            w.writeAttribute("stroke-miterlimit", nb.toString(style.getMiterLimit()));
         }
         if (!style.getDashArray().isEmpty()) {
-            elem.setAttribute("stroke-dasharray", nbList.toString(style.getDashArray()));
+            w.writeAttribute("stroke-dasharray", nbList.toString(style.getDashArray()));
         }
         if (style.getDashOffset() != 0) {
-            elem.setAttribute("stroke-dashoffset", nb.toString(style.getDashOffset()));
+            w.writeAttribute("stroke-dashoffset", nb.toString(style.getDashOffset()));
         }
         if (style.getType() != StrokeType.CENTERED) {
             // XXX this is currentl only a proposal for SVG 2 
             switch (style.getType()) {
                 case INSIDE:
-                    elem.setAttribute("stroke-position", "inside");
+                    w.writeAttribute("stroke-position", "inside");
                     break;
                 case CENTERED:
-                    elem.setAttribute("stroke-position", "middle");
+                    w.writeAttribute("stroke-position", "middle");
                     break;
                 case OUTSIDE:
-                    elem.setAttribute("stroke-position", "outside");
+                    w.writeAttribute("stroke-position", "outside");
                     break;
                 default:
                     throw new InternalError("Unsupported stroke type " + style.getType());
@@ -774,15 +766,15 @@ public class SvgExportOutputFormat implements OutputFormat {
         }
     }
 
-    private void writeTextAttributes(Element elem, Text node) {
+    private void writeTextAttributes(XMLStreamWriter w, Text node) throws XMLStreamException {
         Font ft = node.getFont();
-        elem.setAttribute("font-family", ft.getFamily());
-        elem.setAttribute("font-size", nb.toString(ft.getSize()));
-        elem.setAttribute("font-style", ft.getStyle().contains("italic") ? "italic" : "normal");
-        elem.setAttribute("font-weight", ft.getStyle().contains("bold") ? "bold" : "normal");
+        w.writeAttribute("font-family", ft.getFamily());
+        w.writeAttribute("font-size", nb.toString(ft.getSize()));
+        w.writeAttribute("font-style", ft.getStyle().contains("italic") ? "italic" : "normal");
+        w.writeAttribute("font-weight", ft.getStyle().contains("bold") ? "bold" : "normal");
     }
 
-    private void writeTransformAttributes(Element elem, Node node) {
+    private void writeTransformAttributes(XMLStreamWriter w, Node node) throws XMLStreamException {
 
         // The transforms are applied before translateX, translateY, scaleX, 
         // scaleY and rotate transforms.
@@ -792,23 +784,23 @@ public class SvgExportOutputFormat implements OutputFormat {
         txs.add(new Scale(node.getScaleX(), node.getScaleY(), pivot.getX(), pivot.getY()));
         txs.add(new Rotate(node.getRotate(), pivot.getX(), pivot.getY()));
 
-        writeTransformAttributes(elem, txs);
+        writeTransformAttributes(w, txs);
     }
 
-    private void writeTransformAttributes(Element elem, List< Transform> txs) {
+    private void writeTransformAttributes(XMLStreamWriter w, List< Transform> txs) throws XMLStreamException {
 
         if (txs.size() > 0) {
             String value = tx.toString(txs);
             if (!value.isEmpty()) {
-                elem.setAttribute("transform", value);
+                w.writeAttribute("transform", value);
             }
         }
     }
 
-    private void writeStyleAttributes(Element elem, Node node) {
+    private void writeStyleAttributes(XMLStreamWriter w, Node node) throws XMLStreamException {
         String id = node.getId();
         if (id != null && !id.isEmpty()) {
-            elem.setAttribute("id", id);
+            w.writeAttribute("id", id);
         }
         List<String> styleClass = node.getStyleClass();
         if (!styleClass.isEmpty()) {
@@ -819,17 +811,17 @@ public class SvgExportOutputFormat implements OutputFormat {
                 }
                 buf.append(clazz);
             }
-            elem.setAttribute("class", buf.toString());
+            w.writeAttribute("class", buf.toString());
         }
 
         if (!node.isVisible()) {
-            elem.setAttribute("visibility", "hidden");
+            w.writeAttribute("visibility", "hidden");
         }
     }
 
-    private void writeCompositingAttributes(Element elem, Node node) {
+    private void writeCompositingAttributes(XMLStreamWriter w, Node node) throws XMLStreamException {
         if (node.getOpacity() != 1.0) {
-            elem.setAttribute("opacity", nb.toString(node.getOpacity()));
+            w.writeAttribute("opacity", nb.toString(node.getOpacity()));
         }
         /*
         if (node.getBlendMode() != null && node.getBlendMode() != BlendMode.SRC_OVER) {
@@ -838,11 +830,37 @@ public class SvgExportOutputFormat implements OutputFormat {
                 case SCREEN:
                 case DARKEN:
                 case LIGHTEN:
-                    elem.setAttribute("mode", node.getBlendMode().toString().toLowerCase());
+                    w.writeAttribute("mode", node.getBlendMode().toString().toLowerCase());
                     break;
                 default:
                 // ignore
             }
         }*/
     }
+
+    /**
+     * Appends the bytes written to it as ASCII characters to a string
+     * builder.
+     */
+    private static class AsciiOutputStream extends OutputStream {
+
+        private final StringBuilder out;
+
+        AsciiOutputStream(StringBuilder out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) {
+            out.append((char) (b & 0xff));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            out.ensureCapacity(out.length() + len);
+            for (int i = off, n = off + len; i < n; i++) {
+                out.append((char) (b[i] & 0xff));
+            }
+        }
+    }
 }
@@ -0,0 +1,585 @@
+/* @(#)DoubleFormatter.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.text;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Formats {@code double} values with the shortest decimal representation
+ * which reads back to the same value.
+ * <p>
+ * The digits are computed with the Schubfach algorithm by Raffaello
+ * Giulietti, which only needs a few integer multiplications per value. The
+ * characters are appended to an {@code Appendable} one by one, so that no
+ * intermediate objects are created.
+ * <p>
+ * A value is formatted in decimal notation, for example {@code 0.003} or
+ * {@code 1234.5}, if its decimal exponent lies between the minimum negative
+ * exponent and the minimum positive exponent. Otherwise it is formatted in
+ * scientific notation, for example {@code 4E-4} or {@code 1.2345678E7}.
+ * The decimal exponent of a value is {@code floor(log10(|value|)) + 1}.
+ * Zero has the exponent 1. Infinite values are formatted as {@code INF} and
+ * {@code -INF}, and not-a-number as {@code NaN}.
+ * <p>
+ * If a value has more fraction digits than the maximum number of fraction
+ * digits, it is rounded half-even based on its exact binary value.
+ * <p>
+ * A formatter can be used by multiple threads concurrently, as long as its
+ * properties are not changed.
+ * <p>
+ * References:
+ * <ul>
+ * <li>Raffaello Giulietti. The Schubfach way to render doubles. 2020.</li>
+ * </ul>
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public final class DoubleFormatter {
+
+    /**
+     * The number of significand bits of a double including the hidden bit.
+     */
+    private final static int P = 53;
+    /**
+     * The mask of the biased exponent bits.
+     */
+    private final static int BQ_MASK = 0x7ff;
+    /**
+     * The mask of the significand bits without the hidden bit.
+     */
+    private final static long T_MASK = (1L << P - 1) - 1;
+    /**
+     * The smallest binary exponent of a double.
+     */
+    private final static int Q_MIN = -1074;
+    /**
+     * The hidden bit.
+     */
+    private final static long C_MIN = 1L << P - 1;
+    /**
+     * Subnormal significands below this value are scaled by 10 before they
+     * are rendered, so that the shortest digits are found.
+     */
+    private final static long C_TINY = 3;
+    private final static int K_MIN = -324;
+    private final static int K_MAX = 292;
+    private final static long MASK_63 = (1L << 63) - 1;
+    /**
+     * Holds the 126-bit approximations {@code g = floor(10^-k 2^-r) + 1} of
+     * the powers of ten, where {@code r = flog2pow10(-k) - 125}. The upper
+     * 63 bits of {@code g} are stored at index {@code 2 * (k - K_MIN)}, the
+     * lower 63 bits at the next index.
+     */
+    private final static long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+    /**
+     * Holds the powers of ten which fit into a long.
+     */
+    private final static long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int r = flog2pow10(-k) - 125;
+            BigInteger g;
+            if (k <= 0) {
+                BigInteger p = BigInteger.TEN.pow(-k);
+                g = r <= 0 ? p.shiftLeft(-r) : p.shiftRight(r);
+            } else {
+                g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+            }
+            g = g.add(BigInteger.ONE);
+            G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+            G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+    private int minIntegerDigits = 1;
+    private int minFractionDigits = 0;
+    private int maxFractionDigits = 17;
+    private int minNegativeExponent = -3;
+    private int minPositiveExponent = 8;
+    private boolean usesScientificNotation = true;
+
+    /**
+     * Creates a new instance which formats values like
+     * {@code XmlNumberConverter} with its default settings.
+     */
+    public DoubleFormatter() {
+    }
+
+    /**
+     * Gets the minimum number of digits in the integer part of a value in
+     * decimal notation.
+     *
+     * @return the minimum integer digits
+     */
+    public int getMinimumIntegerDigits() {
+        return minIntegerDigits;
+    }
+
+    /**
+     * Sets the minimum number of digits in the integer part of a value in
+     * decimal notation. The integer part is padded with leading zeros. By
+     * default this is 1.
+     *
+     * @param newValue the minimum integer digits
+     */
+    public void setMinimumIntegerDigits(int newValue) {
+        minIntegerDigits = Math.max(0, newValue);
+    }
+
+    /**
+     * Gets the minimum number of digits in the fraction part of a value in
+     * decimal notation.
+     *
+     * @return the minimum fraction digits
+     */
+    public int getMinimumFractionDigits() {
+        return minFractionDigits;
+    }
+
+    /**
+     * Sets the minimum number of digits in the fraction part of a value in
+     * decimal notation. The fraction part is padded with trailing zeros. By
+     * default this is 0.
+     *
+     * @param newValue the minimum fraction digits
+     */
+    public void setMinimumFractionDigits(int newValue) {
+        minFractionDigits = Math.max(0, newValue);
+    }
+
+    /**
+     * Gets the maximum number of fraction digits.
+     *
+     * @return the maximum fraction digits
+     */
+    public int getMaximumFractionDigits() {
+        return maxFractionDigits;
+    }
+
+    /**
+     * Sets the maximum number of fraction digits. In scientific notation, this
+     * is the maximum number of digits after the first significant digit. By
+     * default this is 17.
+     *
+     * @param newValue the maximum fraction digits
+     */
+    public void setMaximumFractionDigits(int newValue) {
+        maxFractionDigits = Math.max(0, newValue);
+    }
+
+    /**
+     * Gets the minimum negative exponent value for scientific notation.
+     *
+     * @return the minimum negative exponent
+     */
+    public int getMinimumNegativeExponent() {
+        return minNegativeExponent;
+    }
+
+    /**
+     * Sets the minimum negative exponent value for scientific notation.
+     * Values with an exponent less than or equal to this value are formatted
+     * in scientific notation. By default this is -3.
+     *
+     * @param newValue the minimum negative exponent
+     */
+    public void setMinimumNegativeExponent(int newValue) {
+        minNegativeExponent = newValue;
+    }
+
+    /**
+     * Gets the minimum positive exponent value for scientific notation.
+     *
+     * @return the minimum positive exponent
+     */
+    public int getMinimumPositiveExponent() {
+        return minPositiveExponent;
+    }
+
+    /**
+     * Sets the minimum positive exponent value for scientific notation.
+     * Values with an exponent greater than or equal to this value are
+     * formatted in scientific notation. By default this is 8.
+     *
+     * @param newValue the minimum positive exponent
+     */
+    public void setMinimumPositiveExponent(int newValue) {
+        minPositiveExponent = newValue;
+    }
+
+    /**
+     * Returns true if scientific notation is used.
+     *
+     * @return true if scientific notation is used
+     */
+    public boolean isUsesScientificNotation() {
+        return usesScientificNotation;
+    }
+
+    /**
+     * Sets whether scientific notation is used. If this is false, all values
+     * are formatted in decimal notation. By default this is true.
+     *
+     * @param newValue true if scientific notation is used
+     */
+    public void setUsesScientificNotation(boolean newValue) {
+        usesScientificNotation = newValue;
+    }
+
+    /**
+     * Formats the value into a string.
+     *
+     * @param value a value
+     * @return the formatted value
+     */
+    public String toString(double value) {
+        StringBuilder buf = new StringBuilder(24);
+        try {
+            format(buf, value);
+        } catch (IOException ex) {
+            throw new InternalError("StringBuilder does not throw IOException");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Appends the formatted value to the appendable.
+     *
+     * @param out the appendable
+     * @param value a value
+     * @throws IOException if the appendable throws an exception
+     */
+    public void format(Appendable out, double value) throws IOException {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> P - 1) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            if (t != 0) {
+                out.append("NaN");
+            } else {
+                out.append(bits < 0 ? "-INF" : "INF");
+            }
+            return;
+        }
+        if (bits < 0) {
+            out.append('-');
+        }
+
+        // Compute the shortest digits f and the exponent e, such that
+        // f * 10^e reads back to the absolute value.
+        long f;
+        int e;
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P && (c >> mq) << mq == c) {
+                // the value is an integer smaller than 2^53
+                f = c >> mq;
+                e = 0;
+            } else {
+                e = flog10(-mq, c);
+                f = shortestDigits(-mq, c, e);
+            }
+        } else if (t != 0) {
+            if (t < C_TINY) {
+                e = flog10(Q_MIN, 10 * t);
+                f = shortestDigits(Q_MIN, 10 * t, e);
+                e--;
+            } else {
+                e = flog10(Q_MIN, t);
+                f = shortestDigits(Q_MIN, t, e);
+            }
+        } else {
+            f = 0;
+            e = 0;
+        }
+        while (f != 0 && f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+
+        int n = digitCount(f);
+        int exponent = f == 0 ? 1 : e + n;
+        if (f == 1 && (exponent == minNegativeExponent + 1 || exponent == minPositiveExponent)) {
+            // The shortest digits are a power of ten, but the exact value may
+            // be smaller, and thus have a smaller exponent.
+            if (new BigDecimal(Math.abs(value)).compareTo(BigDecimal.ONE.scaleByPowerOfTen(exponent - 1)) < 0) {
+                exponent--;
+            }
+        }
+
+        if (!usesScientificNotation || exponent > minNegativeExponent
+                && exponent < minPositiveExponent) {
+            int keep = e + n + maxFractionDigits;
+            if (f != 0 && keep < n) {
+                f = round(f, e, n - keep, value);
+                e += n - keep;
+                while (f != 0 && f % 10 == 0) {
+                    f /= 10;
+                    e++;
+                }
+                n = digitCount(f);
+            }
+            appendDecimal(out, f, e, n);
+        } else {
+            int keep = 1 + maxFractionDigits;
+            if (keep < n) {
+                f = round(f, e, n - keep, value);
+                e += n - keep;
+                while (f % 10 == 0) {
+                    f /= 10;
+                    e++;
+                }
+                n = digitCount(f);
+            }
+            appendScientific(out, f, e, n);
+        }
+    }
+
+    /**
+     * Returns the special value which is at the start of the character
+     * sequence.
+     *
+     * @param str a character sequence
+     * @return {@code "INF"}, {@code "-INF"}, {@code "NaN"}, or null if the
+     * sequence does not start with a special value
+     */
+    static String getSpecialValue(CharSequence str) {
+        for (String special : new String[]{"INF", "-INF", "NaN"}) {
+            if (startsWith(str, special)) {
+                return special;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(CharSequence str, String prefix) {
+        if (str.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0, n = prefix.length(); i < n; i++) {
+            if (str.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the digits {@code f * 10^e} in decimal notation.
+     */
+    private void appendDecimal(Appendable out, long f, int e, int n) throws IOException {
+        int integerDigits = f == 0 ? 0 : Math.max(0, n + e);
+        int fractionDigits = f == 0 ? 0 : Math.max(0, -e);
+        for (int i = integerDigits; i < minIntegerDigits; i++) {
+            out.append('0');
+        }
+        // the digits of f which are in the integer part
+        int i = 0;
+        for (; i < integerDigits && i < n; i++) {
+            out.append(digitAt(f, n, i));
+        }
+        for (int j = i; j < integerDigits; j++) {
+            out.append('0');
+        }
+        int fractionLength = Math.max(fractionDigits, minFractionDigits);
+        if (fractionLength == 0) {
+            if (integerDigits == 0 && minIntegerDigits == 0) {
+                out.append('0');
+            }
+            return;
+        }
+        out.append('.');
+        int j = 0;
+        for (; j < fractionDigits - n; j++) {
+            out.append('0');
+        }
+        for (; i < n; i++, j++) {
+            out.append(digitAt(f, n, i));
+        }
+        for (; j < fractionLength; j++) {
+            out.append('0');
+        }
+    }
+
+    /**
+     * Appends the digits {@code f * 10^e} in scientific notation.
+     */
+    private static void appendScientific(Appendable out, long f, int e, int n) throws IOException {
+        out.append(digitAt(f, n, 0));
+        if (n > 1) {
+            out.append('.');
+            for (int i = 1; i < n; i++) {
+                out.append(digitAt(f, n, i));
+            }
+        }
+        out.append('E');
+        int exponent = f == 0 ? 0 : e + n - 1;
+        if (exponent < 0) {
+            out.append('-');
+            exponent = -exponent;
+        }
+        if (exponent >= 100) {
+            out.append((char) ('0' + exponent / 100));
+        }
+        if (exponent >= 10) {
+            out.append((char) ('0' + exponent / 10 % 10));
+        }
+        out.append((char) ('0' + exponent % 10));
+    }
+
+    /**
+     * Returns the digit with the specified index of the n-digit number f,
+     * counted from the most significant digit.
+     */
+    private static char digitAt(long f, int n, int index) {
+        return (char) ('0' + f / POW10[n - 1 - index] % 10);
+    }
+
+    /**
+     * Returns the number of decimal digits of f.
+     */
+    private static int digitCount(long f) {
+        int n = 1;
+        while (n < POW10.length && f >= POW10[n]) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Drops the specified number of least significant digits from
+     * {@code f * 10^e} and rounds half-even. Ties in the shortest digits are
+     * resolved with the exact binary value, because the shortest digits are
+     * only an approximation of it.
+     *
+     * @param f the digits
+     * @param e the exponent of the digits
+     * @param drop the number of digits to be dropped, must be greater than 0
+     * @param value the exact value
+     * @return the remaining digits
+     */
+    private static long round(long f, int e, int drop, double value) {
+        if (drop > POW10.length - 1) {
+            return 0;
+        }
+        long p = POW10[drop];
+        long q = f / p;
+        long r = f % p;
+        long half = p / 2;
+        if (r > half) {
+            return q + 1;
+        }
+        if (r < half) {
+            return q;
+        }
+        int cmp = new BigDecimal(Math.abs(value)).compareTo(BigDecimal.valueOf(f, -e));
+        return cmp > 0 || cmp == 0 && (q & 1) != 0 ? q + 1 : q;
+    }
+
+    /**
+     * Returns the decimal exponent k of the shortest digits of the value
+     * {@code c * 2^q}.
+     */
+    private static int flog10(int q, long c) {
+        return c != C_MIN || q == Q_MIN ? flog10pow2(q) : flog10threeQuartersPow2(q);
+    }
+
+    /**
+     * Computes the shortest digits of the value {@code c * 2^q}. The digits
+     * have the decimal exponent k.
+     */
+    private static long shortestDigits(int q, long c, int k) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl = c != C_MIN || q == Q_MIN ? cb - 2 : cb - 1;
+
+        int h = q + flog2pow10(-k) + 2;
+        long g1 = G[2 * (k - K_MIN)];
+        long g0 = G[2 * (k - K_MIN) + 1];
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // s / 10 computed with a multiplication
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return upin ? sp10 : tp10;
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return uin ? s : t;
+        }
+        long cmp = vb - (s + t << 1);
+        return cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t;
+    }
+
+    /**
+     * Computes the rounded product of g and cp, where g is given by its upper
+     * and lower 63 bits.
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * Returns the upper 64 bits of the 128-bit product of x and y.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xffffffffL;
+        long y1 = y >> 32;
+        long y2 = y & 0xffffffffL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xffffffffL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Returns {@code floor(log10(2^e))}.
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * Returns {@code floor(log10(3/4 * 2^e))}.
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /**
+     * Returns {@code floor(log2(10^e))}.
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+}
@@ -6,12 +6,8 @@
 package org.jhotdraw.text;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.nio.CharBuffer;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.text.ParseException;
-import java.util.Locale;
 import org.jhotdraw.draw.io.IdFactory;
 
 /**
@@ -44,16 +40,9 @@ public class NumberConverter implements Converter<Number> {
     @SuppressWarnings("rawtypes")
     private Comparable max;
     private String unit;
-    private DecimalFormat decimalFormat;
-    private DecimalFormat scientificFormat;
+    private final DoubleFormatter formatter = new DoubleFormatter();
     private double factor = 1;
-    private int minIntDigits;
     private int maxIntDigits;
-    private int minFractionDigits;
-    private int maxFractionDigits;
-    private int minNegativeExponent = -3;
-    private int minPositiveExponent = 8;
-    private boolean usesScientificNotation = true;
     private Class<? extends Number> valueClass = Double.class;
 
     /**
@@ -63,7 +52,6 @@ public class NumberConverter implements Converter<Number> {
      */
     public NumberConverter() {
         super();
-        initFormats();
     }
 
     /**
@@ -100,7 +88,6 @@ public class NumberConverter implements Converter<Number> {
      */
     public NumberConverter(double min, double max, double multiplier, boolean allowsNullValue, String unit) {
         super();
-        initFormats();
         this.min = min;
         this.max = max;
         this.factor = multiplier;
@@ -108,12 +95,6 @@ public class NumberConverter implements Converter<Number> {
         this.unit = unit;
     }
 
-    private void initFormats() {
-        DecimalFormatSymbols s = new DecimalFormatSymbols(Locale.ENGLISH);
-        decimalFormat = new DecimalFormat("#################0.#################", s);
-        scientificFormat = new DecimalFormat("0.0################E0", s);
-    }
-
     /**
      * Sets the minimum permissible value. If the <code>valueClass</code> has
      * not been specified, and <code>minimum</code> is non null, the
@@ -205,8 +186,7 @@ public class NumberConverter implements Converter<Number> {
      * @param newValue the value
      */
     public void setMinimumFractionDigits(int newValue) {
-        minFractionDigits = newValue;
-        decimalFormat.setMinimumFractionDigits(newValue);
+        formatter.setMinimumFractionDigits(newValue);
     }
 
     /**
@@ -215,7 +195,7 @@ public class NumberConverter implements Converter<Number> {
      * @return the minimum fraction digits
      */
     public int getMinimumFractionDigits() {
-        return minFractionDigits;
+        return formatter.getMinimumFractionDigits();
     }
 
     @Override
@@ -229,31 +209,13 @@ public class NumberConverter implements Converter<Number> {
             if (factor != 1.0) {
                 v = v * factor;
             }
-            String str;
-            BigDecimal big = new BigDecimal(v);
-            int exponent = big.scale() >= 0 ? big.precision() - big.scale() : -big.scale();
-            if (!usesScientificNotation || exponent > minNegativeExponent
-                    && exponent < minPositiveExponent) {
-                str = decimalFormat.format(v);
-            } else {
-                str = scientificFormat.format(v);
-            }
-            buf.append(str);
+            formatter.format(buf, v);
         } else if (value instanceof Float) {
             float v = ((Float) value).floatValue();
             if (factor != 1.0) {
                 v = (float) (v * factor);
             }
-            String str;// = Float.toString(v);
-            BigDecimal big = new BigDecimal(v);
-            int exponent = big.scale() >= 0 ? big.precision() - big.scale() : -big.scale();
-            if (!usesScientificNotation || exponent > minNegativeExponent
-                    && exponent < minPositiveExponent) {
-                str = decimalFormat.format(v);
-            } else {
-                str = scientificFormat.format(v);
-            }
-            buf.append(str);
+            formatter.format(buf, v);
         } else if (value instanceof Long) {
             long v = ((Long) value).longValue();
             if (factor != 1.0) {
@@ -296,7 +258,12 @@ public class NumberConverter implements Converter<Number> {
         // Parse the remaining characters from the CharBuffer
         final int remaining = str.remaining();
         int end = 0; // end is a relative to CharBuffer.position();
-        {
+        String text;
+        String special = DoubleFormatter.getSpecialValue(str);
+        if (special != null) {
+            end = special.length();
+            text = special.replace("INF", "Infinity");
+        } else {
             boolean noMoreSigns = false;
             boolean noMorePoints = false;
             boolean noMoreEs = false;
@@ -343,9 +310,9 @@ public class NumberConverter implements Converter<Number> {
                         break Outer;
                 }
             }
+            text = str.subSequence(0, end).toString();
         }
 
-        String text = str.subSequence(0, end).toString();
 
         // Remove unit from text
         if (unit != null && end+unit.length() <= str.length()) {
@@ -474,7 +441,7 @@ public class NumberConverter implements Converter<Number> {
      * @return the minimum integer digits
      */
     public int getMinimumIntegerDigits() {
-        return minIntDigits;
+        return formatter.getMinimumIntegerDigits();
     }
 
     /**
@@ -484,9 +451,7 @@ public class NumberConverter implements Converter<Number> {
      * @param newValue the new value
      */
     public void setMinimumIntegerDigits(int newValue) {
-        decimalFormat.setMinimumIntegerDigits(newValue);
-        scientificFormat.setMinimumIntegerDigits(newValue);
-        this.minIntDigits = newValue;
+        formatter.setMinimumIntegerDigits(newValue);
     }
 
     /**
@@ -502,12 +467,12 @@ public class NumberConverter implements Converter<Number> {
     /**
      * Sets the maximum number of digits allowed in the integer portion of a
      * number.
+     * <p>
+     * The integer portion is never truncated, this value is only stored.
      *
      * @param newValue the new value
      */
     public void setMaximumIntegerDigits(int newValue) {
-        decimalFormat.setMaximumIntegerDigits(newValue);
-        scientificFormat.setMaximumIntegerDigits(newValue);
         this.maxIntDigits = newValue;
     }
 
@@ -518,7 +483,7 @@ public class NumberConverter implements Converter<Number> {
      * @return the maximum fraction digits
      */
     public int getMaximumFractionDigits() {
-        return maxFractionDigits;
+        return formatter.getMaximumFractionDigits();
     }
 
     /**
@@ -528,9 +493,7 @@ public class NumberConverter implements Converter<Number> {
      * @param newValue the maximum fraction digits
      */
     public void setMaximumFractionDigits(int newValue) {
-        decimalFormat.setMaximumFractionDigits(newValue);
-        scientificFormat.setMaximumFractionDigits(newValue);
-        this.maxFractionDigits = newValue;
+        formatter.setMaximumFractionDigits(newValue);
     }
 
     /**
@@ -539,7 +502,7 @@ public class NumberConverter implements Converter<Number> {
      * @return the minimum negative exponent
      */
     public int getMinimumNegativeExponent() {
-        return minNegativeExponent;
+        return formatter.getMinimumNegativeExponent();
     }
 
     /**
@@ -548,7 +511,7 @@ public class NumberConverter implements Converter<Number> {
      * @param newValue the minimum negative exponent
      */
     public void setMinimumNegativeExponent(int newValue) {
-        this.minNegativeExponent = newValue;
+        formatter.setMinimumNegativeExponent(newValue);
     }
 
     /**
@@ -557,7 +520,7 @@ public class NumberConverter implements Converter<Number> {
      * @return the minimum positive exponent
      */
     public int getMinimumPositiveExponent() {
-        return minPositiveExponent;
+        return formatter.getMinimumPositiveExponent();
     }
 
     /**
@@ -566,7 +529,7 @@ public class NumberConverter implements Converter<Number> {
      * @param newValue the maximum positive exponent
      */
     public void setMinimumPositiveExponent(int newValue) {
-        this.minPositiveExponent = newValue;
+        formatter.setMinimumPositiveExponent(newValue);
     }
 
     /**
@@ -575,7 +538,7 @@ public class NumberConverter implements Converter<Number> {
      * @return true if scientific notation is used
      */
     public boolean isUsesScientificNotation() {
-        return usesScientificNotation;
+        return formatter.isUsesScientificNotation();
     }
 
     /**
@@ -584,7 +547,7 @@ public class NumberConverter implements Converter<Number> {
      * @param newValue true if scientific notation is used
      */
     public void setUsesScientificNotation(boolean newValue) {
-        this.usesScientificNotation = newValue;
+        formatter.setUsesScientificNotation(newValue);
     }
 
     /** Gets the value class.
@@ -236,7 +236,11 @@ public class PatternConverter implements Converter<Object[]> {
 
         protected String type;
         protected String style;
-        protected Converter<Object> converter;
+        /**
+         * The converter is created lazily. It is volatile, because the
+         * pattern converter may be used concurrently.
+         */
+        protected volatile Converter<Object> converter;
 
         @Override
         public String toString() {
@@ -6,12 +6,8 @@
 package org.jhotdraw.text;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.nio.CharBuffer;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.text.ParseException;
-import java.util.Locale;
 import org.jhotdraw.draw.io.IdFactory;
 
 /**
@@ -38,16 +34,9 @@ public class XmlNumberConverter implements Converter<Number> {
     @SuppressWarnings("rawtypes")
     private Comparable max;
     private String unit;
-    private DecimalFormat decimalFormat;
-    private DecimalFormat scientificFormat;
+    private final DoubleFormatter formatter = new DoubleFormatter();
     private double factor = 1;
-    private int minIntDigits;
     private int maxIntDigits;
-    private int minFractionDigits;
-    private int maxFractionDigits;
-    private int minNegativeExponent = -3;
-    private int minPositiveExponent = 8;
-    private boolean usesScientificNotation = true;
 
     /**
      * Creates a <code>NumberFormatter</code> with the a default
@@ -56,7 +45,6 @@ public class XmlNumberConverter implements Converter<Number> {
      */
     public XmlNumberConverter() {
         super();
-        initFormats();
     }
 
     /**
@@ -93,7 +81,6 @@ public class XmlNumberConverter implements Converter<Number> {
      */
     public XmlNumberConverter(double min, double max, double multiplier, boolean allowsNullValue, String unit) {
         super();
-        initFormats();
         this.min = min;
         this.max = max;
         this.factor = multiplier;
@@ -101,12 +88,6 @@ public class XmlNumberConverter implements Converter<Number> {
         this.unit = unit;
     }
 
-    private void initFormats() {
-        DecimalFormatSymbols s = new DecimalFormatSymbols(Locale.ENGLISH);
-        decimalFormat = new DecimalFormat("#################0.#################", s);
-        scientificFormat = new DecimalFormat("0.0################E0", s);
-    }
-
     /**
      * Sets the minimum permissible value. If the <code>valueClass</code> has
      * not been specified, and <code>minimum</code> is non null, the
@@ -196,8 +177,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @param newValue the value
      */
     public void setMinimumFractionDigits(int newValue) {
-        minFractionDigits = newValue;
-        decimalFormat.setMinimumFractionDigits(newValue);
+        formatter.setMinimumFractionDigits(newValue);
     }
 
     /**
@@ -206,7 +186,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @return the minimum fraction digits
      */
     public int getMinimumFractionDigits() {
-        return minFractionDigits;
+        return formatter.getMinimumFractionDigits();
     }
 
     @Override
@@ -219,16 +199,7 @@ public class XmlNumberConverter implements Converter<Number> {
         if (factor != 1.0) {
             v = v * factor;
         }
-        String str;
-        BigDecimal big = new BigDecimal(v);
-        int exponent = big.scale() >= 0 ? big.precision() - big.scale() : -big.scale();
-        if (!usesScientificNotation || exponent > minNegativeExponent
-                && exponent < minPositiveExponent) {
-            str = decimalFormat.format(v);
-        } else {
-            str = scientificFormat.format(v);
-        }
-        buf.append(str);
+        formatter.format(buf, v);
 
         if (value != null) {
             if (unit != null) {
@@ -247,7 +218,12 @@ public class XmlNumberConverter implements Converter<Number> {
         // Parse the remaining characters from the CharBuffer
         final int remaining = str.remaining();
         int end = 0; // end is a relative to CharBuffer.position();
-        {
+        String text;
+        String special = DoubleFormatter.getSpecialValue(str);
+        if (special != null) {
+            end = special.length();
+            text = special.replace("INF", "Infinity");
+        } else {
             boolean noMoreSigns = false;
             boolean noMorePoints = false;
             boolean noMoreEs = false;
@@ -294,9 +270,9 @@ public class XmlNumberConverter implements Converter<Number> {
                         break Outer;
                 }
             }
+            text = str.subSequence(0, end).toString();
         }
 
-        String text = str.subSequence(0, end).toString();
         // Remove unit from text
         if (unit != null && end + unit.length() <= remaining) {
             if (str.subSequence(end, end + unit.length()).toString().startsWith(unit)) {
@@ -386,7 +362,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @return the minimum integer digits
      */
     public int getMinimumIntegerDigits() {
-        return minIntDigits;
+        return formatter.getMinimumIntegerDigits();
     }
 
     /**
@@ -396,9 +372,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @param newValue the new value
      */
     public void setMinimumIntegerDigits(int newValue) {
-        decimalFormat.setMinimumIntegerDigits(newValue);
-        scientificFormat.setMinimumIntegerDigits(newValue);
-        this.minIntDigits = newValue;
+        formatter.setMinimumIntegerDigits(newValue);
     }
 
     /**
@@ -414,12 +388,12 @@ public class XmlNumberConverter implements Converter<Number> {
     /**
      * Sets the maximum number of digits allowed in the integer portion of a
      * number.
+     * <p>
+     * The integer portion is never truncated, this value is only stored.
      *
      * @param newValue the new value
      */
     public void setMaximumIntegerDigits(int newValue) {
-        decimalFormat.setMaximumIntegerDigits(newValue);
-        scientificFormat.setMaximumIntegerDigits(newValue);
         this.maxIntDigits = newValue;
     }
 
@@ -430,7 +404,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @return the maximum fraction digits
      */
     public int getMaximumFractionDigits() {
-        return maxFractionDigits;
+        return formatter.getMaximumFractionDigits();
     }
 
     /**
@@ -440,9 +414,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @param newValue the maximum fraction digits
      */
     public void setMaximumFractionDigits(int newValue) {
-        decimalFormat.setMaximumFractionDigits(newValue);
-        scientificFormat.setMaximumFractionDigits(newValue);
-        this.maxFractionDigits = newValue;
+        formatter.setMaximumFractionDigits(newValue);
     }
 
     /**
@@ -451,7 +423,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @return the minimum negative exponent
      */
     public int getMinimumNegativeExponent() {
-        return minNegativeExponent;
+        return formatter.getMinimumNegativeExponent();
     }
 
     /**
@@ -460,7 +432,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @param newValue the minimum negative exponent
      */
     public void setMinimumNegativeExponent(int newValue) {
-        this.minNegativeExponent = newValue;
+        formatter.setMinimumNegativeExponent(newValue);
     }
 
     /**
@@ -469,7 +441,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @return the minimum positive exponent
      */
     public int getMinimumPositiveExponent() {
-        return minPositiveExponent;
+        return formatter.getMinimumPositiveExponent();
     }
 
     /**
@@ -478,7 +450,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @param newValue the maximum positive exponent
      */
     public void setMinimumPositiveExponent(int newValue) {
-        this.minPositiveExponent = newValue;
+        formatter.setMinimumPositiveExponent(newValue);
     }
 
     /**
@@ -487,7 +459,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @return true if scientific notation is used
      */
     public boolean isUsesScientificNotation() {
-        return usesScientificNotation;
+        return formatter.isUsesScientificNotation();
     }
 
     /**
@@ -496,7 +468,7 @@ public class XmlNumberConverter implements Converter<Number> {
      * @param newValue true if scientific notation is used
      */
     public void setUsesScientificNotation(boolean newValue) {
-        this.usesScientificNotation = newValue;
+        formatter.setUsesScientificNotation(newValue);
     }
 
     @Override
@@ -98,6 +98,31 @@ public class IndexedSetNGTest {
 
     }
 
+    /**
+     * Test of indexOf and contains after insertions, removals and moves,
+     * which invalidate the positions of the elements.
+     */
+    @Test
+    public void testIndexOfAfterMutations() throws Exception {
+        IndexedSet<Character> list = new IndexedSet<Character>(asList("abcdef"));
+        list.add(0, 'x');
+        assertEquals(list.indexOf('f'), 6);
+        list.remove(2);
+        assertEquals(list.indexOf('c'), 2);
+        assertEquals(list.indexOf('b'), -1);
+        assertFalse(list.contains('b'));
+        list.move(1, 4);
+        assertEquals(list, asList("xcdeaf"));
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.indexOf(list.get(i)), i);
+            assertTrue(list.contains(list.get(i)));
+        }
+        list.set(0, 'f');
+        assertEquals(list, asList("fcdea"));
+        assertEquals(list.indexOf('a'), 4);
+        assertEquals(list.indexOf('x'), -1);
+    }
+
     private static class ChangeRecorder implements ListChangeListener<Character> {
 
         private StringBuilder buf = new StringBuilder();
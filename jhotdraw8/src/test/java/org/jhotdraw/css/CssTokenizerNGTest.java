@@ -49,6 +49,23 @@ public class CssTokenizerNGTest {
         assertEquals(actualValue, expectedValue);
     }
 
+    /**
+     * Tests that a tokenizer on a character sequence produces the same tokens
+     * as a tokenizer on a reader.
+     */
+    @Test(dataProvider = "tokenizerData")
+    public void testTokenizerCharSequence(String inputData, String expectedValue) throws Exception {
+        CssTokenizer expected = new CssTokenizer(new StringReader(inputData), false);
+        CssTokenizer actual = new CssTokenizer(inputData, false);
+        do {
+            assertEquals(actual.nextToken(), expected.nextToken());
+            assertEquals(actual.currentStringValue(), expected.currentStringValue());
+            assertEquals(actual.currentNumericValue(), expected.currentNumericValue());
+            assertEquals(actual.getPosition(), expected.getPosition());
+            assertEquals(actual.getLineNumber(), expected.getLineNumber());
+        } while (expected.currentToken() != CssTokenizer.TT_EOF);
+    }
+
     @DataProvider
     public Object[][] tokenizerData() {
         return new Object[][]{
@@ -0,0 +1,59 @@
+/* @(#)SelectorDependenciesNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.css;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import org.jhotdraw.css.SelectorDependencies.Relation;
+import org.jhotdraw.css.ast.Stylesheet;
+import static org.testng.Assert.*;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * SelectorDependenciesNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class SelectorDependenciesNGTest {
+
+    public SelectorDependenciesNGTest() {
+    }
+
+    /**
+     * Test of getAttributeDependencies, getPseudoClassDependencies and
+     * getStructureDependencies methods, of class SelectorDependencies.
+     */
+    @Test(dataProvider = "selectorData")
+    public void testDependencies(String stylesheet, String expectedClass, String expectedId, String expectedPseudoClass, String expectedStructure) throws Exception {
+        Stylesheet ast = new CssParser().parseStylesheet(stylesheet);
+        SelectorDependencies instance = new SelectorDependencies(Collections.singletonList(ast));
+
+        assertEquals(toString(instance.getAttributeDependencies("class")), expectedClass, "class");
+        assertEquals(toString(instance.getAttributeDependencies("id")), expectedId, "id");
+        assertEquals(toString(instance.getPseudoClassDependencies()), expectedPseudoClass, "pseudo class");
+        assertEquals(toString(instance.getStructureDependencies()), expectedStructure, "structure");
+    }
+
+    private static String toString(Set<Relation> relations) {
+        return new TreeSet<>(relations).toString();
+    }
+
+    @DataProvider
+    public Object[][] selectorData() {
+        return new Object[][]{
+            {"a{x:1}", "[]", "[]", "[]", "[]"},
+            {".c{x:1}", "[SELF]", "[]", "[]", "[]"},
+            {"a.c#i:hover{x:1}", "[SELF]", "[SELF]", "[SELF]", "[]"},
+            {".c a{x:1}", "[DESCENDANTS]", "[]", "[]", "[]"},
+            {".c > a{x:1}", "[DESCENDANTS]", "[]", "[]", "[]"},
+            {".c + a{x:1}", "[NEXT_SIBLING]", "[]", "[]", "[NEXT_SIBLING]"},
+            {".c ~ a{x:1}", "[FOLLOWING_SIBLINGS]", "[]", "[]", "[FOLLOWING_SIBLINGS]"},
+            {".c + a b{x:1}", "[FOLLOWING_SIBLING_DESCENDANTS]", "[]", "[]", "[FOLLOWING_SIBLING_DESCENDANTS]"},
+            {".c > #i + a{x:1}", "[DESCENDANTS]", "[NEXT_SIBLING]", "[]", "[DESCENDANTS, NEXT_SIBLING]"},
+            {"[class~=c] :hover{x:1}", "[DESCENDANTS]", "[]", "[SELF]", "[]"},};
+    }
+}
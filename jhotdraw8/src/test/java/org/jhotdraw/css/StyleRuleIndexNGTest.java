@@ -0,0 +1,109 @@
+/* @(#)StyleRuleIndexNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.css;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.jhotdraw.css.ast.Declaration;
+import org.jhotdraw.css.ast.StyleRule;
+import org.jhotdraw.css.ast.Stylesheet;
+import static org.testng.Assert.*;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * StyleRuleIndexNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class StyleRuleIndexNGTest {
+
+    public StyleRuleIndexNGTest() {
+    }
+
+    /**
+     * Test of getMatchingRules method, of class StyleRuleIndex.
+     * <p>
+     * The index must find the same rules as matching each rule against each
+     * element, and it must return them in cascade order.
+     */
+    @Test(dataProvider = "stylesheetData")
+    public void testGetMatchingRules(String stylesheet, String xml, String expectedValue) throws Exception {
+        Stylesheet ast = new CssParser().parseStylesheet(stylesheet);
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+        DocumentSelectorModel dsd = new DocumentSelectorModel();
+        StyleRuleIndex<Element> index = new StyleRuleIndex<>(Collections.singletonList(ast));
+
+        StringBuilder buf = new StringBuilder();
+        NodeList elements = doc.getElementsByTagName("*");
+        for (int i = 0, n = elements.getLength(); i < n; i++) {
+            Element elem = (Element) elements.item(i);
+            List<StyleRule> expected = new ArrayList<>();
+            for (StyleRule r : ast.getRulesets()) {
+                if (r.getSelectorGroup().matches(dsd, elem)) {
+                    expected.add(r);
+                }
+            }
+            List<StyleRule> actual = index.getMatchingRules(dsd, elem);
+            assertEquals(actual.size(), expected.size(), "rules matching " + elem.getNodeName());
+            assertTrue(actual.containsAll(expected), "rules matching " + elem.getNodeName());
+
+            if (buf.length() > 0) {
+                buf.append(' ');
+            }
+            buf.append(elem.getNodeName()).append(':');
+            for (StyleRule r : actual) {
+                for (Declaration d : r.getDeclarations()) {
+                    buf.append(d.getTermsAsString());
+                }
+            }
+        }
+        assertEquals(buf.toString(), expectedValue);
+    }
+
+    @DataProvider
+    public Object[][] stylesheetData() {
+        return new Object[][]{
+            // source order
+            {"a{x:1} a{x:2}", "<r><a/><b/></r>", "r: a:12 b:"},
+            // specificity: id over class over type
+            {"#i{x:3} .c{x:2} a{x:1} *{x:0}", "<r><a id=\"i\" class=\"c\"/><a class=\"c\"/><b/></r>", "r:0 a:0123 a:012 b:0"},
+            // compound selectors
+            {"a.c.d{x:1} .d{x:2}", "<r><a class=\"c d\"/><a class=\"d\"/></r>", "r: a:21 a:2"},
+            // combinators
+            {"r > a{x:1} r b{x:2} a + b{x:3} a ~ c{x:4}", "<r><a/><b/><c/><d><b/></d></r>", "r: a:1 b:23 c:4 d: b:2"},
+            // attribute selectors
+            {"[k=v]{x:1} a[k]{x:2}", "<r><a k=\"v\"/><b k=\"w\"/></r>", "r: a:12 b:"},
+            // selector groups: a rule is only applied once
+            {"a, .c{x:1} .c{x:2}", "<r><a class=\"c\"/><b class=\"c\"/></r>", "r: a:12 b:12"},
+            // identical signatures share their resolution
+            {"a{x:1} .c{x:2}", "<r><a class=\"c\"/><a class=\"c\"/><a class=\"e\"/></r>", "r: a:12 a:12 a:1"},};
+    }
+
+    /**
+     * Test of getSignatureCount method, of class StyleRuleIndex.
+     */
+    @Test
+    public void testSignatureCount() throws Exception {
+        Stylesheet ast = new CssParser().parseStylesheet("a{x:1} .c{x:2}");
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(
+                "<r><a class=\"c\"/><a class=\"c e\"/><a class=\"e\"/><a/></r>")));
+        DocumentSelectorModel dsd = new DocumentSelectorModel();
+        StyleRuleIndex<Element> index = new StyleRuleIndex<>(Collections.singletonList(ast));
+        NodeList elements = doc.getElementsByTagName("*");
+        for (int i = 0, n = elements.getLength(); i < n; i++) {
+            index.getMatchingRules(dsd, (Element) elements.item(i));
+        }
+        // "r", "a.c" and "a" - class "e" does not occur in the stylesheet
+        assertEquals(index.getSignatureCount(), 3);
+    }
+}
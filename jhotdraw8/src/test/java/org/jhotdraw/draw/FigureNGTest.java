@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.Set;
 import org.jhotdraw.collection.Key;
 import org.jhotdraw.collection.MapAccessor;
+import org.jhotdraw.draw.figure.FigureKeyRegistry;
 import org.jhotdraw.draw.figure.RectangleFigure;
 import static org.testng.Assert.*;
 import org.testng.annotations.AfterClass;
@@ -55,5 +56,22 @@ System.out.println("rr:"+rectangleFigureKeys);
 System.out.println("ri:"+intersection);         
         assertEquals(figureKeys,intersection);
     }
+
+    /**
+     * Test of class FigureKeyRegistry.
+     */
+    @Test
+    public void testKeyRegistry() {
+        FigureKeyRegistry registry = FigureKeyRegistry.of(RectangleFigure.class);
+        assertSame(FigureKeyRegistry.of(RectangleFigure.class), registry);
+        assertEquals(registry.getKeys(), Figure.getDeclaredAndInheritedKeys(RectangleFigure.class));
+        assertEquals(registry.size(), registry.getKeys().size());
+        for (int i = 0; i < registry.size(); i++) {
+            MapAccessor<?> key = registry.getKey(i);
+            assertEquals(registry.getOrdinal(key), i);
+        }
+        assertSame(registry.getKeyByName(RectangleFigure.WIDTH.getName()), RectangleFigure.WIDTH);
+        assertSame(registry.getKeyByCssName(RectangleFigure.WIDTH.getCssName()), RectangleFigure.WIDTH);
+    }
     
 }
@@ -0,0 +1,65 @@
+/* @(#)ConvertedValueCacheNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.css;
+
+import org.jhotdraw.text.CssStringConverter;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * ConvertedValueCacheNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class ConvertedValueCacheNGTest {
+
+    /**
+     * Tests that values are converted once, and are counted as hits
+     * afterwards.
+     */
+    @Test
+    public void testHitsAndMisses() {
+        ConvertedValueCache cache = new ConvertedValueCache(10);
+        CssStringConverter converter = new CssStringConverter();
+        assertEquals(cache.get(converter, "'a'"), "a");
+        Object first = cache.get(converter, "'b'");
+        assertSame(cache.get(converter, "'b'"), first);
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.size(), 2);
+    }
+
+    /**
+     * Tests that conversion failures are cached.
+     */
+    @Test
+    public void testNegativeResults() {
+        ConvertedValueCache cache = new ConvertedValueCache(10);
+        CssStringConverter converter = new CssStringConverter();
+        assertSame(cache.get(converter, "12"), ConvertedValueCache.NO_VALUE);
+        assertSame(cache.get(converter, "12"), ConvertedValueCache.NO_VALUE);
+        assertEquals(cache.getMissCount(), 1);
+        assertEquals(cache.getHitCount(), 1);
+    }
+
+    /**
+     * Tests that the least recently used values are evicted.
+     */
+    @Test
+    public void testEviction() {
+        ConvertedValueCache cache = new ConvertedValueCache(2);
+        CssStringConverter converter = new CssStringConverter();
+        cache.get(converter, "'a'");
+        cache.get(converter, "'b'");
+        cache.get(converter, "'a'");
+        cache.get(converter, "'c'");
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getEvictionCount(), 1);
+        cache.get(converter, "'a'");
+        assertEquals(cache.getHitCount(), 2);
+        cache.get(converter, "'b'");
+        assertEquals(cache.getMissCount(), 4);
+    }
+}
@@ -0,0 +1,87 @@
+/* @(#)SnapshotCacheNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * SnapshotCacheNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class SnapshotCacheNGTest {
+
+    /**
+     * Tests that an unchanged subtree is shared with the next snapshot, and
+     * that a changed leaf is copied along with its ancestors.
+     */
+    @Test
+    public void testUnchangedSubtreeIsSharedAndChangedLeafIsCopied() {
+        GroupFigure root = new GroupFigure();
+        GroupFigure changedGroup = new GroupFigure();
+        GroupFigure unchangedGroup = new GroupFigure();
+        RectangleFigure changedLeaf = new RectangleFigure();
+        RectangleFigure unchangedLeaf = new RectangleFigure();
+        root.add(changedGroup);
+        root.add(unchangedGroup);
+        changedGroup.add(changedLeaf);
+        unchangedGroup.add(unchangedLeaf);
+
+        GroupFigure first = SnapshotCache.take(root);
+        Figure firstChangedGroup = first.getChildren().get(0);
+        Figure firstChangedLeaf = firstChangedGroup.getChildren().get(0);
+        Figure firstUnchangedGroup = first.getChildren().get(1);
+        Figure firstUnchangedLeaf = firstUnchangedGroup.getChildren().get(0);
+        SnapshotCache.release(first);
+
+        changedLeaf.set(RectangleFigure.X, 5.0);
+        GroupFigure second = SnapshotCache.take(root);
+
+        assertNotSame(second, first);
+        assertNotSame(second.getChildren().get(0), firstChangedGroup);
+        assertNotSame(second.getChildren().get(0).getChildren().get(0), firstChangedLeaf);
+        assertEquals(second.getChildren().get(0).getChildren().get(0).get(RectangleFigure.X), 5.0);
+        assertSame(second.getChildren().get(1), firstUnchangedGroup);
+        assertSame(second.getChildren().get(1).getChildren().get(0), firstUnchangedLeaf);
+        assertSame(firstUnchangedGroup.getParent(), second);
+        assertSame(firstUnchangedLeaf.getParent(), firstUnchangedGroup);
+    }
+
+    /**
+     * Tests that an unchanged tree yields the same snapshot again.
+     */
+    @Test
+    public void testUnchangedTreeIsShared() {
+        GroupFigure root = new GroupFigure();
+        root.add(new RectangleFigure());
+
+        GroupFigure first = SnapshotCache.take(root);
+        SnapshotCache.release(first);
+        GroupFigure second = SnapshotCache.take(root);
+
+        assertSame(second, first);
+    }
+
+    /**
+     * Tests that copies are not shared with a snapshot which has not been
+     * released.
+     */
+    @Test
+    public void testUnreleasedSnapshotIsNotShared() {
+        GroupFigure root = new GroupFigure();
+        RectangleFigure leaf = new RectangleFigure();
+        root.add(leaf);
+
+        GroupFigure first = SnapshotCache.take(root);
+        Figure firstLeaf = first.getChildren().get(0);
+        GroupFigure second = SnapshotCache.take(root);
+
+        assertNotSame(second, first);
+        assertNotSame(second.getChildren().get(0), firstLeaf);
+        assertSame(first.getChildren().get(0), firstLeaf);
+        assertSame(firstLeaf.getParent(), first);
+    }
+}
@@ -0,0 +1,144 @@
+/* @(#)SimpleXmlIONGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.SimpleDrawing;
+import org.jhotdraw.draw.SimpleLayer;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.GroupFigure;
+import org.jhotdraw.draw.figure.ImageFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.figure.TextFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * SimpleXmlIONGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class SimpleXmlIONGTest {
+
+    private final static String NAMESPACE_URI = "http://jhotdraw.org/test";
+    private final static URI DOCUMENT_HOME = URI.create("file:/tmp/drawings/drawing.xml");
+
+    private static SimpleXmlIO createIO() {
+        SimpleXmlIO io = new SimpleXmlIO(new DefaultFigureFactory(null), null, NAMESPACE_URI, null);
+        io.setDocumentHome(DOCUMENT_HOME);
+        return io;
+    }
+
+    private static byte[] write(Drawing drawing) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createIO().write(out, drawing);
+        return out.toByteArray();
+    }
+
+    private static Drawing read(byte[] xml) throws IOException {
+        return createIO().read(new ByteArrayInputStream(xml), null);
+    }
+
+    /**
+     * Tests that nested figures, their attributes and their node list keys
+     * are read back as they were written.
+     */
+    @Test
+    public void testNestedFiguresRoundTrip() throws Exception {
+        SimpleDrawing drawing = new SimpleDrawing();
+        drawing.set(Drawing.DOCUMENT_HOME, DOCUMENT_HOME);
+        SimpleLayer layer = new SimpleLayer();
+        GroupFigure outer = new GroupFigure();
+        GroupFigure inner = new GroupFigure();
+        RectangleFigure rect = new RectangleFigure();
+        rect.set(RectangleFigure.X, 12.5);
+        TextFigure text = new TextFigure();
+        text.set(TextFigure.TEXT, "a < b & c");
+        drawing.add(layer);
+        layer.add(outer);
+        outer.add(inner);
+        outer.add(text);
+        inner.add(rect);
+
+        Drawing d = read(write(drawing));
+
+        assertEquals(d.getChildren().size(), 1);
+        Figure l = d.getChildren().get(0);
+        assertTrue(l instanceof SimpleLayer);
+        assertEquals(l.getChildren().size(), 1);
+        Figure o = l.getChildren().get(0);
+        assertTrue(o instanceof GroupFigure);
+        assertEquals(o.getChildren().size(), 2);
+        Figure i = o.getChildren().get(0);
+        assertTrue(i instanceof GroupFigure);
+        assertEquals(i.getChildren().size(), 1);
+        Figure r = i.getChildren().get(0);
+        assertTrue(r instanceof RectangleFigure);
+        assertEquals(r.get(RectangleFigure.X), 12.5);
+        Figure t = o.getChildren().get(1);
+        assertTrue(t instanceof TextFigure);
+        assertEquals(t.get(TextFigure.TEXT), "a < b & c");
+    }
+
+    /**
+     * Tests that URI attributes are written relative to the document home,
+     * and are read back relative to it.
+     */
+    @Test
+    public void testUriAttributesAreRelativeToDocumentHome() throws Exception {
+        SimpleDrawing drawing = new SimpleDrawing();
+        drawing.set(Drawing.DOCUMENT_HOME, DOCUMENT_HOME);
+        SimpleLayer layer = new SimpleLayer();
+        ImageFigure relative = new ImageFigure();
+        relative.set(ImageFigure.IMAGE_URI, URI.create("images/a.png"));
+        ImageFigure absolute = new ImageFigure();
+        absolute.set(ImageFigure.IMAGE_URI, URI.create("file:/tmp/drawings/images/b.png"));
+        drawing.add(layer);
+        layer.add(relative);
+        layer.add(absolute);
+
+        byte[] xml = write(drawing);
+        String str = new String(xml, StandardCharsets.UTF_8);
+        assertTrue(str.contains("\"images/a.png\""), str);
+        assertTrue(str.contains("\"images/b.png\""), str);
+        assertFalse(str.contains("file:"), str);
+
+        Drawing d = read(xml);
+        assertEquals(d.get(Drawing.DOCUMENT_HOME), DOCUMENT_HOME);
+        Figure l = d.getChildren().get(0);
+        URI a = l.getChildren().get(0).get(ImageFigure.IMAGE_URI);
+        URI b = l.getChildren().get(1).get(ImageFigure.IMAGE_URI);
+        assertEquals(a, URI.create("images/a.png"));
+        assertEquals(b, URI.create("images/b.png"));
+        assertEquals(DOCUMENT_HOME.resolve(b), URI.create("file:/tmp/drawings/images/b.png"));
+    }
+
+    /**
+     * Tests that a malformed attribute value is reported as an IOException
+     * which names the attribute.
+     */
+    @Test
+    public void testMalformedAttributeIsReported() throws Exception {
+        String attrName = RectangleFigure.X.getName();
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<Drawing xmlns=\"" + NAMESPACE_URI + "\">\n"
+                + "<Layer>\n"
+                + "<Rectangle " + attrName + "=\"twelve\"/>\n"
+                + "</Layer>\n"
+                + "</Drawing>\n";
+        try {
+            read(xml.getBytes(StandardCharsets.UTF_8));
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(attrName), e.getMessage());
+            assertTrue(e.getMessage().contains("Rectangle"), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/* @(#)AbstractDrawingModelNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jhotdraw.draw.SimpleDrawing;
+import org.jhotdraw.draw.SimpleLayer;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.GroupFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * AbstractDrawingModelNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class AbstractDrawingModelNGTest {
+
+    private DrawingModel model;
+    private GroupFigure groupA;
+    private GroupFigure groupB;
+    private RectangleFigure figure;
+    private final List<DrawingModelEvent> events = new ArrayList<>();
+
+    private void createModel() {
+        SimpleDrawing drawing = new SimpleDrawing();
+        SimpleLayer layer = new SimpleLayer();
+        groupA = new GroupFigure();
+        groupB = new GroupFigure();
+        figure = new RectangleFigure();
+        drawing.add(layer);
+        layer.add(groupA);
+        layer.add(groupB);
+        groupB.add(figure);
+        model = new SimpleDrawingModel();
+        model.setRoot(drawing);
+        events.clear();
+        model.addDrawingModelListener(events::add);
+    }
+
+    private int countNodeInvalidations(Figure f) {
+        int count = 0;
+        for (DrawingModelEvent event : events) {
+            if (event.getEventType() == DrawingModelEvent.EventType.NODE_INVALIDATED
+                    && event.getFigure() == f) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests that a node invalidation is dropped, if a later subtree
+     * invalidation contains the figure.
+     */
+    @Test
+    public void testNodeInvalidationInSubtreeIsDropped() {
+        createModel();
+        model.begin();
+        model.fireNodeInvalidated(figure);
+        model.fire(DrawingModelEvent.subtreeNodesInvalidated(model, groupB));
+        model.commit();
+
+        assertEquals(countNodeInvalidations(figure), 0);
+    }
+
+    /**
+     * Tests that a node invalidation is kept, if the figure has been moved
+     * into an invalidated subtree after the event was fired.
+     */
+    @Test
+    public void testNodeInvalidationOfReparentedFigureIsKept() {
+        createModel();
+        model.begin();
+        model.fireNodeInvalidated(figure);
+        model.addChildTo(figure, groupA);
+        model.fire(DrawingModelEvent.subtreeNodesInvalidated(model, groupA));
+        model.commit();
+
+        assertSame(figure.getParent(), groupA);
+        assertEquals(countNodeInvalidations(figure), 1);
+    }
+}
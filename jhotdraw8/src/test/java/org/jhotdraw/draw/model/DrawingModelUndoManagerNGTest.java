@@ -0,0 +1,171 @@
+/* @(#)DrawingModelUndoManagerNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.draw.model;
+
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import org.jhotdraw.draw.DrawingView;
+import org.jhotdraw.draw.SimpleDrawing;
+import org.jhotdraw.draw.SimpleLayer;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.tool.AbstractTracker;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * DrawingModelUndoManagerNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class DrawingModelUndoManagerNGTest {
+
+    /**
+     * A tracker which begins an edit on mouse pressed, and ends it on mouse
+     * released.
+     */
+    private static class EditTracker extends AbstractTracker {
+
+        void press(DrawingModel model) {
+            beginEdit(model);
+        }
+
+        void release() {
+            endEdit();
+        }
+
+        @Override
+        public void trackMousePressed(MouseEvent evt, DrawingView view) {
+        }
+
+        @Override
+        public void trackMouseReleased(MouseEvent evt, DrawingView view) {
+        }
+
+        @Override
+        public void trackMouseDragged(MouseEvent evt, DrawingView view) {
+        }
+
+        @Override
+        public void trackKeyPressed(KeyEvent event, DrawingView view) {
+        }
+
+        @Override
+        public void trackKeyReleased(KeyEvent event, DrawingView view) {
+        }
+
+        @Override
+        public void trackKeyTyped(KeyEvent event, DrawingView view) {
+        }
+    }
+
+    private DrawingModel model;
+    private RectangleFigure figure;
+
+    private void createModel() {
+        SimpleDrawing drawing = new SimpleDrawing();
+        SimpleLayer layer = new SimpleLayer();
+        figure = new RectangleFigure();
+        drawing.add(layer);
+        layer.add(figure);
+        model = new SimpleDrawingModel();
+        model.setRoot(drawing);
+    }
+
+    /**
+     * Tests that nested edits are undone in one step.
+     */
+    @Test
+    public void testNestedEdits() {
+        createModel();
+        DrawingModelUndoManager undoManager = model.getUndoManager();
+
+        undoManager.beginEdit();
+        model.set(figure, RectangleFigure.X, 1.0);
+        undoManager.beginEdit();
+        model.set(figure, RectangleFigure.Y, 2.0);
+        undoManager.endEdit();
+        assertFalse(undoManager.canUndo());
+        undoManager.endEdit();
+        assertTrue(undoManager.canUndo());
+
+        undoManager.undo();
+        assertEquals(figure.get(RectangleFigure.X), 0.0);
+        assertEquals(figure.get(RectangleFigure.Y), 0.0);
+        assertFalse(undoManager.canUndo());
+        assertTrue(undoManager.canRedo());
+    }
+
+    /**
+     * Tests that ending an edit which has not been begun is rejected by the
+     * undo manager.
+     */
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testUnbalancedEndEdit() {
+        createModel();
+        model.getUndoManager().endEdit();
+    }
+
+    /**
+     * Tests that a tracker only ends the edit which it has begun, so that a
+     * mouse released event without a mouse pressed event does not unbalance
+     * the undo manager.
+     */
+    @Test
+    public void testUnbalancedTrackerEdits() {
+        createModel();
+        DrawingModelUndoManager undoManager = model.getUndoManager();
+        EditTracker tracker = new EditTracker();
+
+        tracker.release();
+        tracker.press(model);
+        tracker.press(model);
+        model.set(figure, RectangleFigure.X, 1.0);
+        tracker.release();
+        assertTrue(undoManager.canUndo());
+        tracker.release();
+
+        undoManager.undo();
+        assertEquals(figure.get(RectangleFigure.X), 0.0);
+    }
+
+    /**
+     * Tests that cancelling a tracker ends the edit which it has begun.
+     */
+    @Test
+    public void testAbandonedTrackerEdit() {
+        createModel();
+        DrawingModelUndoManager undoManager = model.getUndoManager();
+        EditTracker tracker = new EditTracker();
+
+        tracker.press(model);
+        model.set(figure, RectangleFigure.X, 1.0);
+        assertFalse(undoManager.canUndo());
+        tracker.cancelTracking();
+        assertTrue(undoManager.canUndo());
+        tracker.cancelTracking();
+
+        undoManager.undo();
+        assertEquals(figure.get(RectangleFigure.X), 0.0);
+    }
+
+    /**
+     * Tests that a property which was absent before it was set is removed
+     * again on undo, and that redo sets it again.
+     */
+    @Test
+    public void testSetOfAbsentPropertyIsUndone() {
+        createModel();
+        DrawingModelUndoManager undoManager = model.getUndoManager();
+        assertFalse(figure.getProperties().containsKey(RectangleFigure.ARC_WIDTH));
+
+        model.set(figure, RectangleFigure.ARC_WIDTH, 3.0);
+        assertTrue(undoManager.canUndo());
+
+        undoManager.undo();
+        assertFalse(figure.getProperties().containsKey(RectangleFigure.ARC_WIDTH));
+        undoManager.redo();
+        assertEquals(figure.get(RectangleFigure.ARC_WIDTH), 3.0);
+    }
+}
@@ -0,0 +1,95 @@
+/* @(#)RTreeNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import static org.testng.Assert.*;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * RTreeNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class RTreeNGTest {
+
+    public RTreeNGTest() {
+    }
+
+    @DataProvider
+    public Object[][] sizeData() {
+        return new Object[][]{
+            {1},
+            {20},
+            {1000},};
+    }
+
+    /**
+     * Test of put, remove and search methods, of class RTree. Compares the
+     * search results with a brute force search.
+     */
+    @Test(dataProvider = "sizeData")
+    public void testPutRemoveSearch(int size) {
+        Random rnd = new Random(size);
+        RTree<Integer> tree = new RTree<>();
+        // the tree compares items by identity
+        Integer[] items = new Integer[size];
+        double[][] bounds = new double[size][];
+        for (int i = 0; i < size; i++) {
+            items[i] = new Integer(i);
+            bounds[i] = randomBounds(rnd);
+            tree.put(items[i], bounds[i][0], bounds[i][1], bounds[i][2], bounds[i][3]);
+        }
+        assertEquals(tree.size(), size);
+        assertSearch(tree, bounds, rnd);
+
+        // move half of the items, then remove every third item
+        for (int i = 0; i < size; i += 2) {
+            bounds[i] = randomBounds(rnd);
+            tree.put(items[i], bounds[i][0], bounds[i][1], bounds[i][2], bounds[i][3]);
+        }
+        assertEquals(tree.size(), size);
+        assertSearch(tree, bounds, rnd);
+        for (int i = 0; i < size; i += 3) {
+            assertTrue(tree.remove(items[i]));
+            assertFalse(tree.remove(items[i]));
+            bounds[i] = null;
+        }
+        assertSearch(tree, bounds, rnd);
+
+        for (int i = 0; i < size; i++) {
+            tree.remove(items[i]);
+        }
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.search(-1000, -1000, 1000, 1000).isEmpty());
+    }
+
+    private static double[] randomBounds(Random rnd) {
+        double x = rnd.nextDouble() * 1000;
+        double y = rnd.nextDouble() * 1000;
+        return new double[]{x, y, x + rnd.nextDouble() * 50, y + rnd.nextDouble() * 50};
+    }
+
+    private static void assertSearch(RTree<Integer> tree, double[][] bounds, Random rnd) {
+        for (int k = 0; k < 50; k++) {
+            double[] q = randomBounds(rnd);
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < bounds.length; i++) {
+                double[] b = bounds[i];
+                if (b != null && b[0] <= q[2] && b[2] >= q[0] && b[1] <= q[3] && b[3] >= q[1]) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> actual = tree.search(q[0], q[1], q[2], q[3]);
+            assertEquals(new HashSet<>(actual), expected);
+            assertEquals(actual.size(), expected.size());
+        }
+    }
+}
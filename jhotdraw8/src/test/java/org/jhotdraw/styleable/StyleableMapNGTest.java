@@ -0,0 +1,119 @@
+/* @(#)StyleableMapNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.styleable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.css.StyleOrigin;
+import org.jhotdraw.collection.KeyOrdinals;
+import static org.testng.Assert.*;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * StyleableMapNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class StyleableMapNGTest {
+
+    /**
+     * Assigns ordinals to the keys "a" and "b", but not to "c".
+     */
+    private final static KeyOrdinals<String> ORDINALS = new KeyOrdinals<String>() {
+        private final List<String> keys = Arrays.asList("a", "b");
+
+        @Override
+        public int getOrdinal(Object key) {
+            return keys.indexOf(key);
+        }
+
+        @Override
+        public String getKey(int ordinal) {
+            return keys.get(ordinal);
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+    };
+
+    public StyleableMapNGTest() {
+    }
+
+    @DataProvider
+    public Object[][] mapData() {
+        return new Object[][]{
+            {new StyleableMap<String, Object>()},
+            {new StyleableMap<String, Object>(ORDINALS)},};
+    }
+
+    /**
+     * Test of put, get and remove methods with style origins, of class
+     * StyleableMap.
+     */
+    @Test(dataProvider = "mapData")
+    public void testPutGetRemove(StyleableMap<String, Object> map) {
+        for (String key : new String[]{"a", "b", "c"}) {
+            assertNull(map.put(StyleOrigin.USER_AGENT, key, key + "0"));
+            assertNull(map.put(StyleOrigin.USER, key, key + "1"));
+            assertEquals(map.put(StyleOrigin.USER, key, key + "2"), key + "1");
+            assertEquals(map.get(key), key + "2");
+            assertEquals(map.get(StyleOrigin.USER_AGENT, key), key + "0");
+            assertEquals(map.getStyleOrigin(key), StyleOrigin.USER);
+
+            assertEquals(map.remove(StyleOrigin.USER, key), key + "2");
+            assertNull(map.remove(StyleOrigin.USER, key));
+            assertFalse(map.containsKey(key));
+            assertTrue(map.containsStyledKey(key));
+            assertEquals(map.getStyleOrigin(key), StyleOrigin.USER_AGENT);
+            assertEquals(map.getStyledMap().get(key), key + "0");
+        }
+        map.clearNonUserValues();
+        for (String key : new String[]{"a", "b", "c"}) {
+            assertFalse(map.containsStyledKey(key));
+            assertNull(map.getStyleOrigin(key));
+        }
+    }
+
+    /**
+     * Test of the map views and of change events, of class StyleableMap.
+     */
+    @Test(dataProvider = "mapData")
+    public void testViewsAndEvents(StyleableMap<String, Object> map) {
+        List<String> changes = new ArrayList<>();
+        map.addListener((javafx.collections.MapChangeListener<String, Object>) c
+                -> changes.add(c.getKey() + (c.wasAdded() ? "+" : "-")));
+
+        map.put(StyleOrigin.AUTHOR, "a", 0);
+        map.put("a", 1);
+        map.put("c", 3);
+        map.put("c", 3);
+        map.put("b", null);
+        assertEquals(changes, Arrays.asList("a+", "c+", "b+"));
+        assertEquals(map.size(), 3);
+        assertEquals(map.size(StyleOrigin.AUTHOR), 1);
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("a", 1);
+        expected.put("b", null);
+        expected.put("c", 3);
+        assertEquals(map, expected);
+        assertEquals(map.hashCode(), expected.hashCode());
+        assertEquals(map.keySet(), expected.keySet());
+        assertTrue(map.containsValue(3));
+
+        changes.clear();
+        map.keySet().retainAll(Arrays.asList("a"));
+        assertEquals(changes, Arrays.asList("b-", "c-"));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(map.get(StyleOrigin.AUTHOR, "a"), 0);
+    }
+}
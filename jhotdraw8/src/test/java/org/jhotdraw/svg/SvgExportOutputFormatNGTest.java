@@ -0,0 +1,69 @@
+/* @(#)SvgExportOutputFormatNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.svg;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.Group;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import static org.testng.Assert.*;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * SvgExportOutputFormatNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class SvgExportOutputFormatNGTest {
+
+    private final static String SVG_NS = "http://www.w3.org/2000/svg";
+    private final static String XLINK_NS = "http://www.w3.org/1999/xlink";
+    private final static String DATA_URI_PREFIX = "data:image;base64,";
+
+    @BeforeClass
+    public static void setUpClass() {
+        // initializes the JavaFX toolkit, which is needed for images
+        new JFXPanel();
+    }
+
+    /**
+     * Tests that an embedded image can be decoded from the exported document
+     * with the same pixels.
+     */
+    @Test
+    public void testEmbeddedImageRoundTrip() throws Exception {
+        WritableImage image = new WritableImage(2, 1);
+        image.getPixelWriter().setArgb(0, 0, 0xffff0000);
+        image.getPixelWriter().setArgb(1, 0, 0xff0000ff);
+        ImageView view = new ImageView(image);
+        view.setFitWidth(20);
+        view.setFitHeight(10);
+
+        Document doc = new SvgExportOutputFormat().toDocument(new Group(view));
+
+        NodeList images = doc.getElementsByTagNameNS(SVG_NS, "image");
+        assertEquals(images.getLength(), 1);
+        Element elem = (Element) images.item(0);
+        assertEquals(Double.parseDouble(elem.getAttribute("width")), 20.0);
+        assertEquals(Double.parseDouble(elem.getAttribute("height")), 10.0);
+        String href = elem.getAttributeNS(XLINK_NS, "href");
+        assertTrue(href.startsWith(DATA_URI_PREFIX), href);
+
+        byte[] png = Base64.getDecoder().decode(href.substring(DATA_URI_PREFIX.length()));
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(decoded.getWidth(), 2);
+        assertEquals(decoded.getHeight(), 1);
+        assertEquals(decoded.getRGB(0, 0), 0xffff0000);
+        assertEquals(decoded.getRGB(1, 0), 0xff0000ff);
+    }
+}
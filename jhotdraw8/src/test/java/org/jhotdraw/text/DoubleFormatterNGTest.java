@@ -0,0 +1,98 @@
+/* @(#)DoubleFormatterNGTest.java
+ * Copyright (c) 2016 by the authors and contributors of JHotDraw.
+ * You may only use this file in compliance with the accompanying license terms.
+ */
+package org.jhotdraw.text;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * DoubleFormatterNGTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class DoubleFormatterNGTest {
+
+    /**
+     * Tests that random values read back to the same value, and that they
+     * are formatted with the least number of significant digits.
+     */
+    @Test
+    public void testShortestRoundTrip() {
+        DoubleFormatter formatter = new DoubleFormatter();
+        formatter.setUsesScientificNotation(false);
+        formatter.setMaximumFractionDigits(400);
+        Random r = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(r.nextLong());
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            String actual = formatter.toString(value);
+            assertEquals(Double.parseDouble(actual), value, actual);
+            assertEquals(new BigDecimal(actual).stripTrailingZeros().precision(),
+                    shortestPrecision(value), actual);
+        }
+    }
+
+    /**
+     * Returns the least number of significant digits which are needed to
+     * read back the value.
+     */
+    private static int shortestPrecision(double value) {
+        BigDecimal exact = new BigDecimal(value);
+        for (int n = 1; n < 17; n++) {
+            if (exact.round(new MathContext(n, RoundingMode.HALF_EVEN)).doubleValue() == value) {
+                return n;
+            }
+        }
+        return 17;
+    }
+
+    /**
+     * Test of the maximum fraction digits.
+     */
+    @Test(dataProvider = "roundingData")
+    public void testRounding(double value, String expected) {
+        DoubleFormatter formatter = new DoubleFormatter();
+        formatter.setMaximumFractionDigits(3);
+        formatter.setUsesScientificNotation(false);
+        assertEquals(formatter.toString(value), expected);
+    }
+
+    @DataProvider
+    public Object[][] roundingData() {
+        return new Object[][]{
+            {0.0004, "0"},
+            {-0.0004, "-0"},
+            {0.0005, "0.001"},// exact value is above 0.0005
+            {0.0015, "0.002"},
+            {0.0025, "0.003"},// exact value is above 0.0025
+            {0.125, "0.125"},
+            {0.1245, "0.124"},// exact value is below 0.1245
+            {0.9995, "1"},// exact value is above 0.9995
+            {1.0005, "1"},// exact value is below 1.0005
+            {0.99951, "1"},
+            {123.4567, "123.457"},};
+    }
+
+    /**
+     * Test of the minimum integer and fraction digits.
+     */
+    @Test
+    public void testPadding() {
+        DoubleFormatter formatter = new DoubleFormatter();
+        formatter.setMinimumIntegerDigits(2);
+        formatter.setMinimumFractionDigits(2);
+        assertEquals(formatter.toString(0), "00.00");
+        assertEquals(formatter.toString(1.5), "01.50");
+        assertEquals(formatter.toString(0.125), "00.125");
+        assertEquals(formatter.toString(1E9), "1E9");
+    }
+}